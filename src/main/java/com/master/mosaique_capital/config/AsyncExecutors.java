@@ -0,0 +1,134 @@
+package com.master.mosaique_capital.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécuteurs partagés de l'application.
+ * <ul>
+ *     <li>{@link #firebaseBlocking()} : threads virtuels pour les appels bloquants du SDK Firebase Admin
+ *     (FirebaseAuth), afin de ne pas immobiliser les threads de requête</li>
+ *     <li>{@link #aggregation()} : pool fork-join pour les calculs enchaînés sur les résultats Firebase,
+ *     afin de ne jamais exécuter d'agrégation sur le thread d'événements du SDK</li>
+ *     <li>{@link #rendering()} : pool borné pour les rendus coûteux en CPU (QR codes) ; une file pleine
+ *     rejette la tâche ({@link java.util.concurrent.RejectedExecutionException}) plutôt que d'accumuler du retard</li>
+ *     <li>{@link #simulationPool()} : pool fork-join dédié aux simulations longues (Monte-Carlo), pour ne pas
+ *     monopoliser le pool d'agrégation des requêtes</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class AsyncExecutors implements DisposableBean {
+
+    private final ExecutorService firebaseBlocking =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("firebase-blocking-", 0).factory());
+
+    private final ForkJoinPool aggregation = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("aggregation-" + thread.getPoolIndex());
+                return thread;
+            },
+            (thread, e) -> log.error("Uncaught error in aggregation thread {}: {}", thread.getName(), e.getMessage()),
+            true);
+
+    private final ForkJoinPool simulation = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("simulation-" + thread.getPoolIndex());
+                return thread;
+            },
+            (thread, e) -> log.error("Uncaught error in simulation thread {}: {}", thread.getName(), e.getMessage()),
+            false);
+
+    private static final int RENDERING_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int RENDERING_QUEUE_CAPACITY = 256;
+    private final AtomicInteger renderingThreadCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor rendering = new ThreadPoolExecutor(
+            RENDERING_THREADS, RENDERING_THREADS,
+            60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(RENDERING_QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "rendering-" + renderingThreadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    /**
+     * Appel bloquant pouvant lever une exception vérifiée (ex. FirebaseAuthException)
+     */
+    @FunctionalInterface
+    public interface BlockingCall<T> {
+        T call() throws Exception;
+    }
+
+    public Executor firebaseBlocking() {
+        return firebaseBlocking;
+    }
+
+    public Executor aggregation() {
+        return aggregation;
+    }
+
+    public ForkJoinPool aggregationPool() {
+        return aggregation;
+    }
+
+    public ForkJoinPool simulationPool() {
+        return simulation;
+    }
+
+    public Executor rendering() {
+        return rendering;
+    }
+
+    /**
+     * Exécute un appel bloquant du SDK Firebase Admin sur un thread virtuel.
+     * Les exceptions sont propagées dans le futur, encapsulées dans une {@link CompletionException}.
+     */
+    public <T> CompletableFuture<T> supplyBlocking(BlockingCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, firebaseBlocking);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        firebaseBlocking.shutdown();
+        aggregation.shutdown();
+        rendering.shutdown();
+        simulation.shutdownNow();
+        if (!firebaseBlocking.awaitTermination(10, TimeUnit.SECONDS)) {
+            firebaseBlocking.shutdownNow();
+        }
+        if (!aggregation.awaitTermination(10, TimeUnit.SECONDS)) {
+            aggregation.shutdownNow();
+        }
+        if (!rendering.awaitTermination(10, TimeUnit.SECONDS)) {
+            rendering.shutdownNow();
+        }
+    }
+}
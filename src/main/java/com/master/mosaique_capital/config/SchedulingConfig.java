@@ -0,0 +1,12 @@
+package com.master.mosaique_capital.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Active l'exécution des tâches planifiées (traitements nocturnes, maintenance des caches)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,89 @@
+package com.master.mosaique_capital.controller;
+
+import com.master.mosaique_capital.dto.AlertRuleDto;
+import com.master.mosaique_capital.model.AlertRule;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.security.FirebaseUserDetails;
+import com.master.mosaique_capital.service.AlertService;
+import com.master.mosaique_capital.service.AssetService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+@RestController
+@RequestMapping("/api/alerts")
+@RequiredArgsConstructor
+@Slf4j
+public class AlertController {
+
+    private final AlertService alertService;
+    private final AssetService assetService;
+
+    @GetMapping
+    public ResponseEntity<List<AlertRule>> getRules(@AuthenticationPrincipal FirebaseUserDetails userDetails) {
+        try {
+            return ResponseEntity.ok(alertService.getRules(userDetails.getUid()).get());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Erreur lors de la récupération des règles d'alerte: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la récupération des règles d'alerte");
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<AlertRule> createRule(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @Valid @RequestBody AlertRuleDto ruleDto) {
+        try {
+            // L'actif surveillé doit appartenir à l'utilisateur
+            if (ruleDto.getAssetId() != null) {
+                Asset asset = assetService.getAssetById(ruleDto.getAssetId()).get()
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Actif non trouvé"));
+                if (!asset.getUserId().equals(userDetails.getUid())) {
+                    throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Accès non autorisé à cet actif");
+                }
+            }
+
+            AlertRule createdRule = alertService.createRule(userDetails.getUid(), ruleDto.toAlertRule()).get();
+            return ResponseEntity.status(HttpStatus.CREATED).body(createdRule);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalStateException) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Nombre maximal de règles d'alerte atteint");
+            }
+            log.error("Erreur lors de la création de la règle d'alerte: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la création de la règle d'alerte");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la création de la règle d'alerte");
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteRule(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String id) {
+        try {
+            alertService.deleteRule(userDetails.getUid(), id).get();
+            return ResponseEntity.noContent().build();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NoSuchElementException) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Règle d'alerte non trouvée");
+            }
+            log.error("Erreur lors de la suppression de la règle d'alerte: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la suppression de la règle d'alerte");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la suppression de la règle d'alerte");
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.master.mosaique_capital.controller;
 
 import com.master.mosaique_capital.dto.AssetDto;
+import com.master.mosaique_capital.dto.BankConnectionDto;
 import com.master.mosaique_capital.dto.AssetValuationDto;
 import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.BankConnection;
 import com.master.mosaique_capital.security.FirebaseUserDetails;
 import com.master.mosaique_capital.service.AssetService;
 import com.master.mosaique_capital.service.AuthService;
+import com.master.mosaique_capital.service.BankSyncService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +31,7 @@ public class AssetController {
 
     private final AssetService assetService;
     private final AuthService authService;
+    private final BankSyncService bankSyncService;
 
     @PostMapping
     public ResponseEntity<Asset> createAsset(
@@ -116,7 +120,7 @@ public class AssetController {
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Accès non autorisé à cet actif");
             }
 
-            assetService.deleteAsset(id).get();
+            assetService.deleteAsset(existingAsset).get();
             return ResponseEntity.noContent().build();
         } catch (InterruptedException | ExecutionException e) {
             log.error("Erreur lors de la suppression de l'actif: {}", e.getMessage());
@@ -146,6 +150,37 @@ public class AssetController {
         }
     }
 
+    @PostMapping("/{id}/bank-connection")
+    public ResponseEntity<BankConnection> connectBankAccount(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String id,
+            @Valid @RequestBody BankConnectionDto connectionDto) {
+        try {
+            // Vérifier que l'actif existe et appartient à l'utilisateur
+            Asset existingAsset = assetService.getAssetById(id).get()
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Actif non trouvé"));
+
+            if (!existingAsset.getUserId().equals(userDetails.getUid())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Accès non autorisé à cet actif");
+            }
+
+            BankConnection connection = bankSyncService.connect(userDetails.getUid(), id, connectionDto.getExternalAccountId());
+            return ResponseEntity.status(HttpStatus.CREATED).body(connection);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Seul un compte bancaire peut être synchronisé");
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "L'actif ou le compte bancaire est déjà rattaché");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors du rattachement du compte bancaire");
+        } catch (Exception e) {
+            log.error("Erreur lors du rattachement du compte bancaire: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors du rattachement du compte bancaire");
+        }
+    }
+
     @GetMapping("/categories")
     public ResponseEntity<Map<Asset.AssetCategory, List<Asset>>> getAssetsByCategories(
             @AuthenticationPrincipal FirebaseUserDetails userDetails) {
@@ -1,15 +1,16 @@
 package com.master.mosaique_capital.controller;
 
-import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.UserRecord;
 import com.master.mosaique_capital.dto.LoginRequestDto;
 import com.master.mosaique_capital.dto.RegisterRequestDto;
 import com.master.mosaique_capital.dto.VerifyTwoFactorDto;
 import com.master.mosaique_capital.model.User;
+import com.master.mosaique_capital.security.SecurityAuditFilter;
 import com.master.mosaique_capital.service.AuthService;
 import com.master.mosaique_capital.service.TwoFactorService;
 import com.master.mosaique_capital.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,7 +22,11 @@ import org.springframework.web.server.ResponseStatusException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -39,7 +44,7 @@ public class AuthController {
             UserRecord userRecord = authService.registerUser(
                     registerRequest.getEmail(),
                     registerRequest.getPassword(),
-                    registerRequest.getDisplayName());
+                    registerRequest.getDisplayName()).get();
 
             // Créer l'utilisateur dans notre base aussi
             User user = User.builder()
@@ -60,34 +65,70 @@ public class AuthController {
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
-        } catch (FirebaseAuthException e) {
-            log.error("Erreur d'enregistrement Firebase: {}", e.getMessage());
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Erreur d'enregistrement: " + e.getMessage());
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FirebaseAuthException) {
+                log.error("Erreur d'enregistrement Firebase: {}", e.getCause().getMessage());
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Erreur d'enregistrement: " + e.getCause().getMessage());
+            }
+            log.error("Erreur lors de la création du profil utilisateur: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur interne du serveur");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             log.error("Erreur lors de la création du profil utilisateur: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur interne du serveur");
         }
     }
 
+    /**
+     * Démarre la configuration 2FA. Le QR code est rendu hors du thread de requête selon {@code format} :
+     * {@code png} (URL de données, par défaut), {@code svg} ou {@code uri} (URI otpauth seule).
+     * Un nouvel appel avant expiration réutilise le même secret et le même rendu.
+     */
     @PostMapping("/setup-2fa")
-    public ResponseEntity<Map<String, String>> setupTwoFactor(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<Map<String, String>> setupTwoFactor(@RequestHeader("Authorization") String token,
+                                                              @RequestParam(defaultValue = "png") String format) {
         try {
-            String uid = authService.verifyToken(token.replace("Bearer ", ""));
-            String secretKey = twoFactorService.generateSecretKey();
-            String qrCodeUrl = twoFactorService.generateQrCodeUrl(secretKey, uid);
+            TwoFactorService.QrFormat qrFormat;
+            try {
+                qrFormat = TwoFactorService.QrFormat.from(format);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Format de QR code invalide: " + format);
+            }
+
+            String uid = authService.verifyToken(token.replace("Bearer ", "")).get();
+            TwoFactorService.TwoFactorSetup setup = twoFactorService.startSetup(uid);
+
+            // Rendu lancé pendant l'enregistrement du secret
+            CompletableFuture<String> qrCode = twoFactorService.renderQrCode(setup, qrFormat);
 
             User user = userService.getUserById(uid).get()
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utilisateur non trouvé"));
 
-            user.setTotpSecret(secretKey);
-            userService.updateUser(user).get();
+            if (!setup.secretKey().equals(user.getTotpSecret())) {
+                user.setTotpSecret(setup.secretKey());
+                userService.updateUser(user).get();
+            }
 
             Map<String, String> response = new HashMap<>();
-            response.put("secretKey", secretKey);
-            response.put("qrCodeUrl", qrCodeUrl);
+            response.put("secretKey", setup.secretKey());
+            response.put("otpAuthUri", setup.otpAuthUri());
+            if (qrFormat == TwoFactorService.QrFormat.PNG) {
+                response.put("qrCodeUrl", qrCode.get(10, TimeUnit.SECONDS));
+            } else if (qrFormat == TwoFactorService.QrFormat.SVG) {
+                response.put("qrCodeSvg", qrCode.get(10, TimeUnit.SECONDS));
+            }
 
             return ResponseEntity.ok(response);
 
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (RejectedExecutionException e) {
+            log.warn("Pool de rendu des QR codes saturé");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Service temporairement surchargé, réessayez");
+        } catch (TimeoutException e) {
+            // Le rendu reste mémorisé dans la configuration en cours : une nouvelle tentative le réutilisera
+            log.warn("Rendu du QR code trop long");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Service temporairement surchargé, réessayez");
         } catch (Exception e) {
             log.error("Erreur lors de la configuration 2FA: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Erreur: " + e.getMessage());
@@ -97,17 +138,21 @@ public class AuthController {
     @PostMapping("/verify-2fa")
     public ResponseEntity<Map<String, Object>> verifyAndEnableTwoFactor(
             @RequestHeader("Authorization") String token,
-            @Valid @RequestBody VerifyTwoFactorDto verifyRequest) {
+            @Valid @RequestBody VerifyTwoFactorDto verifyRequest,
+            HttpServletRequest request) {
         try {
-            String uid = authService.verifyToken(token.replace("Bearer ", ""));
+            String uid = authService.verifyToken(token.replace("Bearer ", "")).get();
             User user = userService.getUserById(uid).get()
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utilisateur non trouvé"));
 
-            boolean isCodeValid = twoFactorService.verifyCode(verifyRequest.getCode(), user.getTotpSecret());
+            boolean isCodeValid = twoFactorService.verifyCode(uid, verifyRequest.getCode(), user.getTotpSecret());
+            // Seul le résultat du code compte pour la protection contre la force brute
+            request.setAttribute(SecurityAuditFilter.CREDENTIALS_OUTCOME_ATTRIBUTE, isCodeValid);
 
             if (isCodeValid) {
                 user.setTwoFactorEnabled(true);
                 userService.updateUser(user).get();
+                twoFactorService.completeSetup(uid);
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
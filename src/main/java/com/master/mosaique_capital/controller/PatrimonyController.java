@@ -1,19 +1,39 @@
 package com.master.mosaique_capital.controller;
 
+import com.master.mosaique_capital.dto.SimulationRequestDto;
+import com.master.mosaique_capital.dto.StressScenarioDto;
+import com.master.mosaique_capital.dto.StressTestRequestDto;
 import com.master.mosaique_capital.security.FirebaseUserDetails;
+import com.master.mosaique_capital.service.DiversificationService;
+import com.master.mosaique_capital.service.FxRateService;
+import com.master.mosaique_capital.service.NetWorthStreamService;
 import com.master.mosaique_capital.service.PatrimonyCalculationService;
+import com.master.mosaique_capital.service.PerformanceService;
+import com.master.mosaique_capital.service.RiskAnalysisService;
+import com.master.mosaique_capital.service.SimulationService;
+import com.master.mosaique_capital.service.StressTestService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
@@ -24,11 +44,21 @@ import java.util.concurrent.ExecutionException;
 public class PatrimonyController {
 
     private final PatrimonyCalculationService patrimonyCalculationService;
+    private final FxRateService fxRateService;
+    private final NetWorthStreamService netWorthStreamService;
+    private final PerformanceService performanceService;
+    private final DiversificationService diversificationService;
+    private final RiskAnalysisService riskAnalysisService;
+    private final SimulationService simulationService;
+    private final StressTestService stressTestService;
 
     @GetMapping("/net-worth")
-    public ResponseEntity<Map<String, Object>> getNetWorth(@AuthenticationPrincipal FirebaseUserDetails userDetails) {
+    public ResponseEntity<Map<String, Object>> getNetWorth(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) String currency) {
         try {
-            Map<String, Object> netWorth = patrimonyCalculationService.calculateNetWorth(userDetails.getUid()).get();
+            Map<String, Object> netWorth = patrimonyCalculationService
+                    .calculateNetWorth(userDetails.getUid(), reportingCurrency(currency)).get();
             return ResponseEntity.ok(netWorth);
         } catch (InterruptedException | ExecutionException e) {
             log.error("Erreur lors du calcul du patrimoine net: {}", e.getMessage());
@@ -38,9 +68,12 @@ public class PatrimonyController {
     }
 
     @GetMapping("/distribution")
-    public ResponseEntity<Map<String, Object>> getAssetDistribution(@AuthenticationPrincipal FirebaseUserDetails userDetails) {
+    public ResponseEntity<Map<String, Object>> getAssetDistribution(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) String currency) {
         try {
-            Map<String, Object> distribution = patrimonyCalculationService.calculateAssetDistribution(userDetails.getUid()).get();
+            Map<String, Object> distribution = patrimonyCalculationService
+                    .calculateAssetDistribution(userDetails.getUid(), reportingCurrency(currency)).get();
             return ResponseEntity.ok(distribution);
         } catch (InterruptedException | ExecutionException e) {
             log.error("Erreur lors du calcul de la répartition des actifs: {}", e.getMessage());
@@ -53,10 +86,11 @@ public class PatrimonyController {
     public ResponseEntity<Map<String, Object>> getPatrimonyEvolution(
             @AuthenticationPrincipal FirebaseUserDetails userDetails,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String currency) {
         try {
             Map<String, Object> evolution = patrimonyCalculationService
-                    .calculatePatrimonyEvolution(userDetails.getUid(), startDate, endDate).get();
+                    .calculatePatrimonyEvolution(userDetails.getUid(), startDate, endDate, reportingCurrency(currency)).get();
             return ResponseEntity.ok(evolution);
         } catch (InterruptedException | ExecutionException e) {
             log.error("Erreur lors du calcul de l'évolution du patrimoine: {}", e.getMessage());
@@ -64,4 +98,174 @@ public class PatrimonyController {
                     "Erreur lors du calcul de l'évolution du patrimoine");
         }
     }
+
+    @GetMapping("/performance")
+    public ResponseEntity<Map<String, Object>> getPerformance(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String currency) {
+        try {
+            Map<String, Object> performance = performanceService
+                    .calculatePerformance(userDetails.getUid(), startDate, endDate, reportingCurrency(currency)).get();
+            return ResponseEntity.ok(performance);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, e.getCause().getMessage());
+            }
+            log.error("Erreur lors du calcul de la performance: {}", e.getMessage());
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors du calcul de la performance");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors du calcul de la performance");
+        }
+    }
+
+    @GetMapping("/diversification")
+    public ResponseEntity<Map<String, Object>> getDiversification(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) String currency) {
+        try {
+            Map<String, Object> diversification = diversificationService
+                    .calculateDiversification(userDetails.getUid(), reportingCurrency(currency)).get();
+            return ResponseEntity.ok(diversification);
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Erreur lors du calcul de la diversification: {}", e.getMessage());
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors du calcul de la diversification");
+        }
+    }
+
+    @GetMapping("/risk")
+    public ResponseEntity<Map<String, Object>> getRisk(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String frequency,
+            @RequestParam(required = false) String currency) {
+        try {
+            Map<String, Object> risk = riskAnalysisService.calculateRisk(userDetails.getUid(), startDate, endDate,
+                    RiskAnalysisService.Frequency.from(frequency), reportingCurrency(currency)).get();
+            return ResponseEntity.ok(risk);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, e.getCause().getMessage());
+            }
+            log.error("Erreur lors de l'analyse de risque: {}", e.getMessage());
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors de l'analyse de risque");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors de l'analyse de risque");
+        }
+    }
+
+    @PostMapping("/simulations")
+    public ResponseEntity<Map<String, Object>> startSimulation(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @Valid @RequestBody SimulationRequestDto request,
+            @RequestParam(required = false) String currency) {
+        try {
+            Map<String, Object> simulation = simulationService
+                    .startSimulation(userDetails.getUid(), request, reportingCurrency(currency)).get();
+            return ResponseEntity.status(org.springframework.http.HttpStatus.ACCEPTED).body(simulation);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.TOO_MANY_REQUESTS,
+                    "Trop de simulations en cours, veuillez réessayer plus tard");
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (e.getCause() instanceof IllegalStateException) {
+                throw new ResponseStatusException(org.springframework.http.HttpStatus.TOO_MANY_REQUESTS,
+                        "Trop de simulations en cours, veuillez réessayer plus tard");
+            }
+            log.error("Erreur lors du lancement de la simulation: {}", e.getMessage());
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors du lancement de la simulation");
+        }
+    }
+
+    @GetMapping("/simulations/{id}")
+    public ResponseEntity<Map<String, Object>> getSimulation(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String id) {
+        return simulationService.getSimulation(userDetails.getUid(), id)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(org.springframework.http.HttpStatus.NOT_FOUND,
+                        "Simulation non trouvée"));
+    }
+
+    @DeleteMapping("/simulations/{id}")
+    public ResponseEntity<Void> cancelSimulation(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String id) {
+        if (!simulationService.cancelSimulation(userDetails.getUid(), id)) {
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.NOT_FOUND, "Simulation non trouvée");
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/stress-tests")
+    public ResponseEntity<Map<String, Object>> getStressTests(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) String currency) {
+        try {
+            Map<String, Object> stressTests = stressTestService
+                    .runStressTests(userDetails.getUid(), reportingCurrency(currency)).get();
+            return ResponseEntity.ok(stressTests);
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Erreur lors de l'évaluation des scénarios de stress: {}", e.getMessage());
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors de l'évaluation des scénarios de stress");
+        }
+    }
+
+    @PostMapping("/stress-tests")
+    public ResponseEntity<Map<String, Object>> runStressTests(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @Valid @RequestBody StressTestRequestDto request,
+            @RequestParam(required = false) String currency) {
+        try {
+            Map<String, Object> stressTests = stressTestService.runStressTests(userDetails.getUid(),
+                    request.getScenarios(), request.isIncludeBuiltIn(), reportingCurrency(currency)).get();
+            return ResponseEntity.ok(stressTests);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Erreur lors de l'évaluation des scénarios de stress: {}", e.getMessage());
+            throw new ResponseStatusException(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Erreur lors de l'évaluation des scénarios de stress");
+        }
+    }
+
+    @GetMapping("/stress-tests/scenarios")
+    public ResponseEntity<List<StressScenarioDto>> getStressScenarios() {
+        return ResponseEntity.ok(stressTestService.getBuiltInScenarios());
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamNetWorth(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) String currency) {
+        return netWorthStreamService.subscribe(userDetails.getUid(), reportingCurrency(currency));
+    }
+
+    // Devise de reporting demandée, ou devise pivot par défaut
+    private String reportingCurrency(String currency) {
+        return currency != null && !currency.isBlank() ? currency.toUpperCase() : fxRateService.getBaseCurrency();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.master.mosaique_capital.controller;
+
+import com.master.mosaique_capital.dto.TaxLotOperationDto;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.TaxLotBook;
+import com.master.mosaique_capital.security.FirebaseUserDetails;
+import com.master.mosaique_capital.service.AssetService;
+import com.master.mosaique_capital.service.FxRateService;
+import com.master.mosaique_capital.service.IfiService;
+import com.master.mosaique_capital.service.TaxLotService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+@RestController
+@RequestMapping("/api/tax")
+@RequiredArgsConstructor
+@Slf4j
+public class TaxController {
+
+    private final TaxLotService taxLotService;
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final IfiService ifiService;
+
+    @GetMapping("/capital-gains")
+    public ResponseEntity<Map<String, Object>> getCapitalGains(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) String currency) {
+        try {
+            int taxYear = year != null ? year : LocalDate.now().getYear();
+            String reportingCurrency = currency != null && !currency.isBlank()
+                    ? currency.toUpperCase()
+                    : fxRateService.getBaseCurrency();
+            return ResponseEntity.ok(taxLotService.calculateCapitalGains(userDetails.getUid(), taxYear, reportingCurrency).get());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Erreur lors du calcul des plus-values: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors du calcul des plus-values");
+        }
+    }
+
+    @GetMapping("/ifi")
+    public ResponseEntity<Map<String, Object>> getIfi(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @RequestParam(required = false) Integer year) {
+        try {
+            int taxYear = year != null ? year : LocalDate.now().getYear();
+            return ResponseEntity.ok(ifiService.calculateIfi(userDetails.getUid(), taxYear).get());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Erreur lors du calcul de l'IFI: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors du calcul de l'IFI");
+        }
+    }
+
+    @GetMapping("/assets/{assetId}/lots")
+    public ResponseEntity<TaxLotBook> getLots(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String assetId) {
+        try {
+            ownedAsset(userDetails, assetId);
+            TaxLotBook book = taxLotService.getBook(userDetails.getUid(), assetId).get()
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Aucun lot pour cet actif"));
+            return ResponseEntity.ok(book);
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Erreur lors de la récupération des lots: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la récupération des lots");
+        }
+    }
+
+    @PostMapping("/assets/{assetId}/buys")
+    public ResponseEntity<TaxLotBook> recordBuy(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String assetId,
+            @Valid @RequestBody TaxLotOperationDto operation) {
+        try {
+            Asset asset = ownedAsset(userDetails, assetId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(taxLotService.recordBuy(asset, operation).get());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ExecutionException e) {
+            throw operationError("Erreur lors de l'enregistrement de l'achat", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de l'enregistrement de l'achat");
+        }
+    }
+
+    @PostMapping("/assets/{assetId}/sells")
+    public ResponseEntity<Map<String, Object>> recordSell(
+            @AuthenticationPrincipal FirebaseUserDetails userDetails,
+            @PathVariable String assetId,
+            @Valid @RequestBody TaxLotOperationDto operation) {
+        try {
+            Asset asset = ownedAsset(userDetails, assetId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(taxLotService.recordSell(asset, operation).get());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ExecutionException e) {
+            throw operationError("Erreur lors de l'enregistrement de la cession", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de l'enregistrement de la cession");
+        }
+    }
+
+    // Vérifie que l'actif existe et appartient à l'utilisateur
+    private Asset ownedAsset(FirebaseUserDetails userDetails, String assetId) throws InterruptedException, ExecutionException {
+        Asset asset = assetService.getAssetById(assetId).get()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Actif non trouvé"));
+        if (!asset.getUserId().equals(userDetails.getUid())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Accès non autorisé à cet actif");
+        }
+        return asset;
+    }
+
+    // Les erreurs de validation métier (quantité insuffisante, ordre chronologique) sont des requêtes invalides
+    private ResponseStatusException operationError(String message, ExecutionException e) {
+        if (e.getCause() instanceof IllegalArgumentException) {
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getCause().getMessage());
+        }
+        log.error("{}: {}", message, e.getMessage());
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+    }
+}
@@ -0,0 +1,59 @@
+package com.master.mosaique_capital.dto;
+
+import com.master.mosaique_capital.model.AlertRule;
+import com.master.mosaique_capital.model.Asset;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// DTO pour la création d'une règle d'alerte
+@Data
+public class AlertRuleDto {
+    @NotNull(message = "Le type de règle est obligatoire")
+    private AlertRule.RuleType type;
+
+    private String name;
+
+    // Montant en devise pivot pour les règles de patrimoine net, pourcentage sinon
+    @NotNull(message = "Le seuil est obligatoire")
+    private BigDecimal threshold;
+
+    private String assetId;
+
+    private Asset.AssetCategory category;
+
+    @Min(value = 1, message = "La fenêtre doit être d'au moins 1 jour")
+    @Max(value = 3650, message = "La fenêtre ne peut dépasser 3650 jours")
+    private Integer windowDays;
+
+    // Un patrimoine net peut être négatif ; un pourcentage est compris entre 0 et 100
+    @JsonIgnore
+    @AssertTrue(message = "Le seuil doit être un pourcentage entre 0 et 100")
+    public boolean isThresholdInRange() {
+        if (threshold == null || type == AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE
+                || type == AlertRule.RuleType.NET_WORTH_CROSSES_BELOW) {
+            return true;
+        }
+        return threshold.signum() >= 0 && threshold.compareTo(BigDecimal.valueOf(100)) <= 0;
+    }
+
+    // Méthode de conversion en entité
+    public AlertRule toAlertRule() {
+        return AlertRule.builder()
+                .type(this.type)
+                .name(this.name)
+                .threshold(this.threshold)
+                .assetId(this.assetId)
+                .category(this.category)
+                .windowDays(this.windowDays)
+                .enabled(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -1,6 +1,9 @@
 package com.master.mosaique_capital.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.security.FirebaseKeyDeserializer;
+import com.master.mosaique_capital.security.SanitizingStringDeserializer;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -17,8 +20,10 @@ public class AssetDto {
     private String id;
 
     @NotBlank(message = "Le nom est obligatoire")
+    @JsonDeserialize(using = SanitizingStringDeserializer.class)
     private String name;
 
+    @JsonDeserialize(using = SanitizingStringDeserializer.class)
     private String description;
 
     @NotNull(message = "Le type d'actif est obligatoire")
@@ -39,6 +44,8 @@ public class AssetDto {
 
     private LocalDateTime acquisitionDate;
 
+    @JsonDeserialize(keyUsing = FirebaseKeyDeserializer.class,
+            contentUsing = SanitizingStringDeserializer.class)
     private Map<String, String> attributes = new HashMap<>();
 
     // Méthode de conversion en entité
@@ -0,0 +1,13 @@
+package com.master.mosaique_capital.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+// DTO pour le rattachement d'un compte bancaire à un actif
+@Data
+public class BankConnectionDto {
+    @NotBlank(message = "L'identifiant du compte chez le fournisseur est obligatoire")
+    @Size(max = 128, message = "L'identifiant du compte ne peut dépasser 128 caractères")
+    private String externalAccountId;
+}
@@ -1,7 +1,9 @@
 package com.master.mosaique_capital.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.master.mosaique_capital.model.Asset;
 import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.security.SanitizingStringDeserializer;
 import jakarta.validation.constraints.*;
 import lombok.Data;
 
@@ -22,5 +24,6 @@ public class RegisterRequestDto {
     private String password;
 
     @NotBlank(message = "Le nom d'affichage est obligatoire")
+    @JsonDeserialize(using = SanitizingStringDeserializer.class)
     private String displayName;
 }
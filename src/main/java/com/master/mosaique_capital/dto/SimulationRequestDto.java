@@ -0,0 +1,56 @@
+package com.master.mosaique_capital.dto;
+
+import com.master.mosaique_capital.model.Asset;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// DTO pour le lancement d'une simulation Monte-Carlo du patrimoine
+@Data
+public class SimulationRequestDto {
+    @Min(value = 1, message = "L'horizon doit être d'au moins 1 an")
+    @Max(value = 50, message = "L'horizon ne peut dépasser 50 ans")
+    private int years = 10;
+
+    @Min(value = 100, message = "Le nombre de trajectoires doit être d'au moins 100")
+    private int paths = 10_000;
+
+    @Min(value = 1, message = "Le nombre de pas par an doit être d'au moins 1")
+    @Max(value = 52, message = "Le nombre de pas par an ne peut dépasser 52")
+    private int stepsPerYear = 12;
+
+    // Graine optionnelle, pour des résultats reproductibles
+    private Long seed;
+
+    // Hypothèses par catégorie ; les catégories absentes utilisent les hypothèses par défaut
+    @Valid
+    private Map<Asset.AssetCategory, Assumption> assumptions = new EnumMap<>(Asset.AssetCategory.class);
+
+    @Data
+    public static class Assumption {
+        @NotNull(message = "Le rendement annuel attendu est obligatoire")
+        @DecimalMin(value = "-1.0", inclusive = false, message = "Le rendement annuel doit être supérieur à -100%")
+        @DecimalMax(value = "1.0", message = "Le rendement annuel ne peut dépasser 100%")
+        private Double expectedReturn;
+
+        @NotNull(message = "La volatilité annuelle est obligatoire")
+        @DecimalMin(value = "0.0", message = "La volatilité doit être positive ou nulle")
+        @DecimalMax(value = "2.0", message = "La volatilité ne peut dépasser 200%")
+        private Double volatility;
+
+        public Assumption() {
+        }
+
+        public Assumption(double expectedReturn, double volatility) {
+            this.expectedReturn = expectedReturn;
+            this.volatility = volatility;
+        }
+    }
+}
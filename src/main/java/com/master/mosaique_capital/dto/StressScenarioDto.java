@@ -0,0 +1,28 @@
+package com.master.mosaique_capital.dto;
+
+import com.master.mosaique_capital.model.Asset;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// DTO d'un scénario de stress : chocs relatifs (-0.30 = -30 %) par type et par catégorie d'actif
+@Data
+public class StressScenarioDto {
+    @NotBlank(message = "Le nom du scénario est obligatoire")
+    private String name;
+
+    private String description;
+
+    // Un choc par type prime sur le choc de la catégorie de l'actif
+    @NotNull(message = "Les chocs par type sont obligatoires")
+    private Map<Asset.AssetType, @NotNull @DecimalMin(value = "-1.0", message = "Un choc ne peut être inférieur à -100%") Double> typeShocks =
+            new EnumMap<>(Asset.AssetType.class);
+
+    @NotNull(message = "Les chocs par catégorie sont obligatoires")
+    private Map<Asset.AssetCategory, @NotNull @DecimalMin(value = "-1.0", message = "Un choc ne peut être inférieur à -100%") Double> categoryShocks =
+            new EnumMap<>(Asset.AssetCategory.class);
+}
@@ -0,0 +1,28 @@
+package com.master.mosaique_capital.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// DTO pour l'évaluation de scénarios de stress personnalisés
+@Data
+public class StressTestRequestDto {
+    @Valid
+    @NotNull(message = "La liste des scénarios est obligatoire")
+    private List<@NotNull(message = "Un scénario ne peut être nul") StressScenarioDto> scenarios = new ArrayList<>();
+
+    // Evalue aussi les scénarios prédéfinis
+    private boolean includeBuiltIn = false;
+
+    // Sans scénario prédéfini, au moins un scénario personnalisé est requis
+    @JsonIgnore
+    @AssertTrue(message = "Au moins un scénario est requis")
+    public boolean isScenarioRequested() {
+        return includeBuiltIn || scenarios == null || !scenarios.isEmpty();
+    }
+}
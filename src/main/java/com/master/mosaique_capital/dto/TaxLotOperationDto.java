@@ -0,0 +1,35 @@
+package com.master.mosaique_capital.dto;
+
+import com.master.mosaique_capital.model.TaxLotBook;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PastOrPresent;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// DTO pour l'enregistrement d'un achat ou d'une cession de titres
+@Data
+public class TaxLotOperationDto {
+    @NotNull(message = "La quantité est obligatoire")
+    @DecimalMin(value = "0.0", inclusive = false, message = "La quantité doit être strictement positive")
+    private BigDecimal quantity;
+
+    @NotNull(message = "Le prix unitaire est obligatoire")
+    @DecimalMin(value = "0.0", inclusive = true, message = "Le prix unitaire doit être positif ou nul")
+    private BigDecimal unitPrice;
+
+    @DecimalMin(value = "0.0", inclusive = true, message = "Les frais doivent être positifs ou nuls")
+    private BigDecimal fees;
+
+    // Date de l'opération, aujourd'hui par défaut
+    @PastOrPresent(message = "La date de l'opération ne peut pas être dans le futur")
+    private LocalDate date;
+
+    // Lot cédé, obligatoire pour la méthode SPECIFIC
+    private String lotId;
+
+    // Méthode de calcul du prix de revient, retenue au premier achat (PMP par défaut)
+    private TaxLotBook.CostMethod method;
+}
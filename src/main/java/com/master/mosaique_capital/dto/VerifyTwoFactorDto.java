@@ -8,6 +8,6 @@ import lombok.Data;
 @Data
 public class VerifyTwoFactorDto {
     @NotBlank(message = "Le code est obligatoire")
-    @Pattern(regexp = "^[0-9]{6}$", message = "Le code doit être composé de 6 chiffres")
+    @Pattern(regexp = "^[0-9]{6,8}$", message = "Le code doit être composé de 6 à 8 chiffres")
     private String code;
 }
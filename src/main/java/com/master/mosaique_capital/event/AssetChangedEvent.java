@@ -0,0 +1,33 @@
+package com.master.mosaique_capital.event;
+
+import com.master.mosaique_capital.model.Asset;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Evénement applicatif publié par {@code AssetService} après chaque écriture d'actif confirmée par Firebase
+ *
+ * @param userId        propriétaire de l'actif
+ * @param assetId       identifiant de l'actif
+ * @param asset         état de l'actif après l'écriture (état avant suppression pour {@link ChangeType#DELETED})
+ * @param changeType    nature de la modification
+ * @param previousValue valeur courante avant la modification, null pour une création
+ * @param effectiveDate date de valeur de la modification (date de valorisation ou de mise à jour)
+ */
+public record AssetChangedEvent(
+        String userId,
+        String assetId,
+        Asset asset,
+        ChangeType changeType,
+        BigDecimal previousValue,
+        LocalDateTime effectiveDate
+) {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        VALUATION_ADDED,
+        DELETED
+    }
+}
@@ -0,0 +1,103 @@
+package com.master.mosaique_capital.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Règle d'alerte définie par un utilisateur. Les montants sont exprimés dans la devise pivot ; les
+ * pourcentages en points (10 pour 10 %).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertRule {
+    private String id;
+    private String userId;
+    private RuleType type;
+    private String name;
+
+    // Montant (patrimoine net) ou pourcentage (baisse, part de catégorie) déclenchant l'alerte
+    private BigDecimal threshold;
+
+    // Actif surveillé, pour ASSET_DROP
+    private String assetId;
+
+    // Catégorie surveillée, pour CATEGORY_SHARE_ABOVE
+    private Asset.AssetCategory category;
+
+    // Fenêtre d'observation de la baisse, pour ASSET_DROP
+    private Integer windowDays;
+
+    @Builder.Default
+    private boolean enabled = true;
+
+    private LocalDateTime createdAt;
+
+    public enum RuleType {
+        NET_WORTH_CROSSES_ABOVE,    // Le patrimoine net franchit un montant à la hausse
+        NET_WORTH_CROSSES_BELOW,    // Le patrimoine net franchit un montant à la baisse
+        ASSET_DROP,                 // Un actif baisse d'au moins Y % sur Z jours
+        CATEGORY_SHARE_ABOVE        // La part d'une catégorie dans les actifs dépasse W %
+    }
+
+    // Méthodes pour faciliter la conversion depuis/vers Firebase
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("userId", userId);
+        map.put("type", type != null ? type.name() : null);
+        map.put("name", name);
+        map.put("threshold", threshold != null ? threshold.toString() : null);
+        map.put("assetId", assetId);
+        map.put("category", category != null ? category.name() : null);
+        map.put("windowDays", windowDays);
+        map.put("enabled", enabled);
+        map.put("createdAt", createdAt != null ? createdAt.toString() : null);
+        return map;
+    }
+
+    public static AlertRule fromMap(Map<String, Object> map) {
+        AlertRule rule = new AlertRule();
+        rule.setId((String) map.get("id"));
+        rule.setUserId((String) map.get("userId"));
+
+        String typeStr = (String) map.get("type");
+        if (typeStr != null) {
+            rule.setType(RuleType.valueOf(typeStr));
+        }
+
+        rule.setName((String) map.get("name"));
+
+        String thresholdStr = (String) map.get("threshold");
+        if (thresholdStr != null) {
+            rule.setThreshold(new BigDecimal(thresholdStr));
+        }
+
+        rule.setAssetId((String) map.get("assetId"));
+
+        String categoryStr = (String) map.get("category");
+        if (categoryStr != null) {
+            rule.setCategory(Asset.AssetCategory.valueOf(categoryStr));
+        }
+
+        if (map.get("windowDays") != null) {
+            rule.setWindowDays(((Number) map.get("windowDays")).intValue());
+        }
+
+        if (map.get("enabled") != null) {
+            rule.setEnabled((Boolean) map.get("enabled"));
+        }
+
+        String createdAtStr = (String) map.get("createdAt");
+        if (createdAtStr != null) {
+            rule.setCreatedAt(LocalDateTime.parse(createdAtStr));
+        }
+
+        return rule;
+    }
+}
@@ -27,6 +27,9 @@ public class Asset {
     private LocalDateTime acquisitionDate;
     private LocalDateTime lastUpdateDate;
 
+    // Incrémentée à chaque écriture par AssetRepository ; 0 pour un actif jamais écrit
+    private long version;
+
     @Builder.Default
     private Map<String, String> attributes = new HashMap<>();
 
@@ -47,6 +50,7 @@ public class Asset {
         map.put("acquisitionValue", acquisitionValue != null ? acquisitionValue.toString() : null);
         map.put("acquisitionDate", acquisitionDate != null ? acquisitionDate.toString() : null);
         map.put("lastUpdateDate", lastUpdateDate != null ? lastUpdateDate.toString() : null);
+        map.put("version", version);
         map.put("attributes", attributes);
 
         List<Map<String, Object>> valuationHistoryMaps = new ArrayList<>();
@@ -99,6 +103,10 @@ public class Asset {
             asset.setLastUpdateDate(LocalDateTime.parse(lastUpdateDateStr));
         }
 
+        if (map.get("version") instanceof Number version) {
+            asset.setVersion(version.longValue());
+        }
+
         if (map.get("attributes") != null) {
             @SuppressWarnings("unchecked")
             Map<String, String> attributes = new HashMap<>((Map<String, String>) map.get("attributes"));
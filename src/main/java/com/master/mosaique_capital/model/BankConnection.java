@@ -0,0 +1,75 @@
+package com.master.mosaique_capital.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lien entre un actif {@code BANK_ACCOUNT} et le compte correspondant chez un fournisseur d'agrégation bancaire.
+ * Le curseur de synchronisation, opaque et propre au fournisseur, permet de ne récupérer que les nouvelles données.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankConnection {
+    private String id;
+    private String userId;
+    private String assetId;
+    private String provider;
+    private String externalAccountId;
+    private String syncCursor;
+    private BigDecimal lastBalance;
+    private LocalDateTime lastSyncAt;
+    private String lastError;
+
+    @Builder.Default
+    private boolean enabled = true;
+
+    // Méthodes pour faciliter la conversion depuis/vers Firebase
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("userId", userId);
+        map.put("assetId", assetId);
+        map.put("provider", provider);
+        map.put("externalAccountId", externalAccountId);
+        map.put("syncCursor", syncCursor);
+        map.put("lastBalance", lastBalance != null ? lastBalance.toString() : null);
+        map.put("lastSyncAt", lastSyncAt != null ? lastSyncAt.toString() : null);
+        map.put("lastError", lastError);
+        map.put("enabled", enabled);
+        return map;
+    }
+
+    public static BankConnection fromMap(Map<String, Object> map) {
+        BankConnection connection = new BankConnection();
+        connection.setId((String) map.get("id"));
+        connection.setUserId((String) map.get("userId"));
+        connection.setAssetId((String) map.get("assetId"));
+        connection.setProvider((String) map.get("provider"));
+        connection.setExternalAccountId((String) map.get("externalAccountId"));
+        connection.setSyncCursor((String) map.get("syncCursor"));
+
+        String lastBalanceStr = (String) map.get("lastBalance");
+        if (lastBalanceStr != null) {
+            connection.setLastBalance(new BigDecimal(lastBalanceStr));
+        }
+
+        String lastSyncAtStr = (String) map.get("lastSyncAt");
+        if (lastSyncAtStr != null) {
+            connection.setLastSyncAt(LocalDateTime.parse(lastSyncAtStr));
+        }
+
+        connection.setLastError((String) map.get("lastError"));
+
+        if (map.get("enabled") != null) {
+            connection.setEnabled((Boolean) map.get("enabled"));
+        }
+
+        return connection;
+    }
+}
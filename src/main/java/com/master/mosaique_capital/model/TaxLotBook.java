@@ -0,0 +1,258 @@
+package com.master.mosaique_capital.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Registre fiscal d'un actif coté : lots d'achat encore ouverts, quantité et prix de revient total détenus,
+ * et plus-values réalisées cumulées par année.
+ * <p>
+ * Seuls les lots ouverts sont conservés (un lot soldé est supprimé, un lot partiellement vendu est réduit) et
+ * les cessions ne sont gardées qu'en cumul annuel : la taille du registre ne dépend pas de l'historique.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxLotBook {
+
+    /** Types d'actifs suivis par lots */
+    public static final Set<Asset.AssetType> LOT_TRACKED_TYPES =
+            EnumSet.of(Asset.AssetType.STOCK, Asset.AssetType.ETF, Asset.AssetType.CRYPTO, Asset.AssetType.MUTUAL_FUND);
+
+    private String assetId;
+    private String userId;
+    private CostMethod method;
+    private String currency;
+
+    @Builder.Default
+    private BigDecimal quantity = BigDecimal.ZERO;
+
+    // Prix de revient total des titres détenus, frais d'acquisition inclus
+    @Builder.Default
+    private BigDecimal costBasis = BigDecimal.ZERO;
+
+    private LocalDate lastOperationDate;
+    private long nextLotSequence;
+    private LocalDateTime lastUpdateDate;
+
+    // Lots ouverts, dans l'ordre d'acquisition
+    @Builder.Default
+    private List<TaxLot> lots = new ArrayList<>();
+
+    @Builder.Default
+    private Map<Integer, YearTotals> realizedByYear = new TreeMap<>();
+
+    public enum CostMethod {
+        FIFO,               // Premier entré, premier sorti
+        WEIGHTED_AVERAGE,   // Prix moyen pondéré (PMP)
+        SPECIFIC            // Lot désigné à la cession
+    }
+
+    /**
+     * Lot d'achat ouvert ; {@code cost} est le prix de revient restant de la quantité restante
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TaxLot {
+        private String id;
+        private LocalDate acquisitionDate;
+        private BigDecimal quantity;
+        private BigDecimal cost;
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", id);
+            map.put("acquisitionDate", acquisitionDate != null ? acquisitionDate.toString() : null);
+            map.put("quantity", quantity != null ? quantity.toString() : null);
+            map.put("cost", cost != null ? cost.toString() : null);
+            return map;
+        }
+
+        public static TaxLot fromMap(Map<String, Object> map) {
+            TaxLot lot = new TaxLot();
+            lot.setId((String) map.get("id"));
+
+            String acquisitionDateStr = (String) map.get("acquisitionDate");
+            if (acquisitionDateStr != null) {
+                lot.setAcquisitionDate(LocalDate.parse(acquisitionDateStr));
+            }
+
+            String quantityStr = (String) map.get("quantity");
+            if (quantityStr != null) {
+                lot.setQuantity(new BigDecimal(quantityStr));
+            }
+
+            String costStr = (String) map.get("cost");
+            if (costStr != null) {
+                lot.setCost(new BigDecimal(costStr));
+            }
+
+            return lot;
+        }
+    }
+
+    /**
+     * Cumul annuel des cessions : prix de cession nets de frais, prix de revient, plus-value
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class YearTotals {
+        private BigDecimal proceeds = BigDecimal.ZERO;
+        private BigDecimal costBasis = BigDecimal.ZERO;
+        private BigDecimal gain = BigDecimal.ZERO;
+        private long disposals;
+
+        public void add(BigDecimal proceeds, BigDecimal costBasis) {
+            this.proceeds = this.proceeds.add(proceeds);
+            this.costBasis = this.costBasis.add(costBasis);
+            this.gain = this.proceeds.subtract(this.costBasis);
+            this.disposals++;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("proceeds", proceeds.toString());
+            map.put("costBasis", costBasis.toString());
+            map.put("gain", gain.toString());
+            map.put("disposals", disposals);
+            return map;
+        }
+
+        public static YearTotals fromMap(Map<String, Object> map) {
+            YearTotals totals = new YearTotals();
+            if (map.get("proceeds") != null) {
+                totals.setProceeds(new BigDecimal((String) map.get("proceeds")));
+            }
+            if (map.get("costBasis") != null) {
+                totals.setCostBasis(new BigDecimal((String) map.get("costBasis")));
+            }
+            if (map.get("gain") != null) {
+                totals.setGain(new BigDecimal((String) map.get("gain")));
+            }
+            if (map.get("disposals") != null) {
+                totals.setDisposals(((Number) map.get("disposals")).longValue());
+            }
+            return totals;
+        }
+    }
+
+    // Méthodes pour faciliter la conversion depuis/vers Firebase
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = headerMap();
+
+        Map<String, Object> lotMaps = new HashMap<>();
+        if (lots != null) {
+            for (TaxLot lot : lots) {
+                lotMaps.put(lot.getId(), lot.toMap());
+            }
+        }
+        map.put("lots", lotMaps);
+
+        Map<String, Object> yearMaps = new HashMap<>();
+        if (realizedByYear != null) {
+            realizedByYear.forEach((year, totals) -> yearMaps.put(yearKey(year), totals.toMap()));
+        }
+        map.put("realizedByYear", yearMaps);
+
+        return map;
+    }
+
+    /**
+     * Champs du registre hors lots et cumuls annuels, pour les mises à jour partielles
+     */
+    public Map<String, Object> headerMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("assetId", assetId);
+        map.put("userId", userId);
+        map.put("method", method != null ? method.name() : null);
+        map.put("currency", currency);
+        map.put("quantity", quantity != null ? quantity.toString() : null);
+        map.put("costBasis", costBasis != null ? costBasis.toString() : null);
+        map.put("lastOperationDate", lastOperationDate != null ? lastOperationDate.toString() : null);
+        map.put("nextLotSequence", nextLotSequence);
+        map.put("lastUpdateDate", lastUpdateDate != null ? lastUpdateDate.toString() : null);
+        return map;
+    }
+
+    public static TaxLotBook fromMap(Map<String, Object> map) {
+        TaxLotBook book = new TaxLotBook();
+        book.setAssetId((String) map.get("assetId"));
+        book.setUserId((String) map.get("userId"));
+
+        String methodStr = (String) map.get("method");
+        if (methodStr != null) {
+            book.setMethod(CostMethod.valueOf(methodStr));
+        }
+
+        book.setCurrency((String) map.get("currency"));
+
+        String quantityStr = (String) map.get("quantity");
+        book.setQuantity(quantityStr != null ? new BigDecimal(quantityStr) : BigDecimal.ZERO);
+
+        String costBasisStr = (String) map.get("costBasis");
+        book.setCostBasis(costBasisStr != null ? new BigDecimal(costBasisStr) : BigDecimal.ZERO);
+
+        String lastOperationDateStr = (String) map.get("lastOperationDate");
+        if (lastOperationDateStr != null) {
+            book.setLastOperationDate(LocalDate.parse(lastOperationDateStr));
+        }
+
+        if (map.get("nextLotSequence") != null) {
+            book.setNextLotSequence(((Number) map.get("nextLotSequence")).longValue());
+        }
+
+        String lastUpdateDateStr = (String) map.get("lastUpdateDate");
+        if (lastUpdateDateStr != null) {
+            book.setLastUpdateDate(LocalDateTime.parse(lastUpdateDateStr));
+        }
+
+        // Les identifiants de lots sont ordonnés comme les acquisitions
+        List<TaxLot> lots = new ArrayList<>();
+        if (map.get("lots") != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> lotMaps = new TreeMap<>((Map<String, Map<String, Object>>) map.get("lots"));
+            for (Map<String, Object> lotMap : lotMaps.values()) {
+                lots.add(TaxLot.fromMap(lotMap));
+            }
+        }
+        book.setLots(lots);
+
+        Map<Integer, YearTotals> realizedByYear = new TreeMap<>();
+        if (map.get("realizedByYear") != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> yearMaps = (Map<String, Map<String, Object>>) map.get("realizedByYear");
+            yearMaps.forEach((key, totals) -> realizedByYear.put(Integer.parseInt(key.substring(1)), YearTotals.fromMap(totals)));
+        }
+        book.setRealizedByYear(realizedByYear);
+
+        return book;
+    }
+
+    /**
+     * Clé Firebase d'une année ; préfixée pour ne pas être lue comme un index de tableau
+     */
+    public static String yearKey(int year) {
+        return "y" + year;
+    }
+
+    /**
+     * Identifiant du lot de rang donné, ordonné lexicographiquement comme les acquisitions
+     */
+    public static String lotId(long sequence) {
+        return String.format("lot-%010d", sequence);
+    }
+}
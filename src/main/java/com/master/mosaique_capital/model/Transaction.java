@@ -0,0 +1,86 @@
+package com.master.mosaique_capital.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opération du grand livre d'un utilisateur (mouvement bancaire, achat, vente...).
+ * Les opérations ne sont jamais modifiées : une correction est enregistrée comme une nouvelle opération.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Transaction {
+    private String id;
+    private String userId;
+    private String assetId;
+    private LocalDate date;
+    private BigDecimal amount; // Signé : négatif pour un débit
+    private String currency;
+    private String label;
+    private String category;
+    private String source; // Manuel, synchronisation bancaire, etc.
+    private String externalId; // Identifiant chez le fournisseur, pour le dédoublonnage
+    private LocalDateTime createdAt;
+
+    /**
+     * Partition mensuelle de stockage de l'opération
+     */
+    public YearMonth getMonth() {
+        return date != null ? YearMonth.from(date) : null;
+    }
+
+    // Méthodes pour faciliter la conversion depuis/vers Firebase
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("userId", userId);
+        map.put("assetId", assetId);
+        map.put("date", date != null ? date.toString() : null);
+        map.put("amount", amount != null ? amount.toString() : null);
+        map.put("currency", currency);
+        map.put("label", label);
+        map.put("category", category);
+        map.put("source", source);
+        map.put("externalId", externalId);
+        map.put("createdAt", createdAt != null ? createdAt.toString() : null);
+        return map;
+    }
+
+    public static Transaction fromMap(Map<String, Object> map) {
+        Transaction transaction = new Transaction();
+        transaction.setId((String) map.get("id"));
+        transaction.setUserId((String) map.get("userId"));
+        transaction.setAssetId((String) map.get("assetId"));
+
+        String dateStr = (String) map.get("date");
+        if (dateStr != null) {
+            transaction.setDate(LocalDate.parse(dateStr));
+        }
+
+        String amountStr = (String) map.get("amount");
+        if (amountStr != null) {
+            transaction.setAmount(new BigDecimal(amountStr));
+        }
+
+        transaction.setCurrency((String) map.get("currency"));
+        transaction.setLabel((String) map.get("label"));
+        transaction.setCategory((String) map.get("category"));
+        transaction.setSource((String) map.get("source"));
+        transaction.setExternalId((String) map.get("externalId"));
+
+        String createdAtStr = (String) map.get("createdAt");
+        if (createdAtStr != null) {
+            transaction.setCreatedAt(LocalDateTime.parse(createdAtStr));
+        }
+
+        return transaction;
+    }
+}
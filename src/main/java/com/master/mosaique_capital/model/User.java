@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -47,7 +49,7 @@ public class User {
         map.put("createdAt", createdAt != null ? createdAt.toString() : null);
         map.put("updatedAt", updatedAt != null ? updatedAt.toString() : null);
         map.put("disabled", disabled);
-        map.put("roles", roles);
+        map.put("roles", roles != null ? new ArrayList<>(roles) : null); // Firebase ne sérialise pas les Set
         map.put("preferences", preferences);
         return map;
     }
@@ -85,7 +87,7 @@ public class User {
 
         if (map.get("roles") != null) {
             @SuppressWarnings("unchecked")
-            Set<String> roles = new HashSet<>((Set<String>) map.get("roles"));
+            Set<String> roles = new HashSet<>((Collection<String>) map.get("roles"));
             user.setRoles(roles);
         }
 
@@ -0,0 +1,99 @@
+package com.master.mosaique_capital.repository;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.master.mosaique_capital.model.AlertRule;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Règles d'alerte, sous {@code alertRules/{userId}/{ruleId}} : les règles d'un utilisateur se lisent en une requête.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class AlertRuleRepository {
+
+    private final FirebaseDatabase firebaseDatabase;
+    private final RepositoryMetrics repositoryMetrics;
+    private static final String ALERT_RULES_REF = "alertRules";
+
+    public CompletableFuture<AlertRule> save(AlertRule rule) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<AlertRule> future = new CompletableFuture<>();
+        DatabaseReference userRef = firebaseDatabase.getReference(ALERT_RULES_REF).child(rule.getUserId());
+        DatabaseReference ruleRef;
+
+        if (rule.getId() == null) {
+            ruleRef = userRef.push();
+            rule.setId(ruleRef.getKey());
+        } else {
+            ruleRef = userRef.child(rule.getId());
+        }
+
+        ruleRef.setValueAsync(rule.toMap())
+                .addOnSuccessListener(aVoid -> future.complete(rule))
+                .addOnFailureListener(e -> {
+                    log.error("Error saving alert rule to Firebase: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                });
+
+        return repositoryMetrics.record(sample, ALERT_RULES_REF, "save", future);
+    }
+
+    public CompletableFuture<Void> deleteById(String userId, String id) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(ALERT_RULES_REF).child(userId).child(id).removeValueAsync()
+                .addOnSuccessListener(aVoid -> future.complete(null))
+                .addOnFailureListener(e -> {
+                    log.error("Error deleting alert rule from Firebase: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                });
+
+        return repositoryMetrics.record(sample, ALERT_RULES_REF, "deleteById", future);
+    }
+
+    public CompletableFuture<List<AlertRule>> findByUserId(String userId) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<List<AlertRule>> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(ALERT_RULES_REF).child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<AlertRule> rules = new ArrayList<>();
+                try {
+                    for (DataSnapshot ruleSnapshot : dataSnapshot.getChildren()) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> ruleMap = (Map<String, Object>) ruleSnapshot.getValue();
+                        rules.add(AlertRule.fromMap(ruleMap));
+                    }
+                } catch (Exception e) {
+                    log.error("Error parsing alert rule data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(rules);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return repositoryMetrics.record(sample, ALERT_RULES_REF, "findByUserId", future);
+    }
+}
@@ -0,0 +1,163 @@
+package com.master.mosaique_capital.repository;
+
+import com.master.mosaique_capital.security.SecurityUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Chiffrement champ par champ des documents d'actifs, appliqué à la frontière Firebase par {@link AssetRepository}.
+ * <p>
+ * Les champs chiffrés sont listés dans {@code app.security.field-encryption.fields} ({@code attributes} chiffre
+ * chaque valeur de la map d'attributs ; {@code currentValue} chiffre aussi les valeurs de l'historique de valorisation,
+ * qui la révéleraient sinon). Tous les champs d'un document sont chiffrés ou déchiffrés en un seul appel
+ * à {@link SecurityUtils#encryptAll}/{@link SecurityUtils#decryptAll}. Les valeurs en clair déjà stockées restent
+ * lisibles : seules les valeurs portant le préfixe de chiffrement sont déchiffrées.
+ */
+@Component
+@Slf4j
+public class AssetFieldCodec {
+
+    private static final String ATTRIBUTES = "attributes";
+    private static final String ATTRIBUTE_PREFIX = "attributes.";
+    private static final String CURRENT_VALUE = "currentValue";
+    private static final String VALUATION_HISTORY = "valuationHistory";
+    private static final String VALUATION_PREFIX = "valuationHistory.";
+    private static final String VALUATION_VALUE = "value";
+
+    // Champs texte de premier niveau pouvant être chiffrés (userId reste en clair : il sert aux requêtes)
+    private static final Set<String> SUPPORTED_FIELDS =
+            Set.of("name", "description", CURRENT_VALUE, "acquisitionValue", ATTRIBUTES);
+
+    private final SecurityUtils securityUtils;
+    private final boolean enabled;
+    private final String secret;
+    private final Set<String> fields;
+
+    public AssetFieldCodec(SecurityUtils securityUtils,
+                           @Value("${app.security.field-encryption.enabled:false}") boolean enabled,
+                           @Value("${app.security.field-encryption.fields:name,description,attributes}") String[] fields,
+                           @Value("${app.security.encryption-secret:}") String secret) {
+        this.securityUtils = securityUtils;
+        this.enabled = enabled;
+        this.secret = secret;
+        this.fields = Arrays.stream(fields)
+                .map(String::trim)
+                .filter(SUPPORTED_FIELDS::contains)
+                .collect(Collectors.toUnmodifiableSet());
+
+        if (enabled) {
+            if (secret.isBlank()) {
+                throw new IllegalStateException("app.security.field-encryption.enabled requires app.security.encryption-secret");
+            }
+            log.info("Asset field encryption enabled for {}", this.fields);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chiffre les champs configurés d'un document issu de {@code Asset.toMap()} (modifié en place)
+     */
+    public Map<String, Object> encode(Map<String, Object> document) {
+        if (!enabled) {
+            return document;
+        }
+
+        Map<String, String> plain = collect(document, false);
+        if (!plain.isEmpty()) {
+            apply(document, securityUtils.encryptAll(plain, secret));
+        }
+        return document;
+    }
+
+    /**
+     * Déchiffre les champs chiffrés d'un document lu dans Firebase (modifié en place).
+     * Appliqué même si le chiffrement est désactivé, afin de relire les documents écrits lorsqu'il était actif.
+     */
+    public Map<String, Object> decode(Map<String, Object> document) {
+        if (secret.isBlank()) {
+            return document;
+        }
+
+        Map<String, String> encrypted = collect(document, true);
+        if (!encrypted.isEmpty()) {
+            apply(document, securityUtils.decryptAll(encrypted, secret));
+        }
+        return document;
+    }
+
+    /**
+     * Rassemble les valeurs à traiter, les attributs étant aplatis sous la clé {@code attributes.<nom>} et les
+     * valeurs de l'historique sous la clé {@code valuationHistory.<index>}
+     * @param encryptedOnly true pour ne retenir que les valeurs chiffrées (décodage)
+     */
+    private Map<String, String> collect(Map<String, Object> document, boolean encryptedOnly) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String field : encryptedOnly ? SUPPORTED_FIELDS : fields) {
+            Object value = document.get(field);
+            if (value instanceof String text) {
+                if (!encryptedOnly || securityUtils.isEncrypted(text)) {
+                    values.put(field, text);
+                }
+            } else if (value instanceof Map<?, ?> attributes && ATTRIBUTES.equals(field)) {
+                for (Map.Entry<?, ?> entry : attributes.entrySet()) {
+                    if (entry.getValue() instanceof String text && (!encryptedOnly || securityUtils.isEncrypted(text))) {
+                        values.put(ATTRIBUTE_PREFIX + entry.getKey(), text);
+                    }
+                }
+            }
+        }
+
+        if ((encryptedOnly || fields.contains(CURRENT_VALUE)) && document.get(VALUATION_HISTORY) instanceof List<?> history) {
+            for (int i = 0; i < history.size(); i++) {
+                if (history.get(i) instanceof Map<?, ?> valuation
+                        && valuation.get(VALUATION_VALUE) instanceof String text
+                        && (!encryptedOnly || securityUtils.isEncrypted(text))) {
+                    values.put(VALUATION_PREFIX + i, text);
+                }
+            }
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Map<String, Object> document, Map<String, String> values) {
+        Map<String, Object> attributes = null;
+        List<Object> history = null;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(VALUATION_PREFIX)) {
+                if (history == null) {
+                    // Copies : l'historique et ses entrées peuvent être partagés avec l'appelant
+                    history = new ArrayList<>((List<Object>) document.get(VALUATION_HISTORY));
+                    document.put(VALUATION_HISTORY, history);
+                }
+                int index = Integer.parseInt(key.substring(VALUATION_PREFIX.length()));
+                Map<String, Object> valuation = new HashMap<>((Map<String, Object>) history.get(index));
+                valuation.put(VALUATION_VALUE, entry.getValue());
+                history.set(index, valuation);
+            } else if (key.startsWith(ATTRIBUTE_PREFIX)) {
+                if (attributes == null) {
+                    // Copie : la map d'attributs peut être celle de l'entité
+                    attributes = new HashMap<>((Map<String, Object>) document.get(ATTRIBUTES));
+                    document.put(ATTRIBUTES, attributes);
+                }
+                attributes.put(key.substring(ATTRIBUTE_PREFIX.length()), entry.getValue());
+            } else {
+                document.put(key, entry.getValue());
+            }
+        }
+    }
+}
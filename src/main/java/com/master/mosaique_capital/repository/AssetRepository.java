@@ -1,7 +1,9 @@
 package com.master.mosaique_capital.repository;
 
 import com.google.firebase.database.*;
+import com.master.mosaique_capital.config.AsyncExecutors;
 import com.master.mosaique_capital.model.Asset;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
@@ -9,6 +11,8 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
@@ -16,9 +20,17 @@ import java.util.concurrent.CompletableFuture;
 public class AssetRepository {
 
     private final FirebaseDatabase firebaseDatabase;
+    private final AsyncExecutors asyncExecutors;
+    private final RepositoryMetrics repositoryMetrics;
+    private final AssetFieldCodec fieldCodec;
+    private final WriteBehindStore writeBehindStore;
     private static final String ASSETS_REF = "assets";
 
+    // Nombre de documents à partir duquel le déchiffrement d'une liste est parallélisé
+    private static final int PARALLEL_DECODE_THRESHOLD = 32;
+
     public CompletableFuture<Asset> save(Asset asset) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<Asset> future = new CompletableFuture<>();
         DatabaseReference assetRef;
 
@@ -30,8 +42,23 @@ public class AssetRepository {
         }
 
         asset.setLastUpdateDate(LocalDateTime.now());
+        asset.setVersion(asset.getVersion() + 1);
+
+        Map<String, Object> assetValues = fieldCodec.encode(asset.toMap());
+        repositoryMetrics.recordPayload(ASSETS_REF, "save", assetValues);
+
+        if (writeBehindStore.isEnabled()) {
+            // Acquittement dès l'écriture dans le journal local ; la réplication vers Firebase est différée
+            try {
+                writeBehindStore.put(path(asset.getId()), asset.getUserId(), assetValues);
+                future.complete(asset);
+            } catch (Exception e) {
+                log.error("Error journaling asset write: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+            return repositoryMetrics.record(sample, ASSETS_REF, "save", future);
+        }
 
-        Map<String, Object> assetValues = asset.toMap();
         assetRef.setValueAsync(assetValues)
                 .addOnSuccessListener(aVoid -> future.complete(asset))
                 .addOnFailureListener(e -> {
@@ -39,12 +66,27 @@ public class AssetRepository {
                     future.completeExceptionally(e);
                 });
 
-        return future;
+        return repositoryMetrics.record(sample, ASSETS_REF, "save", future);
     }
 
     public CompletableFuture<Optional<Asset>> findById(String id) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<Optional<Asset>> future = new CompletableFuture<>();
 
+        Optional<WriteBehindStore.PendingWrite> pending = writeBehindStore.pending(path(id));
+        if (pending.isPresent()) {
+            // Écriture non encore répliquée : le miroir local fait foi
+            try {
+                future.complete(pending.get().isDelete()
+                        ? Optional.empty()
+                        : Optional.of(Asset.fromMap(fieldCodec.decode(new HashMap<>(pending.get().value())))));
+            } catch (Exception e) {
+                log.error("Error parsing asset data: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+            return repositoryMetrics.record(sample, ASSETS_REF, "findById", future);
+        }
+
         firebaseDatabase.getReference(ASSETS_REF).child(id).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
@@ -52,7 +94,8 @@ public class AssetRepository {
                     try {
                         @SuppressWarnings("unchecked")
                         Map<String, Object> assetMap = (Map<String, Object>) dataSnapshot.getValue();
-                        Asset asset = Asset.fromMap(assetMap);
+                        repositoryMetrics.recordPayload(ASSETS_REF, "findById", assetMap);
+                        Asset asset = Asset.fromMap(fieldCodec.decode(assetMap));
                         future.complete(Optional.of(asset));
                     } catch (Exception e) {
                         log.error("Error parsing asset data: {}", e.getMessage());
@@ -70,10 +113,11 @@ public class AssetRepository {
             }
         });
 
-        return future;
+        return repositoryMetrics.record(sample, ASSETS_REF, "findById", future);
     }
 
     public CompletableFuture<List<Asset>> findByUserId(String userId) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<List<Asset>> future = new CompletableFuture<>();
 
         firebaseDatabase.getReference(ASSETS_REF)
@@ -82,24 +126,30 @@ public class AssetRepository {
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
-                        List<Asset> assets = new ArrayList<>();
+                        List<Map<String, Object>> assetMaps = new ArrayList<>();
 
                         if (dataSnapshot.exists()) {
-                            try {
-                                for (DataSnapshot assetSnapshot : dataSnapshot.getChildren()) {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, Object> assetMap = (Map<String, Object>) assetSnapshot.getValue();
-                                    Asset asset = Asset.fromMap(assetMap);
-                                    assets.add(asset);
-                                }
-                            } catch (Exception e) {
-                                log.error("Error parsing assets data: {}", e.getMessage());
-                                future.completeExceptionally(e);
-                                return;
+                            long payloadBytes = 0;
+                            for (DataSnapshot assetSnapshot : dataSnapshot.getChildren()) {
+                                @SuppressWarnings("unchecked")
+                                Map<String, Object> assetMap = (Map<String, Object>) assetSnapshot.getValue();
+                                payloadBytes += RepositoryMetrics.estimateSize(assetMap);
+                                assetMaps.add(assetMap);
                             }
+                            repositoryMetrics.recordPayloadBytes(ASSETS_REF, "findByUserId", payloadBytes);
                         }
+                        overlayPending(userId, assetMaps);
 
-                        future.complete(assets);
+                        // Déchiffrement et conversion hors du thread d'événements Firebase
+                        CompletableFuture.supplyAsync(() -> decodeAll(assetMaps), asyncExecutors.aggregation())
+                                .whenComplete((assets, e) -> {
+                                    if (e != null) {
+                                        log.error("Error parsing assets data: {}", e.getMessage());
+                                        future.completeExceptionally(e);
+                                    } else {
+                                        future.complete(assets);
+                                    }
+                                });
                     }
 
                     @Override
@@ -109,13 +159,13 @@ public class AssetRepository {
                     }
                 });
 
-        return future;
+        return repositoryMetrics.record(sample, ASSETS_REF, "findByUserId", future);
     }
 
     public CompletableFuture<List<Asset>> findByUserIdAndCategory(String userId, Asset.AssetCategory category) {
         CompletableFuture<List<Asset>> future = new CompletableFuture<>();
 
-        findByUserId(userId).thenApply(assets -> {
+        findByUserId(userId).thenApplyAsync(assets -> {
                     List<Asset> filteredAssets = new ArrayList<>();
                     for (Asset asset : assets) {
                         if (asset.getCategory() == category) {
@@ -123,7 +173,7 @@ public class AssetRepository {
                         }
                     }
                     return filteredAssets;
-                }).thenAccept(future::complete)
+                }, asyncExecutors.aggregation()).thenAccept(future::complete)
                 .exceptionally(e -> {
                     future.completeExceptionally(e);
                     return null;
@@ -135,7 +185,7 @@ public class AssetRepository {
     public CompletableFuture<List<Asset>> findByUserIdAndType(String userId, Asset.AssetType type) {
         CompletableFuture<List<Asset>> future = new CompletableFuture<>();
 
-        findByUserId(userId).thenApply(assets -> {
+        findByUserId(userId).thenApplyAsync(assets -> {
                     List<Asset> filteredAssets = new ArrayList<>();
                     for (Asset asset : assets) {
                         if (asset.getType() == type) {
@@ -143,7 +193,7 @@ public class AssetRepository {
                         }
                     }
                     return filteredAssets;
-                }).thenAccept(future::complete)
+                }, asyncExecutors.aggregation()).thenAccept(future::complete)
                 .exceptionally(e -> {
                     future.completeExceptionally(e);
                     return null;
@@ -152,9 +202,24 @@ public class AssetRepository {
         return future;
     }
 
-    public CompletableFuture<Void> deleteById(String id) {
+    /**
+     * @param userId propriétaire de l'actif, pour que ses listes ne le montrent plus avant la réplication
+     */
+    public CompletableFuture<Void> deleteById(String id, String userId) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<Void> future = new CompletableFuture<>();
 
+        if (writeBehindStore.isEnabled()) {
+            try {
+                writeBehindStore.delete(path(id), userId);
+                future.complete(null);
+            } catch (Exception e) {
+                log.error("Error journaling asset deletion: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+            return repositoryMetrics.record(sample, ASSETS_REF, "deleteById", future);
+        }
+
         firebaseDatabase.getReference(ASSETS_REF).child(id).removeValueAsync()
                 .addOnSuccessListener(aVoid -> future.complete(null))
                 .addOnFailureListener(e -> {
@@ -162,6 +227,43 @@ public class AssetRepository {
                     future.completeExceptionally(e);
                 });
 
-        return future;
+        return repositoryMetrics.record(sample, ASSETS_REF, "deleteById", future);
+    }
+
+    private static String path(String id) {
+        return ASSETS_REF + "/" + id;
+    }
+
+    /**
+     * Applique aux documents lus dans Firebase les écritures et suppressions non encore répliquées
+     */
+    private void overlayPending(String userId, List<Map<String, Object>> assetMaps) {
+        List<WriteBehindStore.PendingWrite> pending = writeBehindStore.pendingByOwner(userId);
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, WriteBehindStore.PendingWrite> pendingById = new HashMap<>();
+        for (WriteBehindStore.PendingWrite write : pending) {
+            pendingById.put(write.path().substring(ASSETS_REF.length() + 1), write);
+        }
+        assetMaps.removeIf(assetMap -> pendingById.containsKey((String) assetMap.get("id")));
+        for (WriteBehindStore.PendingWrite write : pendingById.values()) {
+            if (!write.isDelete() && userId.equals(write.value().get("userId"))) {
+                assetMaps.add(new HashMap<>(write.value()));
+            }
+        }
+    }
+
+    /**
+     * Déchiffre et convertit une liste de documents ; en parallèle sur le pool d'agrégation
+     * lorsque le chiffrement est actif et la liste assez longue
+     */
+    private List<Asset> decodeAll(List<Map<String, Object>> assetMaps) {
+        Stream<Map<String, Object>> documents = fieldCodec.isEnabled() && assetMaps.size() >= PARALLEL_DECODE_THRESHOLD
+                ? assetMaps.parallelStream()
+                : assetMaps.stream();
+        return documents
+                .map(assetMap -> Asset.fromMap(fieldCodec.decode(assetMap)))
+                .collect(Collectors.toCollection(ArrayList::new));
     }
 }
\ No newline at end of file
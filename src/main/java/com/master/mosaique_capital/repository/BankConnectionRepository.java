@@ -0,0 +1,131 @@
+package com.master.mosaique_capital.repository;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.master.mosaique_capital.model.BankConnection;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class BankConnectionRepository {
+
+    private final FirebaseDatabase firebaseDatabase;
+    private final RepositoryMetrics repositoryMetrics;
+    private static final String CONNECTIONS_REF = "bankConnections";
+
+    public CompletableFuture<BankConnection> save(BankConnection connection) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<BankConnection> future = new CompletableFuture<>();
+        DatabaseReference connectionRef;
+
+        if (connection.getId() == null) {
+            connectionRef = firebaseDatabase.getReference(CONNECTIONS_REF).push();
+            connection.setId(connectionRef.getKey());
+        } else {
+            connectionRef = firebaseDatabase.getReference(CONNECTIONS_REF).child(connection.getId());
+        }
+
+        connectionRef.setValueAsync(connection.toMap())
+                .addOnSuccessListener(aVoid -> future.complete(connection))
+                .addOnFailureListener(e -> {
+                    log.error("Error saving bank connection to Firebase: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                });
+
+        return repositoryMetrics.record(sample, CONNECTIONS_REF, "save", future);
+    }
+
+    public CompletableFuture<Optional<BankConnection>> findById(String id) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<Optional<BankConnection>> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(CONNECTIONS_REF).child(id).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                try {
+                    future.complete(dataSnapshot.exists() ? Optional.of(toConnection(dataSnapshot)) : Optional.empty());
+                } catch (Exception e) {
+                    log.error("Error parsing bank connection data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return repositoryMetrics.record(sample, CONNECTIONS_REF, "findById", future);
+    }
+
+    public CompletableFuture<List<BankConnection>> findByUserId(String userId) {
+        Timer.Sample sample = repositoryMetrics.start();
+        Query query = firebaseDatabase.getReference(CONNECTIONS_REF).orderByChild("userId").equalTo(userId);
+        return repositoryMetrics.record(sample, CONNECTIONS_REF, "findByUserId", readAll(query, null, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Retourne une page de connexions triées par identifiant, à partir du curseur exclu
+     * @param afterId dernier identifiant de la page précédente, null pour la première page
+     * @param limit taille maximale de la page
+     */
+    public CompletableFuture<List<BankConnection>> findPage(String afterId, int limit) {
+        Timer.Sample sample = repositoryMetrics.start();
+        Query query = firebaseDatabase.getReference(CONNECTIONS_REF).orderByKey();
+        query = afterId != null ? query.startAt(afterId).limitToFirst(limit + 1) : query.limitToFirst(limit);
+        return repositoryMetrics.record(sample, CONNECTIONS_REF, "findPage", readAll(query, afterId, limit));
+    }
+
+    private CompletableFuture<List<BankConnection>> readAll(Query query, String afterId, int limit) {
+        CompletableFuture<List<BankConnection>> future = new CompletableFuture<>();
+
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<BankConnection> connections = new ArrayList<>();
+                try {
+                    for (DataSnapshot connectionSnapshot : dataSnapshot.getChildren()) {
+                        if (!connectionSnapshot.getKey().equals(afterId) && connections.size() < limit) {
+                            connections.add(toConnection(connectionSnapshot));
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error("Error parsing bank connection data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(connections);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return future;
+    }
+
+    private static BankConnection toConnection(DataSnapshot snapshot) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> connectionMap = (Map<String, Object>) snapshot.getValue();
+        return BankConnection.fromMap(connectionMap);
+    }
+}
@@ -0,0 +1,36 @@
+package com.master.mosaique_capital.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Instrumentation des calculs patrimoniaux, pendant de {@link RepositoryMetrics} pour les allers-retours Firebase.
+ * <ul>
+ *     <li>{@code patrimony.calculation} : durée de chaque calcul, tag {@code method}, avec histogramme de
+ *     percentiles</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class CalculationMetrics {
+
+    private static final String TIMER_NAME = "patrimony.calculation";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Chronomètre un calcul synchrone
+     * @param method nom du calcul (tag {@code method})
+     */
+    public <T> T timed(String method, Supplier<T> calculation) {
+        return Timer.builder(TIMER_NAME)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(calculation);
+    }
+}
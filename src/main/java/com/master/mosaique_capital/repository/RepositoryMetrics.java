@@ -0,0 +1,105 @@
+package com.master.mosaique_capital.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Instrumentation des allers-retours Firebase des repositories.
+ * <ul>
+ *     <li>{@code firebase.repository} : durée de chaque opération, tags {@code repository}, {@code operation}
+ *     et {@code outcome} (success, not_found, error), avec histogramme de percentiles</li>
+ *     <li>{@code firebase.repository.payload} : taille approximative en octets des documents lus et écrits</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class RepositoryMetrics {
+
+    private static final String TIMER_NAME = "firebase.repository";
+    private static final String PAYLOAD_NAME = "firebase.repository.payload";
+
+    private final MeterRegistry meterRegistry;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Arrête le chronomètre à la complétion du futur, avec l'issue de l'opération
+     */
+    public <T> CompletableFuture<T> record(Timer.Sample sample, String repository, String operation,
+                                           CompletableFuture<T> future) {
+        future.whenComplete((result, error) -> sample.stop(Timer.builder(TIMER_NAME)
+                .tag("repository", repository)
+                .tag("operation", operation)
+                .tag("outcome", outcome(result, error))
+                .publishPercentileHistogram()
+                .register(meterRegistry)));
+        return future;
+    }
+
+    /**
+     * Enregistre la taille approximative d'un document Firebase
+     */
+    public void recordPayload(String repository, String operation, Object payload) {
+        recordPayloadBytes(repository, operation, estimateSize(payload));
+    }
+
+    public void recordPayloadBytes(String repository, String operation, long bytes) {
+        DistributionSummary.builder(PAYLOAD_NAME)
+                .baseUnit("bytes")
+                .tag("repository", repository)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    /**
+     * Estimation de la taille JSON d'une valeur Firebase, sans sérialisation
+     */
+    public static long estimateSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length() + 2L;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4L + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 2;
+            for (Object element : collection) {
+                size += estimateSize(element) + 1;
+            }
+            return size;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 8;
+        }
+        return String.valueOf(value).length();
+    }
+
+    private static String outcome(Object result, Throwable error) {
+        if (error != null) {
+            return "error";
+        }
+        if (result instanceof Optional<?> optional && optional.isEmpty()) {
+            return "not_found";
+        }
+        return "success";
+    }
+}
@@ -0,0 +1,188 @@
+package com.master.mosaique_capital.repository;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.master.mosaique_capital.model.TaxLotBook;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Registres fiscaux par lots. L'en-tête et les cumuls annuels ({@code realizedByYear/y{année}}) sont sous
+ * {@code taxLots/{userId}/{assetId}}, les lots ouverts à part sous {@code taxLotLots/{userId}/{assetId}/{lotId}} :
+ * le bilan annuel d'un utilisateur ne lit que les en-têtes et les cumuls, jamais les lots. Une opération ne
+ * réécrit que l'en-tête du registre, les lots touchés et le cumul de son année, en une mise à jour multi-chemins.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class TaxLotRepository {
+
+    private final FirebaseDatabase firebaseDatabase;
+    private final RepositoryMetrics repositoryMetrics;
+    private static final String TAX_LOTS_REF = "taxLots";
+    private static final String LOTS_REF = "taxLotLots";
+
+    /**
+     * Ecrit l'en-tête du registre, les lots modifiés ou ouverts, les lots soldés et le cumul d'une année
+     * @param year année dont le cumul a changé, null si aucun
+     */
+    public CompletableFuture<TaxLotBook> update(TaxLotBook book, Collection<TaxLotBook.TaxLot> changedLots,
+                                                Collection<String> closedLotIds, Integer year) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<TaxLotBook> future = new CompletableFuture<>();
+
+        String bookPath = path(book.getUserId(), book.getAssetId());
+        String lotsPath = lotsPath(book.getUserId(), book.getAssetId());
+        Map<String, Object> updates = new HashMap<>();
+        book.headerMap().forEach((field, value) -> updates.put(bookPath + "/" + field, value));
+        for (TaxLotBook.TaxLot lot : changedLots) {
+            updates.put(lotsPath + "/" + lot.getId(), lot.toMap());
+        }
+        for (String lotId : closedLotIds) {
+            updates.put(lotsPath + "/" + lotId, null);
+        }
+        if (year != null) {
+            updates.put(bookPath + "/realizedByYear/" + TaxLotBook.yearKey(year), book.getRealizedByYear().get(year).toMap());
+        }
+
+        firebaseDatabase.getReference().updateChildrenAsync(updates)
+                .addOnSuccessListener(aVoid -> future.complete(book))
+                .addOnFailureListener(e -> {
+                    log.error("Error updating tax lot book in Firebase: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                });
+
+        return repositoryMetrics.record(sample, TAX_LOTS_REF, "update", future);
+    }
+
+    /**
+     * Registre d'un actif avec ses lots ouverts
+     */
+    public CompletableFuture<Optional<TaxLotBook>> findByAssetId(String userId, String assetId) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<Optional<TaxLotBook>> future = new CompletableFuture<>();
+        CompletableFuture<List<TaxLotBook.TaxLot>> lots = findLots(userId, assetId);
+
+        firebaseDatabase.getReference(path(userId, assetId)).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                try {
+                    future.complete(dataSnapshot.exists() ? Optional.of(toBook(dataSnapshot)) : Optional.empty());
+                } catch (Exception e) {
+                    log.error("Error parsing tax lot book data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        CompletableFuture<Optional<TaxLotBook>> withLots = future.thenCombine(lots, (book, openLots) -> {
+            book.ifPresent(b -> b.setLots(openLots));
+            return book;
+        });
+        return repositoryMetrics.record(sample, TAX_LOTS_REF, "findByAssetId", withLots);
+    }
+
+    /**
+     * En-têtes et cumuls annuels des registres d'un utilisateur, sans les lots
+     */
+    public CompletableFuture<List<TaxLotBook>> findByUserId(String userId) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<List<TaxLotBook>> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(TAX_LOTS_REF).child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<TaxLotBook> books = new ArrayList<>();
+                try {
+                    for (DataSnapshot bookSnapshot : dataSnapshot.getChildren()) {
+                        books.add(toBook(bookSnapshot));
+                    }
+                } catch (Exception e) {
+                    log.error("Error parsing tax lot book data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(books);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return repositoryMetrics.record(sample, TAX_LOTS_REF, "findByUserId", future);
+    }
+
+    /**
+     * Lots ouverts d'un actif, dans l'ordre d'acquisition (les identifiants de lots sont ordonnés)
+     */
+    private CompletableFuture<List<TaxLotBook.TaxLot>> findLots(String userId, String assetId) {
+        CompletableFuture<List<TaxLotBook.TaxLot>> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(lotsPath(userId, assetId)).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<TaxLotBook.TaxLot> lots = new ArrayList<>();
+                try {
+                    Map<String, Map<String, Object>> lotMaps = new TreeMap<>();
+                    for (DataSnapshot lotSnapshot : dataSnapshot.getChildren()) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> lotMap = (Map<String, Object>) lotSnapshot.getValue();
+                        lotMaps.put(lotSnapshot.getKey(), lotMap);
+                    }
+                    for (Map<String, Object> lotMap : lotMaps.values()) {
+                        lots.add(TaxLotBook.TaxLot.fromMap(lotMap));
+                    }
+                } catch (Exception e) {
+                    log.error("Error parsing tax lot data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(lots);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return future;
+    }
+
+    private static String path(String userId, String assetId) {
+        return TAX_LOTS_REF + "/" + userId + "/" + assetId;
+    }
+
+    private static String lotsPath(String userId, String assetId) {
+        return LOTS_REF + "/" + userId + "/" + assetId;
+    }
+
+    private static TaxLotBook toBook(DataSnapshot snapshot) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> bookMap = (Map<String, Object>) snapshot.getValue();
+        return TaxLotBook.fromMap(bookMap);
+    }
+}
@@ -0,0 +1,310 @@
+package com.master.mosaique_capital.repository;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.master.mosaique_capital.model.Transaction;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Grand livre des opérations, en ajout seul.
+ * <ul>
+ *     <li>{@code transactions/{userId}/{yyyy-MM}/{id}} : documents, partitionnés par utilisateur et par mois ;
+ *     la lecture d'une période ne charge que les mois concernés</li>
+ *     <li>{@code transactionIndex/{userId}/{assetId}/{id}} : date de l'opération, pour les parcours par actif
+ *     et par période sans lire les mois entiers</li>
+ * </ul>
+ * Une opération sans identifiant reçoit une clé {@code push()} générée côté client. Une opération dont
+ * l'identifiant est fourni par l'appelant est écrite par identifiant et remplace le document existant
+ * (upsert) : c'est ce qui rend rejouable la synchronisation bancaire, dont les identifiants sont dérivés de
+ * l'identifiant bancaire. Le mois fait partie du chemin : réécrire un identifiant avec une date d'un autre
+ * mois laisse l'ancien document en place. Document et entrée d'index sont écrits par la même mise à jour
+ * multi-chemins, donc atomiquement.
+ * <p>
+ * Le filtrage par date de l'index requiert la règle Firebase suivante, sans quoi le serveur renvoie tout
+ * l'index de l'actif et le filtre est appliqué côté client :
+ * <pre>{@code
+ * "transactionIndex": { "$userId": { "$assetId": { ".indexOn": ".value" } } }
+ * }</pre>
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionRepository {
+
+    private final FirebaseDatabase firebaseDatabase;
+    private final RepositoryMetrics repositoryMetrics;
+    private static final String TRANSACTIONS_REF = "transactions";
+    private static final String INDEX_REF = "transactionIndex";
+    private static final Comparator<Transaction> BY_DATE =
+            Comparator.comparing(Transaction::getDate).thenComparing(Transaction::getId);
+
+    // Nombre maximal d'opérations par mise à jour multi-chemins
+    @Value("${app.firebase.transactions.batch-size:500}")
+    private int batchSize = 500;
+
+    // Nombre maximal de lectures Firebase simultanées pour les parcours par actif
+    @Value("${app.firebase.read-concurrency:32}")
+    private int readConcurrency = 32;
+
+    public CompletableFuture<Transaction> append(Transaction transaction) {
+        return appendAll(List.of(transaction)).thenApply(saved -> saved.get(0));
+    }
+
+    /**
+     * Ajoute un lot d'opérations (synchronisation bancaire) ; une mise à jour multi-chemins par tranche de
+     * {@code app.firebase.transactions.batch-size} opérations, les tranches étant écrites l'une après l'autre.
+     * <p>
+     * Seule une tranche est atomique : si une tranche échoue, les précédentes restent écrites et le futur
+     * échoue. Avec des identifiants fournis par l'appelant, rejouer le même lot complète l'écriture sans
+     * doublon ; avec des identifiants générés, un nouvel essai dupliquerait les tranches déjà écrites.
+     */
+    public CompletableFuture<List<Transaction>> appendAll(List<Transaction> transactions) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<List<Transaction>> future = new CompletableFuture<>();
+        if (transactions.isEmpty()) {
+            future.complete(List.of());
+            return future;
+        }
+
+        DatabaseReference root = firebaseDatabase.getReference();
+        AppendPlan plan;
+        try {
+            plan = plan(transactions, () -> root.child(TRANSACTIONS_REF).push().getKey(), LocalDateTime.now(), batchSize);
+        } catch (IllegalArgumentException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        List<Transaction> saved = plan.saved();
+        repositoryMetrics.recordPayloadBytes(TRANSACTIONS_REF, "appendAll", plan.payloadBytes());
+
+        AtomicInteger written = new AtomicInteger();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (Map<String, Object> batch : plan.batches()) {
+            chain = chain.thenCompose(ignored -> update(root, batch)).thenRun(written::incrementAndGet);
+        }
+        chain.whenComplete((ignored, e) -> {
+            if (e != null) {
+                log.error("Error appending transactions to Firebase after {} of {} batches: {}",
+                        written.get(), plan.batches().size(), e.getMessage());
+                future.completeExceptionally(e);
+            } else {
+                future.complete(saved);
+            }
+        });
+
+        return repositoryMetrics.record(sample, TRANSACTIONS_REF, "appendAll", future);
+    }
+
+    public CompletableFuture<Optional<Transaction>> findById(String userId, YearMonth month, String id) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<Optional<Transaction>> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(documentPath(userId, month, id)).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                try {
+                    future.complete(dataSnapshot.exists() ? Optional.of(toTransaction(dataSnapshot)) : Optional.empty());
+                } catch (Exception e) {
+                    log.error("Error parsing transaction data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return repositoryMetrics.record(sample, TRANSACTIONS_REF, "findById", future);
+    }
+
+    /**
+     * Opérations d'un mois ; seule la partition du mois est lue
+     */
+    public CompletableFuture<List<Transaction>> findByUserIdAndMonth(String userId, YearMonth month) {
+        return findByUserIdAndPeriod(userId, month.atDay(1), month.atEndOfMonth());
+    }
+
+    /**
+     * Opérations d'une période (bornes incluses), triées par date ; une seule requête sur les partitions
+     * mensuelles de la période (orderByKey), les mois de bord étant filtrés au jour près
+     */
+    public CompletableFuture<List<Transaction>> findByUserIdAndPeriod(String userId, LocalDate from, LocalDate to) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<List<Transaction>> future = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(TRANSACTIONS_REF).child(userId)
+                .orderByKey()
+                .startAt(YearMonth.from(from).toString())
+                .endAt(YearMonth.from(to).toString())
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        List<Transaction> transactions = new ArrayList<>();
+                        try {
+                            long payloadBytes = 0;
+                            for (DataSnapshot monthSnapshot : dataSnapshot.getChildren()) {
+                                for (DataSnapshot transactionSnapshot : monthSnapshot.getChildren()) {
+                                    Transaction transaction = toTransaction(transactionSnapshot);
+                                    payloadBytes += RepositoryMetrics.estimateSize(transactionSnapshot.getValue());
+                                    if (!transaction.getDate().isBefore(from) && !transaction.getDate().isAfter(to)) {
+                                        transactions.add(transaction);
+                                    }
+                                }
+                            }
+                            repositoryMetrics.recordPayloadBytes(TRANSACTIONS_REF, "findByUserIdAndPeriod", payloadBytes);
+                        } catch (Exception e) {
+                            log.error("Error parsing transactions data: {}", e.getMessage());
+                            future.completeExceptionally(e);
+                            return;
+                        }
+                        transactions.sort(BY_DATE);
+                        future.complete(transactions);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        log.error("Firebase database error: {}", databaseError.getMessage());
+                        future.completeExceptionally(databaseError.toException());
+                    }
+                });
+
+        return repositoryMetrics.record(sample, TRANSACTIONS_REF, "findByUserIdAndPeriod", future);
+    }
+
+    /**
+     * Opérations d'un actif sur une période (bornes incluses), triées par date.
+     * L'index par actif est filtré par date côté Firebase (orderByValue), puis seuls les documents retenus
+     * sont lus, avec au plus {@code app.firebase.read-concurrency} lectures simultanées.
+     */
+    public CompletableFuture<List<Transaction>> findByAssetIdAndPeriod(String userId, String assetId,
+                                                                       LocalDate from, LocalDate to) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<Map<String, LocalDate>> index = new CompletableFuture<>();
+
+        firebaseDatabase.getReference(INDEX_REF).child(userId).child(assetId)
+                .orderByValue()
+                .startAt(from.toString())
+                .endAt(to.toString())
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        Map<String, LocalDate> dates = new HashMap<>();
+                        for (DataSnapshot entry : dataSnapshot.getChildren()) {
+                            dates.put(entry.getKey(), LocalDate.parse((String) entry.getValue()));
+                        }
+                        index.complete(dates);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        log.error("Firebase database error: {}", databaseError.getMessage());
+                        index.completeExceptionally(databaseError.toException());
+                    }
+                });
+
+        CompletableFuture<List<Transaction>> future = index
+                .thenCompose(dates -> Flux.fromIterable(dates.entrySet())
+                        .flatMap(entry -> Mono.fromFuture(() ->
+                                findById(userId, YearMonth.from(entry.getValue()), entry.getKey())), readConcurrency)
+                        .flatMap(Mono::justOrEmpty)
+                        .sort(BY_DATE)
+                        .collectList()
+                        .toFuture());
+
+        return repositoryMetrics.record(sample, TRANSACTIONS_REF, "findByAssetIdAndPeriod", future);
+    }
+
+    /**
+     * Mises à jour multi-chemins d'un ajout : documents et entrées d'index, par tranches
+     * @param saved copies des opérations telles qu'enregistrées (identifiant et date de création attribués)
+     */
+    record AppendPlan(List<Transaction> saved, List<Map<String, Object>> batches, long payloadBytes) {
+    }
+
+    /**
+     * Prépare un ajout sans modifier les opérations de l'appelant
+     */
+    static AppendPlan plan(List<Transaction> transactions, Supplier<String> idGenerator, LocalDateTime now, int batchSize) {
+        List<Transaction> saved = new ArrayList<>(transactions.size());
+        List<Map<String, Object>> batches = new ArrayList<>();
+        Map<String, Object> updates = new HashMap<>();
+        long payloadBytes = 0;
+
+        for (Transaction transaction : transactions) {
+            if (transaction.getUserId() == null || transaction.getDate() == null) {
+                throw new IllegalArgumentException("Transaction requires a userId and a date");
+            }
+            Transaction copy = Transaction.fromMap(transaction.toMap());
+            if (copy.getId() == null) {
+                copy.setId(idGenerator.get());
+            }
+            if (copy.getCreatedAt() == null) {
+                copy.setCreatedAt(now);
+            }
+            saved.add(copy);
+
+            Map<String, Object> values = copy.toMap();
+            payloadBytes += RepositoryMetrics.estimateSize(values);
+            updates.put(documentPath(copy.getUserId(), copy.getMonth(), copy.getId()), values);
+            if (copy.getAssetId() != null) {
+                updates.put(indexPath(copy.getUserId(), copy.getAssetId(), copy.getId()), copy.getDate().toString());
+            }
+            // Deux chemins par opération au plus
+            if (updates.size() >= 2 * batchSize) {
+                batches.add(updates);
+                updates = new HashMap<>();
+            }
+        }
+        if (!updates.isEmpty()) {
+            batches.add(updates);
+        }
+        return new AppendPlan(saved, batches, payloadBytes);
+    }
+
+    static String indexPath(String userId, String assetId, String id) {
+        return INDEX_REF + "/" + userId + "/" + assetId + "/" + id;
+    }
+
+    static String documentPath(String userId, YearMonth month, String id) {
+        return TRANSACTIONS_REF + "/" + userId + "/" + month + "/" + id;
+    }
+
+    private static Transaction toTransaction(DataSnapshot snapshot) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> transactionMap = (Map<String, Object>) snapshot.getValue();
+        return Transaction.fromMap(transactionMap);
+    }
+
+    private static CompletableFuture<Void> update(DatabaseReference root, Map<String, Object> updates) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        root.updateChildrenAsync(updates)
+                .addOnSuccessListener(aVoid -> future.complete(null))
+                .addOnFailureListener(future::completeExceptionally);
+        return future;
+    }
+}
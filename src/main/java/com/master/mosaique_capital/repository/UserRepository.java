@@ -4,15 +4,29 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
+import com.master.mosaique_capital.config.AsyncExecutors;
 import com.master.mosaique_capital.model.User;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
 import java.util.Map;
 
 @Repository
@@ -21,9 +35,17 @@ import java.util.Map;
 public class UserRepository {
 
     private final FirebaseDatabase firebaseDatabase;
+    private final RepositoryMetrics repositoryMetrics;
+    private final WriteBehindStore writeBehindStore;
+    private final AsyncExecutors asyncExecutors;
     private static final String USERS_REF = "users";
 
+    // Nombre maximal de lectures Firebase simultanées pour les lectures groupées
+    @Value("${app.firebase.read-concurrency:32}")
+    private int readConcurrency = 32;
+
     public CompletableFuture<User> save(User user) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<User> future = new CompletableFuture<>();
         DatabaseReference userRef;
 
@@ -41,6 +63,19 @@ public class UserRepository {
         user.setUpdatedAt(LocalDateTime.now());
 
         Map<String, Object> userValues = user.toMap();
+        repositoryMetrics.recordPayload(USERS_REF, "save", userValues);
+
+        if (writeBehindStore.isEnabled()) {
+            try {
+                writeBehindStore.put(path(user.getUid()), null, userValues);
+                future.complete(user);
+            } catch (Exception e) {
+                log.error("Error journaling user write: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+            return repositoryMetrics.record(sample, USERS_REF, "save", future);
+        }
+
         userRef.setValueAsync(userValues)
                 .addOnSuccessListener(aVoid -> future.complete(user))
                 .addOnFailureListener(e -> {
@@ -48,12 +83,27 @@ public class UserRepository {
                     future.completeExceptionally(e);
                 });
 
-        return future;
+        return repositoryMetrics.record(sample, USERS_REF, "save", future);
     }
 
     public CompletableFuture<Optional<User>> findById(String uid) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<Optional<User>> future = new CompletableFuture<>();
 
+        Optional<WriteBehindStore.PendingWrite> pending = writeBehindStore.pending(path(uid));
+        if (pending.isPresent()) {
+            // Écriture non encore répliquée : le miroir local fait foi
+            try {
+                future.complete(pending.get().isDelete()
+                        ? Optional.empty()
+                        : Optional.of(User.fromMap(pending.get().value())));
+            } catch (Exception e) {
+                log.error("Error parsing user data: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+            return repositoryMetrics.record(sample, USERS_REF, "findById", future);
+        }
+
         firebaseDatabase.getReference(USERS_REF).child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
@@ -61,6 +111,7 @@ public class UserRepository {
                     try {
                         @SuppressWarnings("unchecked")
                         Map<String, Object> userMap = (Map<String, Object>) dataSnapshot.getValue();
+                        repositoryMetrics.recordPayload(USERS_REF, "findById", userMap);
                         User user = User.fromMap(userMap);
                         future.complete(Optional.of(user));
                     } catch (Exception e) {
@@ -79,12 +130,24 @@ public class UserRepository {
             }
         });
 
-        return future;
+        return repositoryMetrics.record(sample, USERS_REF, "findById", future);
     }
 
     public CompletableFuture<Void> deleteById(String uid) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<Void> future = new CompletableFuture<>();
 
+        if (writeBehindStore.isEnabled()) {
+            try {
+                writeBehindStore.delete(path(uid), null);
+                future.complete(null);
+            } catch (Exception e) {
+                log.error("Error journaling user deletion: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+            return repositoryMetrics.record(sample, USERS_REF, "deleteById", future);
+        }
+
         firebaseDatabase.getReference(USERS_REF).child(uid).removeValueAsync()
                 .addOnSuccessListener(aVoid -> future.complete(null))
                 .addOnFailureListener(e -> {
@@ -92,12 +155,21 @@ public class UserRepository {
                     future.completeExceptionally(e);
                 });
 
-        return future;
+        return repositoryMetrics.record(sample, USERS_REF, "deleteById", future);
     }
 
     public CompletableFuture<Optional<User>> findByEmail(String email) {
+        Timer.Sample sample = repositoryMetrics.start();
         CompletableFuture<Optional<User>> future = new CompletableFuture<>();
 
+        // Un utilisateur enregistré mais pas encore répliqué doit être trouvé, sinon l'email serait réutilisable
+        Optional<WriteBehindStore.PendingWrite> pendingMatch =
+                writeBehindStore.findPending(USERS_REF + "/", values -> email.equals(values.get("email")));
+        if (pendingMatch.isPresent()) {
+            future.complete(Optional.of(User.fromMap(pendingMatch.get().value())));
+            return repositoryMetrics.record(sample, USERS_REF, "findByEmail", future);
+        }
+
         firebaseDatabase.getReference(USERS_REF)
                 .orderByChild("email")
                 .equalTo(email)
@@ -110,6 +182,14 @@ public class UserRepository {
                                 DataSnapshot userSnapshot = dataSnapshot.getChildren().iterator().next();
                                 @SuppressWarnings("unchecked")
                                 Map<String, Object> userMap = (Map<String, Object>) userSnapshot.getValue();
+                                // Une écriture non répliquée de cet utilisateur remplace la version Firebase
+                                Optional<WriteBehindStore.PendingWrite> pending =
+                                        writeBehindStore.pending(path(userSnapshot.getKey()));
+                                if (pending.isPresent()) {
+                                    // Supprimé ou email modifié depuis : aucune écriture en attente ne correspond
+                                    future.complete(Optional.empty());
+                                    return;
+                                }
                                 User user = User.fromMap(userMap);
                                 future.complete(Optional.of(user));
                             } catch (Exception e) {
@@ -128,6 +208,214 @@ public class UserRepository {
                     }
                 });
 
+        return repositoryMetrics.record(sample, USERS_REF, "findByEmail", future);
+    }
+
+    /**
+     * Charge un ensemble d'utilisateurs, avec au plus {@code app.firebase.read-concurrency} lectures en vol.
+     * @return les utilisateurs trouvés par uid, dans l'ordre des identifiants demandés (les absents sont omis)
+     */
+    public CompletableFuture<Map<String, User>> findAllByIds(Collection<String> uids) {
+        List<String> ids = List.copyOf(uids);
+        CompletableFuture<Map<String, User>> future = new CompletableFuture<>();
+        if (ids.isEmpty()) {
+            future.complete(Map.of());
+            return future;
+        }
+
+        AtomicReferenceArray<User> users = new AtomicReferenceArray<>(ids.size());
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(ids.size());
+
+        // Chaque "voie" enchaîne une lecture après l'autre : le nombre de voies borne la concurrence
+        int lanes = Math.min(readConcurrency, ids.size());
+        for (int lane = 0; lane < lanes; lane++) {
+            readNext(ids, users, nextIndex, remaining, future);
+        }
         return future;
     }
+
+    /**
+     * Lecture suivante d'une voie. La suite est toujours exécutée sur le pool d'agrégation : jamais sur le thread
+     * d'événements Firebase, et sans récursion sur la pile lorsque les lectures sont servies par le miroir local.
+     */
+    private void readNext(List<String> ids, AtomicReferenceArray<User> users, AtomicInteger nextIndex,
+                          AtomicInteger remaining, CompletableFuture<Map<String, User>> future) {
+        int index = nextIndex.getAndIncrement();
+        if (index >= ids.size() || future.isDone()) {
+            return;
+        }
+
+        findById(ids.get(index)).whenCompleteAsync((user, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+                return;
+            }
+            user.ifPresent(found -> users.set(index, found));
+
+            if (remaining.decrementAndGet() == 0) {
+                Map<String, User> result = new LinkedHashMap<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    User found = users.get(i);
+                    if (found != null) {
+                        result.put(ids.get(i), found);
+                    }
+                }
+                future.complete(result);
+            } else {
+                readNext(ids, users, nextIndex, remaining, future);
+            }
+        }, asyncExecutors.aggregation());
+    }
+
+    /**
+     * Variante en flux de {@link #findAllByIds} : les utilisateurs sont émis au fil des réponses,
+     * sans ordre garanti, avec la même borne de concurrence
+     */
+    public Flux<User> streamByIds(Collection<String> uids) {
+        return Flux.fromIterable(uids)
+                .flatMap(uid -> Mono.fromFuture(() -> findById(uid)), readConcurrency)
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    /**
+     * Retourne une page d'utilisateurs triés par identifiant, à partir du curseur exclu. Les écritures
+     * non répliquées du miroir local remplacent, ajoutent ou retirent les utilisateurs de la page.
+     * @param afterUid dernier identifiant de la page précédente, null pour la première page
+     * @param limit taille maximale de la page
+     */
+    public CompletableFuture<List<User>> findAll(String afterUid, int limit) {
+        return findPage(afterUid, limit).thenApply(UserPage::users);
+    }
+
+    /**
+     * Parcourt tous les utilisateurs page par page ; une page n'est lue que lorsque la précédente a été consommée,
+     * seule une page est donc conservée en mémoire. Le curseur est la clé Firebase, pas le champ uid du document.
+     */
+    public Flux<User> streamAll(int pageSize) {
+        return Mono.fromFuture(() -> findPage(null, pageSize))
+                .expand(page -> page.nextCursor() == null
+                        ? Mono.empty()
+                        : Mono.fromFuture(() -> findPage(page.nextCursor(), pageSize)))
+                .concatMapIterable(UserPage::users);
+    }
+
+    /**
+     * Page d'utilisateurs ; {@code nextCursor} est null une fois la collection parcourue
+     */
+    private record UserPage(List<User> users, String nextCursor) {
+    }
+
+    private CompletableFuture<UserPage> findPage(String afterUid, int limit) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<UserPage> future = readUsers(afterUid, limit)
+                .thenApply(entries -> overlayPending(afterUid, limit, entries));
+        return repositoryMetrics.record(sample, USERS_REF, "findAll", future);
+    }
+
+    /**
+     * Lit une page d'utilisateurs Firebase, par clé
+     */
+    CompletableFuture<List<Map.Entry<String, User>>> readUsers(String afterUid, int limit) {
+        return readPage(afterUid, limit, userSnapshot -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> userMap = (Map<String, Object>) userSnapshot.getValue();
+            return Map.entry(userSnapshot.getKey(), User.fromMap(userMap));
+        });
+    }
+
+    /**
+     * Applique les écritures en attente dont la clé tombe dans l'intervalle couvert par la page Firebase.
+     * Le curseur suivant reste la dernière clé lue (une suppression en attente ne fait pas relire la page) ;
+     * si des créations en attente font dépasser la limite, la page est tronquée et le curseur recule d'autant.
+     */
+    private UserPage overlayPending(String afterUid, int limit, List<Map.Entry<String, User>> entries) {
+        boolean exhausted = entries.size() < limit;
+        String lastKey = exhausted ? null : entries.get(entries.size() - 1).getKey();
+
+        TreeMap<String, User> merged = new TreeMap<>();
+        for (Map.Entry<String, User> entry : entries) {
+            merged.put(entry.getKey(), entry.getValue());
+        }
+        String prefix = USERS_REF + "/";
+        for (WriteBehindStore.PendingWrite write : writeBehindStore.pendingUnder(prefix)) {
+            String key = write.path().substring(prefix.length());
+            if (key.contains("/")
+                    || (afterUid != null && key.compareTo(afterUid) <= 0)
+                    || (lastKey != null && key.compareTo(lastKey) > 0)) {
+                continue;
+            }
+            if (write.isDelete()) {
+                merged.remove(key);
+            } else {
+                merged.put(key, User.fromMap(write.value()));
+            }
+        }
+
+        if (merged.size() > limit) {
+            List<User> users = new ArrayList<>(limit);
+            String cursor = null;
+            for (Map.Entry<String, User> entry : merged.entrySet()) {
+                if (users.size() == limit) {
+                    break;
+                }
+                users.add(entry.getValue());
+                cursor = entry.getKey();
+            }
+            return new UserPage(users, cursor);
+        }
+        return new UserPage(new ArrayList<>(merged.values()), lastKey);
+    }
+
+    /**
+     * Retourne une page d'identifiants d'utilisateurs triés par clé, à partir du curseur exclu
+     * @param afterUid dernier identifiant de la page précédente, null pour la première page
+     * @param limit taille maximale de la page
+     */
+    public CompletableFuture<List<String>> findUidsPage(String afterUid, int limit) {
+        Timer.Sample sample = repositoryMetrics.start();
+        CompletableFuture<List<String>> future = readPage(afterUid, limit, DataSnapshot::getKey);
+        return repositoryMetrics.record(sample, USERS_REF, "findUidsPage", future);
+    }
+
+    /**
+     * Lit une page triée par clé (orderByKey) à partir du curseur exclu et convertit chaque enfant
+     */
+    private <T> CompletableFuture<List<T>> readPage(String afterUid, int limit, Function<DataSnapshot, T> mapper) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+
+        Query query = firebaseDatabase.getReference(USERS_REF).orderByKey();
+        query = afterUid != null ? query.startAt(afterUid).limitToFirst(limit + 1) : query.limitToFirst(limit);
+
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<T> page = new ArrayList<>(limit);
+                try {
+                    for (DataSnapshot userSnapshot : dataSnapshot.getChildren()) {
+                        if (!userSnapshot.getKey().equals(afterUid) && page.size() < limit) {
+                            page.add(mapper.apply(userSnapshot));
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error("Error parsing user data: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(page);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                log.error("Firebase database error: {}", databaseError.getMessage());
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return future;
+    }
+
+    private static String path(String uid) {
+        return USERS_REF + "/" + uid;
+    }
 }
\ No newline at end of file
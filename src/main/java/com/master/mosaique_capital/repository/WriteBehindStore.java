@@ -0,0 +1,512 @@
+package com.master.mosaique_capital.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.firebase.database.FirebaseDatabase;
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.security.SecurityUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Mode d'écriture différée vers Firebase ({@code app.firebase.write-behind.enabled}).
+ * <p>
+ * Chaque écriture est ajoutée à un journal local synchronisé sur disque puis appliquée à un miroir mémoire des
+ * documents non encore répliqués : l'appelant est acquitté sans attendre Firebase. Un réplicateur planifié envoie
+ * les écritures en attente par lots, via une mise à jour multi-chemins atomique (la dernière écriture d'un document
+ * l'emporte, ce qui préserve l'ordre par document), avec nouvelles tentatives et attente exponentielle.
+ * Le journal est compacté une fois tout répliqué ; au démarrage, les écritures non répliquées sont rejouées.
+ * Chaque ligne du journal est chiffrée en AES-GCM avec {@code app.security.encryption-secret} : les documents
+ * (secrets TOTP, montants) ne sont jamais écrits en clair sur le disque local. Seule une dernière ligne
+ * illisible (écriture interrompue, jamais acquittée) est ignorée au rejeu ; toute autre ligne illisible
+ * (secret changé, corruption) fait échouer le démarrage plutôt que de perdre des écritures acquittées.
+ * <p>
+ * Lorsqu'un lot est refusé, ses écritures sont renvoyées une à une : une écriture qui échoue alors que
+ * d'autres passent est mise de côté après {@code app.firebase.write-behind.max-attempts} essais, dans le
+ * fichier chiffré {@code firebase-write-behind.rejected.log}, pour ne pas bloquer les suivantes.
+ * <p>
+ * La réplication s'exécute sur l'exécuteur Firebase bloquant et non sur le thread du planificateur ; à l'arrêt,
+ * la file est vidée une dernière fois sans tenir compte de l'attente entre tentatives.
+ * <p>
+ * Les lectures consultent le miroir avant Firebase ({@link #pending}, {@link #pendingByOwner}), ce qui garantit
+ * la lecture de ses propres écritures tant qu'elles ne sont pas répliquées.
+ */
+@Component
+@Slf4j
+public class WriteBehindStore {
+
+    /**
+     * Écriture en attente ; {@code value == null} pour une suppression
+     */
+    public record PendingWrite(long sequence, String path, String owner, Map<String, Object> value) {
+        public boolean isDelete() {
+            return value == null;
+        }
+    }
+
+    private static final String JOURNAL_FILE = "firebase-write-behind.log";
+    private static final String REJECTED_FILE = "firebase-write-behind.rejected.log";
+    private static final TypeReference<Map<String, Object>> ENTRY_TYPE = new TypeReference<>() {
+    };
+
+    private final FirebaseDatabase firebaseDatabase;
+    private final ObjectMapper objectMapper;
+    private final SecurityUtils securityUtils;
+    private final AsyncExecutors asyncExecutors;
+    private final Counter rejectedCounter;
+
+    @Value("${app.security.encryption-secret:}")
+    private String journalSecret;
+
+    @Value("${app.firebase.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.firebase.write-behind.journal-dir:./data}")
+    private String journalDir;
+
+    @Value("${app.firebase.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.firebase.write-behind.flush-timeout-ms:10000}")
+    private long flushTimeoutMillis;
+
+    @Value("${app.firebase.write-behind.max-backoff-ms:60000}")
+    private long maxBackoffMillis;
+
+    @Value("${app.firebase.write-behind.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMillis;
+
+    @Value("${app.firebase.write-behind.max-attempts:5}")
+    private int maxAttempts;
+
+    // Miroir des écritures non répliquées, par chemin, et index des chemins par propriétaire (userId)
+    private final Map<String, PendingWrite> pendingByPath = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> pathsByOwner = new ConcurrentHashMap<>();
+    // Ordre global des écritures, pour répliquer dans l'ordre d'acquittement
+    private final ConcurrentSkipListMap<Long, PendingWrite> queue = new ConcurrentSkipListMap<>();
+    // Echecs individuels par séquence, alors que d'autres écritures du même lot passaient
+    private final Map<Long, Integer> rejections = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+
+    // Modifiés uniquement par le détenteur de flushing, lus par le planificateur
+    private int consecutiveFailures;
+    private volatile long nextAttemptMillis;
+
+    public WriteBehindStore(FirebaseDatabase firebaseDatabase,
+                            ObjectMapper objectMapper,
+                            SecurityUtils securityUtils,
+                            AsyncExecutors asyncExecutors,
+                            MeterRegistry meterRegistry) {
+        this.firebaseDatabase = firebaseDatabase;
+        this.objectMapper = objectMapper;
+        this.securityUtils = securityUtils;
+        this.asyncExecutors = asyncExecutors;
+        this.rejectedCounter = meterRegistry.counter("firebase.write_behind.rejected");
+        meterRegistry.gauge("firebase.write_behind.pending", queue, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ouvre le journal et rejoue les écritures qui n'avaient pas été répliquées avant l'arrêt
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (journalSecret == null || journalSecret.isBlank()) {
+            throw new IllegalStateException("app.firebase.write-behind.enabled requires app.security.encryption-secret");
+        }
+        Path directory = Paths.get(journalDir);
+        Files.createDirectories(directory);
+        Path file = directory.resolve(JOURNAL_FILE);
+
+        if (Files.exists(file)) {
+            replay(file);
+        }
+
+        journal = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.info("Firebase write-behind enabled, journal {} ({} writes to replicate)", file, queue.size());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // Dernière tentative de réplication, après la fin d'une réplication en cours et sans attente entre
+        // tentatives ; ce qui reste sera rejoué au prochain démarrage
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        boolean acquired = false;
+        try {
+            while (!(acquired = flushing.compareAndSet(false, true)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            if (acquired) {
+                drain();
+            } else {
+                log.warn("Write-behind replication still running at shutdown, {} writes left for replay", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (acquired) {
+                flushing.set(false);
+            }
+        }
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Enregistre l'écriture d'un document ; retourne une fois l'écriture durable dans le journal local
+     * @param owner propriétaire du document (userId), pour les lectures par utilisateur ; peut être null
+     */
+    public void put(String path, String owner, Map<String, Object> value) throws IOException {
+        append(path, owner, value);
+    }
+
+    /**
+     * Enregistre la suppression d'un document
+     * @param owner propriétaire du document, afin que ses lectures par utilisateur ne le listent plus ;
+     *              à défaut, celui de l'écriture en attente
+     */
+    public void delete(String path, String owner) throws IOException {
+        if (owner == null) {
+            PendingWrite previous = pendingByPath.get(path);
+            owner = previous != null ? previous.owner() : null;
+        }
+        append(path, owner, null);
+    }
+
+    /**
+     * Première écriture en attente (non supprimée) sous un préfixe de chemin dont le document vérifie le prédicat,
+     * pour les recherches par champ que Firebase ne peut pas encore servir
+     */
+    public Optional<PendingWrite> findPending(String pathPrefix, Predicate<Map<String, Object>> matcher) {
+        for (PendingWrite write : pendingByPath.values()) {
+            if (!write.isDelete() && write.path().startsWith(pathPrefix) && matcher.test(write.value())) {
+                return Optional.of(write);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Écritures en attente (suppressions comprises) sous un préfixe de chemin, pour compléter les parcours
+     * de collection servis par Firebase
+     */
+    public List<PendingWrite> pendingUnder(String pathPrefix) {
+        List<PendingWrite> writes = new ArrayList<>();
+        for (PendingWrite write : pendingByPath.values()) {
+            if (write.path().startsWith(pathPrefix)) {
+                writes.add(write);
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * Écriture en attente pour un chemin, si le document a été modifié et pas encore répliqué
+     */
+    public Optional<PendingWrite> pending(String path) {
+        return Optional.ofNullable(pendingByPath.get(path));
+    }
+
+    /**
+     * Écritures en attente des documents d'un propriétaire
+     */
+    public List<PendingWrite> pendingByOwner(String owner) {
+        Set<String> paths = pathsByOwner.get(owner);
+        if (paths == null) {
+            return List.of();
+        }
+        List<PendingWrite> writes = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            PendingWrite write = pendingByPath.get(path);
+            if (write != null) {
+                writes.add(write);
+            }
+        }
+        return writes;
+    }
+
+    private void append(String path, String owner, Map<String, Object> value) throws IOException {
+        synchronized (journalLock) {
+            if (journal == null) {
+                throw new IOException("Write-behind journal is not open");
+            }
+            PendingWrite write = new PendingWrite(sequence.incrementAndGet(), path, owner, value);
+            String encrypted = securityUtils.encryptSensitiveValue(objectMapper.writeValueAsString(entry(write)), journalSecret);
+            byte[] line = (encrypted + "\n").getBytes(StandardCharsets.UTF_8);
+
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+
+            apply(write);
+        }
+    }
+
+    private static Map<String, Object> entry(PendingWrite write) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("seq", write.sequence());
+        entry.put("path", write.path());
+        entry.put("owner", write.owner());
+        entry.put("value", write.value());
+        return entry;
+    }
+
+    private void apply(PendingWrite write) {
+        PendingWrite previous = pendingByPath.put(write.path(), write);
+        if (previous != null) {
+            queue.remove(previous.sequence());
+            rejections.remove(previous.sequence());
+        }
+        queue.put(write.sequence(), write);
+        if (write.owner() != null) {
+            pathsByOwner.computeIfAbsent(write.owner(), o -> ConcurrentHashMap.newKeySet()).add(write.path());
+        }
+    }
+
+    /**
+     * Déclenche la réplication des écritures en attente sur l'exécuteur Firebase bloquant : le thread du
+     * planificateur, partagé avec les autres tâches, n'attend jamais Firebase
+     */
+    @Scheduled(fixedDelayString = "${app.firebase.write-behind.flush-interval-ms:500}")
+    public void flush() {
+        if (!enabled || queue.isEmpty() || System.currentTimeMillis() < nextAttemptMillis
+                || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            asyncExecutors.firebaseBlocking().execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    flushing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Réplique les écritures en attente par lots multi-chemins, dans l'ordre du journal ; appelé par le
+     * détenteur de {@link #flushing}
+     */
+    void drain() {
+        try {
+            while (!queue.isEmpty()) {
+                List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+                for (PendingWrite write : queue.values()) {
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    batch.add(write);
+                }
+
+                try {
+                    replicate(batch);
+                    for (PendingWrite write : batch) {
+                        acknowledge(write);
+                    }
+                } catch (ExecutionException | TimeoutException e) {
+                    if (!replicateIndividually(batch)) {
+                        throw e;
+                    }
+                }
+                consecutiveFailures = 0;
+                nextAttemptMillis = 0;
+            }
+            compactIfDrained();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            consecutiveFailures++;
+            long backoff = Math.min(maxBackoffMillis, 500L << Math.min(consecutiveFailures, 16));
+            nextAttemptMillis = System.currentTimeMillis() + backoff;
+            log.warn("Write-behind replication failed ({} pending, attempt {}), retrying in {} ms: {}",
+                    queue.size(), consecutiveFailures, backoff, e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie des écritures en une mise à jour multi-chemins atomique
+     */
+    void replicate(List<PendingWrite> writes) throws InterruptedException, ExecutionException, TimeoutException {
+        Map<String, Object> updates = new HashMap<>();
+        for (PendingWrite write : writes) {
+            updates.put(write.path(), write.value());
+        }
+        firebaseDatabase.getReference().updateChildrenAsync(updates).get(flushTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renvoie une à une les écritures d'un lot refusé. Une écriture qui échoue alors que d'autres passent est
+     * mise de côté après {@link #maxAttempts} essais ; si aucune ne passe, Firebase est considéré indisponible
+     * @return false si aucune écriture n'a pu être répliquée ni mise de côté
+     */
+    private boolean replicateIndividually(List<PendingWrite> batch) throws InterruptedException, IOException {
+        Map<PendingWrite, Exception> failed = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            try {
+                replicate(List.of(write));
+                acknowledge(write);
+            } catch (ExecutionException | TimeoutException e) {
+                failed.put(write, e);
+            }
+        }
+        // Aucune écriture ne passe : seules celles déjà refusées isolément comptent un essai de plus
+        boolean unavailable = failed.size() == batch.size();
+        boolean progressed = !unavailable;
+        for (Map.Entry<PendingWrite, Exception> failure : failed.entrySet()) {
+            PendingWrite write = failure.getKey();
+            if (unavailable && !rejections.containsKey(write.sequence())) {
+                continue;
+            }
+            if (rejections.merge(write.sequence(), 1, Integer::sum) >= maxAttempts) {
+                reject(write, failure.getValue());
+                progressed = true;
+            }
+        }
+        return progressed;
+    }
+
+    /**
+     * Met de côté une écriture refusée par Firebase, dans un fichier chiffré séparé du journal
+     */
+    private void reject(PendingWrite write, Exception cause) throws IOException {
+        String encrypted = securityUtils.encryptSensitiveValue(objectMapper.writeValueAsString(entry(write)), journalSecret);
+        Files.write(Paths.get(journalDir).resolve(REJECTED_FILE), (encrypted + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        acknowledge(write);
+        rejectedCounter.increment();
+        log.error("Write-behind write to {} rejected {} times, moved to {}: {}",
+                write.path(), maxAttempts, REJECTED_FILE, cause.getMessage());
+    }
+
+    /**
+     * Retire une écriture répliquée (ou mise de côté) du miroir, sauf si le document a été réécrit entre-temps
+     */
+    private void acknowledge(PendingWrite write) {
+        queue.remove(write.sequence(), write);
+        rejections.remove(write.sequence());
+        if (pendingByPath.remove(write.path(), write) && write.owner() != null) {
+            Set<String> paths = pathsByOwner.get(write.owner());
+            if (paths != null) {
+                paths.remove(write.path());
+                if (paths.isEmpty()) {
+                    pathsByOwner.remove(write.owner(), paths);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tronque le journal lorsque toutes les écritures ont été répliquées
+     */
+    private void compactIfDrained() throws IOException {
+        synchronized (journalLock) {
+            if (queue.isEmpty() && journal != null && journal.size() > 0) {
+                journal.truncate(0);
+                journal.force(true);
+            }
+        }
+    }
+
+    /**
+     * Rejoue le journal. Une dernière ligne illisible est une écriture interrompue, jamais acquittée : elle est
+     * retirée du fichier pour que la suivante ne s'y colle pas. Toute autre ligne illisible arrête le démarrage.
+     */
+    private void replay(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        long validLength = 0;
+        int replayed = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                continue;
+            }
+            Map<String, Object> entry;
+            try {
+                if (!securityUtils.isEncrypted(line)) {
+                    throw new IOException("entry is not encrypted");
+                }
+                entry = objectMapper.readValue(securityUtils.decryptSensitiveValue(line, journalSecret), ENTRY_TYPE);
+            } catch (IOException | RuntimeException e) {
+                if (i < lines.size() - 1) {
+                    throw new IllegalStateException("Unreadable write-behind journal entry at line " + (i + 1)
+                            + " of " + file + "; check app.security.encryption-secret or restore the journal", e);
+                }
+                log.warn("Dropping truncated last write-behind journal entry: {}", e.getMessage());
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                    channel.force(true);
+                }
+                break;
+            }
+            long seq = ((Number) entry.get("seq")).longValue();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> value = (Map<String, Object>) entry.get("value");
+            apply(new PendingWrite(seq, (String) entry.get("path"), (String) entry.get("owner"), value));
+            sequence.accumulateAndGet(seq, Math::max);
+            validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            replayed++;
+        }
+        // Dernière ligne complète sans fin de ligne : la terminer avant d'ajouter les suivantes
+        if (validLength > Files.size(file)) {
+            Files.write(file, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} write-behind journal entries ({} documents to replicate)", replayed, queue.size());
+        }
+    }
+}
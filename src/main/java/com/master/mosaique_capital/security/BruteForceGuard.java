@@ -0,0 +1,117 @@
+package com.master.mosaique_capital.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Protection contre la force brute : compte les échecs d'authentification par IP et par utilisateur
+ * et bloque la clé pendant {@code app.security.bruteforce.block-duration} une fois le seuil atteint.
+ * Les échecs sont comptés sur une fenêtre glissante de même durée que le blocage.
+ */
+@Component
+@Slf4j
+public class BruteForceGuard {
+
+    private final int maxAttempts;
+    private final long blockDurationNanos;
+    private final ConcurrentHashMap<String, Attempts> attempts = new ConcurrentHashMap<>();
+    private final Counter blocksCounter;
+
+    /**
+     * État d'une clé ; modifié uniquement sous le verrou de l'entrée de la table (compute)
+     */
+    private static final class Attempts {
+        int failures;
+        long windowStart;
+        volatile long blockedUntil;
+    }
+
+    public BruteForceGuard(@Value("${app.security.bruteforce.max-attempts:5}") int maxAttempts,
+                           @Value("${app.security.bruteforce.block-duration:30m}") Duration blockDuration,
+                           MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.blockDurationNanos = blockDuration.toNanos();
+        this.blocksCounter = meterRegistry.counter("security.bruteforce.blocks");
+        meterRegistry.gauge("security.bruteforce.blocked.keys", attempts, this::countBlocked);
+    }
+
+    /**
+     * Indique si la clé est actuellement bloquée ; lecture sans verrou
+     * @return 0 si la clé n'est pas bloquée, sinon le temps de blocage restant en nanosecondes
+     */
+    public long blockedFor(String key) {
+        if (key == null) {
+            return 0;
+        }
+        Attempts state = attempts.get(key);
+        if (state == null) {
+            return 0;
+        }
+        long remaining = state.blockedUntil - System.nanoTime();
+        return remaining > 0 ? remaining : 0;
+    }
+
+    /**
+     * Enregistre un échec d'authentification pour la clé
+     */
+    public void recordFailure(String key) {
+        if (key == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        attempts.compute(key, (k, state) -> {
+            if (state == null) {
+                state = new Attempts();
+                state.windowStart = now;
+                state.blockedUntil = now;
+            }
+            if (state.blockedUntil - now > 0) {
+                return state;
+            }
+            if (now - state.windowStart > blockDurationNanos) {
+                state.failures = 0;
+                state.windowStart = now;
+            }
+            if (++state.failures >= maxAttempts) {
+                state.blockedUntil = now + blockDurationNanos;
+                state.failures = 0;
+                state.windowStart = now;
+                blocksCounter.increment();
+                log.warn("Brute force protection: blocking {} for {}s", k, blockDurationNanos / 1_000_000_000L);
+            }
+            return state;
+        });
+    }
+
+    /**
+     * Réinitialise le compteur après une authentification réussie (un blocage en cours est conservé)
+     */
+    public void recordSuccess(String key) {
+        if (key == null) {
+            return;
+        }
+        attempts.computeIfPresent(key, (k, state) -> state.blockedUntil - System.nanoTime() > 0 ? state : null);
+    }
+
+    /**
+     * Supprime les entrées dont le blocage et la fenêtre de comptage sont expirés
+     */
+    @Scheduled(fixedDelayString = "${app.security.ratelimit.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        attempts.values().removeIf(state ->
+                state.blockedUntil - now <= 0 && now - state.windowStart > blockDurationNanos);
+    }
+
+    private double countBlocked(ConcurrentHashMap<String, Attempts> table) {
+        long now = System.nanoTime();
+        return table.values().stream().filter(state -> state.blockedUntil - now > 0).count();
+    }
+}
@@ -23,8 +23,15 @@ import java.util.Collections;
 @Slf4j
 public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
 
+    /**
+     * Attribut de requête portant l'utilisateur authentifié ; contrairement au contexte de sécurité,
+     * il reste lisible par les filtres externes une fois la chaîne de sécurité terminée
+     */
+    public static final String AUTHENTICATED_USER_ATTRIBUTE = FirebaseAuthenticationFilter.class.getName() + ".user";
+
     private final FirebaseAuth firebaseAuth;
     private final FirebaseUserDetailsService userDetailsService;
+    private final RequestRateLimiter rateLimiter;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -37,12 +44,21 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
                 FirebaseToken decodedToken = firebaseAuth.verifyIdToken(token);
                 String uid = decodedToken.getUid();
 
+                // Limitation de débit par utilisateur, quelle que soit l'adresse IP d'origine
+                long waitNanos = rateLimiter.tryAcquireUid(rateLimiter.limiterFor(request.getRequestURI()), uid);
+                if (waitNanos > 0) {
+                    log.debug("Rate limit exceeded for user {}", uid);
+                    RateLimitFilter.reject(response, waitNanos);
+                    return;
+                }
+
                 FirebaseUserDetails userDetails = userDetailsService.loadUserByUsername(uid);
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, token, userDetails.getAuthorities());
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                request.setAttribute(AUTHENTICATED_USER_ATTRIBUTE, userDetails);
 
             } catch (FirebaseAuthException e) {
                 log.error("Firebase Authentication failed: {}", e.getMessage());
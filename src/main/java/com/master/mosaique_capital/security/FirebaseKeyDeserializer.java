@@ -0,0 +1,45 @@
+package com.master.mosaique_capital.security;
+
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.KeyDeserializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Désérialiseur Jackson des clés de map stockées telles quelles dans Firebase Realtime Database.
+ * Les clés ne sont pas échappées (les entités HTML contiennent {@code #}, interdit par Firebase) : elles sont
+ * validées et une clé invalide fait échouer la lecture de la requête (400).
+ * Usage : {@code @JsonDeserialize(keyUsing = FirebaseKeyDeserializer.class)}.
+ */
+public class FirebaseKeyDeserializer extends KeyDeserializer {
+
+    // Longueur maximale d'une clé Firebase, en octets UTF-8
+    private static final int MAX_KEY_BYTES = 768;
+
+    @Override
+    public Object deserializeKey(String key, DeserializationContext context) throws IOException {
+        if (!isValidKey(key)) {
+            throw context.weirdKeyException(String.class, key,
+                    "la clé ne doit pas être vide ni contenir . $ # [ ] / ou de caractère de contrôle");
+        }
+        return key;
+    }
+
+    /**
+     * Indique si une clé est acceptée par Firebase : non vide, au plus 768 octets, sans . $ # [ ] / ni
+     * caractère de contrôle ASCII
+     */
+    public static boolean isValidKey(String key) {
+        if (key == null || key.isBlank()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x20 || c == 0x7F || c == '.' || c == '$' || c == '#' || c == '[' || c == ']' || c == '/') {
+                return false;
+            }
+        }
+        return key.getBytes(StandardCharsets.UTF_8).length <= MAX_KEY_BYTES;
+    }
+}
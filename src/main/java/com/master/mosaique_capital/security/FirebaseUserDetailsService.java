@@ -1,8 +1,9 @@
 package com.master.mosaique_capital.security;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.UserRecord;
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.model.User;
 import com.master.mosaique_capital.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +14,10 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,15 +27,19 @@ public class FirebaseUserDetailsService implements UserDetailsService {
 
     private final FirebaseAuth firebaseAuth;
     private final UserRepository userRepository;
+    private final AsyncExecutors asyncExecutors;
 
     @Override
     public FirebaseUserDetails loadUserByUsername(String uid) throws UsernameNotFoundException {
+        // Récupérer en parallèle les informations d'authentification (appel bloquant sur thread virtuel)
+        // et les données complémentaires (rôles, etc.)
+        CompletableFuture<UserRecord> userRecordFuture = asyncExecutors.supplyBlocking(() -> firebaseAuth.getUser(uid));
+        CompletableFuture<Optional<User>> userFuture = userRepository.findById(uid);
+
         try {
-            // Récupérer d'abord les informations d'authentification
-            UserRecord userRecord = firebaseAuth.getUser(uid);
+            UserRecord userRecord = userRecordFuture.get();
 
-            // Ensuite récupérer les données complémentaires (rôles, etc.)
-            return userRepository.findById(uid)
+            return userFuture.get()
                     .map(user -> {
                         List<SimpleGrantedAuthority> authorities = new ArrayList<>();
 
@@ -70,9 +78,12 @@ public class FirebaseUserDetailsService implements UserDetailsService {
                         );
                     });
 
-        } catch (FirebaseAuthException e) {
-            log.error("Error getting user details from Firebase: {}", e.getMessage());
-            throw new UsernameNotFoundException("User not found in Firebase: " + uid);
+        } catch (ExecutionException e) {
+            log.error("Error getting user details from Firebase: {}", e.getCause().getMessage());
+            throw new UsernameNotFoundException("User not found in Firebase: " + uid, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UsernameNotFoundException("Interrupted while loading user: " + uid, e);
         }
     }
 }
\ No newline at end of file
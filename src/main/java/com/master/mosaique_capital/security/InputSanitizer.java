@@ -0,0 +1,53 @@
+package com.master.mosaique_capital.security;
+
+/**
+ * Échappement des caractères dangereux d'une saisie utilisateur ({@code < > " ' ( ) /}) en une seule passe.
+ * La chaîne d'origine est retournée telle quelle, sans allocation, lorsqu'aucun caractère n'est à échapper.
+ */
+public final class InputSanitizer {
+
+    private InputSanitizer() {
+    }
+
+    public static String sanitize(String input) {
+        if (input == null) {
+            return null;
+        }
+
+        int length = input.length();
+        int first = 0;
+        while (first < length && replacement(input.charAt(first)) == null) {
+            first++;
+        }
+        if (first == length) {
+            return input;
+        }
+
+        // Chaque remplacement ajoute au plus 5 caractères ; marge proportionnelle à la partie restante
+        StringBuilder sanitized = new StringBuilder(length + ((length - first) >> 1) + 16);
+        sanitized.append(input, 0, first);
+        for (int i = first; i < length; i++) {
+            char c = input.charAt(i);
+            String replacement = replacement(c);
+            if (replacement != null) {
+                sanitized.append(replacement);
+            } else {
+                sanitized.append(c);
+            }
+        }
+        return sanitized.toString();
+    }
+
+    private static String replacement(char c) {
+        return switch (c) {
+            case '<' -> "&lt;";
+            case '>' -> "&gt;";
+            case '"' -> "&quot;";
+            case '\'' -> "&#x27;";
+            case '(' -> "&#40;";
+            case ')' -> "&#41;";
+            case '/' -> "&#x2F;";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package com.master.mosaique_capital.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classification des chemins de requête (authentification / sensible / autre) pour l'audit et la limitation de débit.
+ * <p>
+ * Les motifs configurés sont compilés une seule fois : les motifs littéraux et les préfixes {@code /a/b/**}
+ * alimentent un arbre de préfixes par segment, les autres motifs sont compilés en {@link PathPattern}.
+ * Les résultats sont mis en cache par URI, dans la limite de {@code app.security.audit.path-cache-size} entrées :
+ * le cache a deux générations de taille moitié ; une entrée lue dans l'ancienne est promue et, lorsque la récente
+ * est pleine, elle remplace l'ancienne. Les URI non consultées depuis une génération sont ainsi évincées (LRU
+ * approché), sans verrou en lecture.
+ */
+@Component
+@Slf4j
+public class PathClassifier {
+
+    public enum PathClass {
+        AUTH, SENSITIVE, OTHER;
+
+        public boolean isSensitive() {
+            return this != OTHER;
+        }
+    }
+
+    /**
+     * Noeud de l'arbre de préfixes ; {@code subtree} vaut pour le noeud et tous ses descendants ({@code /**}),
+     * {@code exact} pour le noeud seul
+     */
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        PathClass subtree;
+        PathClass exact;
+    }
+
+    private record CompiledPattern(PathPattern pattern, PathClass pathClass) {
+    }
+
+    private final Node root = new Node();
+    private final List<CompiledPattern> fallbackPatterns = new ArrayList<>();
+    private volatile ConcurrentHashMap<String, PathClass> recent = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, PathClass> older = new ConcurrentHashMap<>();
+    private final int generationSize;
+
+    public PathClassifier(
+            @Value("${app.security.audit.auth-paths:/api/auth/**}") String[] authPaths,
+            @Value("${app.security.audit.sensitive-paths:/api/auth/**,/api/assets/**,/api/patrimony/**,/api/tax/**,/api/users/**}")
+            String[] sensitivePaths,
+            @Value("${app.security.audit.path-cache-size:10000}") int cacheSize) {
+        this.generationSize = cacheSize > 0 ? Math.max(1, cacheSize / 2) : 0;
+        // Les chemins d'authentification sont compilés en dernier : ils priment sur les chemins sensibles
+        for (String pattern : sensitivePaths) {
+            compile(pattern.trim(), PathClass.SENSITIVE);
+        }
+        for (String pattern : authPaths) {
+            compile(pattern.trim(), PathClass.AUTH);
+        }
+        log.info("Path classifier compiled {} auth and {} sensitive patterns ({} as PathPattern)",
+                authPaths.length, sensitivePaths.length, fallbackPatterns.size());
+    }
+
+    /**
+     * Classe l'URI d'une requête
+     */
+    public PathClass classify(String uri) {
+        ConcurrentHashMap<String, PathClass> current = recent;
+        PathClass pathClass = current.get(uri);
+        if (pathClass != null) {
+            return pathClass;
+        }
+        pathClass = older.get(uri);
+        if (pathClass == null) {
+            pathClass = compute(uri);
+        }
+        if (generationSize > 0) {
+            current.put(uri, pathClass);
+            if (current.size() >= generationSize) {
+                rotate(current);
+            }
+        }
+        return pathClass;
+    }
+
+    boolean isCached(String uri) {
+        return recent.containsKey(uri) || older.containsKey(uri);
+    }
+
+    int cachedEntries() {
+        return recent.size() + older.size();
+    }
+
+    private synchronized void rotate(ConcurrentHashMap<String, PathClass> full) {
+        // Une autre requête a déjà remplacé cette génération
+        if (recent == full) {
+            older = full;
+            recent = new ConcurrentHashMap<>();
+        }
+    }
+
+    private PathClass compute(String uri) {
+        PathClass result = PathClass.OTHER;
+
+        // Parcours de l'arbre segment par segment, la classe la plus forte rencontrée l'emporte
+        Node node = root;
+        int start = 1;
+        int length = uri.length();
+        while (node != null) {
+            if (node.subtree != null) {
+                result = max(result, node.subtree);
+            }
+            if (start >= length) {
+                if (node.exact != null) {
+                    result = max(result, node.exact);
+                }
+                break;
+            }
+            int end = uri.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.children.get(uri.substring(start, end));
+            start = end + 1;
+        }
+
+        if (result != PathClass.AUTH && !fallbackPatterns.isEmpty()) {
+            PathContainer path = PathContainer.parsePath(uri);
+            for (CompiledPattern compiled : fallbackPatterns) {
+                if (compiled.pattern().matches(path)) {
+                    result = max(result, compiled.pathClass());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void compile(String pattern, PathClass pathClass) {
+        if (pattern.isEmpty()) {
+            return;
+        }
+        boolean deep = pattern.endsWith("/**");
+        String prefix = deep ? pattern.substring(0, pattern.length() - 3) : pattern;
+
+        if (!prefix.startsWith("/") || prefix.contains("*") || prefix.contains("?") || prefix.contains("{")) {
+            fallbackPatterns.add(new CompiledPattern(PathPatternParser.defaultInstance.parse(pattern), pathClass));
+            return;
+        }
+
+        Node node = root;
+        for (String segment : prefix.substring(1).split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        if (deep) {
+            node.subtree = max(node.subtree, pathClass);
+        } else {
+            node.exact = max(node.exact, pathClass);
+        }
+    }
+
+    // AUTH > SENSITIVE > OTHER
+    private static PathClass max(PathClass a, PathClass b) {
+        if (a == null) {
+            return b;
+        }
+        return a.ordinal() <= b.ordinal() ? a : b;
+    }
+}
@@ -0,0 +1,100 @@
+package com.master.mosaique_capital.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitation de débit par adresse IP et blocage des adresses et des utilisateurs identifiés par la protection
+ * contre la force brute.
+ * S'exécute avant l'audit et l'authentification afin de rejeter les requêtes au coût le plus bas ;
+ * la limitation par utilisateur est appliquée par {@link FirebaseAuthenticationFilter} une fois le token vérifié.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RequestRateLimiter rateLimiter;
+    private final BruteForceGuard bruteForceGuard;
+    private final SecurityUtils securityUtils;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String uri = request.getRequestURI();
+        if (!uri.startsWith("/api/")) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String ip = securityUtils.getClientIpAddress(request);
+        RequestRateLimiter.Limiter limiter = rateLimiter.limiterFor(uri);
+
+        // Les adresses et les utilisateurs bloqués pour force brute ne peuvent plus tenter de s'authentifier
+        if (limiter == RequestRateLimiter.Limiter.AUTH) {
+            long blockedNanos = Math.max(bruteForceGuard.blockedFor(ip), bruteForceGuard.blockedFor(tokenSubject(request)));
+            if (blockedNanos > 0) {
+                reject(response, blockedNanos);
+                return;
+            }
+        }
+
+        long waitNanos = rateLimiter.tryAcquireIp(limiter, ip);
+        if (waitNanos > 0) {
+            log.debug("Rate limit exceeded for IP {} on {}", ip, uri);
+            reject(response, waitNanos);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Lit l'uid (claim {@code sub}) du token Firebase sans vérifier sa signature. Il ne sert qu'à refuser les
+     * requêtes d'un utilisateur bloqué : les échecs ne sont comptés que sur l'uid vérifié par
+     * {@link FirebaseAuthenticationFilter}, et présenter l'uid d'un autre ne peut que bloquer sa propre requête.
+     */
+    private String tokenSubject(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return null;
+        }
+        String[] parts = authorization.substring(7).split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            JsonNode subject = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1])).get("sub");
+            return subject != null && subject.isTextual() ? subject.asText() : null;
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Répond 429 avec l'en-tête Retry-After (en secondes, arrondi au supérieur)
+     */
+    static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Trop de requêtes");
+    }
+}
@@ -0,0 +1,101 @@
+package com.master.mosaique_capital.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Limitation de débit en mémoire, configurée par les propriétés {@code resilience4j.ratelimiter.*}
+ * (instances {@code auth} et {@code api}). Chaque instance tient deux tables de seaux : une par IP, une par uid.
+ */
+@Component
+@Slf4j
+public class RequestRateLimiter {
+
+    /**
+     * Instance de limitation appliquée à une requête
+     */
+    public enum Limiter { AUTH, API }
+
+    private final PathClassifier pathClassifier;
+    private final TokenBucketTable authByIp;
+    private final TokenBucketTable authByUid;
+    private final TokenBucketTable apiByIp;
+    private final TokenBucketTable apiByUid;
+    private final Duration idleTimeout;
+
+    private final Counter authIpRejected;
+    private final Counter authUidRejected;
+    private final Counter apiIpRejected;
+    private final Counter apiUidRejected;
+
+    public RequestRateLimiter(
+            @Value("${resilience4j.ratelimiter.instances.auth.limit-for-period:${resilience4j.ratelimiter.configs.default.limit-for-period:60}}")
+            int authLimit,
+            @Value("${resilience4j.ratelimiter.instances.api.limit-for-period:${resilience4j.ratelimiter.configs.default.limit-for-period:60}}")
+            int apiLimit,
+            @Value("${resilience4j.ratelimiter.configs.default.limit-refresh-period:60s}") Duration refreshPeriod,
+            @Value("${app.security.ratelimit.idle-timeout:10m}") Duration idleTimeout,
+            PathClassifier pathClassifier,
+            MeterRegistry meterRegistry) {
+        this.pathClassifier = pathClassifier;
+        this.authByIp = new TokenBucketTable(authLimit, refreshPeriod);
+        this.authByUid = new TokenBucketTable(authLimit, refreshPeriod);
+        this.apiByIp = new TokenBucketTable(apiLimit, refreshPeriod);
+        this.apiByUid = new TokenBucketTable(apiLimit, refreshPeriod);
+        // Un seau inactif depuis une période complète est plein : il peut être évincé sans effet
+        this.idleTimeout = idleTimeout.compareTo(refreshPeriod) < 0 ? refreshPeriod : idleTimeout;
+
+        this.authIpRejected = meterRegistry.counter("security.ratelimit.rejected", "limiter", "auth", "key", "ip");
+        this.authUidRejected = meterRegistry.counter("security.ratelimit.rejected", "limiter", "auth", "key", "uid");
+        this.apiIpRejected = meterRegistry.counter("security.ratelimit.rejected", "limiter", "api", "key", "ip");
+        this.apiUidRejected = meterRegistry.counter("security.ratelimit.rejected", "limiter", "api", "key", "uid");
+        meterRegistry.gauge("security.ratelimit.keys", this, limiter -> limiter.authByIp.size()
+                + limiter.authByUid.size() + limiter.apiByIp.size() + limiter.apiByUid.size());
+    }
+
+    /**
+     * Consomme un jeton pour l'adresse IP
+     * @return 0 si la requête est acceptée, sinon le délai en nanosecondes avant le prochain jeton
+     */
+    public long tryAcquireIp(Limiter limiter, String ip) {
+        long waitNanos = (limiter == Limiter.AUTH ? authByIp : apiByIp).tryAcquire(ip);
+        if (waitNanos > 0) {
+            (limiter == Limiter.AUTH ? authIpRejected : apiIpRejected).increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Consomme un jeton pour l'utilisateur authentifié
+     * @return 0 si la requête est acceptée, sinon le délai en nanosecondes avant le prochain jeton
+     */
+    public long tryAcquireUid(Limiter limiter, String uid) {
+        long waitNanos = (limiter == Limiter.AUTH ? authByUid : apiByUid).tryAcquire(uid);
+        if (waitNanos > 0) {
+            (limiter == Limiter.AUTH ? authUidRejected : apiUidRejected).increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Détermine l'instance de limitation applicable à une URI
+     */
+    public Limiter limiterFor(String uri) {
+        return pathClassifier.classify(uri) == PathClassifier.PathClass.AUTH ? Limiter.AUTH : Limiter.API;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.ratelimit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = authByIp.evictIdle(idleTimeout) + authByUid.evictIdle(idleTimeout)
+                + apiByIp.evictIdle(idleTimeout) + apiByUid.evictIdle(idleTimeout);
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.master.mosaique_capital.security;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Désérialiseur Jackson appliquant {@link InputSanitizer} aux champs texte des DTO d'écriture.
+ * Usage : {@code @JsonDeserialize(using = SanitizingStringDeserializer.class)}, ou {@code contentUsing} pour
+ * les valeurs d'une map. Les clés de map ne sont pas échappées : voir {@link FirebaseKeyDeserializer}.
+ */
+public class SanitizingStringDeserializer extends StdScalarDeserializer<String> {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public SanitizingStringDeserializer() {
+        super(String.class);
+    }
+
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        return InputSanitizer.sanitize(StringDeserializer.instance.deserialize(parser, context));
+    }
+}
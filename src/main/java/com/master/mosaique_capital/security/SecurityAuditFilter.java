@@ -8,10 +8,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
@@ -25,28 +22,30 @@ import java.util.Map;
 public class SecurityAuditFilter extends OncePerRequestFilter {
 
     private final SecurityAuditService securityAuditService;
-    private final AntPathMatcher pathMatcher = new AntPathMatcher();
-
-    // Chemins sensibles nécessitant un audit
-    private static final String[] SENSITIVE_PATHS = {
-            "/api/auth/**",
-            "/api/assets/**",
-            "/api/patrimony/**",
-            "/api/users/**"
-    };
+    private final BruteForceGuard bruteForceGuard;
+    private final SecurityUtils securityUtils;
+    private final PathClassifier pathClassifier;
 
     // Seuils de réponse HTTP à journaliser
     private static final int ERROR_THRESHOLD = 400;
 
+    /**
+     * Attribut de requête posé par un point d'entrée d'authentification : {@code TRUE} si les identifiants
+     * ont été acceptés (connexion réussie), {@code FALSE} s'ils ont été rejetés
+     */
+    public static final String CREDENTIALS_OUTCOME_ATTRIBUTE = SecurityAuditFilter.class.getName() + ".credentials";
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
         // Capturer l'heure de début pour calculer le temps de réponse
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
-        // Vérifier si c'est un chemin sensible à auditer
-        boolean isSensitivePath = isSensitivePath(request.getRequestURI());
+        // Classer le chemin (authentification / sensible / autre) en une seule recherche
+        PathClassifier.PathClass pathClass = pathClassifier.classify(request.getRequestURI());
+        boolean isSensitivePath = pathClass.isSensitive();
+        boolean isAuthPath = pathClass == PathClassifier.PathClass.AUTH;
 
         // Wrapper la réponse pour capturer le code de statut
         StatusCapturingResponseWrapper responseWrapper = new StatusCapturingResponseWrapper(response);
@@ -56,18 +55,17 @@ public class SecurityAuditFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, responseWrapper);
         } finally {
             // Calculer le temps de réponse
-            long responseTime = System.currentTimeMillis() - startTime;
+            long responseTime = (System.nanoTime() - startTime) / 1_000_000;
 
             // Récupérer le statut HTTP
             int status = responseWrapper.getStatus();
 
-            // Récupérer l'utilisateur authentifié, s'il existe
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            // Récupérer l'utilisateur authentifié, s'il existe ; le contexte de sécurité est déjà vidé ici
             String userId = null;
             String email = null;
 
-            if (authentication != null && authentication.getPrincipal() instanceof FirebaseUserDetails) {
-                FirebaseUserDetails userDetails = (FirebaseUserDetails) authentication.getPrincipal();
+            if (request.getAttribute(FirebaseAuthenticationFilter.AUTHENTICATED_USER_ATTRIBUTE)
+                    instanceof FirebaseUserDetails userDetails) {
                 userId = userDetails.getUid();
                 email = userDetails.getEmail();
             }
@@ -101,8 +99,14 @@ public class SecurityAuditFilter extends OncePerRequestFilter {
                 }
             }
 
+            // Alimenter la protection contre la force brute avec le résultat des tentatives d'authentification
+            if (isAuthPath) {
+                recordAuthenticationOutcome(securityUtils.getClientIpAddress(request), userId, status,
+                        request.getAttribute(CREDENTIALS_OUTCOME_ATTRIBUTE));
+            }
+
             // Journaliser spécifiquement les tentatives d'authentification
-            if (request.getRequestURI().contains("/api/auth/") && userId != null) {
+            if (isAuthPath && userId != null) {
                 boolean isSuccess = status >= 200 && status < 300;
                 securityAuditService.logAccessAttempt(
                         userId,
@@ -115,13 +119,20 @@ public class SecurityAuditFilter extends OncePerRequestFilter {
         }
     }
 
-    private boolean isSensitivePath(String uri) {
-        for (String pattern : SENSITIVE_PATHS) {
-            if (pathMatcher.match(pattern, uri)) {
-                return true;
-            }
+    /**
+     * Des identifiants rejetés (code 2FA invalide, 401, 403) comptent comme un échec pour l'IP et l'utilisateur ;
+     * seule une connexion réussie les réinitialise. Les autres erreurs (validation, 400 génériques) sont ignorées.
+     */
+    private void recordAuthenticationOutcome(String ip, String userId, int status, Object credentialsOutcome) {
+        if (Boolean.FALSE.equals(credentialsOutcome)
+                || status == HttpServletResponse.SC_UNAUTHORIZED
+                || status == HttpServletResponse.SC_FORBIDDEN) {
+            bruteForceGuard.recordFailure(ip);
+            bruteForceGuard.recordFailure(userId);
+        } else if (Boolean.TRUE.equals(credentialsOutcome) && status >= 200 && status < 300) {
+            bruteForceGuard.recordSuccess(ip);
+            bruteForceGuard.recordSuccess(userId);
         }
-        return false;
     }
 
     // Classe interne pour capturer le statut HTTP
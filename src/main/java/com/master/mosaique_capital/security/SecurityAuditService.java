@@ -20,6 +20,7 @@ public class SecurityAuditService {
 
     private final FirebaseDatabase firebaseDatabase;
     private final ObjectMapper objectMapper;
+    private final SecurityUtils securityUtils;
     private static final String AUDIT_LOGS_REF = "audit_logs";
 
     /**
@@ -35,7 +36,7 @@ public class SecurityAuditService {
             logEntry.put("userId", uid);
             logEntry.put("email", email);
             logEntry.put("successful", success);
-            logEntry.put("ipAddress", getClientIpAddress(request));
+            logEntry.put("ipAddress", securityUtils.getClientIpAddress(request));
             logEntry.put("userAgent", request.getHeader("User-Agent"));
             logEntry.put("reason", reason);
 
@@ -43,7 +44,7 @@ public class SecurityAuditService {
 
             if (!success) {
                 log.warn("Failed access attempt - User: {}, IP: {}, Reason: {}",
-                        email, getClientIpAddress(request), reason);
+                        email, securityUtils.getClientIpAddress(request), reason);
             }
         } catch (Exception e) {
             log.error("Error logging access attempt: {}", e.getMessage());
@@ -64,7 +65,7 @@ public class SecurityAuditService {
             logEntry.put("userId", uid);
             logEntry.put("actionType", actionType);
             logEntry.put("resource", resource);
-            logEntry.put("ipAddress", getClientIpAddress(request));
+            logEntry.put("ipAddress", securityUtils.getClientIpAddress(request));
             logEntry.put("userAgent", request.getHeader("User-Agent"));
             logEntry.put("details", details);
 
@@ -90,7 +91,7 @@ public class SecurityAuditService {
             logEntry.put("timestamp", LocalDateTime.now().toString());
             logEntry.put("eventType", eventType);
             logEntry.put("description", description);
-            logEntry.put("ipAddress", getClientIpAddress(request));
+            logEntry.put("ipAddress", securityUtils.getClientIpAddress(request));
             logEntry.put("userAgent", request.getHeader("User-Agent"));
             logEntry.put("requestUri", request.getRequestURI());
             logEntry.put("method", request.getMethod());
@@ -99,32 +100,9 @@ public class SecurityAuditService {
             logRef.setValueAsync(logEntry);
 
             log.warn("Security event detected - Type: {}, IP: {}, Description: {}",
-                    eventType, getClientIpAddress(request), description);
+                    eventType, securityUtils.getClientIpAddress(request), description);
         } catch (Exception e) {
             log.error("Error logging security event: {}", e.getMessage());
         }
     }
-
-    /**
-     * Extrait l'adresse IP réelle du client, en tenant compte des proxys
-     */
-    private String getClientIpAddress(HttpServletRequest request) {
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("Proxy-Client-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("WL-Proxy-Client-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("HTTP_CLIENT_IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("HTTP_X_FORWARDED_FOR");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
-        }
-        return ip;
-    }
 }
\ No newline at end of file
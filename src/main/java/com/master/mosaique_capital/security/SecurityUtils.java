@@ -1,23 +1,113 @@
 package com.master.mosaique_capital.security;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 @Component
 public class SecurityUtils {
 
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
-    private static final String AES_CIPHER = "AES/CBC/PKCS5Padding";
+    private static final String AES_CIPHER = "AES/GCM/NoPadding";
+    private static final String LEGACY_AES_CIPHER = "AES/CBC/PKCS5Padding";
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int KEY_BITS = 256;
+
+    // Préfixe des valeurs chiffrées en AES-GCM ; les valeurs sans préfixe sont au format CBC historique
+    private static final String GCM_PREFIX = "gcm1:";
+
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    // Seules les adresses littérales sont analysées : une valeur d'en-tête ne doit jamais déclencher de résolution DNS
+    private static final Pattern IPV4_LITERAL = Pattern.compile("^\\d{1,3}(\\.\\d{1,3}){3}$");
+    private static final Pattern IPV6_LITERAL = Pattern.compile("^\\[?[0-9a-fA-F]*:[0-9a-fA-F:.]*(%\\w+)?]?$");
+
+    // Instances réutilisées par thread : Cipher et MessageDigest ne sont pas thread-safe mais coûteux à créer
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> newInstance(AES_CIPHER));
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    // Clés dérivées, par empreinte SHA-256 du secret et dans l'ordre d'accès ; protégé par son propre moniteur
+    private final LinkedHashMap<String, SecretKey> derivedKeys = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Value("${app.security.encryption.derived-keys-max:32}")
+    private int derivedKeysMax = 32;
+
+    @Value("${app.security.encryption.kdf-salt:mosaique-capital}")
+    private String kdfSalt = "mosaique-capital";
+
+    @Value("${app.security.encryption.kdf-iterations:210000}")
+    private int kdfIterations = 210_000;
+
+    // Proxys dont l'en-tête X-Forwarded-For est pris en compte
+    private volatile List<IpRange> trustedProxies = List.of();
+
+    /**
+     * Adresse ou réseau CIDR
+     */
+    private record IpRange(byte[] network, int prefixBits) {
+
+        static IpRange parse(String value) {
+            int slash = value.indexOf('/');
+            byte[] network = parseAddress(slash >= 0 ? value.substring(0, slash) : value);
+            if (network == null) {
+                throw new IllegalArgumentException("Invalid trusted proxy address: " + value);
+            }
+            int prefixBits = slash >= 0 ? Integer.parseInt(value.substring(slash + 1)) : network.length * 8;
+            if (prefixBits < 0 || prefixBits > network.length * 8) {
+                throw new IllegalArgumentException("Invalid trusted proxy prefix: " + value);
+            }
+            return new IpRange(network, prefixBits);
+        }
+
+        boolean contains(byte[] address) {
+            if (address == null || address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixBits / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixBits % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
 
     // Expressions régulières pour validation
     private static final Pattern EMAIL_PATTERN =
@@ -34,78 +124,187 @@ public class SecurityUtils {
             return null;
         }
 
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        byte[] hash = SHA_256.get().digest(value.getBytes(StandardCharsets.UTF_8));
         return Base64.getEncoder().encodeToString(hash);
     }
 
     /**
-     * Chiffre une valeur sensible avec AES
+     * Chiffre une valeur sensible avec AES-GCM (clé dérivée du secret par PBKDF2)
      */
     public String encryptSensitiveValue(String value, String secretKey) {
         try {
             if (StringUtils.isBlank(value) || StringUtils.isBlank(secretKey)) {
                 return null;
             }
-
-            // Générer un vecteur d'initialisation (IV)
-            byte[] iv = new byte[16];
-            SECURE_RANDOM.nextBytes(iv);
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-
-            // Créer la clé secrète
-            SecretKeySpec secretKeySpec = new SecretKeySpec(
-                    secretKey.getBytes(StandardCharsets.UTF_8), "AES");
-
-            // Chiffrer
-            Cipher cipher = Cipher.getInstance(AES_CIPHER);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, ivParameterSpec);
-            byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
-
-            // Concaténer IV et données chiffrées et encoder en Base64
-            byte[] combined = new byte[iv.length + encrypted.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
-
-            return Base64.getEncoder().encodeToString(combined);
-
+            return encrypt(GCM_CIPHER.get(), deriveKey(secretKey), value);
         } catch (Exception e) {
             throw new RuntimeException("Error encrypting value", e);
         }
     }
 
     /**
-     * Déchiffre une valeur sensible avec AES
+     * Déchiffre une valeur sensible ; accepte le format AES-GCM et le format AES-CBC historique
      */
     public String decryptSensitiveValue(String encryptedValue, String secretKey) {
         try {
             if (StringUtils.isBlank(encryptedValue) || StringUtils.isBlank(secretKey)) {
                 return null;
             }
+            if (!encryptedValue.startsWith(GCM_PREFIX)) {
+                return decryptLegacy(encryptedValue, secretKey);
+            }
+            return decrypt(GCM_CIPHER.get(), deriveKey(secretKey), encryptedValue);
+        } catch (Exception e) {
+            throw new RuntimeException("Error decrypting value", e);
+        }
+    }
+
+    /**
+     * Chiffre toutes les valeurs d'une map en une passe (une seule recherche de clé et de Cipher).
+     * Les valeurs nulles ou vides sont conservées telles quelles.
+     */
+    public Map<String, String> encryptAll(Map<String, String> values, String secretKey) {
+        if (values == null || values.isEmpty() || StringUtils.isBlank(secretKey)) {
+            return values;
+        }
+        try {
+            Cipher cipher = GCM_CIPHER.get();
+            SecretKey key = deriveKey(secretKey);
+            Map<String, String> encrypted = new LinkedHashMap<>(values.size() * 4 / 3 + 1);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String value = entry.getValue();
+                encrypted.put(entry.getKey(), StringUtils.isEmpty(value) ? value : encrypt(cipher, key, value));
+            }
+            return encrypted;
+        } catch (Exception e) {
+            throw new RuntimeException("Error encrypting values", e);
+        }
+    }
+
+    /**
+     * Déchiffre toutes les valeurs d'une map en une passe ; les valeurs non chiffrées en AES-GCM
+     * sont passées au déchiffrement historique
+     */
+    public Map<String, String> decryptAll(Map<String, String> values, String secretKey) {
+        if (values == null || values.isEmpty() || StringUtils.isBlank(secretKey)) {
+            return values;
+        }
+        try {
+            Cipher cipher = GCM_CIPHER.get();
+            SecretKey key = deriveKey(secretKey);
+            Map<String, String> decrypted = new LinkedHashMap<>(values.size() * 4 / 3 + 1);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String value = entry.getValue();
+                if (StringUtils.isEmpty(value)) {
+                    decrypted.put(entry.getKey(), value);
+                } else if (value.startsWith(GCM_PREFIX)) {
+                    decrypted.put(entry.getKey(), decrypt(cipher, key, value));
+                } else {
+                    decrypted.put(entry.getKey(), decryptLegacy(value, secretKey));
+                }
+            }
+            return decrypted;
+        } catch (Exception e) {
+            throw new RuntimeException("Error decrypting values", e);
+        }
+    }
+
+    /**
+     * Indique si une valeur a été produite par {@link #encryptSensitiveValue} ou {@link #encryptAll}
+     */
+    public boolean isEncrypted(String value) {
+        return value != null && value.startsWith(GCM_PREFIX);
+    }
+
+    /**
+     * Format : préfixe + Base64(IV 12 octets || données chiffrées || tag 16 octets)
+     */
+    private String encrypt(Cipher cipher, SecretKey key, String value) throws GeneralSecurityException {
+        // Un IV aléatoire unique par chiffrement est indispensable en GCM
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+
+        byte[] plain = value.getBytes(StandardCharsets.UTF_8);
+        byte[] combined = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plain.length)];
+        System.arraycopy(iv, 0, combined, 0, GCM_IV_LENGTH);
+        cipher.doFinal(plain, 0, plain.length, combined, GCM_IV_LENGTH);
+
+        return GCM_PREFIX + Base64.getEncoder().encodeToString(combined);
+    }
 
-            // Décoder la valeur Base64
-            byte[] combined = Base64.getDecoder().decode(encryptedValue);
+    private String decrypt(Cipher cipher, SecretKey key, String encryptedValue) throws GeneralSecurityException {
+        byte[] combined = Base64.getDecoder().decode(encryptedValue.substring(GCM_PREFIX.length()));
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, combined, 0, GCM_IV_LENGTH));
+        byte[] decrypted = cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
 
-            // Extraire IV et données chiffrées
-            byte[] iv = new byte[16];
-            byte[] encrypted = new byte[combined.length - 16];
-            System.arraycopy(combined, 0, iv, 0, iv.length);
-            System.arraycopy(combined, iv.length, encrypted, 0, encrypted.length);
+    /**
+     * Déchiffrement du format historique AES-CBC (IV 16 octets, secret brut utilisé comme clé)
+     */
+    private String decryptLegacy(String encryptedValue, String secretKey) throws GeneralSecurityException {
+        byte[] combined = Base64.getDecoder().decode(encryptedValue);
 
-            // Créer les specs
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(
-                    secretKey.getBytes(StandardCharsets.UTF_8), "AES");
+        IvParameterSpec ivParameterSpec = new IvParameterSpec(combined, 0, 16);
+        SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "AES");
 
-            // Déchiffrer
-            Cipher cipher = Cipher.getInstance(AES_CIPHER);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivParameterSpec);
-            byte[] decrypted = cipher.doFinal(encrypted);
+        Cipher cipher = Cipher.getInstance(LEGACY_AES_CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivParameterSpec);
+        byte[] decrypted = cipher.doFinal(combined, 16, combined.length - 16);
 
-            return new String(decrypted, StandardCharsets.UTF_8);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error decrypting value", e);
+    /**
+     * Dérive une clé AES-256 du secret par PBKDF2-HMAC-SHA256, une seule fois par secret tant qu'il reste
+     * parmi les {@code app.security.encryption.derived-keys-max} secrets les plus récemment utilisés.
+     * La dérivation est faite hors du verrou ; deux dérivations concurrentes d'un même secret sont équivalentes.
+     */
+    private SecretKey deriveKey(String secretKey) {
+        String fingerprint = Base64.getEncoder().encodeToString(
+                SHA_256.get().digest(secretKey.getBytes(StandardCharsets.UTF_8)));
+        synchronized (derivedKeys) {
+            SecretKey key = derivedKeys.get(fingerprint);
+            if (key != null) {
+                return key;
+            }
+        }
+
+        SecretKey key;
+        PBEKeySpec spec = new PBEKeySpec(secretKey.toCharArray(), kdfSalt.getBytes(StandardCharsets.UTF_8),
+                kdfIterations, KEY_BITS);
+        try {
+            byte[] keyBytes = SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(spec).getEncoded();
+            key = new SecretKeySpec(keyBytes, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Key derivation failed", e);
+        } finally {
+            spec.clearPassword();
+        }
+
+        synchronized (derivedKeys) {
+            derivedKeys.putIfAbsent(fingerprint, key);
+            Iterator<String> eldest = derivedKeys.keySet().iterator();
+            while (derivedKeys.size() > Math.max(1, derivedKeysMax) && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return key;
+    }
+
+    int derivedKeyCount() {
+        synchronized (derivedKeys) {
+            return derivedKeys.size();
+        }
+    }
+
+    private static Cipher newInstance(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " is not available", e);
         }
     }
 
@@ -127,18 +326,7 @@ public class SecurityUtils {
      * Sanitize un texte contre les injections
      */
     public String sanitizeInput(String input) {
-        if (input == null) {
-            return null;
-        }
-
-        // Enlever les caractères dangereux
-        return input.replaceAll("<", "&lt;")
-                .replaceAll(">", "&gt;")
-                .replaceAll("\"", "&quot;")
-                .replaceAll("'", "&#x27;")
-                .replaceAll("\\(", "&#40;")
-                .replaceAll("\\)", "&#41;")
-                .replaceAll("/", "&#x2F;");
+        return InputSanitizer.sanitize(input);
     }
 
     /**
@@ -166,4 +354,73 @@ public class SecurityUtils {
         SECURE_RANDOM.nextBytes(token);
         return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
     }
+
+    /**
+     * Déclare les proxys de confiance (adresses ou réseaux CIDR séparés par des virgules)
+     */
+    @Value("${app.security.trusted-proxies:}")
+    public void setTrustedProxies(List<String> proxies) {
+        this.trustedProxies = proxies.stream()
+                .map(String::trim)
+                .filter(proxy -> !proxy.isEmpty())
+                .map(IpRange::parse)
+                .toList();
+    }
+
+    /**
+     * Extrait l'adresse IP réelle du client. L'en-tête X-Forwarded-For, contrôlé par le client, n'est lu que
+     * si la connexion vient d'un proxy de confiance ; l'adresse retenue est alors le dernier saut qui n'est
+     * pas un proxy de confiance, en lisant la chaîne de droite à gauche.
+     */
+    public String getClientIpAddress(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+        List<IpRange> proxies = trustedProxies;
+        if (proxies.isEmpty() || !isTrustedProxy(proxies, remoteAddress)) {
+            return remoteAddress;
+        }
+
+        // Les proxys ajoutent chacun leur saut à droite, éventuellement dans un nouvel en-tête
+        List<String> headers = Collections.list(request.getHeaders(FORWARDED_FOR_HEADER));
+        String client = remoteAddress;
+        for (int h = headers.size() - 1; h >= 0; h--) {
+            String[] hops = headers.get(h).split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (hop.isEmpty()) {
+                    continue;
+                }
+                if (!isTrustedProxy(proxies, hop)) {
+                    return hop;
+                }
+                client = hop;
+            }
+        }
+        // Toute la chaîne est composée de proxys de confiance
+        return client;
+    }
+
+    private static boolean isTrustedProxy(List<IpRange> proxies, String address) {
+        byte[] bytes = parseAddress(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (IpRange proxy : proxies) {
+            if (proxy.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] parseAddress(String literal) {
+        if (literal == null
+                || (!IPV4_LITERAL.matcher(literal).matches() && !IPV6_LITERAL.matcher(literal).matches())) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
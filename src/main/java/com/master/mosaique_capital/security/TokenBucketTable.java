@@ -0,0 +1,72 @@
+package com.master.mosaique_capital.security;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table de seaux à jetons sans verrou, indexée par clé (IP, uid...).
+ * <p>
+ * Chaque seau est réduit à un seul {@code long} : l'instant théorique d'arrivée (algorithme GCRA).
+ * Une requête est acceptée si cet instant ne dépasse pas « maintenant » de plus que la tolérance de rafale,
+ * puis l'instant est avancé d'un intervalle d'émission par CAS. Le chemin chaud se limite donc à une lecture
+ * de la table, un appel à {@link System#nanoTime()} et un CAS.
+ */
+public final class TokenBucketTable {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param limitForPeriod nombre de requêtes autorisées par période (taille de la rafale)
+     * @param refreshPeriod période de renouvellement complet du seau
+     */
+    public TokenBucketTable(int limitForPeriod, Duration refreshPeriod) {
+        if (limitForPeriod <= 0) {
+            throw new IllegalArgumentException("limitForPeriod must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, refreshPeriod.toNanos() / limitForPeriod);
+        this.burstToleranceNanos = emissionIntervalNanos * (limitForPeriod - 1);
+    }
+
+    /**
+     * Consomme un jeton pour la clé
+     * @return 0 si la requête est acceptée, sinon le délai en nanosecondes avant le prochain jeton
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long tat = bucket.get();
+            long start = tat - now > 0 ? tat : now;
+            long waitNanos = start - now - burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(tat, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Supprime les seaux pleins inactifs depuis au moins {@code idleTimeout}
+     * @return le nombre d'entrées supprimées
+     */
+    public int evictIdle(Duration idleTimeout) {
+        long threshold = System.nanoTime() - idleTimeout.toNanos();
+        int before = buckets.size();
+        // Un seau dont l'instant théorique est dépassé est plein : le supprimer ne change pas le comportement
+        buckets.values().removeIf(bucket -> bucket.get() - threshold < 0);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
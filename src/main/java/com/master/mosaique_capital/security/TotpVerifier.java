@@ -0,0 +1,247 @@
+package com.master.mosaique_capital.security;
+
+import com.master.mosaique_capital.config.TotpConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Base32;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vérification des codes TOTP (RFC 6238) selon {@link TotpConfig} (chiffres, période, algorithme).
+ * <p>
+ * Par utilisateur, le secret Base32 est décodé une seule fois et le {@link Mac} initialisé est réutilisé ;
+ * les codes de la fenêtre de tolérance courante sont précalculés à chaque changement de pas de temps.
+ * Le dernier pas accepté est mémorisé : un code ne peut être rejoué, ni un code plus ancien accepté ensuite.
+ * La vérification et l'enregistrement du pas accepté sont atomiques (sous le verrou de l'entrée de la table).
+ * Lorsque la table est pleine, seuls les états dont le dernier pas accepté est sorti de la fenêtre de tolérance
+ * sont évincés ; s'il n'y en a pas, la vérification échoue plutôt que de désactiver la protection contre le rejeu.
+ */
+@Component
+@Slf4j
+public class TotpVerifier {
+
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    private final int digits;
+    private final long periodSeconds;
+    private final String macAlgorithm;
+    private final int allowedDrift;
+    private final int maxEntries;
+    private final long idleTimeoutMillis;
+
+    private final ConcurrentHashMap<String, UserTotp> users = new ConcurrentHashMap<>();
+
+    /**
+     * État TOTP d'un utilisateur ; lu et modifié uniquement sous le verrou de l'entrée de la table (compute)
+     */
+    private final class UserTotp {
+        final String secret;
+        final Mac mac;
+        long windowStep = Long.MIN_VALUE;
+        final String[] windowCodes = new String[2 * allowedDrift + 1];
+        long lastAcceptedStep = Long.MIN_VALUE;
+        long lastUsedMillis;
+
+        UserTotp(String secret, Mac mac) {
+            this.secret = secret;
+            this.mac = mac;
+        }
+    }
+
+    public TotpVerifier(TotpConfig totpConfig,
+                        @Value("${app.totp.allowed-drift:1}") int allowedDrift,
+                        @Value("${app.totp.cache.max-entries:100000}") int maxEntries,
+                        @Value("${app.totp.cache.idle-timeout-ms:900000}") long idleTimeoutMillis) {
+        this.digits = totpConfig.getDigits() > 0 ? totpConfig.getDigits() : 6;
+        this.periodSeconds = totpConfig.getPeriod() > 0 ? totpConfig.getPeriod() : 30;
+        this.macAlgorithm = macAlgorithm(totpConfig.getAlgorithm());
+        this.allowedDrift = Math.max(0, allowedDrift);
+        this.maxEntries = maxEntries;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+
+        if (digits < 6 || digits > 8) {
+            throw new IllegalStateException("app.totp.digits must be between 6 and 8");
+        }
+    }
+
+    /**
+     * Vérifie le code d'un utilisateur et le consomme : un même pas de temps ne peut être accepté qu'une fois
+     * @param uid identifiant de l'utilisateur, clé du cache et de la protection contre le rejeu
+     * @param code le code saisi
+     * @param secret la clé secrète TOTP en Base32
+     */
+    public boolean verify(String uid, String code, String secret) {
+        if (uid == null || code == null || secret == null || code.length() != digits) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        long currentStep = Math.floorDiv(now / 1000, periodSeconds);
+
+        if (users.size() >= maxEntries && !users.containsKey(uid)) {
+            evictOutsideWindow(currentStep);
+            if (users.size() >= maxEntries) {
+                log.warn("TOTP state table full ({} entries), rejecting code for user {}", maxEntries, uid);
+                return false;
+            }
+        }
+
+        byte[] candidate = code.getBytes(StandardCharsets.US_ASCII);
+        boolean[] accepted = new boolean[1];
+        users.compute(uid, (key, user) -> {
+            if (user == null || !user.secret.equals(secret)) {
+                UserTotp created = newUserTotp(secret);
+                if (user != null) {
+                    // Secret changé : conserver le dernier pas accepté pour ne pas rouvrir le rejeu
+                    created.lastAcceptedStep = user.lastAcceptedStep;
+                }
+                user = created;
+            }
+            user.lastUsedMillis = now;
+
+            if (user.windowStep != currentStep) {
+                computeWindow(user, currentStep);
+            }
+
+            // Comparaison à temps constant sur toute la fenêtre, du pas le plus ancien au plus récent
+            long acceptedStep = Long.MIN_VALUE;
+            for (int i = 0; i < user.windowCodes.length; i++) {
+                boolean matches = MessageDigest.isEqual(candidate, user.windowCodes[i].getBytes(StandardCharsets.US_ASCII));
+                if (matches) {
+                    acceptedStep = currentStep - allowedDrift + i;
+                }
+            }
+
+            if (acceptedStep != Long.MIN_VALUE) {
+                if (acceptedStep <= user.lastAcceptedStep) {
+                    log.warn("TOTP code replay rejected for user {}", key);
+                } else {
+                    user.lastAcceptedStep = acceptedStep;
+                    accepted[0] = true;
+                }
+            }
+            return user;
+        });
+        return accepted[0];
+    }
+
+    /**
+     * Vérifie un code sans utilisateur identifié (pas de cache ni de protection contre le rejeu)
+     */
+    public boolean verifyStateless(String code, String secret) {
+        if (code == null || secret == null || code.length() != digits) {
+            return false;
+        }
+        UserTotp user = newUserTotp(secret);
+        computeWindow(user, Math.floorDiv(System.currentTimeMillis() / 1000, periodSeconds));
+        byte[] candidate = code.getBytes(StandardCharsets.US_ASCII);
+        boolean valid = false;
+        for (String expected : user.windowCodes) {
+            valid |= MessageDigest.isEqual(candidate, expected.getBytes(StandardCharsets.US_ASCII));
+        }
+        return valid;
+    }
+
+    /**
+     * Oublie l'état d'un utilisateur (désactivation de la 2FA ou changement de secret)
+     */
+    public void evict(String uid) {
+        users.remove(uid);
+    }
+
+    /**
+     * Supprime les utilisateurs inactifs ; leur dernier pas accepté est alors hors de toute fenêtre de tolérance
+     */
+    @Scheduled(fixedDelayString = "${app.totp.cache.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - Math.max(idleTimeoutMillis, (2L * allowedDrift + 2) * periodSeconds * 1000);
+        // Condition réévaluée sous le verrou de l'entrée : un code accepté entre-temps n'est pas oublié
+        users.forEach((uid, user) -> users.computeIfPresent(uid, (key, current) ->
+                current.lastUsedMillis < threshold ? null : current));
+    }
+
+    /**
+     * Supprime les états dont le dernier pas accepté précède la fenêtre de tolérance courante : aucun code encore
+     * acceptable ne peut les rejouer
+     */
+    private void evictOutsideWindow(long currentStep) {
+        long oldestAcceptableStep = currentStep - allowedDrift;
+        users.forEach((uid, user) -> users.computeIfPresent(uid, (key, current) ->
+                current.lastAcceptedStep < oldestAcceptableStep ? null : current));
+    }
+
+    /**
+     * Code attendu pour un secret à un instant donné, sans état ; sert à vérifier l'implémentation
+     * contre les vecteurs de test des RFC 4226 et 6238
+     */
+    String codeAt(String secret, long epochSeconds) {
+        return generate(newUserTotp(secret).mac, Math.floorDiv(epochSeconds, periodSeconds));
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    private UserTotp newUserTotp(String secret) {
+        byte[] key = new Base32().decode(secret);
+        try {
+            Mac mac = Mac.getInstance(macAlgorithm);
+            mac.init(new SecretKeySpec(key, macAlgorithm));
+            return new UserTotp(secret, mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + macAlgorithm, e);
+        }
+    }
+
+    private void computeWindow(UserTotp user, long currentStep) {
+        for (int i = 0; i < user.windowCodes.length; i++) {
+            user.windowCodes[i] = generate(user.mac, currentStep - allowedDrift + i);
+        }
+        user.windowStep = currentStep;
+    }
+
+    /**
+     * Code HOTP (RFC 4226) pour un pas de temps ; le Mac est réutilisé (doFinal le réinitialise)
+     */
+    private String generate(Mac mac, long step) {
+        byte[] counter = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            counter[i] = (byte) step;
+            step >>>= 8;
+        }
+        byte[] hash = mac.doFinal(counter);
+
+        int offset = hash[hash.length - 1] & 0x0F;
+        int binary = ((hash[offset] & 0x7F) << 24)
+                | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8)
+                | (hash[offset + 3] & 0xFF);
+
+        String code = Integer.toString(binary % POWERS_OF_TEN[digits]);
+        return code.length() == digits ? code : "0".repeat(digits - code.length()) + code;
+    }
+
+    private static String macAlgorithm(String algorithm) {
+        if (algorithm == null || algorithm.isBlank()) {
+            return "HmacSHA1";
+        }
+        return switch (algorithm.toUpperCase().replace("-", "")) {
+            case "SHA1", "HMACSHA1" -> "HmacSHA1";
+            case "SHA256", "HMACSHA256" -> "HmacSHA256";
+            case "SHA512", "HMACSHA512" -> "HmacSHA512";
+            default -> throw new IllegalStateException("Unsupported TOTP algorithm: " + algorithm);
+        };
+    }
+}
@@ -0,0 +1,557 @@
+package com.master.mosaique_capital.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.AlertRule;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.repository.AlertRuleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Règles d'alerte et leur évaluation incrémentale.
+ * <p>
+ * Les règles d'un utilisateur sont compilées en un index en mémoire : règles de patrimoine net, règles par
+ * actif et règles par catégorie. L'index porte aussi l'état agrégé du patrimoine (valeur de chaque actif en
+ * devise pivot, totaux par catégorie, actifs et passifs), construit au premier chargement puis tenu à jour
+ * par différence à chaque {@link AssetChangedEvent}. Une écriture d'actif n'évalue ainsi que les règles de
+ * patrimoine net, celles de l'actif modifié et celles des catégories dont la part a pu augmenter, sans relire
+ * le portefeuille. Un utilisateur sans règle n'a qu'un index vide.
+ * <p>
+ * Les événements et recompilations d'un utilisateur sont traités un par un, dans l'ordre de publication :
+ * chacun est chaîné sur le précédent. L'index retient la version de chaque actif qu'il reflète : un événement
+ * déjà compris dans l'état chargé n'évalue que sa propre transition, sans modifier cet état. La suppression d'un
+ * actif supprime aussi ses règles de baisse. Lorsque le nombre d'index atteint {@code app.alerts.index.max-users},
+ * un seul index est retiré ; il sera rechargé au prochain besoin.
+ * <p>
+ * Une règle se déclenche au franchissement de son seuil, puis est réarmée lorsque la condition cesse d'être
+ * vraie ; l'état déclenché est conservé hors de l'index, à travers les recompilations et les évictions.
+ * Les alertes sont publiées en JSON sur l'échange {@code app.alerts.exchange}, clé de routage
+ * {@code alert.<type>}.
+ */
+@Service
+@Slf4j
+public class AlertService {
+
+    private static final int CATEGORIES = Asset.AssetCategory.values().length;
+
+    private final AlertRuleRepository alertRuleRepository;
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final AsyncExecutors asyncExecutors;
+    private final Counter firedCounter;
+    private final Counter publishFailedCounter;
+
+    @Value("${app.alerts.exchange:alerts}")
+    private String exchange;
+
+    @Value("${app.alerts.publish-enabled:false}")
+    private boolean publishEnabled;
+
+    @Value("${app.alerts.index.max-users:100000}")
+    private int maxUsers;
+
+    @Value("${app.alerts.max-rules-per-user:50}")
+    private int maxRulesPerUser;
+
+    private final ConcurrentHashMap<String, CompletableFuture<UserIndex>> indexes = new ConcurrentHashMap<>();
+
+    // Dernier traitement en file par utilisateur, retiré une fois terminé s'il n'a pas de successeur
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> queues = new ConcurrentHashMap<>();
+
+    // Règles de baisse actuellement déclenchées par utilisateur, en attente de réarmement ;
+    // modifiées uniquement depuis la file de l'utilisateur
+    private final ConcurrentHashMap<String, Set<String>> triggeredRules = new ConcurrentHashMap<>();
+
+    /**
+     * Contribution d'un actif à l'état agrégé, en devise pivot
+     */
+    private record Holding(Asset.AssetCategory category, double value) {
+        static final Holding NONE = new Holding(Asset.AssetCategory.OTHER, 0);
+    }
+
+    /**
+     * Règles compilées et état agrégé d'un utilisateur ; accès uniquement depuis la file de l'utilisateur
+     */
+    private static final class UserIndex {
+        final List<AlertRule> netWorthRules = new ArrayList<>();
+        final Map<String, List<AlertRule>> assetRules = new HashMap<>();
+        final Map<Asset.AssetCategory, List<AlertRule>> categoryRules = new EnumMap<>(Asset.AssetCategory.class);
+
+        final Map<String, Holding> holdings = new HashMap<>();
+        // Version de chaque actif reflétée par l'état agrégé
+        final Map<String, Long> versions = new HashMap<>();
+        final double[] categoryTotals = new double[CATEGORIES];
+        double totalAssets;
+        double totalLiabilities;
+
+        boolean hasRules() {
+            return !netWorthRules.isEmpty() || !assetRules.isEmpty() || !categoryRules.isEmpty();
+        }
+
+        // Les règles de patrimoine net et de catégorie ont besoin de l'état agrégé
+        boolean tracksHoldings() {
+            return !netWorthRules.isEmpty() || !categoryRules.isEmpty();
+        }
+
+        double netWorth() {
+            return totalAssets - totalLiabilities;
+        }
+
+        void apply(String assetId, Holding holding, int sign) {
+            if (holding.category() == Asset.AssetCategory.LIABILITY) {
+                totalLiabilities += sign * holding.value();
+            } else {
+                totalAssets += sign * holding.value();
+            }
+            categoryTotals[holding.category().ordinal()] += sign * holding.value();
+            if (sign > 0) {
+                holdings.put(assetId, holding);
+            } else {
+                holdings.remove(assetId);
+            }
+        }
+
+        void replace(String assetId, Holding from, Holding to) {
+            apply(assetId, from, -1);
+            if (to != Holding.NONE) {
+                apply(assetId, to, 1);
+            }
+        }
+
+        /**
+         * Un actif absent de l'état n'y a jamais figuré ou en a été supprimé : seule sa suppression y est comprise
+         */
+        boolean includes(AssetChangedEvent event) {
+            Long version = versions.get(event.assetId());
+            if (event.changeType() == AssetChangedEvent.ChangeType.DELETED) {
+                return version == null || version > event.asset().getVersion();
+            }
+            return version != null && version >= event.asset().getVersion();
+        }
+    }
+
+    public AlertService(AlertRuleRepository alertRuleRepository,
+                        AssetService assetService,
+                        FxRateService fxRateService,
+                        RabbitTemplate rabbitTemplate,
+                        ObjectMapper objectMapper,
+                        AsyncExecutors asyncExecutors,
+                        MeterRegistry meterRegistry) {
+        this.alertRuleRepository = alertRuleRepository;
+        this.assetService = assetService;
+        this.fxRateService = fxRateService;
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.asyncExecutors = asyncExecutors;
+        this.firedCounter = meterRegistry.counter("alerts.fired");
+        this.publishFailedCounter = meterRegistry.counter("alerts.publish.failures");
+        meterRegistry.gaugeMapSize("alerts.index.users", List.of(), indexes);
+    }
+
+    public CompletableFuture<List<AlertRule>> getRules(String userId) {
+        return alertRuleRepository.findByUserId(userId);
+    }
+
+    /**
+     * Crée une règle puis recompile l'index de l'utilisateur
+     * @throws IllegalArgumentException si la règle est incomplète pour son type
+     * @throws IllegalStateException si l'utilisateur a atteint le nombre maximal de règles
+     */
+    public CompletableFuture<AlertRule> createRule(String userId, AlertRule rule) {
+        validate(rule);
+        rule.setUserId(userId);
+        return alertRuleRepository.findByUserId(userId)
+                .thenCompose(existing -> {
+                    if (existing.size() >= maxRulesPerUser) {
+                        throw new IllegalStateException("At most " + maxRulesPerUser + " alert rules per user");
+                    }
+                    return alertRuleRepository.save(rule);
+                })
+                .thenCompose(saved -> reload(userId).thenApply(v -> saved));
+    }
+
+    /**
+     * Supprime une règle puis recompile l'index de l'utilisateur
+     */
+    public CompletableFuture<Void> deleteRule(String userId, String ruleId) {
+        return alertRuleRepository.findByUserId(userId)
+                .thenCompose(rules -> {
+                    if (rules.stream().noneMatch(rule -> rule.getId().equals(ruleId))) {
+                        throw new NoSuchElementException("Alert rule not found with id: " + ruleId);
+                    }
+                    return alertRuleRepository.deleteById(userId, ruleId);
+                })
+                .thenCompose(v -> reload(userId));
+    }
+
+    /**
+     * Evalue les règles touchées par une modification d'actif
+     */
+    @EventListener
+    public void onAssetChanged(AssetChangedEvent event) {
+        if (event.userId() == null) {
+            return;
+        }
+        submit(event);
+    }
+
+    /**
+     * Met l'évaluation d'un événement en file derrière les traitements déjà publiés pour l'utilisateur
+     */
+    CompletableFuture<Void> submit(AssetChangedEvent event) {
+        return enqueue(event.userId(), () -> index(event.userId())
+                .thenComposeAsync(index -> {
+                    evaluate(index, event);
+                    return event.changeType() == AssetChangedEvent.ChangeType.DELETED
+                            ? deleteAssetRules(index, event)
+                            : CompletableFuture.completedFuture(null);
+                }, asyncExecutors.aggregation()));
+    }
+
+    /**
+     * Chaîne un traitement sur le précédent de l'utilisateur ; un échec est journalisé sans bloquer la file
+     */
+    private CompletableFuture<Void> enqueue(String userId, Supplier<CompletableFuture<Void>> step) {
+        CompletableFuture<Void> queued = queues.compute(userId, (id, tail) -> {
+            CompletableFuture<Void> previous = tail != null ? tail : CompletableFuture.completedFuture(null);
+            return previous.thenComposeAsync(v -> step.get(), asyncExecutors.aggregation())
+                    .exceptionally(e -> {
+                        log.error("Error processing alert rules for user {}: {}", userId, e.getMessage());
+                        return null;
+                    });
+        });
+        queued.whenComplete((v, e) -> queues.remove(userId, queued));
+        return queued;
+    }
+
+    private void evaluate(UserIndex index, AssetChangedEvent event) {
+        if (!index.hasRules()) {
+            return;
+        }
+        String assetId = event.assetId();
+        Asset asset = event.asset();
+
+        if (index.tracksHoldings()) {
+            Holding next = event.changeType() == AssetChangedEvent.ChangeType.DELETED
+                    ? Holding.NONE
+                    : holding(asset, asset.getCurrentValue());
+            Holding current = index.holdings.getOrDefault(assetId, Holding.NONE);
+            // Ecriture déjà comprise dans l'état chargé : sa transition est évaluée depuis l'événement, puis
+            // l'état chargé est rétabli ; sinon l'état indexé fait foi
+            boolean included = index.includes(event);
+            Holding previous = included ? holding(asset, event.previousValue()) : current;
+            index.replace(assetId, current, previous);
+
+            double previousNetWorth = index.netWorth();
+            double previousTotalAssets = index.totalAssets;
+            double[] previousCategoryTotals = index.categoryTotals.clone();
+
+            index.replace(assetId, previous, next);
+
+            evaluateNetWorth(index, event, previousNetWorth);
+            evaluateCategories(index, event, next, previousTotalAssets, previousCategoryTotals);
+
+            if (included) {
+                index.replace(assetId, next, current);
+            } else if (event.changeType() == AssetChangedEvent.ChangeType.DELETED) {
+                index.versions.remove(assetId);
+            } else {
+                index.versions.put(assetId, asset.getVersion());
+            }
+        }
+
+        if (event.changeType() != AssetChangedEvent.ChangeType.DELETED) {
+            for (AlertRule rule : index.assetRules.getOrDefault(assetId, List.of())) {
+                evaluateDrop(rule, asset, event);
+            }
+        }
+    }
+
+    private void evaluateNetWorth(UserIndex index, AssetChangedEvent event, double previousNetWorth) {
+        double netWorth = index.netWorth();
+        for (AlertRule rule : index.netWorthRules) {
+            double threshold = rule.getThreshold().doubleValue();
+            boolean crossed = rule.getType() == AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE
+                    ? previousNetWorth < threshold && netWorth >= threshold
+                    : previousNetWorth > threshold && netWorth <= threshold;
+            if (crossed) {
+                fire(rule, event, previousNetWorth, netWorth);
+            }
+        }
+    }
+
+    /**
+     * La part d'une catégorie ne peut augmenter que si sa valeur augmente ou si le total des actifs baisse
+     */
+    private void evaluateCategories(UserIndex index, AssetChangedEvent event, Holding next,
+                                    double previousTotalAssets, double[] previousCategoryTotals) {
+        if (index.categoryRules.isEmpty()) {
+            return;
+        }
+        List<AlertRule> candidates;
+        if (index.totalAssets < previousTotalAssets) {
+            candidates = new ArrayList<>();
+            index.categoryRules.values().forEach(candidates::addAll);
+        } else {
+            candidates = index.categoryRules.getOrDefault(next.category(), List.of());
+        }
+
+        for (AlertRule rule : candidates) {
+            int category = rule.getCategory().ordinal();
+            double previousShare = share(previousCategoryTotals[category], previousTotalAssets);
+            double newShare = share(index.categoryTotals[category], index.totalAssets);
+            double threshold = rule.getThreshold().doubleValue();
+            if (previousShare <= threshold && newShare > threshold) {
+                fire(rule, event, previousShare, newShare);
+            }
+        }
+    }
+
+    /**
+     * Baisse de la valeur courante par rapport au plus haut de la fenêtre précédant la date de valeur de
+     * l'événement, dans la devise de l'actif
+     */
+    private void evaluateDrop(AlertRule rule, Asset asset, AssetChangedEvent event) {
+        if (asset.getCurrentValue() == null) {
+            return;
+        }
+        LocalDateTime windowEnd = event.effectiveDate() != null ? event.effectiveDate() : LocalDateTime.now();
+        LocalDateTime windowStart = windowEnd.minusDays(rule.getWindowDays());
+        double high = asset.getCurrentValue().doubleValue();
+        if (asset.getValuationHistory() != null) {
+            for (AssetValuation valuation : asset.getValuationHistory()) {
+                if (valuation.getValue() != null && valuation.getValuationDate() != null
+                        && !valuation.getValuationDate().isBefore(windowStart)
+                        && !valuation.getValuationDate().isAfter(windowEnd)) {
+                    high = Math.max(high, valuation.getValue().doubleValue());
+                }
+            }
+        }
+        double drop = high > 0 ? (high - asset.getCurrentValue().doubleValue()) / high * 100 : 0;
+
+        if (drop >= rule.getThreshold().doubleValue()) {
+            boolean[] triggered = {false};
+            triggeredRules.compute(event.userId(), (id, ruleIds) -> {
+                Set<String> current = ruleIds != null ? ruleIds : new HashSet<>();
+                triggered[0] = current.add(rule.getId());
+                return current;
+            });
+            if (triggered[0]) {
+                fire(rule, event, high, asset.getCurrentValue().doubleValue());
+            }
+        } else {
+            triggeredRules.computeIfPresent(event.userId(), (id, ruleIds) -> {
+                ruleIds.remove(rule.getId());
+                return ruleIds.isEmpty() ? null : ruleIds;
+            });
+        }
+    }
+
+    /**
+     * Supprime les règles de baisse d'un actif supprimé, actives ou non, et oublie leur état déclenché
+     */
+    private CompletableFuture<Void> deleteAssetRules(UserIndex index, AssetChangedEvent event) {
+        index.assetRules.remove(event.assetId());
+        return alertRuleRepository.findByUserId(event.userId())
+                .thenCompose(rules -> {
+                    List<AlertRule> orphaned = rules.stream()
+                            .filter(rule -> rule.getType() == AlertRule.RuleType.ASSET_DROP
+                                    && event.assetId().equals(rule.getAssetId()))
+                            .toList();
+                    if (orphaned.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    triggeredRules.computeIfPresent(event.userId(), (id, ruleIds) -> {
+                        orphaned.forEach(rule -> ruleIds.remove(rule.getId()));
+                        return ruleIds.isEmpty() ? null : ruleIds;
+                    });
+                    log.info("Deleting {} alert rules of deleted asset {} for user {}",
+                            orphaned.size(), event.assetId(), event.userId());
+                    return CompletableFuture.allOf(orphaned.stream()
+                            .map(rule -> alertRuleRepository.deleteById(event.userId(), rule.getId()))
+                            .toArray(CompletableFuture[]::new));
+                });
+    }
+
+    private void fire(AlertRule rule, AssetChangedEvent event, double previousValue, double observedValue) {
+        firedCounter.increment();
+
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("alertId", UUID.randomUUID().toString());
+        alert.put("ruleId", rule.getId());
+        alert.put("ruleName", rule.getName());
+        alert.put("userId", rule.getUserId());
+        alert.put("type", rule.getType().name());
+        alert.put("threshold", rule.getThreshold());
+        alert.put("previousValue", round(previousValue));
+        alert.put("observedValue", round(observedValue));
+        alert.put("assetId", event.assetId());
+        alert.put("category", rule.getCategory() != null ? rule.getCategory().name() : null);
+        alert.put("currency", rule.getType() == AlertRule.RuleType.ASSET_DROP && event.asset() != null
+                ? event.asset().getCurrency()
+                : fxRateService.getBaseCurrency());
+        alert.put("triggeredAt", LocalDateTime.now().toString());
+        log.info("Alert rule {} ({}) fired for user {}", rule.getId(), rule.getType(), rule.getUserId());
+
+        if (!publishEnabled) {
+            return;
+        }
+        // Envoi AMQP bloquant : sur un thread virtuel, jamais sur le thread d'évaluation
+        CompletableFuture.runAsync(() -> {
+            try {
+                rabbitTemplate.convertAndSend(exchange, "alert." + rule.getType().name().toLowerCase(),
+                        objectMapper.writeValueAsString(alert));
+            } catch (Exception e) {
+                publishFailedCounter.increment();
+                log.error("Error publishing alert for rule {}: {}", rule.getId(), e.getMessage());
+            }
+        }, asyncExecutors.firebaseBlocking());
+    }
+
+    /**
+     * Index de l'utilisateur, chargé au premier besoin
+     */
+    private CompletableFuture<UserIndex> index(String userId) {
+        CompletableFuture<UserIndex> existing = indexes.get(userId);
+        if (existing != null) {
+            return existing;
+        }
+        if (indexes.size() >= maxUsers) {
+            evictOne(userId);
+        }
+        CompletableFuture<UserIndex> loading = indexes.computeIfAbsent(userId, this::load);
+        loading.whenComplete((index, e) -> {
+            if (e != null) {
+                indexes.remove(userId, loading);
+            }
+        });
+        return loading;
+    }
+
+    private void evictOne(String userId) {
+        for (String candidate : indexes.keySet()) {
+            if (!candidate.equals(userId) && indexes.remove(candidate) != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recompile l'index dans la file de l'utilisateur, après les événements déjà publiés ; l'état déclenché
+     * des règles supprimées est oublié
+     */
+    private CompletableFuture<Void> reload(String userId) {
+        return enqueue(userId, () -> {
+            indexes.remove(userId);
+            return index(userId).thenAccept(index -> triggeredRules.computeIfPresent(userId, (id, ruleIds) -> {
+                ruleIds.removeIf(ruleId -> index.assetRules.values().stream()
+                        .flatMap(List::stream)
+                        .noneMatch(rule -> ruleId.equals(rule.getId())));
+                return ruleIds.isEmpty() ? null : ruleIds;
+            }));
+        });
+    }
+
+    private CompletableFuture<UserIndex> load(String userId) {
+        return alertRuleRepository.findByUserId(userId)
+                .thenCompose(rules -> {
+                    UserIndex index = compile(rules);
+                    if (!index.tracksHoldings()) {
+                        return CompletableFuture.completedFuture(index);
+                    }
+                    return assetService.getAssetsByUserId(userId)
+                            .thenApplyAsync(assets -> {
+                                for (Asset asset : assets) {
+                                    index.apply(asset.getId(), holding(asset, asset.getCurrentValue()), 1);
+                                    index.versions.put(asset.getId(), asset.getVersion());
+                                }
+                                return index;
+                            }, asyncExecutors.aggregation());
+                });
+    }
+
+    private static UserIndex compile(List<AlertRule> rules) {
+        UserIndex index = new UserIndex();
+        for (AlertRule rule : rules) {
+            if (!rule.isEnabled() || rule.getType() == null || rule.getThreshold() == null) {
+                continue;
+            }
+            switch (rule.getType()) {
+                case NET_WORTH_CROSSES_ABOVE, NET_WORTH_CROSSES_BELOW -> index.netWorthRules.add(rule);
+                case ASSET_DROP -> index.assetRules.computeIfAbsent(rule.getAssetId(), id -> new ArrayList<>()).add(rule);
+                case CATEGORY_SHARE_ABOVE -> index.categoryRules.computeIfAbsent(rule.getCategory(), c -> new ArrayList<>()).add(rule);
+            }
+        }
+        return index;
+    }
+
+    private Holding holding(Asset asset, BigDecimal value) {
+        if (asset == null || value == null) {
+            return Holding.NONE;
+        }
+        Asset.AssetCategory category = asset.getCategory() != null ? asset.getCategory() : Asset.AssetCategory.OTHER;
+        double converted = fxRateService.convert(value, asset.getCurrency(), fxRateService.getBaseCurrency(), LocalDate.now())
+                .doubleValue();
+        return new Holding(category, converted);
+    }
+
+    private static void validate(AlertRule rule) {
+        switch (rule.getType()) {
+            case ASSET_DROP -> {
+                if (rule.getAssetId() == null || rule.getWindowDays() == null) {
+                    throw new IllegalArgumentException("ASSET_DROP rules require an assetId and windowDays");
+                }
+                checkPercentage(rule);
+            }
+            case CATEGORY_SHARE_ABOVE -> {
+                if (rule.getCategory() == null) {
+                    throw new IllegalArgumentException("CATEGORY_SHARE_ABOVE rules require a category");
+                }
+                checkPercentage(rule);
+            }
+            case NET_WORTH_CROSSES_ABOVE, NET_WORTH_CROSSES_BELOW -> {
+            }
+        }
+    }
+
+    private static void checkPercentage(AlertRule rule) {
+        if (rule.getThreshold().signum() < 0 || rule.getThreshold().compareTo(BigDecimal.valueOf(100)) > 0) {
+            throw new IllegalArgumentException("Percentage thresholds must be between 0 and 100");
+        }
+    }
+
+    private static double share(double amount, double total) {
+        return total > 0 ? amount / total * 100 : 0;
+    }
+
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -1,10 +1,14 @@
 package com.master.mosaique_capital.service;
 
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
 import com.master.mosaique_capital.model.Asset;
 import com.master.mosaique_capital.model.AssetValuation;
 import com.master.mosaique_capital.repository.AssetRepository;
+import com.master.mosaique_capital.util.MoneyAccumulator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -19,6 +23,8 @@ import java.util.stream.Collectors;
 public class AssetService {
 
     private final AssetRepository assetRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AsyncExecutors asyncExecutors;
 
     public CompletableFuture<Asset> createAsset(Asset asset) {
         // Validation et initialisation
@@ -54,7 +60,7 @@ public class AssetService {
         }
 
         return assetRepository.save(asset)
-                .thenApply(savedAsset -> {
+                .thenApplyAsync(savedAsset -> {
                     // Mettre à jour l'ID de l'actif dans l'historique de valorisation
                     if (savedAsset.getValuationHistory() != null) {
                         savedAsset.getValuationHistory().forEach(v -> {
@@ -63,8 +69,9 @@ public class AssetService {
                             }
                         });
                     }
+                    publishChange(savedAsset, AssetChangedEvent.ChangeType.CREATED, null, savedAsset.getLastUpdateDate());
                     return savedAsset;
-                });
+                }, asyncExecutors.aggregation());
     }
 
     public CompletableFuture<Optional<Asset>> getAssetById(String id) {
@@ -77,12 +84,13 @@ public class AssetService {
 
     public CompletableFuture<Asset> updateAsset(Asset asset) {
         return assetRepository.findById(asset.getId())
-                .thenCompose(optionalAsset -> {
+                .thenComposeAsync(optionalAsset -> {
                     if (optionalAsset.isPresent()) {
                         Asset existingAsset = optionalAsset.get();
 
-                        // Conserver l'historique de valorisation existant
+                        // Conserver l'historique de valorisation existant et la version stockée
                         asset.setValuationHistory(existingAsset.getValuationHistory());
+                        asset.setVersion(existingAsset.getVersion());
 
                         // Si la valeur courante a changé, ajouter une nouvelle valorisation
                         if (asset.getCurrentValue() != null &&
@@ -102,20 +110,28 @@ public class AssetService {
                         }
 
                         asset.setLastUpdateDate(LocalDateTime.now());
-                        return assetRepository.save(asset);
+                        BigDecimal previousValue = existingAsset.getCurrentValue();
+                        return assetRepository.save(asset)
+                                .thenApplyAsync(savedAsset -> {
+                                    publishChange(savedAsset, AssetChangedEvent.ChangeType.UPDATED, previousValue,
+                                            savedAsset.getLastUpdateDate());
+                                    return savedAsset;
+                                }, asyncExecutors.aggregation());
                     } else {
                         throw new NoSuchElementException("Asset not found with id: " + asset.getId());
                     }
-                });
+                }, asyncExecutors.aggregation());
     }
 
-    public CompletableFuture<Void> deleteAsset(String id) {
-        return assetRepository.deleteById(id);
+    public CompletableFuture<Void> deleteAsset(Asset asset) {
+        return assetRepository.deleteById(asset.getId(), asset.getUserId())
+                .thenRunAsync(() -> publishChange(asset, AssetChangedEvent.ChangeType.DELETED, asset.getCurrentValue(),
+                        LocalDateTime.now()), asyncExecutors.aggregation());
     }
 
     public CompletableFuture<Asset> addValuation(String assetId, AssetValuation valuation) {
         return assetRepository.findById(assetId)
-                .thenCompose(optionalAsset -> {
+                .thenComposeAsync(optionalAsset -> {
                     if (optionalAsset.isPresent()) {
                         Asset asset = optionalAsset.get();
 
@@ -130,46 +146,50 @@ public class AssetService {
                         asset.getValuationHistory().add(valuation);
 
                         // Mettre à jour la valeur courante
+                        BigDecimal previousValue = asset.getCurrentValue();
                         asset.setCurrentValue(valuation.getValue());
                         asset.setLastUpdateDate(valuation.getValuationDate());
 
-                        return assetRepository.save(asset);
+                        return assetRepository.save(asset)
+                                .thenApplyAsync(savedAsset -> {
+                                    publishChange(savedAsset, AssetChangedEvent.ChangeType.VALUATION_ADDED, previousValue,
+                                            valuation.getValuationDate());
+                                    return savedAsset;
+                                }, asyncExecutors.aggregation());
                     } else {
                         throw new NoSuchElementException("Asset not found with id: " + assetId);
                     }
-                });
+                }, asyncExecutors.aggregation());
     }
 
     public CompletableFuture<Map<Asset.AssetCategory, List<Asset>>> getAssetsByCategories(String userId) {
         return assetRepository.findByUserId(userId)
-                .thenApply(assets -> assets.stream()
-                        .collect(Collectors.groupingBy(Asset::getCategory)));
+                .thenApplyAsync(assets -> assets.stream()
+                        .collect(Collectors.groupingBy(Asset::getCategory)), asyncExecutors.aggregation());
     }
 
     public CompletableFuture<Map<Asset.AssetType, List<Asset>>> getAssetsByTypes(String userId) {
         return assetRepository.findByUserId(userId)
-                .thenApply(assets -> assets.stream()
-                        .collect(Collectors.groupingBy(Asset::getType)));
+                .thenApplyAsync(assets -> assets.stream()
+                        .collect(Collectors.groupingBy(Asset::getType)), asyncExecutors.aggregation());
     }
 
     public CompletableFuture<Map<String, Object>> getAssetsSummary(String userId) {
         return assetRepository.findByUserId(userId)
-                .thenApply(assets -> {
+                .thenApplyAsync(assets -> {
                     Map<String, Object> summary = new HashMap<>();
 
                     // Valeur totale des actifs
                     BigDecimal totalAssetsValue = assets.stream()
                             .filter(a -> a.getCategory() != Asset.AssetCategory.LIABILITY)
                             .map(Asset::getCurrentValue)
-                            .filter(Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                            .collect(MoneyAccumulator.summing());
 
                     // Valeur totale des passifs
                     BigDecimal totalLiabilitiesValue = assets.stream()
                             .filter(a -> a.getCategory() == Asset.AssetCategory.LIABILITY)
                             .map(Asset::getCurrentValue)
-                            .filter(Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                            .collect(MoneyAccumulator.summing());
 
                     // Valeur nette
                     BigDecimal netWorth = totalAssetsValue.subtract(totalLiabilitiesValue);
@@ -179,11 +199,7 @@ public class AssetService {
                             .filter(a -> a.getCurrentValue() != null)
                             .collect(Collectors.groupingBy(
                                     Asset::getCategory,
-                                    Collectors.reducing(
-                                            BigDecimal.ZERO,
-                                            Asset::getCurrentValue,
-                                            BigDecimal::add
-                                    )
+                                    Collectors.mapping(Asset::getCurrentValue, MoneyAccumulator.summing())
                             ));
 
                     // Répartition par type
@@ -191,11 +207,7 @@ public class AssetService {
                             .filter(a -> a.getCurrentValue() != null)
                             .collect(Collectors.groupingBy(
                                     Asset::getType,
-                                    Collectors.reducing(
-                                            BigDecimal.ZERO,
-                                            Asset::getCurrentValue,
-                                            BigDecimal::add
-                                    )
+                                    Collectors.mapping(Asset::getCurrentValue, MoneyAccumulator.summing())
                             ));
 
                     // Nombre d'actifs par catégorie
@@ -214,6 +226,15 @@ public class AssetService {
                     summary.put("totalAssetsCount", assets.size());
 
                     return summary;
-                });
+                }, asyncExecutors.aggregation());
+    }
+
+    /**
+     * Publie un événement de modification d'actif une fois l'écriture confirmée
+     */
+    private void publishChange(Asset asset, AssetChangedEvent.ChangeType changeType, BigDecimal previousValue,
+                               LocalDateTime effectiveDate) {
+        eventPublisher.publishEvent(new AssetChangedEvent(
+                asset.getUserId(), asset.getId(), asset, changeType, previousValue, effectiveDate));
     }
 }
\ No newline at end of file
@@ -4,19 +4,27 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
 import com.google.firebase.auth.UserRecord;
+import com.master.mosaique_capital.config.AsyncExecutors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Opérations d'authentification Firebase.
+ * Les appels au SDK Firebase Admin étant bloquants, ils sont exécutés sur l'exécuteur dédié
+ * {@link AsyncExecutors#firebaseBlocking()} ; les erreurs Firebase sont propagées dans le futur.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AuthService {
 
     private final FirebaseAuth firebaseAuth;
+    private final AsyncExecutors asyncExecutors;
 
-    public UserRecord registerUser(String email, String password, String displayName) throws FirebaseAuthException {
+    public CompletableFuture<UserRecord> registerUser(String email, String password, String displayName) {
         UserRecord.CreateRequest request = new UserRecord.CreateRequest()
                 .setEmail(email)
                 .setPassword(password)
@@ -24,53 +32,67 @@ public class AuthService {
                 .setEmailVerified(false)
                 .setDisabled(false);
 
-        return firebaseAuth.createUser(request);
+        return asyncExecutors.supplyBlocking(() -> firebaseAuth.createUser(request));
     }
 
-    public String verifyToken(String idToken) throws FirebaseAuthException {
-        FirebaseToken decodedToken = firebaseAuth.verifyIdToken(idToken);
-        return decodedToken.getUid();
+    public CompletableFuture<String> verifyToken(String idToken) {
+        return asyncExecutors.supplyBlocking(() -> {
+            FirebaseToken decodedToken = firebaseAuth.verifyIdToken(idToken);
+            return decodedToken.getUid();
+        });
     }
 
-    public UserRecord getUserByEmail(String email) throws FirebaseAuthException {
-        return firebaseAuth.getUserByEmail(email);
+    public CompletableFuture<UserRecord> getUserByEmail(String email) {
+        return asyncExecutors.supplyBlocking(() -> firebaseAuth.getUserByEmail(email));
     }
 
-    public UserRecord getUserByUid(String uid) throws FirebaseAuthException {
-        return firebaseAuth.getUser(uid);
+    public CompletableFuture<UserRecord> getUserByUid(String uid) {
+        return asyncExecutors.supplyBlocking(() -> firebaseAuth.getUser(uid));
     }
 
-    public void setEmailVerified(String uid, boolean emailVerified) throws FirebaseAuthException {
+    public CompletableFuture<Void> setEmailVerified(String uid, boolean emailVerified) {
         UserRecord.UpdateRequest request = new UserRecord.UpdateRequest(uid)
                 .setEmailVerified(emailVerified);
-        firebaseAuth.updateUser(request);
+        return asyncExecutors.supplyBlocking(() -> {
+            firebaseAuth.updateUser(request);
+            return null;
+        });
     }
 
-    public void resetPassword(String email) throws FirebaseAuthException {
+    public CompletableFuture<Void> resetPassword(String email) {
         // Cette fonctionnalité nécessite généralement une intégration avec Firebase Admin SDK,
         // mais dans un environnement réel, cela se fait souvent via Firebase Client SDK côté frontend
         // Nous simulons ici la logique backend
 
-        try {
-            UserRecord userRecord = firebaseAuth.getUserByEmail(email);
+        return asyncExecutors.supplyBlocking(() -> {
+            try {
+                UserRecord userRecord = firebaseAuth.getUserByEmail(email);
 
-            // Dans une vraie implémentation, vous devriez envoyer un email avec un lien de réinitialisation
-            // via l'API Firebase ou votre propre système d'emails
-            log.info("Envoi d'un email de réinitialisation pour l'utilisateur: {}", userRecord.getUid());
+                // Dans une vraie implémentation, vous devriez envoyer un email avec un lien de réinitialisation
+                // via l'API Firebase ou votre propre système d'emails
+                log.info("Envoi d'un email de réinitialisation pour l'utilisateur: {}", userRecord.getUid());
+                return null;
 
-        } catch (FirebaseAuthException e) {
-            log.error("Erreur lors de la réinitialisation du mot de passe: {}", e.getMessage());
-            throw e;
-        }
+            } catch (FirebaseAuthException e) {
+                log.error("Erreur lors de la réinitialisation du mot de passe: {}", e.getMessage());
+                throw e;
+            }
+        });
     }
 
-    public void updatePassword(String uid, String newPassword) throws FirebaseAuthException {
+    public CompletableFuture<Void> updatePassword(String uid, String newPassword) {
         UserRecord.UpdateRequest request = new UserRecord.UpdateRequest(uid)
                 .setPassword(newPassword);
-        firebaseAuth.updateUser(request);
+        return asyncExecutors.supplyBlocking(() -> {
+            firebaseAuth.updateUser(request);
+            return null;
+        });
     }
 
-    public void revokeAllTokens(String uid) throws FirebaseAuthException {
-        firebaseAuth.revokeRefreshTokens(uid);
+    public CompletableFuture<Void> revokeAllTokens(String uid) {
+        return asyncExecutors.supplyBlocking(() -> {
+            firebaseAuth.revokeRefreshTokens(uid);
+            return null;
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.model.BankConnection;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Fournisseur d'agrégation bancaire (Budget Insight...) utilisé par {@link BankSyncService}
+ */
+public interface BankDataProvider {
+
+    /**
+     * Nom du fournisseur, enregistré sur les connexions
+     */
+    String getName();
+
+    /**
+     * Récupère le solde courant et les opérations postérieures au curseur ; doit être thread-safe
+     * @param connection la connexion à synchroniser
+     * @param cursor curseur retourné par l'appel précédent, null pour une première synchronisation
+     */
+    BankSyncBatch fetchSince(BankConnection connection, String cursor) throws IOException;
+
+    /**
+     * Résultat d'une synchronisation ; {@code nextCursor} est à fournir à l'appel suivant
+     */
+    record BankSyncBatch(BigDecimal balance, String currency, LocalDateTime balanceDate,
+                         List<BankTransaction> transactions, String nextCursor) {
+    }
+
+    /**
+     * Opération telle que fournie par la banque ; {@code externalId} est stable d'un appel à l'autre
+     */
+    record BankTransaction(String externalId, LocalDate date, BigDecimal amount, String label, String category) {
+    }
+}
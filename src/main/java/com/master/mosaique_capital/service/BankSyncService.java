@@ -0,0 +1,309 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.model.BankConnection;
+import com.master.mosaique_capital.model.Transaction;
+import com.master.mosaique_capital.repository.BankConnectionRepository;
+import com.master.mosaique_capital.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synchronisation des comptes bancaires ({@code BANK_ACCOUNT}) auprès du {@link BankDataProvider}.
+ * <p>
+ * Les connexions sont parcourues par pages triées par identifiant ; chacune est synchronisée sur un thread
+ * virtuel, le nombre de synchronisations simultanées étant borné par un sémaphore. Chaque connexion conserve
+ * le curseur du fournisseur : seules les nouvelles opérations sont récupérées. Par connexion, les opérations
+ * sont ajoutées au grand livre en un lot, puis le solde est enregistré comme une seule valorisation
+ * (s'il a changé), enfin le curseur est avancé. Les identifiants d'opérations étant dérivés de l'identifiant
+ * bancaire, une synchronisation interrompue avant l'avancée du curseur peut être rejouée sans doublon.
+ * <p>
+ * L'exécution planifiée (désactivée par défaut) est confiée à un thread virtuel : le thread du planificateur,
+ * partagé avec la réplication Firebase et la maintenance des caches, n'est jamais bloqué.
+ */
+@Service
+@Slf4j
+public class BankSyncService {
+
+    private final BankConnectionRepository connectionRepository;
+    private final TransactionRepository transactionRepository;
+    private final AssetService assetService;
+    private final BankDataProvider provider;
+    private final AsyncExecutors asyncExecutors;
+
+    private final Counter syncedCounter;
+    private final Counter failedCounter;
+    private final Counter transactionsCounter;
+    private final Timer connectionTimer;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Value("${app.bank.sync.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.bank.sync.parallelism:32}")
+    private int parallelism;
+
+    @Value("${app.bank.sync.connection-timeout:30s}")
+    private Duration connectionTimeout;
+
+    // Une connexion synchronisée depuis moins longtemps est ignorée (exécutions rapprochées ou reprises)
+    @Value("${app.bank.sync.min-interval:30m}")
+    private Duration minInterval;
+
+    public BankSyncService(BankConnectionRepository connectionRepository,
+                           TransactionRepository transactionRepository,
+                           AssetService assetService,
+                           BankDataProvider provider,
+                           AsyncExecutors asyncExecutors,
+                           MeterRegistry meterRegistry) {
+        this.connectionRepository = connectionRepository;
+        this.transactionRepository = transactionRepository;
+        this.assetService = assetService;
+        this.provider = provider;
+        this.asyncExecutors = asyncExecutors;
+        this.syncedCounter = meterRegistry.counter("bank.sync.connections", "outcome", "success");
+        this.failedCounter = meterRegistry.counter("bank.sync.connections", "outcome", "failure");
+        this.transactionsCounter = meterRegistry.counter("bank.sync.transactions");
+        this.connectionTimer = meterRegistry.timer("bank.sync.connection.duration");
+    }
+
+    /**
+     * Rattache un actif {@code BANK_ACCOUNT} à un compte du fournisseur ; la connexion est synchronisée
+     * à la prochaine exécution.
+     * <p>
+     * Un rattachement déjà existant (même actif, même compte) est retourné tel quel. Un actif déjà rattaché
+     * à un autre compte, ou un compte déjà rattaché à un autre actif, est refusé. L'identifiant de la connexion
+     * est dérivé de l'actif : deux demandes simultanées écrivent la même connexion.
+     * @throws IllegalStateException si l'actif ou le compte est déjà rattaché ailleurs
+     */
+    public BankConnection connect(String userId, String assetId, String externalAccountId) throws Exception {
+        long timeoutMillis = connectionTimeout.toMillis();
+        Asset asset = assetService.getAssetById(assetId)
+                .get(timeoutMillis, TimeUnit.MILLISECONDS)
+                .orElseThrow(() -> new NoSuchElementException("Asset not found with id: " + assetId));
+        if (!userId.equals(asset.getUserId()) || asset.getType() != Asset.AssetType.BANK_ACCOUNT) {
+            throw new IllegalArgumentException("Asset " + assetId + " is not a bank account of user " + userId);
+        }
+
+        for (BankConnection existing : connectionRepository.findByUserId(userId).get(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            boolean sameAsset = assetId.equals(existing.getAssetId());
+            boolean sameAccount = provider.getName().equals(existing.getProvider())
+                    && externalAccountId.equals(existing.getExternalAccountId());
+            if (sameAsset && sameAccount) {
+                return existing;
+            }
+            if (sameAsset) {
+                throw new IllegalStateException("Asset " + assetId + " is already connected to another account");
+            }
+            if (sameAccount) {
+                throw new IllegalStateException("Account " + externalAccountId + " is already connected to asset "
+                        + existing.getAssetId());
+            }
+        }
+
+        BankConnection connection = BankConnection.builder()
+                .id(connectionId(userId, assetId))
+                .userId(userId)
+                .assetId(assetId)
+                .provider(provider.getName())
+                .externalAccountId(externalAccountId)
+                .build();
+        return connectionRepository.save(connection).get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Synchronisation planifiée de toutes les connexions (cron "-" = désactivée)
+     */
+    @Scheduled(cron = "${app.bank.sync.cron:-}")
+    public void runScheduled() {
+        asyncExecutors.firebaseBlocking().execute(() -> {
+            try {
+                syncAll();
+            } catch (IllegalStateException e) {
+                log.warn("Skipping bank sync: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Synchronise toutes les connexions actives
+     * @return les statistiques de l'exécution
+     */
+    public Map<String, Object> syncAll() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A bank sync is already running");
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        long startNanos = System.nanoTime();
+        AtomicLong synced = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        LocalDateTime staleBefore = LocalDateTime.now().minus(minInterval);
+
+        try {
+            Semaphore permits = new Semaphore(parallelism);
+            String cursor = null;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                while (true) {
+                    List<BankConnection> connections = connectionRepository.findPage(cursor, pageSize)
+                            .get(connectionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                    if (connections.isEmpty()) {
+                        break;
+                    }
+
+                    List<Future<?>> page = new ArrayList<>(connections.size());
+                    for (BankConnection connection : connections) {
+                        if (!connection.isEnabled()
+                                || (connection.getLastSyncAt() != null && connection.getLastSyncAt().isAfter(staleBefore))) {
+                            skipped.incrementAndGet();
+                            continue;
+                        }
+                        permits.acquire();
+                        page.add(executor.submit(() -> {
+                            try {
+                                sync(connection);
+                                synced.incrementAndGet();
+                            } catch (Exception e) {
+                                failed.incrementAndGet();
+                                recordFailure(connection, e);
+                            } finally {
+                                permits.release();
+                            }
+                        }));
+                    }
+
+                    for (Future<?> future : page) {
+                        future.get();
+                    }
+
+                    cursor = connections.get(connections.size() - 1).getId();
+                    if (connections.size() < pageSize) {
+                        break;
+                    }
+                }
+            }
+            summary.put("status", "COMPLETED");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.put("status", "INTERRUPTED");
+        } catch (Exception e) {
+            summary.put("status", "FAILED");
+            log.error("Bank sync failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        summary.put("syncedConnections", synced.get());
+        summary.put("skippedConnections", skipped.get());
+        summary.put("failedConnections", failed.get());
+        summary.put("elapsedSeconds", elapsedSeconds);
+        summary.put("completedAt", LocalDateTime.now());
+        log.info("Bank sync finished: {}", summary);
+        return summary;
+    }
+
+    /**
+     * Synchronise une connexion : opérations nouvelles, valorisation du solde, puis avancée du curseur
+     */
+    public BankConnection sync(BankConnection connection) throws Exception {
+        long start = System.nanoTime();
+        long timeoutMillis = connectionTimeout.toMillis();
+
+        BankDataProvider.BankSyncBatch batch = provider.fetchSince(connection, connection.getSyncCursor());
+
+        if (!batch.transactions().isEmpty()) {
+            List<Transaction> transactions = new ArrayList<>(batch.transactions().size());
+            for (BankDataProvider.BankTransaction bankTransaction : batch.transactions()) {
+                transactions.add(Transaction.builder()
+                        .id(transactionId(connection, bankTransaction.externalId()))
+                        .userId(connection.getUserId())
+                        .assetId(connection.getAssetId())
+                        .date(bankTransaction.date())
+                        .amount(bankTransaction.amount())
+                        .currency(batch.currency())
+                        .label(bankTransaction.label())
+                        .category(bankTransaction.category())
+                        .source("BANK_SYNC")
+                        .externalId(bankTransaction.externalId())
+                        .build());
+            }
+            transactionRepository.appendAll(transactions).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            transactionsCounter.increment(transactions.size());
+        }
+
+        if (batch.balance() != null
+                && (connection.getLastBalance() == null || connection.getLastBalance().compareTo(batch.balance()) != 0)) {
+            AssetValuation valuation = AssetValuation.builder()
+                    .value(batch.balance())
+                    .currency(batch.currency())
+                    .valuationDate(batch.balanceDate())
+                    .source("API")
+                    .build();
+            assetService.addValuation(connection.getAssetId(), valuation).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        connection.setSyncCursor(batch.nextCursor());
+        connection.setLastBalance(batch.balance());
+        connection.setLastSyncAt(LocalDateTime.now());
+        connection.setLastError(null);
+        BankConnection saved = connectionRepository.save(connection).get(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        connectionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        syncedCounter.increment();
+        return saved;
+    }
+
+    private void recordFailure(BankConnection connection, Exception e) {
+        failedCounter.increment();
+        log.error("Bank sync failed for connection {}: {}", connection.getId(), e.getMessage());
+        // Le curseur n'est pas avancé : la prochaine exécution reprend au même point
+        connection.setLastError(e.getMessage());
+        try {
+            connectionRepository.save(connection).get(connectionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Exception saveError) {
+            log.error("Could not record sync failure for connection {}: {}", connection.getId(), saveError.getMessage());
+        }
+    }
+
+    /**
+     * Identifiant de connexion stable, dérivé de l'actif rattaché
+     */
+    private static String connectionId(String userId, String assetId) {
+        return "conn-" + UUID.nameUUIDFromBytes((userId + ":" + assetId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Identifiant d'opération stable, dérivé de la connexion et de l'identifiant bancaire
+     */
+    private static String transactionId(BankConnection connection, String externalId) {
+        return "bank-" + UUID.nameUUIDFromBytes((connection.getId() + ":" + externalId).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,85 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.model.Asset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Rapport patrimonial au format CSV : une ligne par utilisateur, une colonne par catégorie d'actifs
+ */
+@Component
+public class CsvPatrimonyReportSink implements PatrimonyReportSink {
+
+    @Value("${app.batch.patrimony.report-dir:./reports}")
+    private String reportDir;
+
+    private BufferedWriter writer;
+
+    @Override
+    public synchronized void open(String runId, boolean resume) throws IOException {
+        Path directory = Paths.get(reportDir);
+        Files.createDirectories(directory);
+        Path file = directory.resolve("patrimony-" + runId + ".csv");
+
+        boolean writeHeader = !resume || !Files.exists(file);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+
+        if (writeHeader) {
+            StringBuilder header = new StringBuilder("userId,currency,totalAssetsValue,totalLiabilitiesValue,netWorth");
+            for (Asset.AssetCategory category : Asset.AssetCategory.values()) {
+                header.append(',').append(category.name());
+            }
+            writer.write(header.toString());
+            writer.newLine();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(String userId, Map<String, Object> netWorth, Map<String, Object> distribution) throws IOException {
+        Map<Asset.AssetCategory, BigDecimal> amountByCategory =
+                (Map<Asset.AssetCategory, BigDecimal>) distribution.get("amountByCategory");
+
+        StringBuilder line = new StringBuilder(128)
+                .append(userId).append(',')
+                .append(netWorth.get("currency")).append(',')
+                .append(((BigDecimal) netWorth.get("totalAssetsValue")).toPlainString()).append(',')
+                .append(((BigDecimal) netWorth.get("totalLiabilitiesValue")).toPlainString()).append(',')
+                .append(((BigDecimal) netWorth.get("netWorth")).toPlainString());
+        for (Asset.AssetCategory category : Asset.AssetCategory.values()) {
+            BigDecimal amount = amountByCategory.get(category);
+            line.append(',').append(amount != null ? amount.toPlainString() : "0");
+        }
+
+        synchronized (this) {
+            writer.write(line.toString());
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
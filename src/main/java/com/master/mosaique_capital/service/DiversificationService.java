@@ -0,0 +1,235 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.util.MoneyAccumulator;
+import com.master.mosaique_capital.util.UserScopedCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Indicateurs de diversification et de concentration du patrimoine (hors passifs) :
+ * indice de Herfindahl-Hirschman, part des N premières lignes, nombre effectif de lignes,
+ * expositions par devise et par attribut d'actif ({@code app.diversification.attribute-keys}).
+ * <p>
+ * Tous les indicateurs sont obtenus en un seul parcours des actifs : sommes des valeurs et de leurs carrés,
+ * tas borné des plus grosses lignes, accumulateurs par devise et par valeur d'attribut. Les résultats sont
+ * en cache par utilisateur et devise de reporting, invalidé à chaque {@link AssetChangedEvent}.
+ */
+@Service
+@Slf4j
+public class DiversificationService {
+
+    private static final String UNCLASSIFIED = "unclassified";
+
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
+
+    private final List<String> attributeKeys;
+    private final int[] topSizes;
+
+    @Value("${app.diversification.cache-ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${app.diversification.cache.max-entries:10000}")
+    private int maxEntries;
+
+    // Résultats par utilisateur, clé : devise de reporting
+    private final UserScopedCache<String, Map<String, Object>> cache =
+            new UserScopedCache<>(() -> maxEntries, () -> cacheTtl);
+
+    /**
+     * Ligne du patrimoine retenue dans le tas des plus grosses lignes
+     */
+    private record Holding(Asset asset, double value) {
+    }
+
+    public DiversificationService(AssetService assetService,
+                                  FxRateService fxRateService,
+                                  AsyncExecutors asyncExecutors,
+                                  CalculationMetrics calculationMetrics,
+                                  @Value("${app.diversification.attribute-keys:sector,country}") String[] attributeKeys,
+                                  @Value("${app.diversification.top-sizes:1,5,10}") int[] topSizes) {
+        this.assetService = assetService;
+        this.fxRateService = fxRateService;
+        this.asyncExecutors = asyncExecutors;
+        this.calculationMetrics = calculationMetrics;
+        this.attributeKeys = Arrays.stream(attributeKeys).map(String::trim).filter(key -> !key.isEmpty()).toList();
+        this.topSizes = Arrays.stream(topSizes).filter(size -> size > 0).sorted().toArray();
+    }
+
+    /**
+     * Calcule les indicateurs de diversification d'un utilisateur dans la devise de reporting
+     */
+    public CompletableFuture<Map<String, Object>> calculateDiversification(String userId, String reportingCurrency) {
+        return cache.get(userId, reportingCurrency, () -> assetService.getAssetsByUserId(userId)
+                .thenApplyAsync(assets -> computeDiversification(assets, reportingCurrency),
+                        asyncExecutors.aggregation()));
+    }
+
+    /**
+     * Invalide les résultats d'un utilisateur dont un actif a changé
+     */
+    @EventListener
+    public void onAssetChanged(AssetChangedEvent event) {
+        cache.invalidate(event.userId());
+    }
+
+    /**
+     * Calcule les indicateurs à partir d'une liste d'actifs déjà chargée
+     */
+    public Map<String, Object> computeDiversification(List<Asset> assets, String reportingCurrency) {
+        return calculationMetrics.timed("diversification",
+                () -> doComputeDiversification(assets, reportingCurrency));
+    }
+
+    private Map<String, Object> doComputeDiversification(List<Asset> assets, String reportingCurrency) {
+        LocalDate today = LocalDate.now();
+        int maxTop = topSizes.length > 0 ? topSizes[topSizes.length - 1] : 0;
+
+        MoneyAccumulator total = MoneyAccumulator.create();
+        double sum = 0;
+        double sumOfSquares = 0;
+        int holdings = 0;
+        PriorityQueue<Holding> largest = new PriorityQueue<>(maxTop + 1, Comparator.comparingDouble(Holding::value));
+        Map<String, MoneyAccumulator> byCurrency = new HashMap<>();
+        Map<String, Map<String, MoneyAccumulator>> byAttribute = new LinkedHashMap<>();
+        for (String attributeKey : attributeKeys) {
+            byAttribute.put(attributeKey, new HashMap<>());
+        }
+
+        // Parcours unique des actifs
+        for (Asset asset : assets) {
+            if (asset.getCategory() == Asset.AssetCategory.LIABILITY || asset.getCurrentValue() == null
+                    || asset.getCurrentValue().signum() <= 0) {
+                continue;
+            }
+            BigDecimal value = fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, today);
+            double weight = value.doubleValue();
+
+            total.add(value);
+            sum += weight;
+            sumOfSquares += weight * weight;
+            holdings++;
+
+            if (maxTop > 0) {
+                largest.add(new Holding(asset, weight));
+                if (largest.size() > maxTop) {
+                    largest.poll();
+                }
+            }
+
+            String currency = asset.getCurrency() != null ? asset.getCurrency() : reportingCurrency;
+            byCurrency.computeIfAbsent(currency, c -> MoneyAccumulator.create()).add(value);
+
+            for (Map.Entry<String, Map<String, MoneyAccumulator>> attribute : byAttribute.entrySet()) {
+                String attributeValue = asset.getAttributes() != null ? asset.getAttributes().get(attribute.getKey()) : null;
+                if (attributeValue == null || attributeValue.isBlank()) {
+                    attributeValue = UNCLASSIFIED;
+                }
+                attribute.getValue().computeIfAbsent(attributeValue, v -> MoneyAccumulator.create()).add(value);
+            }
+        }
+
+        BigDecimal totalValue = total.toBigDecimal();
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalAssetsValue", totalValue);
+        result.put("holdings", holdings);
+        result.put("currency", reportingCurrency);
+        result.put("calculationDate", LocalDateTime.now());
+
+        if (sum <= 0) {
+            result.put("herfindahlIndex", null);
+            result.put("effectiveHoldings", null);
+            result.put("topConcentration", Map.of());
+            result.put("topHoldings", List.of());
+            result.put("currencyExposure", Map.of());
+            result.put("attributeExposure", Map.of());
+            return result;
+        }
+
+        // HHI = somme des carrés des poids ; le nombre effectif de lignes est son inverse
+        double herfindahl = sumOfSquares / (sum * sum);
+        result.put("herfindahlIndex", BigDecimal.valueOf(herfindahl).setScale(6, RoundingMode.HALF_UP));
+        result.put("effectiveHoldings", BigDecimal.valueOf(1 / herfindahl).setScale(2, RoundingMode.HALF_UP));
+
+        List<Holding> top = new ArrayList<>(largest);
+        top.sort(Comparator.comparingDouble(Holding::value).reversed());
+
+        Map<String, Object> topConcentration = new LinkedHashMap<>();
+        double cumulative = 0;
+        int topIndex = 0;
+        for (int i = 0; i < top.size() && topIndex < topSizes.length; i++) {
+            cumulative += top.get(i).value();
+            while (topIndex < topSizes.length && (i + 1 == topSizes[topIndex] || i + 1 == top.size())) {
+                topConcentration.put("top" + topSizes[topIndex], percentage(cumulative, sum));
+                topIndex++;
+            }
+        }
+
+        List<Map<String, Object>> topHoldings = new ArrayList<>(top.size());
+        for (Holding holding : top) {
+            Map<String, Object> line = new HashMap<>();
+            line.put("assetId", holding.asset().getId());
+            line.put("name", holding.asset().getName());
+            line.put("type", holding.asset().getType());
+            line.put("value", BigDecimal.valueOf(holding.value()).setScale(2, RoundingMode.HALF_UP));
+            line.put("percentage", percentage(holding.value(), sum));
+            topHoldings.add(line);
+        }
+
+        Map<String, Object> attributeExposure = new LinkedHashMap<>();
+        byAttribute.forEach((attributeKey, exposure) -> attributeExposure.put(attributeKey, exposure(exposure, totalValue)));
+
+        result.put("topConcentration", topConcentration);
+        result.put("topHoldings", topHoldings);
+        result.put("currencyExposure", exposure(byCurrency, totalValue));
+        result.put("attributeExposure", attributeExposure);
+        return result;
+    }
+
+    /**
+     * Montant et pourcentage par clé, par montant décroissant
+     */
+    private static Map<String, Object> exposure(Map<String, MoneyAccumulator> amounts, BigDecimal totalValue) {
+        List<Map.Entry<String, BigDecimal>> entries = new ArrayList<>(amounts.size());
+        amounts.forEach((key, accumulator) -> entries.add(Map.entry(key, accumulator.toBigDecimal())));
+        entries.sort(Map.Entry.<String, BigDecimal>comparingByValue().reversed());
+
+        Map<String, Object> exposure = new LinkedHashMap<>();
+        for (Map.Entry<String, BigDecimal> entry : entries) {
+            Map<String, Object> line = new HashMap<>();
+            line.put("amount", entry.getValue());
+            line.put("percentage", entry.getValue()
+                    .multiply(BigDecimal.valueOf(100))
+                    .divide(totalValue, 2, RoundingMode.HALF_UP));
+            exposure.put(entry.getKey(), line);
+        }
+        return exposure;
+    }
+
+    private static BigDecimal percentage(double amount, double total) {
+        return BigDecimal.valueOf(100 * amount / total).setScale(2, RoundingMode.HALF_UP);
+    }
+}
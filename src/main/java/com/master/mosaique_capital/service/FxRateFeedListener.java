@@ -0,0 +1,46 @@
+package com.master.mosaique_capital.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Consomme le flux de taux de change publié sur RabbitMQ.
+ * Chaque message est un objet JSON {@code {"date": "...", "currency": "...", "rate": "..."}} ou un tableau de ces objets.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FxRateFeedListener {
+
+    private final FxRateService fxRateService;
+    private final ObjectMapper objectMapper;
+
+    @RabbitListener(queues = "${app.fx.feed-queue:fx.rates}", autoStartup = "${app.fx.feed-enabled:false}")
+    public void onRates(String payload) {
+        try {
+            JsonNode root = objectMapper.readTree(payload);
+            if (root.isArray()) {
+                root.forEach(this::applyRate);
+            } else {
+                applyRate(root);
+            }
+        } catch (Exception e) {
+            log.error("Error processing FX rate message: {}", e.getMessage());
+        }
+    }
+
+    private void applyRate(JsonNode node) {
+        fxRateService.updateRate(
+                node.get("currency").asText(),
+                LocalDate.parse(node.get("date").asText()),
+                new BigDecimal(node.get("rate").asText())
+        );
+    }
+}
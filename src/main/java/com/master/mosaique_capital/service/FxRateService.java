@@ -0,0 +1,204 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.util.FxRateTable;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service de conversion de devises basé sur un historique local de taux journaliers.
+ * <p>
+ * Chaque devise dispose d'un {@link FxRateTable} exprimé par rapport à la devise pivot ;
+ * les taux croisés calculés sont mis en cache par couple de devises et par jour. Les codes devise sont
+ * insensibles à la casse. Sans taux connu, {@link #convert} laisse le montant inchangé : les agrégations
+ * signalent les devises concernées avec {@link #unconvertedCurrencies}.
+ */
+@Service
+@Slf4j
+public class FxRateService {
+
+    private static final int CONVERTED_SCALE = 4;
+    private static final int MAX_CACHED_CROSS_RATES = 10_000;
+    private static final long BASE_SCALED_RATE = BigDecimal.ONE.movePointRight(FxRateTable.RATE_SCALE).longValueExact();
+
+    private final Map<String, FxRateTable> tables = new ConcurrentHashMap<>();
+    private final Map<CrossRateKey, BigDecimal> crossRateCache = new ConcurrentHashMap<>();
+    private final Set<String> missingCurrencies = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.fx.base-currency:EUR}")
+    private String baseCurrency;
+
+    @Value("${app.fx.rates-file:}")
+    private Resource ratesFile;
+
+    private record CrossRateKey(String from, String to, long epochDay) {
+    }
+
+    @PostConstruct
+    public void loadRatesFile() {
+        if (ratesFile == null || !ratesFile.exists()) {
+            log.info("No FX rates file configured, rates will be loaded from the feed");
+            return;
+        }
+
+        try (InputStream inputStream = ratesFile.getInputStream()) {
+            int loaded = loadRates(inputStream);
+            log.info("Loaded {} FX rates from {}", loaded, ratesFile.getDescription());
+        } catch (IOException e) {
+            log.error("Error loading FX rates file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Charge des taux au format CSV {@code date,devise,taux} (une unité de devise pivot = taux unités de devise)
+     * @return le nombre de taux chargés
+     */
+    public int loadRates(InputStream inputStream) throws IOException {
+        int loaded = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("date")) {
+                    continue;
+                }
+
+                String[] columns = line.split(",");
+                if (columns.length < 3) {
+                    log.warn("Ignoring malformed FX rate line: {}", line);
+                    continue;
+                }
+
+                try {
+                    updateRate(columns[1].trim(), LocalDate.parse(columns[0].trim()), new BigDecimal(columns[2].trim()));
+                    loaded++;
+                } catch (RuntimeException e) {
+                    log.warn("Ignoring invalid FX rate line '{}': {}", line, e.getMessage());
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Enregistre le taux d'une devise par rapport à la devise pivot pour une date
+     */
+    public void updateRate(String currency, LocalDate date, BigDecimal rate) {
+        String code = code(currency);
+        if (isBase(code)) {
+            return;
+        }
+
+        tables.computeIfAbsent(code, c -> new FxRateTable()).put(date, rate);
+        missingCurrencies.remove(code);
+
+        // Un nouveau taux peut modifier les taux reportés des jours suivants
+        crossRateCache.keySet().removeIf(key -> (key.from().equals(code) || key.to().equals(code))
+                && key.epochDay() >= date.toEpochDay());
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * Convertit un montant d'une devise vers une autre au taux du jour donné.
+     * Si aucun taux n'est connu, le montant est retourné inchangé, toujours exprimé dans la devise d'origine ;
+     * voir {@link #unconvertedCurrencies} pour le signaler.
+     */
+    public BigDecimal convert(BigDecimal amount, String fromCurrency, String toCurrency, LocalDate date) {
+        if (amount == null || fromCurrency == null || toCurrency == null || fromCurrency.equalsIgnoreCase(toCurrency)) {
+            return amount;
+        }
+
+        BigDecimal rate = getRate(fromCurrency, toCurrency, date);
+        if (rate == null) {
+            return amount;
+        }
+
+        return amount.multiply(rate).setScale(CONVERTED_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Retourne le taux croisé de conversion entre deux devises à une date, ou null s'il est inconnu
+     */
+    public BigDecimal getRate(String fromCurrency, String toCurrency, LocalDate date) {
+        String from = code(fromCurrency);
+        String to = code(toCurrency);
+        if (from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+
+        CrossRateKey key = new CrossRateKey(from, to, date.toEpochDay());
+        BigDecimal cached = crossRateCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long fromRate = scaledRate(from, date);
+        long toRate = scaledRate(to, date);
+        if (fromRate == 0L || toRate == 0L) {
+            return null;
+        }
+
+        BigDecimal rate = BigDecimal.valueOf(toRate).divide(BigDecimal.valueOf(fromRate), MathContext.DECIMAL64);
+        if (crossRateCache.size() >= MAX_CACHED_CROSS_RATES) {
+            crossRateCache.clear();
+        }
+        crossRateCache.put(key, rate);
+        return rate;
+    }
+
+    /**
+     * Devises, parmi celles données, qu'aucun taux connu ne convertit vers la devise cible à cette date.
+     * Un taux connu à une date l'est aussi aux dates suivantes.
+     */
+    public Set<String> unconvertedCurrencies(Collection<String> currencies, String toCurrency, LocalDate date) {
+        Set<String> unconverted = new TreeSet<>();
+        for (String currency : currencies) {
+            if (currency != null && toCurrency != null && getRate(currency, toCurrency, date) == null) {
+                unconverted.add(code(currency));
+            }
+        }
+        return unconverted;
+    }
+
+    private boolean isBase(String code) {
+        return code.equalsIgnoreCase(baseCurrency);
+    }
+
+    private static String code(String currency) {
+        return currency.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private long scaledRate(String currency, LocalDate date) {
+        if (isBase(currency)) {
+            return BASE_SCALED_RATE;
+        }
+
+        FxRateTable table = tables.get(currency);
+        long rate = table != null ? table.scaledRateAt(date) : 0L;
+        if (rate == 0L && missingCurrencies.add(currency)) {
+            log.warn("No FX rate available for {} on {}, amounts are left unconverted", currency, date);
+        }
+        return rate;
+    }
+}
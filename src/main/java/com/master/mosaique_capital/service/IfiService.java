@@ -0,0 +1,452 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.repository.UserRepository;
+import com.master.mosaique_capital.util.ProgressiveTaxScale;
+import com.master.mosaique_capital.util.UserScopedCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Calcul de l'impôt sur la fortune immobilière (IFI, depuis 2018).
+ * <p>
+ * L'assiette est la valeur au 1er janvier des actifs {@code REAL_ESTATE}, lue dans leur historique de
+ * valorisation (ou estimée pour un bien acquis avant cette date mais saisi après), après abattement de 30 %
+ * sur la résidence principale (attribut {@code mainResidence=true}), diminuée des prêts ({@code LOAN})
+ * rattachés à ces biens par l'attribut {@code linkedAssetId} et valorisés à la même date. L'impôt suit le
+ * barème de l'année, n'est dû qu'au-delà du seuil d'assujettissement et bénéficie de la décote entre le seuil
+ * et 1 400 000 €.
+ * <p>
+ * Le calcul d'un utilisateur pour une année est mis en cache ({@code app.tax.ifi.cache-ttl}) : il est invalidé
+ * par une modification d'un bien immobilier ou d'un prêt, par une valorisation datée au plus tard du 1er janvier
+ * de l'année, ou par une valorisation antérieure à toutes les autres, qui peut changer les estimations.
+ * Le mode batch calcule une année pour tous les utilisateurs en parallèle ; l'exécution planifiée est confiée
+ * à un thread virtuel pour ne pas bloquer le thread du planificateur.
+ */
+@Service
+@Slf4j
+public class IfiService {
+
+    private static final String IFI_CURRENCY = "EUR";
+    private static final String MAIN_RESIDENCE_ATTRIBUTE = "mainResidence";
+    private static final String LINKED_ASSET_ATTRIBUTE = "linkedAssetId";
+
+    /**
+     * Valeur en euros au 1er janvier ; {@code estimated} si elle ne provient pas d'une valorisation à cette date
+     */
+    private record Valuation(BigDecimal value, boolean estimated) {
+    }
+
+    /**
+     * Règles d'une année : barème, seuil d'assujettissement, décote et abattement sur la résidence principale
+     */
+    private record IfiRules(ProgressiveTaxScale scale, BigDecimal threshold, BigDecimal decoteCeiling,
+                            BigDecimal decoteConstant, BigDecimal decoteRate, BigDecimal mainResidenceAbatement) {
+    }
+
+    // Règles par première année d'application ; une année utilise les dernières règles entrées en vigueur
+    private static final NavigableMap<Integer, IfiRules> RULES = new TreeMap<>(Map.of(
+            2018, new IfiRules(
+                    ProgressiveTaxScale.builder()
+                            .bracket("0", "0")
+                            .bracket("800000", "0.005")
+                            .bracket("1300000", "0.007")
+                            .bracket("2570000", "0.01")
+                            .bracket("5000000", "0.0125")
+                            .bracket("10000000", "0.015")
+                            .build(),
+                    new BigDecimal("1300000"),
+                    new BigDecimal("1400000"),
+                    new BigDecimal("17500"),
+                    new BigDecimal("0.0125"),
+                    new BigDecimal("0.30"))));
+
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final UserRepository userRepository;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
+    private final MeterRegistry meterRegistry;
+
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final AtomicBoolean batchRunning = new AtomicBoolean(false);
+
+    @Value("${app.tax.ifi.cache.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${app.tax.ifi.cache-ttl:24h}")
+    private Duration cacheTtl;
+
+    @Value("${app.tax.ifi.batch.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.tax.ifi.batch.parallelism:64}")
+    private int parallelism;
+
+    @Value("${app.tax.ifi.batch.user-timeout:30s}")
+    private Duration userTimeout;
+
+    // Calculs par utilisateur, clé : année
+    private final UserScopedCache<Integer, Map<String, Object>> cache =
+            new UserScopedCache<>(() -> maxEntries, () -> cacheTtl);
+
+    public IfiService(AssetService assetService,
+                      FxRateService fxRateService,
+                      UserRepository userRepository,
+                      AsyncExecutors asyncExecutors,
+                      CalculationMetrics calculationMetrics,
+                      MeterRegistry meterRegistry) {
+        this.assetService = assetService;
+        this.fxRateService = fxRateService;
+        this.userRepository = userRepository;
+        this.asyncExecutors = asyncExecutors;
+        this.calculationMetrics = calculationMetrics;
+        this.meterRegistry = meterRegistry;
+        this.processedCounter = meterRegistry.counter("tax.ifi.batch.users", "outcome", "success");
+        this.failedCounter = meterRegistry.counter("tax.ifi.batch.users", "outcome", "failure");
+        meterRegistry.gauge("tax.ifi.cache.size", cache, UserScopedCache::size);
+    }
+
+    /**
+     * Calcule l'IFI d'un utilisateur pour une année, à partir du cache si possible
+     * @throws IllegalArgumentException si l'année est antérieure à 2018 ou postérieure à l'année en cours
+     */
+    public CompletableFuture<Map<String, Object>> calculateIfi(String userId, int year) {
+        checkYear(year);
+        return cache.get(userId, year, () -> assetService.getAssetsByUserId(userId)
+                .thenApplyAsync(assets -> computeIfi(assets, year), asyncExecutors.aggregation()));
+    }
+
+    /**
+     * Calcule l'IFI d'une année à partir d'une liste d'actifs déjà chargée
+     */
+    public Map<String, Object> computeIfi(List<Asset> assets, int year) {
+        checkYear(year);
+        return calculationMetrics.timed("ifi", () -> doComputeIfi(assets, year));
+    }
+
+    private Map<String, Object> doComputeIfi(List<Asset> assets, int year) {
+        IfiRules rules = RULES.floorEntry(year).getValue();
+        LocalDate valuationDate = LocalDate.of(year, 1, 1);
+
+        // Biens immobiliers détenus au 1er janvier
+        BigDecimal grossValue = BigDecimal.ZERO;
+        BigDecimal abatement = BigDecimal.ZERO;
+        Set<String> taxableAssetIds = new HashSet<>();
+        List<Map<String, Object>> realEstate = new ArrayList<>();
+        for (Asset asset : assets) {
+            if (asset.getType() != Asset.AssetType.REAL_ESTATE) {
+                continue;
+            }
+            Valuation valuation = valueAt(asset, valuationDate);
+            if (valuation == null) {
+                continue;
+            }
+            BigDecimal value = valuation.value();
+            boolean mainResidence = asset.getAttributes() != null
+                    && Boolean.parseBoolean(asset.getAttributes().get(MAIN_RESIDENCE_ATTRIBUTE));
+            BigDecimal assetAbatement = mainResidence ? value.multiply(rules.mainResidenceAbatement()) : BigDecimal.ZERO;
+
+            grossValue = grossValue.add(value);
+            abatement = abatement.add(assetAbatement);
+            taxableAssetIds.add(asset.getId());
+
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("assetId", asset.getId());
+            entry.put("name", asset.getName());
+            entry.put("value", money(value));
+            entry.put("mainResidence", mainResidence);
+            entry.put("abatement", money(assetAbatement));
+            entry.put("taxableValue", money(value.subtract(assetAbatement)));
+            entry.put("estimated", valuation.estimated());
+            realEstate.add(entry);
+        }
+
+        // Prêts rattachés à ces biens, capital restant dû au 1er janvier
+        BigDecimal debts = BigDecimal.ZERO;
+        List<Map<String, Object>> loans = new ArrayList<>();
+        for (Asset asset : assets) {
+            String linkedAssetId = asset.getAttributes() != null ? asset.getAttributes().get(LINKED_ASSET_ATTRIBUTE) : null;
+            if (asset.getType() != Asset.AssetType.LOAN || !taxableAssetIds.contains(linkedAssetId)) {
+                continue;
+            }
+            Valuation valuation = valueAt(asset, valuationDate);
+            if (valuation == null) {
+                continue;
+            }
+            BigDecimal outstanding = valuation.value();
+            debts = debts.add(outstanding);
+
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("assetId", asset.getId());
+            entry.put("name", asset.getName());
+            entry.put("linkedAssetId", linkedAssetId);
+            entry.put("outstanding", money(outstanding));
+            entry.put("estimated", valuation.estimated());
+            loans.add(entry);
+        }
+
+        BigDecimal netBase = grossValue.subtract(abatement).subtract(debts).max(BigDecimal.ZERO).setScale(0, RoundingMode.FLOOR);
+        boolean liable = netBase.compareTo(rules.threshold()) > 0;
+        BigDecimal grossTax = liable ? rules.scale().compute(netBase) : BigDecimal.ZERO;
+        BigDecimal decote = BigDecimal.ZERO;
+        if (liable && netBase.compareTo(rules.decoteCeiling()) < 0) {
+            decote = rules.decoteConstant().subtract(netBase.multiply(rules.decoteRate())).setScale(0, RoundingMode.FLOOR);
+        }
+        BigDecimal ifiDue = grossTax.subtract(decote).max(BigDecimal.ZERO);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("year", year);
+        result.put("valuationDate", valuationDate);
+        result.put("grossRealEstateValue", money(grossValue));
+        result.put("mainResidenceAbatement", money(abatement));
+        result.put("deductibleDebts", money(debts));
+        result.put("netTaxableBase", netBase);
+        result.put("liable", liable);
+        result.put("grossTax", grossTax);
+        result.put("decote", decote);
+        result.put("ifiDue", ifiDue);
+        result.put("marginalRate", liable ? rules.scale().marginalRate(netBase) : BigDecimal.ZERO);
+        result.put("realEstate", realEstate);
+        result.put("loans", loans);
+        result.put("currency", IFI_CURRENCY);
+        result.put("calculationDate", LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * Invalide les calculs concernés par une modification d'actif
+     */
+    @EventListener
+    public void onAssetChanged(AssetChangedEvent event) {
+        Asset asset = event.asset();
+        boolean relevantType = asset != null
+                && (asset.getType() == Asset.AssetType.REAL_ESTATE || asset.getType() == Asset.AssetType.LOAN);
+        String userId = event.userId();
+
+        switch (event.changeType()) {
+            // Le type avant modification n'est pas connu : toute mise à jour invalide l'utilisateur
+            case UPDATED -> invalidate(userId, Integer.MIN_VALUE);
+            case CREATED, DELETED -> {
+                if (relevantType) {
+                    invalidate(userId, Integer.MIN_VALUE);
+                }
+            }
+            // Une valorisation ne change que les années dont le 1er janvier est postérieur ou égal à sa date,
+            // sauf si elle précède toutes les autres : elle sert alors d'estimation aux années antérieures
+            case VALUATION_ADDED -> {
+                if (relevantType) {
+                    LocalDate date = event.effectiveDate() != null ? event.effectiveDate().toLocalDate() : LocalDate.MIN;
+                    invalidate(userId, isEarliestValuation(asset, date) ? Integer.MIN_VALUE
+                            : date.getDayOfYear() == 1 ? date.getYear() : date.getYear() + 1);
+                }
+            }
+        }
+    }
+
+    private static boolean isEarliestValuation(Asset asset, LocalDate date) {
+        if (asset.getValuationHistory() == null) {
+            return true;
+        }
+        return asset.getValuationHistory().stream()
+                .filter(valuation -> valuation.getValuationDate() != null)
+                .noneMatch(valuation -> valuation.getValuationDate().toLocalDate().isBefore(date));
+    }
+
+    private void invalidate(String userId, int fromYear) {
+        cache.invalidate(userId, year -> year >= fromYear);
+    }
+
+    /**
+     * Exécution planifiée du batch pour l'année en cours
+     */
+    @Scheduled(cron = "${app.tax.ifi.batch.cron:-}")
+    public void runScheduled() {
+        asyncExecutors.firebaseBlocking().execute(() -> {
+            try {
+                runBatch(LocalDate.now().getYear());
+            } catch (IllegalStateException e) {
+                log.warn("Skipping IFI batch: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Calcule l'IFI d'une année pour tous les utilisateurs, par pages, chaque utilisateur sur un thread virtuel
+     * (lectures Firebase simultanées bornées par {@code app.tax.ifi.batch.parallelism}). Les résultats
+     * alimentent le cache.
+     * @return les statistiques de l'exécution
+     * @throws IllegalStateException si un batch est déjà en cours
+     */
+    public Map<String, Object> runBatch(int year) {
+        checkYear(year);
+        if (!batchRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("An IFI batch is already running");
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        long startNanos = System.nanoTime();
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong liableUsers = new AtomicLong();
+        AtomicReference<BigDecimal> totalIfiDue = new AtomicReference<>(BigDecimal.ZERO);
+
+        try {
+            Semaphore permits = new Semaphore(parallelism);
+            String cursor = null;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                while (true) {
+                    List<String> uids = userRepository.findUidsPage(cursor, pageSize)
+                            .get(userTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                    if (uids.isEmpty()) {
+                        break;
+                    }
+
+                    List<Future<?>> page = new ArrayList<>(uids.size());
+                    for (String uid : uids) {
+                        permits.acquire();
+                        page.add(executor.submit(() -> {
+                            try {
+                                Map<String, Object> ifi = calculateIfi(uid, year)
+                                        .get(userTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                                if ((Boolean) ifi.get("liable")) {
+                                    liableUsers.incrementAndGet();
+                                    totalIfiDue.accumulateAndGet((BigDecimal) ifi.get("ifiDue"), BigDecimal::add);
+                                }
+                                processed.incrementAndGet();
+                                processedCounter.increment();
+                            } catch (Exception e) {
+                                failed.incrementAndGet();
+                                failedCounter.increment();
+                                log.error("IFI batch failed for user {}: {}", uid, e.getMessage());
+                            } finally {
+                                permits.release();
+                            }
+                        }));
+                    }
+
+                    for (Future<?> future : page) {
+                        future.get();
+                    }
+
+                    cursor = uids.get(uids.size() - 1);
+                    if (uids.size() < pageSize) {
+                        break;
+                    }
+                }
+            }
+            summary.put("status", "COMPLETED");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.put("status", "INTERRUPTED");
+            log.warn("IFI batch for {} interrupted", year);
+        } catch (Exception e) {
+            summary.put("status", "FAILED");
+            log.error("IFI batch for {} failed: {}", year, e.getMessage());
+        } finally {
+            batchRunning.set(false);
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        summary.put("year", year);
+        summary.put("processedUsers", processed.get());
+        summary.put("failedUsers", failed.get());
+        summary.put("liableUsers", liableUsers.get());
+        summary.put("totalIfiDue", totalIfiDue.get());
+        summary.put("elapsedSeconds", elapsedSeconds);
+        summary.put("usersPerSecond", elapsedSeconds > 0 ? processed.get() / elapsedSeconds : 0);
+        summary.put("completedAt", LocalDateTime.now());
+        log.info("IFI batch for {} finished: {}", year, summary);
+        return summary;
+    }
+
+    /**
+     * Dernière valorisation datée au plus tard du jour donné, convertie en euros à cette date.
+     * <p>
+     * Un actif acquis avant ce jour mais saisi après n'a pas de valorisation à cette date : sa valeur est
+     * estimée par la première valorisation connue (celle de la saisie), à défaut par la valeur courante ou
+     * d'acquisition. Null si l'actif n'était pas encore détenu ou si sa date d'acquisition est inconnue.
+     */
+    private Valuation valueAt(Asset asset, LocalDate date) {
+        AssetValuation latest = null;
+        AssetValuation earliestAfter = null;
+        if (asset.getValuationHistory() != null) {
+            for (AssetValuation valuation : asset.getValuationHistory()) {
+                if (valuation.getValue() == null || valuation.getValuationDate() == null) {
+                    continue;
+                }
+                if (valuation.getValuationDate().toLocalDate().isAfter(date)) {
+                    if (earliestAfter == null || valuation.getValuationDate().isBefore(earliestAfter.getValuationDate())) {
+                        earliestAfter = valuation;
+                    }
+                } else if (latest == null || valuation.getValuationDate().isAfter(latest.getValuationDate())) {
+                    latest = valuation;
+                }
+            }
+        }
+        if (latest != null) {
+            return new Valuation(toEuros(latest, asset, date), false);
+        }
+
+        if (asset.getAcquisitionDate() == null || asset.getAcquisitionDate().toLocalDate().isAfter(date)) {
+            return null;
+        }
+        if (earliestAfter != null) {
+            return new Valuation(toEuros(earliestAfter, asset, date), true);
+        }
+        BigDecimal fallback = asset.getCurrentValue() != null ? asset.getCurrentValue() : asset.getAcquisitionValue();
+        if (fallback == null) {
+            return null;
+        }
+        return new Valuation(fxRateService.convert(fallback, asset.getCurrency(), IFI_CURRENCY, date), true);
+    }
+
+    private BigDecimal toEuros(AssetValuation valuation, Asset asset, LocalDate date) {
+        String currency = valuation.getCurrency() != null ? valuation.getCurrency() : asset.getCurrency();
+        return fxRateService.convert(valuation.getValue(), currency, IFI_CURRENCY, date);
+    }
+
+    private static void checkYear(int year) {
+        if (year < RULES.firstKey() || year > LocalDate.now().getYear()) {
+            throw new IllegalArgumentException("IFI can only be computed from " + RULES.firstKey()
+                    + " to the current year");
+        }
+    }
+
+    private static BigDecimal money(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+}
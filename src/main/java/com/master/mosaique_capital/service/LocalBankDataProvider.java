@@ -0,0 +1,72 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.model.BankConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Fournisseur bancaire local ({@code app.bank.provider=local}), pour le développement et les tests.
+ * <p>
+ * Génère des opérations quotidiennes déterministes par compte (même compte et même jour : mêmes opérations).
+ * Le curseur est la dernière date synchronisée ; une première synchronisation remonte
+ * {@code app.bank.local.history-days} jours. Le solde est dérivé de l'état persisté de la connexion : dernier
+ * solde enregistré plus les nouvelles opérations. Le curseur et le solde étant enregistrés ensemble, un appel
+ * rejoué avec le même curseur renvoie le même solde, y compris après un redémarrage.
+ */
+@Component
+@ConditionalOnProperty(name = "app.bank.provider", havingValue = "local", matchIfMissing = true)
+public class LocalBankDataProvider implements BankDataProvider {
+
+    private static final String[] LABELS = {"CB SUPERMARCHE", "PRLV ELECTRICITE", "VIR SALAIRE", "CB RESTAURANT", "RETRAIT DAB"};
+    private static final String[] CATEGORIES = {"alimentation", "logement", "revenus", "loisirs", "especes"};
+
+    @Value("${app.bank.local.history-days:90}")
+    private int historyDays;
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public BankSyncBatch fetchSince(BankConnection connection, String cursor) {
+        String account = connection.getExternalAccountId() != null ? connection.getExternalAccountId() : connection.getId();
+        LocalDate today = LocalDate.now();
+        LocalDate from = cursor != null ? LocalDate.parse(cursor).plusDays(1) : today.minusDays(historyDays);
+
+        // Solde de départ : dernier solde enregistré, ou solde initial déterministe du compte
+        BigDecimal balance = cursor != null && connection.getLastBalance() != null
+                ? connection.getLastBalance()
+                : BigDecimal.valueOf(1000 + new SplittableRandom(account.hashCode()).nextInt(9000));
+        List<BankTransaction> transactions = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(today); day = day.plusDays(1)) {
+            for (BankTransaction transaction : dailyTransactions(account, day)) {
+                transactions.add(transaction);
+                balance = balance.add(transaction.amount());
+            }
+        }
+        return new BankSyncBatch(balance, "EUR", LocalDateTime.now(), transactions, today.toString());
+    }
+
+    private static List<BankTransaction> dailyTransactions(String account, LocalDate day) {
+        SplittableRandom random = new SplittableRandom(account.hashCode() * 31L + day.toEpochDay());
+        int count = random.nextInt(3);
+        List<BankTransaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(LABELS.length);
+            double magnitude = kind == 2 ? 1500 + random.nextDouble(1500) : 5 + random.nextDouble(150);
+            BigDecimal amount = BigDecimal.valueOf(kind == 2 ? magnitude : -magnitude).setScale(2, RoundingMode.HALF_UP);
+            transactions.add(new BankTransaction(account + "-" + day + "-" + i, day, amount, LABELS[kind], CATEGORIES[kind]));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,198 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Diffusion en temps réel du patrimoine net et de sa répartition par Server-Sent Events.
+ * <p>
+ * Un seul flux partagé est maintenu par utilisateur et par devise de reporting, quel que soit le nombre
+ * de connexions ouvertes. Les modifications d'actifs sont regroupées (debounce) afin qu'une rafale de
+ * valorisations ne déclenche qu'un seul recalcul.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NetWorthStreamService {
+
+    private final AssetService assetService;
+    private final PatrimonyCalculationService patrimonyCalculationService;
+    private final AsyncExecutors asyncExecutors;
+
+    private final Map<StreamKey, UserStream> streams = new ConcurrentHashMap<>();
+
+    @Value("${app.patrimony.stream.debounce:500ms}")
+    private Duration debounce;
+
+    @Value("${app.patrimony.stream.heartbeat:30s}")
+    private Duration heartbeat;
+
+    private record StreamKey(String userId, String currency) {
+    }
+
+    /**
+     * Flux partagé d'instantanés pour un utilisateur, alimenté par les modifications de ses actifs
+     */
+    private final class UserStream {
+        private final Sinks.Many<Boolean> changes =
+                Sinks.many().multicast().onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false);
+        private final Flux<Map<String, Object>> snapshots;
+        // Connexions ouvertes sur ce flux ; modifié uniquement dans streams.compute, sous le verrou de la clé
+        private int connections;
+
+        private UserStream(StreamKey key) {
+            this.snapshots = changes.asFlux()
+                    .sampleTimeout(change -> Mono.delay(debounce))
+                    .startWith(Boolean.TRUE)
+                    .concatMap(change -> Mono.fromFuture(() -> computeSnapshot(key))
+                            .onErrorResume(e -> {
+                                log.error("Error computing net worth snapshot for user {}: {}", key.userId(), e.getMessage());
+                                return Mono.empty();
+                            }))
+                    .replay(1)
+                    .refCount();
+        }
+
+        private void signalChange() {
+            changes.emitNext(Boolean.TRUE, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        }
+    }
+
+    /**
+     * Ouvre une connexion SSE : un premier événement "snapshot" complet, puis des événements "delta"
+     * ne contenant que les valeurs modifiées
+     */
+    public Flux<ServerSentEvent<Map<String, Object>>> subscribe(String userId, String reportingCurrency) {
+        StreamKey key = new StreamKey(userId, reportingCurrency);
+
+        return Flux.defer(() -> {
+            // Le flux est réservé et libéré sous le verrou de la clé : une connexion ne peut pas
+            // s'attacher à un flux déjà retiré de la table, qui ne recevrait plus les modifications
+            UserStream stream = streams.compute(key, (k, existing) -> {
+                UserStream acquired = existing != null ? existing : new UserStream(k);
+                acquired.connections++;
+                return acquired;
+            });
+
+            AtomicReference<Map<String, Object>> previous = new AtomicReference<>();
+            Flux<ServerSentEvent<Map<String, Object>>> updates = stream.snapshots.handle((snapshot, sink) -> {
+                Map<String, Object> last = previous.getAndSet(snapshot);
+                if (last == null) {
+                    sink.next(ServerSentEvent.<Map<String, Object>>builder(snapshot).event("snapshot").build());
+                    return;
+                }
+
+                Map<String, Object> delta = computeDelta(last, snapshot);
+                if (!delta.isEmpty()) {
+                    sink.next(ServerSentEvent.<Map<String, Object>>builder(delta).event("delta").build());
+                }
+            });
+
+            Flux<ServerSentEvent<Map<String, Object>>> keepAlive = Flux.interval(heartbeat)
+                    .map(tick -> ServerSentEvent.<Map<String, Object>>builder().comment("keepalive").build());
+
+            return Flux.merge(updates, keepAlive)
+                    .doFinally(signal -> release(key, stream));
+        });
+    }
+
+    /**
+     * Libère une connexion ; le flux est retiré de la table avec la dernière
+     */
+    private void release(StreamKey key, UserStream stream) {
+        streams.computeIfPresent(key, (k, existing) -> {
+            if (existing != stream) {
+                return existing;
+            }
+            return --existing.connections == 0 ? null : existing;
+        });
+    }
+
+    @EventListener
+    public void onAssetChanged(AssetChangedEvent event) {
+        if (event.userId() == null) {
+            return;
+        }
+
+        streams.forEach((key, stream) -> {
+            if (key.userId().equals(event.userId())) {
+                stream.signalChange();
+            }
+        });
+    }
+
+    public int getActiveStreamCount() {
+        return streams.size();
+    }
+
+    private CompletableFuture<Map<String, Object>> computeSnapshot(StreamKey key) {
+        return assetService.getAssetsByUserId(key.userId())
+                .thenApplyAsync(assets -> {
+                    Map<String, Object> snapshot = new HashMap<>();
+                    snapshot.put("netWorth", patrimonyCalculationService.computeNetWorth(assets, key.currency()));
+                    snapshot.put("distribution", patrimonyCalculationService.computeAssetDistribution(assets, key.currency()));
+                    return snapshot;
+                }, asyncExecutors.aggregation());
+    }
+
+    /**
+     * Ne conserve que les montants ayant changé depuis le dernier instantané envoyé sur la connexion
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> computeDelta(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> delta = new HashMap<>();
+
+        Map<String, Object> previousNetWorth = (Map<String, Object>) previous.get("netWorth");
+        Map<String, Object> currentNetWorth = (Map<String, Object>) current.get("netWorth");
+        BigDecimal previousValue = (BigDecimal) previousNetWorth.get("netWorth");
+        BigDecimal currentValue = (BigDecimal) currentNetWorth.get("netWorth");
+        if (previousValue.compareTo(currentValue) != 0) {
+            delta.put("netWorth", currentNetWorth);
+            delta.put("netWorthChange", currentValue.subtract(previousValue));
+        }
+
+        Map<String, Object> previousDistribution = (Map<String, Object>) previous.get("distribution");
+        Map<String, Object> currentDistribution = (Map<String, Object>) current.get("distribution");
+        for (String section : new String[]{"amountByCategory", "percentageByCategory", "amountByType", "percentageByType"}) {
+            Map<Object, Object> before = (Map<Object, Object>) previousDistribution.get(section);
+            Map<Object, Object> after = (Map<Object, Object>) currentDistribution.get(section);
+            Map<Object, Object> changed = new HashMap<>();
+
+            after.forEach((key, value) -> {
+                if (!Objects.equals(before.get(key), value)) {
+                    changed.put(key, value);
+                }
+            });
+            before.keySet().forEach(key -> {
+                if (!after.containsKey(key)) {
+                    changed.put(key, BigDecimal.ZERO);
+                }
+            });
+
+            if (!changed.isEmpty()) {
+                delta.put(section, changed);
+            }
+        }
+
+        return delta;
+    }
+}
@@ -0,0 +1,225 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calcul patrimonial en masse pour le reporting back-office.
+ * <p>
+ * Les utilisateurs sont parcourus par pages triées par identifiant ; chaque utilisateur est traité sur un
+ * thread virtuel, le nombre de lectures Firebase simultanées étant borné par un sémaphore. Après chaque page,
+ * le rapport est rendu durable puis un point de reprise est enregistré : une exécution interrompue reprend
+ * à la page suivante (les lignes de la page en cours au moment de l'arrêt peuvent apparaître deux fois).
+ */
+@Service
+@Slf4j
+public class PatrimonyBatchService {
+
+    private final UserRepository userRepository;
+    private final AssetService assetService;
+    private final PatrimonyCalculationService patrimonyCalculationService;
+    private final FxRateService fxRateService;
+    private final PatrimonyReportSink reportSink;
+
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final Timer userTimer;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Value("${app.batch.patrimony.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.batch.patrimony.parallelism:64}")
+    private int parallelism;
+
+    @Value("${app.batch.patrimony.user-timeout:30s}")
+    private Duration userTimeout;
+
+    @Value("${app.batch.patrimony.report-dir:./reports}")
+    private String reportDir;
+
+    public PatrimonyBatchService(UserRepository userRepository,
+                                 AssetService assetService,
+                                 PatrimonyCalculationService patrimonyCalculationService,
+                                 FxRateService fxRateService,
+                                 PatrimonyReportSink reportSink,
+                                 MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.assetService = assetService;
+        this.patrimonyCalculationService = patrimonyCalculationService;
+        this.fxRateService = fxRateService;
+        this.reportSink = reportSink;
+        this.processedCounter = meterRegistry.counter("patrimony.batch.users", "outcome", "success");
+        this.failedCounter = meterRegistry.counter("patrimony.batch.users", "outcome", "failure");
+        this.userTimer = meterRegistry.timer("patrimony.batch.user.duration");
+    }
+
+    /**
+     * Exécution nocturne planifiée, reprenant automatiquement l'exécution du jour si elle a été interrompue
+     */
+    @Scheduled(cron = "${app.batch.patrimony.cron:-}")
+    public void runNightly() {
+        run(LocalDate.now().toString());
+    }
+
+    /**
+     * Calcule le patrimoine de tous les utilisateurs et l'écrit dans le rapport de l'exécution
+     * @param runId identifiant de l'exécution, utilisé pour le rapport et le point de reprise
+     * @return les statistiques de l'exécution
+     */
+    public Map<String, Object> run(String runId) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A patrimony batch is already running");
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        long startNanos = System.nanoTime();
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        String currency = fxRateService.getBaseCurrency();
+
+        try {
+            String cursor = readCheckpoint(runId);
+            if (cursor != null) {
+                log.info("Resuming patrimony batch {} after user {}", runId, cursor);
+            }
+            reportSink.open(runId, cursor != null);
+
+            Semaphore permits = new Semaphore(parallelism);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                while (true) {
+                    List<String> uids = userRepository.findUidsPage(cursor, pageSize)
+                            .get(userTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                    if (uids.isEmpty()) {
+                        break;
+                    }
+
+                    List<Future<?>> page = new ArrayList<>(uids.size());
+                    for (String uid : uids) {
+                        permits.acquire();
+                        page.add(executor.submit(() -> {
+                            try {
+                                processUser(uid, currency);
+                                processed.incrementAndGet();
+                            } catch (Exception e) {
+                                failed.incrementAndGet();
+                                failedCounter.increment();
+                                log.error("Patrimony batch failed for user {}: {}", uid, e.getMessage());
+                            } finally {
+                                permits.release();
+                            }
+                        }));
+                    }
+
+                    for (Future<?> future : page) {
+                        future.get();
+                    }
+
+                    cursor = uids.get(uids.size() - 1);
+                    reportSink.flush();
+                    writeCheckpoint(runId, cursor);
+                    logThroughput(runId, processed.get(), startNanos);
+
+                    if (uids.size() < pageSize) {
+                        break;
+                    }
+                }
+            }
+
+            deleteCheckpoint(runId);
+            summary.put("status", "COMPLETED");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.put("status", "INTERRUPTED");
+            log.warn("Patrimony batch {} interrupted, it will resume from its last checkpoint", runId);
+        } catch (Exception e) {
+            summary.put("status", "FAILED");
+            log.error("Patrimony batch {} failed, it will resume from its last checkpoint: {}", runId, e.getMessage());
+        } finally {
+            try {
+                reportSink.close();
+            } catch (IOException e) {
+                log.error("Error closing patrimony report {}: {}", runId, e.getMessage());
+            }
+            running.set(false);
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        summary.put("runId", runId);
+        summary.put("processedUsers", processed.get());
+        summary.put("failedUsers", failed.get());
+        summary.put("elapsedSeconds", elapsedSeconds);
+        summary.put("usersPerSecond", elapsedSeconds > 0 ? processed.get() / elapsedSeconds : 0);
+        summary.put("completedAt", LocalDateTime.now());
+        log.info("Patrimony batch {} finished: {}", runId, summary);
+        return summary;
+    }
+
+    private void processUser(String uid, String currency) throws Exception {
+        long start = System.nanoTime();
+        List<Asset> assets = assetService.getAssetsByUserId(uid).get(userTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        Map<String, Object> netWorth = patrimonyCalculationService.computeNetWorth(assets, currency);
+        Map<String, Object> distribution = patrimonyCalculationService.computeAssetDistribution(assets, currency);
+        reportSink.write(uid, netWorth, distribution);
+        userTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        processedCounter.increment();
+    }
+
+    private void logThroughput(String runId, long processed, long startNanos) {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        log.info("Patrimony batch {}: {} users processed ({} users/s)", runId, processed,
+                String.format("%.1f", processed / Math.max(elapsedSeconds, 1e-3)));
+    }
+
+    private Path checkpointPath(String runId) {
+        return Paths.get(reportDir).resolve("patrimony-" + runId + ".checkpoint");
+    }
+
+    private String readCheckpoint(String runId) throws IOException {
+        Path path = checkpointPath(runId);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        String cursor = Files.readString(path, StandardCharsets.UTF_8).trim();
+        return cursor.isEmpty() ? null : cursor;
+    }
+
+    private void writeCheckpoint(String runId, String cursor) throws IOException {
+        Path path = checkpointPath(runId);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temporary, cursor, StandardCharsets.UTF_8);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteCheckpoint(String runId) throws IOException {
+        Files.deleteIfExists(checkpointPath(runId));
+    }
+}
@@ -1,18 +1,23 @@
 package com.master.mosaique_capital.service;
 
+import com.master.mosaique_capital.config.AsyncExecutors;
 import com.master.mosaique_capital.model.Asset;
 import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.util.MoneyAccumulator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -20,119 +25,165 @@ import java.util.stream.Collectors;
 public class PatrimonyCalculationService {
 
     private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
 
     /**
-     * Calcule le patrimoine net total d'un utilisateur
+     * Calcule le patrimoine net total d'un utilisateur dans la devise pivot
      */
     public CompletableFuture<Map<String, Object>> calculateNetWorth(String userId) {
+        return calculateNetWorth(userId, fxRateService.getBaseCurrency());
+    }
+
+    /**
+     * Calcule le patrimoine net total d'un utilisateur dans la devise de reporting
+     */
+    public CompletableFuture<Map<String, Object>> calculateNetWorth(String userId, String reportingCurrency) {
         return assetService.getAssetsByUserId(userId)
-                .thenApply(assets -> {
-                    // Valeur totale des actifs
-                    BigDecimal totalAssetsValue = assets.stream()
-                            .filter(a -> a.getCategory() != Asset.AssetCategory.LIABILITY)
-                            .map(Asset::getCurrentValue)
-                            .filter(Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    // Valeur totale des passifs
-                    BigDecimal totalLiabilitiesValue = assets.stream()
-                            .filter(a -> a.getCategory() == Asset.AssetCategory.LIABILITY)
-                            .map(Asset::getCurrentValue)
-                            .filter(Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    // Valeur nette
-                    BigDecimal netWorth = totalAssetsValue.subtract(totalLiabilitiesValue);
+                .thenApplyAsync(assets -> computeNetWorth(assets, reportingCurrency), asyncExecutors.aggregation());
+    }
 
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("totalAssetsValue", totalAssetsValue);
-                    result.put("totalLiabilitiesValue", totalLiabilitiesValue);
-                    result.put("netWorth", netWorth);
-                    result.put("calculationDate", LocalDateTime.now());
+    /**
+     * Calcule le patrimoine net à partir d'une liste d'actifs déjà chargée
+     */
+    public Map<String, Object> computeNetWorth(List<Asset> assets, String reportingCurrency) {
+        return calculationMetrics.timed("netWorth", () -> doComputeNetWorth(assets, reportingCurrency));
+    }
 
-                    return result;
-                });
+    private Map<String, Object> doComputeNetWorth(List<Asset> assets, String reportingCurrency) {
+        LocalDate today = LocalDate.now();
+
+        // Valeur totale des actifs
+        BigDecimal totalAssetsValue = assets.stream()
+                .filter(a -> a.getCategory() != Asset.AssetCategory.LIABILITY)
+                .map(a -> convertCurrentValue(a, reportingCurrency, today))
+                .collect(MoneyAccumulator.summing());
+
+        // Valeur totale des passifs
+        BigDecimal totalLiabilitiesValue = assets.stream()
+                .filter(a -> a.getCategory() == Asset.AssetCategory.LIABILITY)
+                .map(a -> convertCurrentValue(a, reportingCurrency, today))
+                .collect(MoneyAccumulator.summing());
+
+        // Valeur nette
+        BigDecimal netWorth = totalAssetsValue.subtract(totalLiabilitiesValue);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalAssetsValue", totalAssetsValue);
+        result.put("totalLiabilitiesValue", totalLiabilitiesValue);
+        result.put("netWorth", netWorth);
+        result.put("currency", reportingCurrency);
+        result.put("unconvertedCurrencies", unconvertedCurrencies(assets.stream().map(Asset::getCurrency).toList(),
+                reportingCurrency, today));
+        result.put("calculationDate", LocalDateTime.now());
+
+        return result;
     }
 
     /**
-     * Calcule la répartition des actifs par catégorie
+     * Calcule la répartition des actifs par catégorie dans la devise pivot
      */
     public CompletableFuture<Map<String, Object>> calculateAssetDistribution(String userId) {
+        return calculateAssetDistribution(userId, fxRateService.getBaseCurrency());
+    }
+
+    /**
+     * Calcule la répartition des actifs par catégorie dans la devise de reporting
+     */
+    public CompletableFuture<Map<String, Object>> calculateAssetDistribution(String userId, String reportingCurrency) {
         return assetService.getAssetsByUserId(userId)
-                .thenApply(assets -> {
-                    Map<String, Object> result = new HashMap<>();
+                .thenApplyAsync(assets -> computeAssetDistribution(assets, reportingCurrency), asyncExecutors.aggregation());
+    }
 
-                    // Valeur totale des actifs (hors passifs)
-                    BigDecimal totalAssetsValue = assets.stream()
-                            .filter(a -> a.getCategory() != Asset.AssetCategory.LIABILITY)
-                            .map(Asset::getCurrentValue)
-                            .filter(Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    // Répartition par catégorie
-                    Map<Asset.AssetCategory, BigDecimal> amountByCategory = assets.stream()
-                            .filter(a -> a.getCurrentValue() != null)
-                            .collect(Collectors.groupingBy(
-                                    Asset::getCategory,
-                                    Collectors.reducing(
-                                            BigDecimal.ZERO,
-                                            Asset::getCurrentValue,
-                                            BigDecimal::add
-                                    )
-                            ));
-
-                    // Calcul des pourcentages par catégorie
-                    Map<String, Object> percentageByCategory = new HashMap<>();
-                    if (totalAssetsValue.compareTo(BigDecimal.ZERO) > 0) {
-                        amountByCategory.forEach((category, amount) -> {
-                            if (category != Asset.AssetCategory.LIABILITY) {
-                                BigDecimal percentage = amount
-                                        .multiply(BigDecimal.valueOf(100))
-                                        .divide(totalAssetsValue, 2, RoundingMode.HALF_UP);
-                                percentageByCategory.put(category.name(), percentage);
-                            }
-                        });
-                    }
+    /**
+     * Calcule la répartition des actifs à partir d'une liste d'actifs déjà chargée
+     */
+    public Map<String, Object> computeAssetDistribution(List<Asset> assets, String reportingCurrency) {
+        return calculationMetrics.timed("assetDistribution",
+                () -> doComputeAssetDistribution(assets, reportingCurrency));
+    }
 
-                    // Répartition par type
-                    Map<Asset.AssetType, BigDecimal> amountByType = assets.stream()
-                            .filter(a -> a.getCurrentValue() != null && a.getCategory() != Asset.AssetCategory.LIABILITY)
-                            .collect(Collectors.groupingBy(
-                                    Asset::getType,
-                                    Collectors.reducing(
-                                            BigDecimal.ZERO,
-                                            Asset::getCurrentValue,
-                                            BigDecimal::add
-                                    )
-                            ));
-
-                    // Calcul des pourcentages par type
-                    Map<String, Object> percentageByType = new HashMap<>();
-                    if (totalAssetsValue.compareTo(BigDecimal.ZERO) > 0) {
-                        amountByType.forEach((type, amount) -> {
-                            BigDecimal percentage = amount
-                                    .multiply(BigDecimal.valueOf(100))
-                                    .divide(totalAssetsValue, 2, RoundingMode.HALF_UP);
-                            percentageByType.put(type.name(), percentage);
-                        });
-                    }
+    private Map<String, Object> doComputeAssetDistribution(List<Asset> assets, String reportingCurrency) {
+        LocalDate today = LocalDate.now();
+
+        Map<String, Object> result = new HashMap<>();
+
+        // Valeur totale des actifs (hors passifs)
+        BigDecimal totalAssetsValue = assets.stream()
+                .filter(a -> a.getCategory() != Asset.AssetCategory.LIABILITY)
+                .map(a -> convertCurrentValue(a, reportingCurrency, today))
+                .collect(MoneyAccumulator.summing());
+
+        // Répartition par catégorie
+        Map<Asset.AssetCategory, BigDecimal> amountByCategory = assets.stream()
+                .filter(a -> a.getCurrentValue() != null)
+                .collect(Collectors.groupingBy(
+                        Asset::getCategory,
+                        Collectors.mapping(a -> convertCurrentValue(a, reportingCurrency, today),
+                                MoneyAccumulator.summing())
+                ));
+
+        // Calcul des pourcentages par catégorie
+        Map<String, Object> percentageByCategory = new HashMap<>();
+        if (totalAssetsValue.compareTo(BigDecimal.ZERO) > 0) {
+            amountByCategory.forEach((category, amount) -> {
+                if (category != Asset.AssetCategory.LIABILITY) {
+                    BigDecimal percentage = amount
+                            .multiply(BigDecimal.valueOf(100))
+                            .divide(totalAssetsValue, 2, RoundingMode.HALF_UP);
+                    percentageByCategory.put(category.name(), percentage);
+                }
+            });
+        }
 
-                    result.put("totalAssetsValue", totalAssetsValue);
-                    result.put("amountByCategory", amountByCategory);
-                    result.put("percentageByCategory", percentageByCategory);
-                    result.put("amountByType", amountByType);
-                    result.put("percentageByType", percentageByType);
-                    result.put("calculationDate", LocalDateTime.now());
+        // Répartition par type
+        Map<Asset.AssetType, BigDecimal> amountByType = assets.stream()
+                .filter(a -> a.getCurrentValue() != null && a.getCategory() != Asset.AssetCategory.LIABILITY)
+                .collect(Collectors.groupingBy(
+                        Asset::getType,
+                        Collectors.mapping(a -> convertCurrentValue(a, reportingCurrency, today),
+                                MoneyAccumulator.summing())
+                ));
+
+        // Calcul des pourcentages par type
+        Map<String, Object> percentageByType = new HashMap<>();
+        if (totalAssetsValue.compareTo(BigDecimal.ZERO) > 0) {
+            amountByType.forEach((type, amount) -> {
+                BigDecimal percentage = amount
+                        .multiply(BigDecimal.valueOf(100))
+                        .divide(totalAssetsValue, 2, RoundingMode.HALF_UP);
+                percentageByType.put(type.name(), percentage);
+            });
+        }
 
-                    return result;
-                });
+        result.put("totalAssetsValue", totalAssetsValue);
+        result.put("amountByCategory", amountByCategory);
+        result.put("percentageByCategory", percentageByCategory);
+        result.put("amountByType", amountByType);
+        result.put("percentageByType", percentageByType);
+        result.put("currency", reportingCurrency);
+        result.put("unconvertedCurrencies", unconvertedCurrencies(assets.stream().map(Asset::getCurrency).toList(),
+                reportingCurrency, today));
+        result.put("calculationDate", LocalDateTime.now());
+
+        return result;
     }
 
     /**
-     * Calcule l'évolution de la valeur du patrimoine dans le temps
+     * Calcule l'évolution de la valeur du patrimoine dans le temps dans la devise pivot
      */
     public CompletableFuture<Map<String, Object>> calculatePatrimonyEvolution(String userId,
                                                                               LocalDateTime startDate, LocalDateTime endDate) {
+        return calculatePatrimonyEvolution(userId, startDate, endDate, fxRateService.getBaseCurrency());
+    }
+
+    /**
+     * Calcule l'évolution de la valeur du patrimoine dans le temps dans la devise de reporting
+     */
+    public CompletableFuture<Map<String, Object>> calculatePatrimonyEvolution(String userId,
+                                                                              LocalDateTime startDate, LocalDateTime endDate,
+                                                                              String reportingCurrency) {
         if (endDate == null) {
             endDate = LocalDateTime.now();
         }
@@ -146,7 +197,7 @@ public class PatrimonyCalculationService {
         final LocalDateTime finalEndDate = endDate;
 
         return assetService.getAssetsByUserId(userId)
-                .thenApply(assets -> {
+                .thenApplyAsync(assets -> calculationMetrics.timed("patrimonyEvolution", () -> {
                     Map<String, Object> result = new HashMap<>();
                     List<Map<String, Object>> evolutionPoints = new ArrayList<>();
 
@@ -176,38 +227,55 @@ public class PatrimonyCalculationService {
                     allValuationDates.add(finalStartDate);
                     allValuationDates.add(finalEndDate);
 
+                    // Historiques triés une seule fois : les dates étant parcourues dans l'ordre,
+                    // un curseur par actif suffit pour trouver la valorisation la plus récente
+                    List<List<AssetValuation>> sortedHistories = new ArrayList<>(assets.size());
+                    for (Asset asset : assets) {
+                        List<AssetValuation> history = new ArrayList<>(asset.getValuationHistory());
+                        history.sort(Comparator.comparing(AssetValuation::getValuationDate));
+                        sortedHistories.add(history);
+                    }
+                    int[] cursors = new int[assets.size()];
+
                     // Pour chaque date, calculer la valeur totale du patrimoine
                     for (LocalDateTime date : allValuationDates) {
-                        BigDecimal totalAssetsValue = BigDecimal.ZERO;
-                        BigDecimal totalLiabilitiesValue = BigDecimal.ZERO;
-
-                        for (Asset asset : assets) {
-                            // Trouver la valorisation la plus récente à cette date
-                            Optional<AssetValuation> latestValuation = asset.getValuationHistory().stream()
-                                    .filter(v -> v.getValuationDate().isBefore(date) || v.getValuationDate().isEqual(date))
-                                    .max(Comparator.comparing(AssetValuation::getValuationDate));
-
-                            if (latestValuation.isPresent()) {
-                                BigDecimal value = latestValuation.get().getValue();
-                                if (asset.getCategory() == Asset.AssetCategory.LIABILITY) {
-                                    totalLiabilitiesValue = totalLiabilitiesValue.add(value);
-                                } else {
-                                    totalAssetsValue = totalAssetsValue.add(value);
-                                }
+                        MoneyAccumulator totalAssets = MoneyAccumulator.create();
+                        MoneyAccumulator totalLiabilities = MoneyAccumulator.create();
+                        LocalDate rateDate = date.toLocalDate();
+
+                        for (int i = 0; i < assets.size(); i++) {
+                            Asset asset = assets.get(i);
+                            List<AssetValuation> history = sortedHistories.get(i);
+
+                            // Avancer jusqu'à la valorisation la plus récente à cette date
+                            while (cursors[i] < history.size() && !history.get(cursors[i]).getValuationDate().isAfter(date)) {
+                                cursors[i]++;
+                            }
+
+                            BigDecimal value = null;
+                            if (cursors[i] > 0) {
+                                AssetValuation latestValuation = history.get(cursors[i] - 1);
+                                String currency = latestValuation.getCurrency() != null
+                                        ? latestValuation.getCurrency() : asset.getCurrency();
+                                value = fxRateService.convert(latestValuation.getValue(), currency, reportingCurrency, rateDate);
                             } else if (asset.getAcquisitionDate() != null &&
                                     (asset.getAcquisitionDate().isBefore(date) ||
                                             asset.getAcquisitionDate().isEqual(date)) &&
                                     asset.getAcquisitionValue() != null) {
                                 // Si pas de valorisation mais acquis avant cette date, utiliser la valeur d'acquisition
-                                BigDecimal value = asset.getAcquisitionValue();
-                                if (asset.getCategory() == Asset.AssetCategory.LIABILITY) {
-                                    totalLiabilitiesValue = totalLiabilitiesValue.add(value);
-                                } else {
-                                    totalAssetsValue = totalAssetsValue.add(value);
-                                }
+                                value = fxRateService.convert(asset.getAcquisitionValue(), asset.getCurrency(),
+                                        reportingCurrency, rateDate);
+                            }
+
+                            if (asset.getCategory() == Asset.AssetCategory.LIABILITY) {
+                                totalLiabilities.add(value);
+                            } else {
+                                totalAssets.add(value);
                             }
                         }
 
+                        BigDecimal totalAssetsValue = totalAssets.toBigDecimal();
+                        BigDecimal totalLiabilitiesValue = totalLiabilities.toBigDecimal();
                         BigDecimal netWorth = totalAssetsValue.subtract(totalLiabilitiesValue);
 
                         Map<String, Object> point = new HashMap<>();
@@ -219,12 +287,15 @@ public class PatrimonyCalculationService {
                         evolutionPoints.add(point);
                     }
 
-                    // Trier par date
-                    evolutionPoints.sort(Comparator.comparing(p -> (LocalDateTime) p.get("date")));
-
                     result.put("evolutionPoints", evolutionPoints);
                     result.put("startDate", finalStartDate);
                     result.put("endDate", finalEndDate);
+                    result.put("currency", reportingCurrency);
+                    // Un taux connu au début de la période l'est aussi aux dates suivantes
+                    result.put("unconvertedCurrencies", unconvertedCurrencies(assets.stream()
+                            .flatMap(asset -> Stream.concat(Stream.of(asset.getCurrency()),
+                                    asset.getValuationHistory().stream().map(AssetValuation::getCurrency)))
+                            .toList(), reportingCurrency, finalStartDate.toLocalDate()));
 
                     // Calculer la variation totale
                     if (evolutionPoints.size() >= 2) {
@@ -242,6 +313,20 @@ public class PatrimonyCalculationService {
                     }
 
                     return result;
-                });
+                }), asyncExecutors.aggregation());
+    }
+
+    /**
+     * Devises sans taux connu vers la devise de reporting : leurs montants sont additionnés sans conversion
+     */
+    private List<String> unconvertedCurrencies(List<String> currencies, String reportingCurrency, LocalDate date) {
+        return List.copyOf(fxRateService.unconvertedCurrencies(new HashSet<>(currencies), reportingCurrency, date));
+    }
+
+    /**
+     * Valeur courante d'un actif convertie dans la devise de reporting
+     */
+    private BigDecimal convertCurrentValue(Asset asset, String reportingCurrency, LocalDate date) {
+        return fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, date);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.master.mosaique_capital.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Destination des résultats du calcul patrimonial en masse
+ */
+public interface PatrimonyReportSink {
+
+    /**
+     * Ouvre le rapport d'une exécution
+     * @param runId identifiant de l'exécution
+     * @param resume true si l'exécution reprend après un point de reprise
+     */
+    void open(String runId, boolean resume) throws IOException;
+
+    /**
+     * Ecrit le résultat d'un utilisateur ; doit être thread-safe
+     */
+    void write(String userId, Map<String, Object> netWorth, Map<String, Object> distribution) throws IOException;
+
+    /**
+     * Rend durables les résultats écrits jusqu'ici, avant l'enregistrement d'un point de reprise
+     */
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
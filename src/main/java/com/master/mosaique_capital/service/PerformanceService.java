@@ -0,0 +1,437 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.model.Transaction;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.repository.TransactionRepository;
+import com.master.mosaique_capital.util.UserScopedCache;
+import com.master.mosaique_capital.util.Xirr;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Performance des actifs et du portefeuille : rendement pondéré par le temps (TWR) et taux de rendement
+ * interne (XIRR), à partir de l'historique de valorisation et des flux du grand livre.
+ * <p>
+ * Pour chaque actif, les sous-périodes entre deux valorisations donnent un rendement corrigé des flux de la
+ * sous-période ; leurs logarithmes cumulés sont mémorisés. Le TWR d'une plage quelconque se lit alors par
+ * différence de deux cumuls (deux recherches dichotomiques), sans recalcul. Ces séries sont en cache par
+ * utilisateur et devise, invalidé à chaque {@link AssetChangedEvent}. Les XIRR de tous les actifs d'une
+ * requête sont résolus ensemble par {@link Xirr.Batch}. TWR et XIRR d'une plage partent tous deux de la dernière
+ * valorisation au plus tard au début demandé, retournée dans {@code periodStart}.
+ * <p>
+ * Les passifs sont exclus. Dans le portefeuille, l'entrée d'un actif compte comme un apport de sa première valeur.
+ */
+@Service
+@Slf4j
+public class PerformanceService {
+
+    private static final double DAYS_PER_YEAR = 365.25;
+    private static final double MIN_RATIO = 1e-12;
+
+    private final AssetService assetService;
+    private final TransactionRepository transactionRepository;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
+
+    @Value("${app.performance.cache-ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${app.performance.cache.max-entries:10000}")
+    private int maxEntries;
+
+    // Séries par utilisateur, clé : devise de reporting
+    private final UserScopedCache<String, CachedReturns> cache =
+            new UserScopedCache<>(() -> maxEntries, () -> cacheTtl);
+
+    /**
+     * Série de valeurs d'un actif (ou du portefeuille) dans la devise de reporting, triée par jour.
+     * {@code cumulativeLog[k]} est la somme des log-rendements des sous-périodes jusqu'au point {@code k}.
+     */
+    private record ReturnSeries(Asset asset, long[] days, double[] values, double[] cumulativeLog,
+                                long[] flowDays, double[] flowAmounts) {
+    }
+
+    private record CachedReturns(List<ReturnSeries> assets, ReturnSeries portfolio) {
+    }
+
+    public PerformanceService(AssetService assetService,
+                              TransactionRepository transactionRepository,
+                              FxRateService fxRateService,
+                              AsyncExecutors asyncExecutors,
+                              CalculationMetrics calculationMetrics) {
+        this.assetService = assetService;
+        this.transactionRepository = transactionRepository;
+        this.fxRateService = fxRateService;
+        this.asyncExecutors = asyncExecutors;
+        this.calculationMetrics = calculationMetrics;
+    }
+
+    /**
+     * Calcule la performance du portefeuille et de chaque actif sur une période, dans la devise de reporting
+     * @param startDate début de la période (par défaut un an avant la fin)
+     * @param endDate fin de la période (par défaut aujourd'hui)
+     */
+    public CompletableFuture<Map<String, Object>> calculatePerformance(String userId, LocalDate startDate,
+                                                                       LocalDate endDate, String reportingCurrency) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : end.minusYears(1);
+        if (start.isAfter(end)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("startDate must not be after endDate"));
+        }
+
+        return returns(userId, reportingCurrency)
+                .thenApplyAsync(returns -> calculationMetrics.timed("performance",
+                                () -> computePerformance(returns, start, end, reportingCurrency)),
+                        asyncExecutors.aggregation());
+    }
+
+    /**
+     * Invalide les séries d'un utilisateur dont un actif a changé
+     */
+    @EventListener
+    public void onAssetChanged(AssetChangedEvent event) {
+        cache.invalidate(event.userId());
+    }
+
+    private CompletableFuture<CachedReturns> returns(String userId, String reportingCurrency) {
+        return cache.get(userId, reportingCurrency, () -> assetService.getAssetsByUserId(userId)
+                .thenCompose(assets -> {
+                    List<Asset> investments = assets.stream()
+                            .filter(asset -> asset.getCategory() != Asset.AssetCategory.LIABILITY)
+                            .toList();
+                    LocalDate firstDate = investments.stream()
+                            .map(PerformanceService::firstDate)
+                            .filter(date -> date != null)
+                            .min(Comparator.naturalOrder())
+                            .orElse(LocalDate.now());
+                    return transactionRepository.findByUserIdAndPeriod(userId, firstDate, LocalDate.now())
+                            .thenApplyAsync(transactions -> build(investments, transactions, reportingCurrency),
+                                    asyncExecutors.aggregation());
+                }));
+    }
+
+    private CachedReturns build(List<Asset> assets, List<Transaction> transactions, String reportingCurrency) {
+        Map<String, List<Transaction>> flowsByAsset = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getAssetId() != null && transaction.getAmount() != null) {
+                flowsByAsset.computeIfAbsent(transaction.getAssetId(), id -> new ArrayList<>()).add(transaction);
+            }
+        }
+
+        List<ReturnSeries> series = new ArrayList<>(assets.size());
+        for (Asset asset : assets) {
+            ReturnSeries assetSeries = assetSeries(asset, flowsByAsset.getOrDefault(asset.getId(), List.of()),
+                    reportingCurrency);
+            if (assetSeries != null) {
+                series.add(assetSeries);
+            }
+        }
+        return new CachedReturns(series, portfolioSeries(series));
+    }
+
+    private ReturnSeries assetSeries(Asset asset, List<Transaction> transactions, String reportingCurrency) {
+        List<AssetValuation> history = new ArrayList<>(asset.getValuationHistory());
+        history.removeIf(valuation -> valuation.getValue() == null || valuation.getValuationDate() == null);
+        history.sort(Comparator.comparing(AssetValuation::getValuationDate));
+
+        long[] days = new long[history.size() + 1];
+        double[] values = new double[history.size() + 1];
+        int size = 0;
+
+        if (asset.getAcquisitionDate() != null && asset.getAcquisitionValue() != null
+                && (history.isEmpty() || asset.getAcquisitionDate().isBefore(history.get(0).getValuationDate()))) {
+            LocalDate date = asset.getAcquisitionDate().toLocalDate();
+            days[size] = date.toEpochDay();
+            values[size++] = fxRateService.convert(asset.getAcquisitionValue(), asset.getCurrency(), reportingCurrency, date)
+                    .doubleValue();
+        }
+        for (AssetValuation valuation : history) {
+            LocalDate date = valuation.getValuationDate().toLocalDate();
+            String currency = valuation.getCurrency() != null ? valuation.getCurrency() : asset.getCurrency();
+            double value = fxRateService.convert(valuation.getValue(), currency, reportingCurrency, date)
+                    .doubleValue();
+            // Plusieurs valorisations le même jour : la dernière fait foi
+            if (size > 0 && days[size - 1] == date.toEpochDay()) {
+                values[size - 1] = value;
+            } else {
+                days[size] = date.toEpochDay();
+                values[size++] = value;
+            }
+        }
+
+        if (size == 0) {
+            if (asset.getCurrentValue() == null) {
+                return null;
+            }
+            LocalDate date = asset.getLastUpdateDate() != null ? asset.getLastUpdateDate().toLocalDate() : LocalDate.now();
+            days[0] = date.toEpochDay();
+            values[0] = fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, date)
+                    .doubleValue();
+            size = 1;
+        }
+
+        long[] flowDays = new long[transactions.size()];
+        double[] flowAmounts = new double[transactions.size()];
+        List<Transaction> sorted = new ArrayList<>(transactions);
+        sorted.sort(Comparator.comparing(Transaction::getDate));
+        for (int i = 0; i < sorted.size(); i++) {
+            Transaction transaction = sorted.get(i);
+            String currency = transaction.getCurrency() != null ? transaction.getCurrency() : asset.getCurrency();
+            flowDays[i] = transaction.getDate().toEpochDay();
+            flowAmounts[i] = fxRateService.convert(transaction.getAmount(), currency, reportingCurrency,
+                    transaction.getDate()).doubleValue();
+        }
+
+        days = Arrays.copyOf(days, size);
+        values = Arrays.copyOf(values, size);
+        return new ReturnSeries(asset, days, values, cumulativeLog(days, values, flowDays, flowAmounts),
+                flowDays, flowAmounts);
+    }
+
+    /**
+     * Série du portefeuille : la valeur totale change à chaque valorisation d'un actif ; l'entrée d'un actif
+     * après le début de la série est un apport implicite de sa première valeur
+     */
+    private ReturnSeries portfolioSeries(List<ReturnSeries> series) {
+        int points = 0;
+        int flows = 0;
+        for (ReturnSeries assetSeries : series) {
+            points += assetSeries.days().length;
+            flows += assetSeries.flowDays().length;
+        }
+        if (points == 0) {
+            return null;
+        }
+
+        // Variations de valeur triées par jour : clé (jour << 32 | indice de la variation)
+        long[] keys = new long[points];
+        double[] deltas = new double[points];
+        long[] flowKeys = new long[flows + series.size()];
+        double[] flowValues = new double[flows + series.size()];
+        long firstDay = Long.MAX_VALUE;
+        for (ReturnSeries assetSeries : series) {
+            firstDay = Math.min(firstDay, assetSeries.days()[0]);
+        }
+
+        int point = 0;
+        int flow = 0;
+        for (ReturnSeries assetSeries : series) {
+            double previous = 0;
+            for (int k = 0; k < assetSeries.days().length; k++) {
+                keys[point] = (assetSeries.days()[k] << 32) | point;
+                deltas[point++] = assetSeries.values()[k] - previous;
+                previous = assetSeries.values()[k];
+            }
+            if (assetSeries.days()[0] > firstDay) {
+                flowKeys[flow] = (assetSeries.days()[0] << 32) | flow;
+                flowValues[flow++] = assetSeries.values()[0];
+            }
+            for (int k = 0; k < assetSeries.flowDays().length; k++) {
+                flowKeys[flow] = (assetSeries.flowDays()[k] << 32) | flow;
+                flowValues[flow++] = assetSeries.flowAmounts()[k];
+            }
+        }
+        Arrays.sort(keys);
+
+        long[] days = new long[points];
+        double[] values = new double[points];
+        int size = 0;
+        double total = 0;
+        for (long key : keys) {
+            long day = key >> 32;
+            total += deltas[(int) key];
+            if (size > 0 && days[size - 1] == day) {
+                values[size - 1] = total;
+            } else {
+                days[size] = day;
+                values[size++] = total;
+            }
+        }
+
+        flowKeys = Arrays.copyOf(flowKeys, flow);
+        Arrays.sort(flowKeys);
+        long[] flowDays = new long[flow];
+        double[] flowAmounts = new double[flow];
+        for (int i = 0; i < flow; i++) {
+            flowDays[i] = flowKeys[i] >> 32;
+            flowAmounts[i] = flowValues[(int) flowKeys[i]];
+        }
+
+        days = Arrays.copyOf(days, size);
+        values = Arrays.copyOf(values, size);
+        return new ReturnSeries(null, days, values, cumulativeLog(days, values, flowDays, flowAmounts),
+                flowDays, flowAmounts);
+    }
+
+    /**
+     * Cumul des log-rendements : sur chaque sous-période, (valeur de fin - flux de la sous-période) / valeur de début
+     */
+    private static double[] cumulativeLog(long[] days, double[] values, long[] flowDays, double[] flowAmounts) {
+        double[] cumulative = new double[days.length];
+        int flow = 0;
+        while (flow < flowDays.length && flowDays[flow] <= days[0]) {
+            flow++;
+        }
+        for (int k = 1; k < days.length; k++) {
+            double flows = 0;
+            while (flow < flowDays.length && flowDays[flow] <= days[k]) {
+                flows += flowAmounts[flow++];
+            }
+            double logReturn = 0;
+            if (values[k - 1] > 0) {
+                logReturn = Math.log(Math.max((values[k] - flows) / values[k - 1], MIN_RATIO));
+            }
+            cumulative[k] = cumulative[k - 1] + logReturn;
+        }
+        return cumulative;
+    }
+
+    private Map<String, Object> computePerformance(CachedReturns returns, LocalDate start, LocalDate end,
+                                                   String reportingCurrency) {
+        long fromDay = start.toEpochDay();
+        long toDay = end.toEpochDay();
+
+        Xirr.Batch xirr = new Xirr.Batch();
+        List<Map<String, Object>> assetResults = new ArrayList<>(returns.assets().size());
+        List<Integer> problems = new ArrayList<>(returns.assets().size());
+        for (ReturnSeries series : returns.assets()) {
+            Map<String, Object> result = rangePerformance(series, fromDay, toDay, xirr);
+            if (result != null) {
+                result.put("assetId", series.asset().getId());
+                result.put("name", series.asset().getName());
+                result.put("type", series.asset().getType());
+                assetResults.add(result);
+                problems.add((Integer) result.remove("problem"));
+            }
+        }
+
+        Map<String, Object> portfolio = returns.portfolio() != null
+                ? rangePerformance(returns.portfolio(), fromDay, toDay, xirr)
+                : null;
+
+        double[] rates = xirr.solve();
+        for (int i = 0; i < assetResults.size(); i++) {
+            assetResults.get(i).put("xirr", rate(rates[problems.get(i)]));
+        }
+        if (portfolio != null) {
+            portfolio.put("xirr", rate(rates[(Integer) portfolio.remove("problem")]));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("startDate", start);
+        result.put("endDate", end);
+        result.put("currency", reportingCurrency);
+        result.put("portfolio", portfolio);
+        result.put("assets", assetResults);
+        result.put("calculatedAt", LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * TWR et échéancier XIRR d'une série sur une plage ; null si la série commence après la plage
+     */
+    private static Map<String, Object> rangePerformance(ReturnSeries series, long fromDay, long toDay, Xirr.Batch xirr) {
+        long[] days = series.days();
+        int last = floorIndex(days, toDay);
+        if (last < 0) {
+            return null;
+        }
+        int first = floorIndex(days, fromDay);
+        boolean entered = first < 0;
+        if (entered) {
+            // L'actif apparaît pendant la plage : la période commence à sa première valeur
+            first = 0;
+        }
+
+        // TWR et XIRR partent du même point : la valorisation au plus tard au début demandé, ou l'entrée de l'actif
+        long originDay = days[first];
+        double startValue = series.values()[first];
+        double endValue = series.values()[last];
+        double twr = Math.exp(series.cumulativeLog()[last] - series.cumulativeLog()[first]) - 1;
+
+        xirr.add(-startValue, 0);
+        double netFlows = entered ? startValue : 0;
+        long[] flowDays = series.flowDays();
+        for (int k = upperIndex(flowDays, originDay); k < flowDays.length && flowDays[k] <= toDay; k++) {
+            xirr.add(-series.flowAmounts()[k], (flowDays[k] - originDay) / DAYS_PER_YEAR);
+            netFlows += series.flowAmounts()[k];
+        }
+        xirr.add(endValue, (toDay - originDay) / DAYS_PER_YEAR);
+
+        long periodDays = toDay - originDay;
+        Map<String, Object> result = new HashMap<>();
+        result.put("periodStart", LocalDate.ofEpochDay(originDay));
+        result.put("startValue", amount(entered ? 0 : startValue));
+        result.put("endValue", amount(endValue));
+        result.put("netFlows", amount(netFlows));
+        result.put("twr", rate(twr));
+        result.put("annualizedTwr", periodDays >= DAYS_PER_YEAR
+                ? rate(Math.pow(1 + twr, DAYS_PER_YEAR / periodDays) - 1)
+                : null);
+        result.put("problem", xirr.close());
+        return result;
+    }
+
+    /**
+     * Indice du dernier jour inférieur ou égal à {@code day}, -1 s'il n'y en a pas
+     */
+    private static int floorIndex(long[] days, long day) {
+        int index = Arrays.binarySearch(days, day);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Indice du premier jour strictement supérieur à {@code day} ({@code days} peut contenir des doublons)
+     */
+    private static int upperIndex(long[] days, long day) {
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days[middle] <= day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static LocalDate firstDate(Asset asset) {
+        LocalDateTime first = asset.getAcquisitionDate();
+        for (AssetValuation valuation : asset.getValuationHistory()) {
+            if (valuation.getValuationDate() != null && (first == null || valuation.getValuationDate().isBefore(first))) {
+                first = valuation.getValuationDate();
+            }
+        }
+        return first != null ? first.toLocalDate() : null;
+    }
+
+    private static BigDecimal amount(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal rate(double value) {
+        return Double.isFinite(value) ? BigDecimal.valueOf(value).setScale(6, RoundingMode.HALF_UP) : null;
+    }
+}
@@ -0,0 +1,316 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.util.CorrelationMatrix;
+import com.master.mosaique_capital.util.UserScopedCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Volatilité par actif, matrice de corrélation et volatilité du portefeuille, à partir de l'historique
+ * de valorisation (hors passifs).
+ * <p>
+ * Les valorisations, à dates irrégulières, sont alignées sur une grille quotidienne ou hebdomadaire par
+ * interpolation linéaire entre deux valorisations ; avant la première et après la dernière valorisation,
+ * la série est absente (reporter la dernière valeur ajouterait des rendements nuls fictifs). Les log-rendements alignés sont
+ * stockés dans un tableau {@code double} unique et mis en cache par utilisateur, devise, fréquence et
+ * période, invalidé à chaque {@link AssetChangedEvent}. La matrice est calculée par tuiles sur le pool
+ * d'agrégation ({@link CorrelationMatrix}).
+ */
+@Service
+@Slf4j
+public class RiskAnalysisService {
+
+    public enum Frequency {
+        DAILY(1, 365),
+        WEEKLY(7, 52);
+
+        private final int stepDays;
+        private final int periodsPerYear;
+
+        Frequency(int stepDays, int periodsPerYear) {
+            this.stepDays = stepDays;
+            this.periodsPerYear = periodsPerYear;
+        }
+
+        public static Frequency from(String value) {
+            if (value == null || value.isBlank()) {
+                return WEEKLY;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported frequency: " + value);
+            }
+        }
+    }
+
+    /**
+     * Rendements alignés : ligne {@code i} = actif {@code assets.get(i)}, {@code returns[i * periods + t]}
+     */
+    private record AlignedReturns(List<Asset> assets, double[] returns, int periods, double[] currentValues) {
+    }
+
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
+
+    @Value("${app.risk.block-size:64}")
+    private int blockSize;
+
+    @Value("${app.risk.min-observations:8}")
+    private int minObservations;
+
+    @Value("${app.risk.max-periods:3660}")
+    private int maxPeriods;
+
+    @Value("${app.risk.cache-ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${app.risk.cache.max-entries:1000}")
+    private int maxEntries;
+
+    // Séries alignées par utilisateur, clé "devise|fréquence|début|périodes"
+    private final UserScopedCache<String, AlignedReturns> cache =
+            new UserScopedCache<>(() -> maxEntries, () -> cacheTtl);
+
+    public RiskAnalysisService(AssetService assetService,
+                               FxRateService fxRateService,
+                               AsyncExecutors asyncExecutors,
+                               CalculationMetrics calculationMetrics) {
+        this.assetService = assetService;
+        this.fxRateService = fxRateService;
+        this.asyncExecutors = asyncExecutors;
+        this.calculationMetrics = calculationMetrics;
+    }
+
+    /**
+     * Calcule volatilités et corrélations sur une période
+     * @param startDate début de la période (par défaut un an avant la fin)
+     * @param endDate fin de la période (par défaut aujourd'hui)
+     */
+    public CompletableFuture<Map<String, Object>> calculateRisk(String userId, LocalDate startDate, LocalDate endDate,
+                                                                Frequency frequency, String reportingCurrency) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : end.minusYears(1);
+        long periods = (end.toEpochDay() - start.toEpochDay()) / frequency.stepDays;
+        if (periods < 2 || periods > maxPeriods) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "The period must contain between 2 and " + maxPeriods + " " + frequency.name().toLowerCase() + " steps"));
+        }
+
+        return alignedReturns(userId, start, (int) periods, frequency, reportingCurrency)
+                .thenApplyAsync(aligned -> calculationMetrics.timed("risk",
+                                () -> computeRisk(aligned, start, end, frequency, reportingCurrency)),
+                        asyncExecutors.aggregation());
+    }
+
+    /**
+     * Invalide les séries d'un utilisateur dont un actif a changé
+     */
+    @EventListener
+    public void onAssetChanged(AssetChangedEvent event) {
+        cache.invalidate(event.userId());
+    }
+
+    private CompletableFuture<AlignedReturns> alignedReturns(String userId, LocalDate start, int periods,
+                                                             Frequency frequency, String reportingCurrency) {
+        String key = reportingCurrency + "|" + frequency + "|" + start + "|" + periods;
+        return cache.get(userId, key, () -> assetService.getAssetsByUserId(userId)
+                .thenApplyAsync(assets -> align(assets, start, periods, frequency, reportingCurrency),
+                        asyncExecutors.aggregation()));
+    }
+
+    private AlignedReturns align(List<Asset> assets, LocalDate start, int periods, Frequency frequency,
+                                 String reportingCurrency) {
+        List<Asset> aligned = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        long startDay = start.toEpochDay();
+
+        double[] levels = new double[periods + 1];
+        for (Asset asset : assets) {
+            if (asset.getCategory() == Asset.AssetCategory.LIABILITY) {
+                continue;
+            }
+            List<AssetValuation> history = new ArrayList<>(asset.getValuationHistory());
+            history.removeIf(valuation -> valuation.getValue() == null || valuation.getValuationDate() == null);
+            if (history.size() < 2) {
+                continue;
+            }
+            history.sort(Comparator.comparing(AssetValuation::getValuationDate));
+
+            long[] days = new long[history.size()];
+            double[] values = new double[history.size()];
+            for (int k = 0; k < history.size(); k++) {
+                AssetValuation valuation = history.get(k);
+                LocalDate date = valuation.getValuationDate().toLocalDate();
+                String currency = valuation.getCurrency() != null ? valuation.getCurrency() : asset.getCurrency();
+                days[k] = date.toEpochDay();
+                values[k] = fxRateService.convert(valuation.getValue(), currency, reportingCurrency, date).doubleValue();
+            }
+
+            // Niveaux aux points de la grille, curseur unique sur l'historique trié
+            int cursor = 0;
+            for (int t = 0; t <= periods; t++) {
+                long day = startDay + (long) t * frequency.stepDays;
+                while (cursor < days.length && days[cursor] <= day) {
+                    cursor++;
+                }
+                if (cursor == 0) {
+                    levels[t] = Double.NaN;
+                } else if (cursor == days.length) {
+                    // Valeur connue au jour de la dernière valorisation seulement
+                    levels[t] = days[days.length - 1] == day ? values[days.length - 1] : Double.NaN;
+                } else {
+                    long previousDay = days[cursor - 1];
+                    double fraction = (double) (day - previousDay) / (days[cursor] - previousDay);
+                    levels[t] = values[cursor - 1] + fraction * (values[cursor] - values[cursor - 1]);
+                }
+            }
+
+            double[] row = new double[periods];
+            int observations = 0;
+            for (int t = 0; t < periods; t++) {
+                double from = levels[t];
+                double to = levels[t + 1];
+                if (from > 0 && to > 0) {
+                    row[t] = Math.log(to / from);
+                    observations++;
+                } else {
+                    row[t] = Double.NaN;
+                }
+            }
+            if (observations > 0) {
+                aligned.add(asset);
+                rows.add(row);
+            }
+        }
+
+        double[] returns = new double[aligned.size() * periods];
+        double[] currentValues = new double[aligned.size()];
+        for (int i = 0; i < aligned.size(); i++) {
+            System.arraycopy(rows.get(i), 0, returns, i * periods, periods);
+            Asset asset = aligned.get(i);
+            BigDecimal value = fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, today);
+            currentValues[i] = value != null ? value.doubleValue() : 0;
+        }
+        return new AlignedReturns(List.copyOf(aligned), returns, periods, currentValues);
+    }
+
+    private Map<String, Object> computeRisk(AlignedReturns aligned, LocalDate start, LocalDate end,
+                                            Frequency frequency, String reportingCurrency) {
+        int series = aligned.assets().size();
+        int periods = aligned.periods();
+        double annualization = Math.sqrt(frequency.periodsPerYear);
+
+        double[] volatilities = new double[series];
+        List<Map<String, Object>> assetResults = new ArrayList<>(series);
+        for (int i = 0; i < series; i++) {
+            Asset asset = aligned.assets().get(i);
+            int observations = 0;
+            for (int t = i * periods; t < (i + 1) * periods; t++) {
+                if (!Double.isNaN(aligned.returns()[t])) {
+                    observations++;
+                }
+            }
+            volatilities[i] = observations >= minObservations
+                    ? CorrelationMatrix.standardDeviation(aligned.returns(), i * periods, periods) * annualization
+                    : Double.NaN;
+
+            Map<String, Object> line = new HashMap<>();
+            line.put("assetId", asset.getId());
+            line.put("name", asset.getName());
+            line.put("type", asset.getType());
+            line.put("observations", observations);
+            line.put("volatility", rate(volatilities[i]));
+            assetResults.add(line);
+        }
+
+        double[] matrix = CorrelationMatrix.compute(aligned.returns(), series, periods, minObservations, blockSize,
+                asyncExecutors.aggregationPool());
+
+        List<String> assetIds = new ArrayList<>(series);
+        Double[][] correlation = new Double[series][series];
+        for (int i = 0; i < series; i++) {
+            assetIds.add(aligned.assets().get(i).getId());
+            for (int j = 0; j < series; j++) {
+                double value = matrix[i * series + j];
+                correlation[i][j] = Double.isNaN(value) ? null : Math.round(value * 1e4) / 1e4;
+            }
+        }
+
+        Map<String, Object> correlationResult = new HashMap<>();
+        correlationResult.put("assetIds", assetIds);
+        correlationResult.put("matrix", correlation);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("startDate", start);
+        result.put("endDate", end);
+        result.put("frequency", frequency);
+        result.put("periods", periods);
+        result.put("currency", reportingCurrency);
+        result.put("assets", assetResults);
+        result.put("correlation", correlationResult);
+        result.put("portfolioVolatility", rate(portfolioVolatility(aligned.currentValues(), volatilities, matrix)));
+        result.put("calculationDate", LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * Volatilité du portefeuille aux poids actuels : racine de w' Σ w, Σ étant reconstituée à partir des
+     * volatilités et corrélations ; les actifs sans volatilité ou corrélation connue sont exclus
+     */
+    private static double portfolioVolatility(double[] currentValues, double[] volatilities, double[] matrix) {
+        int series = volatilities.length;
+        double[] weights = new double[series];
+        double total = 0;
+        for (int i = 0; i < series; i++) {
+            if (!Double.isNaN(volatilities[i]) && currentValues[i] > 0) {
+                weights[i] = currentValues[i];
+                total += currentValues[i];
+            }
+        }
+        if (total <= 0) {
+            return Double.NaN;
+        }
+
+        double variance = 0;
+        for (int i = 0; i < series; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            double weightedI = weights[i] / total * volatilities[i];
+            for (int j = 0; j < series; j++) {
+                double correlation = matrix[i * series + j];
+                if (weights[j] != 0 && !Double.isNaN(correlation)) {
+                    variance += weightedI * (weights[j] / total) * volatilities[j] * correlation;
+                }
+            }
+        }
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    private static BigDecimal rate(double value) {
+        return Double.isFinite(value) ? BigDecimal.valueOf(value).setScale(6, RoundingMode.HALF_UP) : null;
+    }
+}
@@ -0,0 +1,441 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.dto.SimulationRequestDto;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.util.QuantileSketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.Serial;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Projection Monte-Carlo du patrimoine net sur plusieurs années.
+ * <p>
+ * Chaque catégorie d'actifs suit un mouvement brownien géométrique selon ses hypothèses de rendement et de
+ * volatilité (passifs soustraits). Les trajectoires sont réparties en lots calculés en parallèle sur le pool
+ * de simulation, chaque lot ayant son propre flux {@link SplittableRandom} (issu de {@code split()} : résultats
+ * reproductibles à graine égale) et ses valeurs courantes dans un tableau primitif. Le patrimoine de fin
+ * d'année alimente un {@link QuantileSketch} par année et par lot, fusionnés à la fin : aucune trajectoire
+ * n'est conservée.
+ * <p>
+ * Une simulation s'exécute en arrière-plan ; elle peut être annulée et est interrompue au-delà de
+ * {@code app.simulation.max-duration}. Dans ces deux cas, les bandes sont calculées sur les trajectoires terminées.
+ * Le nombre de simulations en cours est borné globalement ({@code app.simulation.max-running}) et par
+ * utilisateur ({@code app.simulation.max-running-per-user}) ; la place est réservée avant le lancement.
+ */
+@Service
+@Slf4j
+public class SimulationService {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        TIMED_OUT,
+        FAILED
+    }
+
+    private static final double SKETCH_ACCURACY = 0.005;
+    private static final double[] PERCENTILES = {0.05, 0.25, 0.50, 0.75, 0.95};
+    // Fréquence de vérification de l'annulation et de l'échéance, en trajectoires
+    private static final int CHECK_INTERVAL = 64;
+
+    // Hypothèses par défaut (rendement annuel, volatilité annuelle) par catégorie
+    private static final Map<Asset.AssetCategory, SimulationRequestDto.Assumption> DEFAULT_ASSUMPTIONS =
+            new EnumMap<>(Map.of(
+                    Asset.AssetCategory.LIQUID, new SimulationRequestDto.Assumption(0.01, 0.005),
+                    Asset.AssetCategory.INVESTMENT, new SimulationRequestDto.Assumption(0.06, 0.16),
+                    Asset.AssetCategory.TANGIBLE, new SimulationRequestDto.Assumption(0.025, 0.08),
+                    Asset.AssetCategory.RETIREMENT, new SimulationRequestDto.Assumption(0.045, 0.10),
+                    Asset.AssetCategory.INSURANCE, new SimulationRequestDto.Assumption(0.03, 0.04),
+                    Asset.AssetCategory.LIABILITY, new SimulationRequestDto.Assumption(0.0, 0.0),
+                    Asset.AssetCategory.OTHER, new SimulationRequestDto.Assumption(0.02, 0.10)));
+
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final Counter pathsCounter;
+
+    @Value("${app.simulation.max-paths:200000}")
+    private int maxPaths;
+
+    @Value("${app.simulation.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.simulation.max-duration:30s}")
+    private Duration maxDuration;
+
+    @Value("${app.simulation.max-running:4}")
+    private int maxRunning;
+
+    @Value("${app.simulation.max-running-per-user:1}")
+    private int maxRunningPerUser;
+
+    @Value("${app.simulation.retention:15m}")
+    private Duration retention;
+
+    private final ConcurrentHashMap<String, SimulationRun> runs = new ConcurrentHashMap<>();
+    // Places réservées : globalement, et par utilisateur sous le verrou de sa clé
+    private final AtomicInteger running = new AtomicInteger();
+    private final ConcurrentHashMap<String, Integer> runningByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Simulation en cours ou terminée
+     */
+    private static final class SimulationRun {
+        final String id;
+        final String userId;
+        final String currency;
+        final SimulationRequestDto request;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos;
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        volatile Status status = Status.RUNNING;
+        volatile Map<String, Object> result;
+        volatile long finishedAtMillis;
+
+        SimulationRun(String userId, String currency, SimulationRequestDto request, Duration maxDuration) {
+            this.id = UUID.randomUUID().toString();
+            this.userId = userId;
+            this.currency = currency;
+            this.request = request;
+            this.deadlineNanos = startNanos + maxDuration.toNanos();
+        }
+
+        boolean shouldStop() {
+            return cancelled.get() || System.nanoTime() - deadlineNanos > 0;
+        }
+    }
+
+    /**
+     * Paramètres d'une simulation par catégorie présente dans le patrimoine
+     */
+    private record Model(double[] initial, double[] drift, double[] diffusion, double[] sign,
+                         int years, int stepsPerYear) {
+    }
+
+    public SimulationService(AssetService assetService,
+                             FxRateService fxRateService,
+                             AsyncExecutors asyncExecutors,
+                             MeterRegistry meterRegistry) {
+        this.assetService = assetService;
+        this.fxRateService = fxRateService;
+        this.asyncExecutors = asyncExecutors;
+        this.pathsCounter = meterRegistry.counter("patrimony.simulation.paths");
+        meterRegistry.gauge("patrimony.simulation.running", runs,
+                r -> r.values().stream().filter(run -> run.status == Status.RUNNING).count());
+    }
+
+    /**
+     * Lance une simulation en arrière-plan
+     * @return l'état initial de la simulation, avec son identifiant
+     * @throws IllegalArgumentException si la demande dépasse les limites configurées
+     * @throws IllegalStateException si trop de simulations sont en cours
+     */
+    public CompletableFuture<Map<String, Object>> startSimulation(String userId, SimulationRequestDto request,
+                                                                  String reportingCurrency) {
+        if (request.getPaths() > maxPaths) {
+            throw new IllegalArgumentException("At most " + maxPaths + " paths can be simulated");
+        }
+        if (!reserve(userId)) {
+            throw new IllegalStateException("Too many simulations are running");
+        }
+
+        CompletableFuture<Map<String, Object>> started = assetService.getAssetsByUserId(userId)
+                .thenApplyAsync(assets -> {
+                    SimulationRun run = new SimulationRun(userId, reportingCurrency, request, maxDuration);
+                    Model model = model(assets, request, reportingCurrency);
+                    runs.put(run.id, run);
+                    Map<String, Object> snapshot = snapshot(run);
+                    try {
+                        CompletableFuture.runAsync(() -> execute(run, model), asyncExecutors.simulationPool());
+                    } catch (RejectedExecutionException e) {
+                        run.status = Status.FAILED;
+                        run.finishedAtMillis = System.currentTimeMillis();
+                        throw new IllegalStateException("Simulation pool rejected run " + run.id, e);
+                    }
+                    return snapshot;
+                }, asyncExecutors.aggregation());
+        // La simulation n'a pas été lancée (pool saturé ou arrêté) : execute ne libérera pas la place
+        started.whenComplete((snapshot, e) -> {
+            if (e != null) {
+                release(userId);
+            }
+        });
+        return started;
+    }
+
+    /**
+     * Réserve une place de simulation pour l'utilisateur, sans dépasser la limite globale
+     * @return false si l'une des limites est atteinte
+     */
+    private boolean reserve(String userId) {
+        boolean[] reserved = new boolean[1];
+        runningByUser.compute(userId, (key, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= maxRunningPerUser) {
+                return count;
+            }
+            if (running.incrementAndGet() > maxRunning) {
+                running.decrementAndGet();
+                return count;
+            }
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+
+    private void release(String userId) {
+        runningByUser.computeIfPresent(userId, (key, count) -> {
+            running.decrementAndGet();
+            return count > 1 ? count - 1 : null;
+        });
+    }
+
+    /**
+     * Etat d'une simulation, avec ses résultats si elle est terminée
+     */
+    public Optional<Map<String, Object>> getSimulation(String userId, String simulationId) {
+        SimulationRun run = runs.get(simulationId);
+        if (run == null || !run.userId.equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(snapshot(run));
+    }
+
+    /**
+     * Annule une simulation ; les trajectoires déjà terminées restent exploitées
+     * @return false si la simulation est inconnue
+     */
+    public boolean cancelSimulation(String userId, String simulationId) {
+        SimulationRun run = runs.get(simulationId);
+        if (run == null || !run.userId.equals(userId)) {
+            return false;
+        }
+        run.cancelled.set(true);
+        return true;
+    }
+
+    /**
+     * Oublie les simulations terminées depuis plus de {@code app.simulation.retention}
+     */
+    @Scheduled(fixedDelayString = "${app.simulation.eviction-interval-ms:60000}")
+    public void evictFinished() {
+        long threshold = System.currentTimeMillis() - retention.toMillis();
+        runs.values().removeIf(run -> run.status != Status.RUNNING && run.finishedAtMillis < threshold);
+    }
+
+    private Model model(List<Asset> assets, SimulationRequestDto request, String reportingCurrency) {
+        LocalDate today = LocalDate.now();
+        Asset.AssetCategory[] categories = Asset.AssetCategory.values();
+        double[] totals = new double[categories.length];
+        for (Asset asset : assets) {
+            if (asset.getCurrentValue() != null && asset.getCategory() != null) {
+                BigDecimal value = fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, today);
+                totals[asset.getCategory().ordinal()] += value.doubleValue();
+            }
+        }
+
+        // Seules les catégories présentes sont simulées
+        int present = 0;
+        for (double total : totals) {
+            if (total != 0) {
+                present++;
+            }
+        }
+        double dt = 1.0 / request.getStepsPerYear();
+        double[] initial = new double[present];
+        double[] drift = new double[present];
+        double[] diffusion = new double[present];
+        double[] sign = new double[present];
+        int c = 0;
+        for (Asset.AssetCategory category : categories) {
+            double total = totals[category.ordinal()];
+            if (total == 0) {
+                continue;
+            }
+            SimulationRequestDto.Assumption assumption = request.getAssumptions() != null
+                    && request.getAssumptions().get(category) != null
+                    ? request.getAssumptions().get(category)
+                    : DEFAULT_ASSUMPTIONS.get(category);
+            double mu = assumption.getExpectedReturn();
+            double sigma = assumption.getVolatility();
+            initial[c] = total;
+            drift[c] = (Math.log1p(mu) - 0.5 * sigma * sigma) * dt;
+            diffusion[c] = sigma * Math.sqrt(dt);
+            sign[c] = category == Asset.AssetCategory.LIABILITY ? -1 : 1;
+            c++;
+        }
+        return new Model(initial, drift, diffusion, sign, request.getYears(), request.getStepsPerYear());
+    }
+
+    private void execute(SimulationRun run, Model model) {
+        try {
+            int paths = run.request.getPaths();
+            int chunks = (paths + chunkSize - 1) / chunkSize;
+            SplittableRandom root = run.request.getSeed() != null
+                    ? new SplittableRandom(run.request.getSeed())
+                    : new SplittableRandom();
+
+            // Flux aléatoires dérivés dans l'ordre des lots, pour la reproductibilité
+            List<PathChunk> tasks = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                tasks.add(new PathChunk(run, model, root.split(), Math.min(chunkSize, paths - chunk * chunkSize)));
+            }
+            RecursiveAction.invokeAll(tasks);
+
+            QuantileSketch[] sketches = newSketches(model.years());
+            long completedPaths = 0;
+            for (PathChunk task : tasks) {
+                for (int year = 0; year < sketches.length; year++) {
+                    sketches[year].merge(task.sketches[year]);
+                }
+                completedPaths += task.completed;
+            }
+            pathsCounter.increment(completedPaths);
+
+            Status status = run.cancelled.get() ? Status.CANCELLED
+                    : completedPaths < paths ? Status.TIMED_OUT
+                    : Status.COMPLETED;
+            run.result = result(model, sketches, completedPaths);
+            run.status = status;
+            log.info("Simulation {} {} with {} of {} paths in {} ms", run.id, status, completedPaths, paths,
+                    (System.nanoTime() - run.startNanos) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Simulation {} failed: {}", run.id, e.getMessage());
+            run.status = Status.FAILED;
+        } finally {
+            run.finishedAtMillis = System.currentTimeMillis();
+            release(run.userId);
+        }
+    }
+
+    /**
+     * Lot de trajectoires ; les valeurs courantes par catégorie sont dans un tableau réutilisé
+     */
+    private static final class PathChunk extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final SimulationRun run;
+        private final Model model;
+        private final SplittableRandom random;
+        private final int paths;
+        final QuantileSketch[] sketches;
+        int completed;
+
+        PathChunk(SimulationRun run, Model model, SplittableRandom random, int paths) {
+            this.run = run;
+            this.model = model;
+            this.random = random;
+            this.paths = paths;
+            this.sketches = newSketches(model.years());
+        }
+
+        @Override
+        protected void compute() {
+            int categories = model.initial().length;
+            double[] values = new double[categories];
+            double[] drift = model.drift();
+            double[] diffusion = model.diffusion();
+            double[] sign = model.sign();
+
+            for (int path = 0; path < paths; path++) {
+                if (path % CHECK_INTERVAL == 0 && run.shouldStop()) {
+                    return;
+                }
+                System.arraycopy(model.initial(), 0, values, 0, categories);
+                for (int year = 0; year < model.years(); year++) {
+                    for (int step = 0; step < model.stepsPerYear(); step++) {
+                        for (int c = 0; c < categories; c++) {
+                            values[c] *= Math.exp(drift[c] + diffusion[c] * random.nextGaussian());
+                        }
+                    }
+                    double netWorth = 0;
+                    for (int c = 0; c < categories; c++) {
+                        netWorth += sign[c] * values[c];
+                    }
+                    sketches[year].add(netWorth);
+                }
+                completed++;
+            }
+        }
+    }
+
+    private static QuantileSketch[] newSketches(int years) {
+        QuantileSketch[] sketches = new QuantileSketch[years];
+        for (int year = 0; year < years; year++) {
+            sketches[year] = new QuantileSketch(SKETCH_ACCURACY);
+        }
+        return sketches;
+    }
+
+    private static Map<String, Object> result(Model model, QuantileSketch[] sketches, long completedPaths) {
+        double initialNetWorth = 0;
+        for (int c = 0; c < model.initial().length; c++) {
+            initialNetWorth += model.sign()[c] * model.initial()[c];
+        }
+
+        List<Map<String, Object>> bands = new ArrayList<>(sketches.length);
+        for (int year = 0; year < sketches.length; year++) {
+            QuantileSketch sketch = sketches[year];
+            Map<String, Object> band = new HashMap<>();
+            band.put("year", year + 1);
+            for (double percentile : PERCENTILES) {
+                band.put("p" + Math.round(percentile * 100), amount(sketch.quantile(percentile)));
+            }
+            band.put("mean", amount(sketch.getMean()));
+            bands.add(band);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("initialNetWorth", amount(initialNetWorth));
+        result.put("completedPaths", completedPaths);
+        result.put("bands", bands);
+        return result;
+    }
+
+    private static Map<String, Object> snapshot(SimulationRun run) {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("simulationId", run.id);
+        snapshot.put("status", run.status);
+        snapshot.put("years", run.request.getYears());
+        snapshot.put("paths", run.request.getPaths());
+        snapshot.put("currency", run.currency);
+        snapshot.put("startedAt", run.startedAt);
+        if (run.result != null) {
+            snapshot.putAll(run.result);
+        }
+        return snapshot;
+    }
+
+    private static BigDecimal amount(double value) {
+        return Double.isFinite(value) ? BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP) : null;
+    }
+}
@@ -0,0 +1,333 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.dto.StressScenarioDto;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Scénarios de stress appliqués au patrimoine courant.
+ * <p>
+ * Les actifs sont d'abord réduits à un vecteur d'exposition compact : un montant, converti dans la devise
+ * de reporting, par couple (catégorie, type) présent dans le patrimoine. Chaque scénario est compilé en une
+ * ligne de multiplicateurs {@code 1 + choc} sur ces mêmes compartiments (le choc du type prime sur celui de
+ * la catégorie). Tous les scénarios sont ensuite évalués en un seul produit matrice-vecteur, qui donne
+ * patrimoine net et répartitions après choc sans reparcourir les actifs pour chaque scénario.
+ */
+@Service
+@Slf4j
+public class StressTestService {
+
+    private static final int TYPES = Asset.AssetType.values().length;
+    private static final int CATEGORIES = Asset.AssetCategory.values().length;
+    private static final int BUCKETS = CATEGORIES * TYPES;
+
+    private static final List<StressScenarioDto> BUILT_IN_SCENARIOS = List.of(
+            scenario("equity-crash", "Krach actions : actions -30 %, fonds -25 %, crypto -60 %",
+                    Map.of(Asset.AssetType.STOCK, -0.30, Asset.AssetType.ETF, -0.30, Asset.AssetType.MUTUAL_FUND, -0.25,
+                            Asset.AssetType.CRYPTO, -0.60, Asset.AssetType.BOND, -0.05),
+                    Map.of()),
+            scenario("real-estate-downturn", "Retournement immobilier : immobilier -20 %",
+                    Map.of(Asset.AssetType.REAL_ESTATE, -0.20),
+                    Map.of()),
+            scenario("financial-crisis-2008", "Crise financière de type 2008",
+                    Map.of(Asset.AssetType.STOCK, -0.45, Asset.AssetType.ETF, -0.45, Asset.AssetType.MUTUAL_FUND, -0.35,
+                            Asset.AssetType.REAL_ESTATE, -0.15, Asset.AssetType.BOND, 0.05,
+                            Asset.AssetType.PRECIOUS_METAL, 0.15, Asset.AssetType.CRYPTO, -0.50),
+                    Map.of()),
+            scenario("rate-shock", "Hausse brutale des taux",
+                    Map.of(Asset.AssetType.BOND, -0.15, Asset.AssetType.REAL_ESTATE, -0.10, Asset.AssetType.STOCK, -0.10,
+                            Asset.AssetType.ETF, -0.10, Asset.AssetType.INSURANCE, -0.03),
+                    Map.of()),
+            scenario("crypto-collapse", "Effondrement des cryptomonnaies : -80 %",
+                    Map.of(Asset.AssetType.CRYPTO, -0.80),
+                    Map.of()),
+            scenario("stagflation", "Stagflation : actions et obligations en baisse, métaux précieux en hausse",
+                    Map.of(Asset.AssetType.STOCK, -0.20, Asset.AssetType.ETF, -0.20, Asset.AssetType.BOND, -0.10,
+                            Asset.AssetType.REAL_ESTATE, -0.05, Asset.AssetType.PRECIOUS_METAL, 0.20),
+                    Map.of()),
+            scenario("combined-stress", "Choc combiné : investissements -30 %, immobilier -10 %, crypto -60 %",
+                    Map.of(Asset.AssetType.REAL_ESTATE, -0.10, Asset.AssetType.CRYPTO, -0.60),
+                    Map.of(Asset.AssetCategory.INVESTMENT, -0.30)));
+
+    // Multiplicateurs des scénarios prédéfinis, compilés une fois sur tous les compartiments
+    private static final double[] BUILT_IN_MATRIX = compile(BUILT_IN_SCENARIOS);
+
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
+
+    @Value("${app.stress-test.max-scenarios:500}")
+    private int maxScenarios;
+
+    public StressTestService(AssetService assetService,
+                             FxRateService fxRateService,
+                             AsyncExecutors asyncExecutors,
+                             CalculationMetrics calculationMetrics) {
+        this.assetService = assetService;
+        this.fxRateService = fxRateService;
+        this.asyncExecutors = asyncExecutors;
+        this.calculationMetrics = calculationMetrics;
+    }
+
+    /**
+     * Scénarios prédéfinis
+     */
+    public List<StressScenarioDto> getBuiltInScenarios() {
+        return BUILT_IN_SCENARIOS;
+    }
+
+    /**
+     * Applique les scénarios prédéfinis au patrimoine courant d'un utilisateur
+     */
+    public CompletableFuture<Map<String, Object>> runStressTests(String userId, String reportingCurrency) {
+        return runStressTests(userId, List.of(), true, reportingCurrency);
+    }
+
+    /**
+     * Applique des scénarios personnalisés, et éventuellement les scénarios prédéfinis, au patrimoine courant
+     * @throws IllegalArgumentException si aucun scénario n'est demandé ou s'il y en a trop
+     */
+    public CompletableFuture<Map<String, Object>> runStressTests(String userId, List<StressScenarioDto> scenarios,
+                                                                 boolean includeBuiltIn, String reportingCurrency) {
+        int count = scenarios.size() + (includeBuiltIn ? BUILT_IN_SCENARIOS.size() : 0);
+        if (count == 0) {
+            throw new IllegalArgumentException("At least one scenario is required");
+        }
+        if (count > maxScenarios) {
+            throw new IllegalArgumentException("At most " + maxScenarios + " scenarios can be evaluated at once");
+        }
+
+        return assetService.getAssetsByUserId(userId)
+                .thenApplyAsync(assets -> computeStressTests(assets, scenarios, includeBuiltIn, reportingCurrency),
+                        asyncExecutors.aggregation());
+    }
+
+    /**
+     * Evalue les scénarios à partir d'une liste d'actifs déjà chargée
+     */
+    public Map<String, Object> computeStressTests(List<Asset> assets, List<StressScenarioDto> scenarios,
+                                                  boolean includeBuiltIn, String reportingCurrency) {
+        return calculationMetrics.timed("stressTest",
+                () -> doComputeStressTests(assets, scenarios, includeBuiltIn, reportingCurrency));
+    }
+
+    private Map<String, Object> doComputeStressTests(List<Asset> assets, List<StressScenarioDto> customScenarios,
+                                                     boolean includeBuiltIn, String reportingCurrency) {
+        LocalDate today = LocalDate.now();
+
+        // Vecteur d'exposition par compartiment (catégorie, type), passifs en négatif
+        double[] exposure = new double[BUCKETS];
+        for (Asset asset : assets) {
+            if (asset.getCurrentValue() == null) {
+                continue;
+            }
+            double value = fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, today)
+                    .doubleValue();
+            Asset.AssetCategory category = category(asset);
+            exposure[bucket(category, type(asset))] += category == Asset.AssetCategory.LIABILITY ? -value : value;
+        }
+
+        // Compartiments non vides uniquement
+        int present = 0;
+        int[] buckets = new int[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            if (exposure[b] != 0) {
+                buckets[present++] = b;
+            }
+        }
+        double[] compact = new double[present];
+        for (int j = 0; j < present; j++) {
+            compact[j] = exposure[buckets[j]];
+        }
+
+        List<StressScenarioDto> scenarios = new ArrayList<>(customScenarios);
+        double[] matrix = gather(compile(customScenarios), customScenarios.size(), buckets, present,
+                includeBuiltIn ? BUILT_IN_SCENARIOS.size() : 0);
+        if (includeBuiltIn) {
+            scenarios.addAll(BUILT_IN_SCENARIOS);
+        }
+
+        // Un seul passage : valeur de chaque compartiment après choc, pour tous les scénarios
+        int count = scenarios.size();
+        double[] shocked = new double[count * present];
+        for (int s = 0; s < count; s++) {
+            int row = s * present;
+            for (int j = 0; j < present; j++) {
+                shocked[row + j] = matrix[row + j] * compact[j];
+            }
+        }
+
+        double baseAssets = 0;
+        double baseLiabilities = 0;
+        for (int j = 0; j < present; j++) {
+            if (compact[j] > 0) {
+                baseAssets += compact[j];
+            } else {
+                baseLiabilities -= compact[j];
+            }
+        }
+        double baseNetWorth = baseAssets - baseLiabilities;
+
+        List<Map<String, Object>> results = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            results.add(scenarioResult(scenarios.get(s), shocked, s * present, buckets, present, baseNetWorth));
+        }
+        results.sort(Comparator.comparing(r -> (BigDecimal) r.get("netWorthChange")));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalAssetsValue", amount(baseAssets));
+        result.put("totalLiabilitiesValue", amount(baseLiabilities));
+        result.put("netWorth", amount(baseNetWorth));
+        result.put("scenarios", results);
+        result.put("currency", reportingCurrency);
+        result.put("calculationDate", LocalDateTime.now());
+        return result;
+    }
+
+    private static Map<String, Object> scenarioResult(StressScenarioDto scenario, double[] shocked, int row,
+                                                      int[] buckets, int present, double baseNetWorth) {
+        double totalAssets = 0;
+        double totalLiabilities = 0;
+        double[] byCategory = new double[CATEGORIES];
+        double[] byType = new double[TYPES];
+        for (int j = 0; j < present; j++) {
+            double value = shocked[row + j];
+            int bucket = buckets[j];
+            if (bucket / TYPES == Asset.AssetCategory.LIABILITY.ordinal()) {
+                totalLiabilities -= value;
+                byCategory[bucket / TYPES] -= value;
+            } else {
+                totalAssets += value;
+                byCategory[bucket / TYPES] += value;
+                byType[bucket % TYPES] += value;
+            }
+        }
+        double netWorth = totalAssets - totalLiabilities;
+
+        // Répartitions après choc, pourcentages rapportés aux actifs (hors passifs)
+        Map<Asset.AssetCategory, BigDecimal> amountByCategory = new EnumMap<>(Asset.AssetCategory.class);
+        Map<String, Object> percentageByCategory = new HashMap<>();
+        for (Asset.AssetCategory category : Asset.AssetCategory.values()) {
+            if (byCategory[category.ordinal()] != 0) {
+                amountByCategory.put(category, amount(byCategory[category.ordinal()]));
+                if (category != Asset.AssetCategory.LIABILITY && totalAssets > 0) {
+                    percentageByCategory.put(category.name(), percentage(byCategory[category.ordinal()], totalAssets));
+                }
+            }
+        }
+        Map<Asset.AssetType, BigDecimal> amountByType = new EnumMap<>(Asset.AssetType.class);
+        Map<String, Object> percentageByType = new HashMap<>();
+        for (Asset.AssetType type : Asset.AssetType.values()) {
+            if (byType[type.ordinal()] != 0) {
+                amountByType.put(type, amount(byType[type.ordinal()]));
+                if (totalAssets > 0) {
+                    percentageByType.put(type.name(), percentage(byType[type.ordinal()], totalAssets));
+                }
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", scenario.getName());
+        result.put("description", scenario.getDescription());
+        result.put("totalAssetsValue", amount(totalAssets));
+        result.put("totalLiabilitiesValue", amount(totalLiabilities));
+        result.put("netWorth", amount(netWorth));
+        result.put("netWorthChange", amount(netWorth - baseNetWorth));
+        result.put("netWorthChangePercent", baseNetWorth != 0
+                ? percentage(netWorth - baseNetWorth, Math.abs(baseNetWorth))
+                : null);
+        result.put("amountByCategory", amountByCategory);
+        result.put("percentageByCategory", percentageByCategory);
+        result.put("amountByType", amountByType);
+        result.put("percentageByType", percentageByType);
+        return result;
+    }
+
+    /**
+     * Matrice scénarios x compartiments des multiplicateurs {@code 1 + choc}
+     */
+    private static double[] compile(List<StressScenarioDto> scenarios) {
+        double[] matrix = new double[scenarios.size() * BUCKETS];
+        for (int s = 0; s < scenarios.size(); s++) {
+            StressScenarioDto scenario = scenarios.get(s);
+            for (Asset.AssetCategory category : Asset.AssetCategory.values()) {
+                Double categoryShock = scenario.getCategoryShocks() != null
+                        ? scenario.getCategoryShocks().get(category)
+                        : null;
+                for (Asset.AssetType type : Asset.AssetType.values()) {
+                    Double typeShock = scenario.getTypeShocks() != null ? scenario.getTypeShocks().get(type) : null;
+                    double shock = typeShock != null ? typeShock : categoryShock != null ? categoryShock : 0;
+                    matrix[s * BUCKETS + bucket(category, type)] = 1 + shock;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Restreint les matrices compilées aux compartiments présents : scénarios personnalisés, puis prédéfinis
+     */
+    private static double[] gather(double[] custom, int customCount, int[] buckets, int present, int builtInCount) {
+        double[] matrix = new double[(customCount + builtInCount) * present];
+        for (int s = 0; s < customCount; s++) {
+            for (int j = 0; j < present; j++) {
+                matrix[s * present + j] = custom[s * BUCKETS + buckets[j]];
+            }
+        }
+        for (int s = 0; s < builtInCount; s++) {
+            int row = (customCount + s) * present;
+            for (int j = 0; j < present; j++) {
+                matrix[row + j] = BUILT_IN_MATRIX[s * BUCKETS + buckets[j]];
+            }
+        }
+        return matrix;
+    }
+
+    private static StressScenarioDto scenario(String name, String description,
+                                              Map<Asset.AssetType, Double> typeShocks,
+                                              Map<Asset.AssetCategory, Double> categoryShocks) {
+        StressScenarioDto scenario = new StressScenarioDto();
+        scenario.setName(name);
+        scenario.setDescription(description);
+        scenario.getTypeShocks().putAll(typeShocks);
+        scenario.getCategoryShocks().putAll(categoryShocks);
+        return scenario;
+    }
+
+    private static int bucket(Asset.AssetCategory category, Asset.AssetType type) {
+        return category.ordinal() * TYPES + type.ordinal();
+    }
+
+    private static Asset.AssetCategory category(Asset asset) {
+        return asset.getCategory() != null ? asset.getCategory() : Asset.AssetCategory.OTHER;
+    }
+
+    private static Asset.AssetType type(Asset asset) {
+        return asset.getType() != null ? asset.getType() : Asset.AssetType.OTHER;
+    }
+
+    private static BigDecimal amount(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal percentage(double part, double total) {
+        return BigDecimal.valueOf(part * 100 / total).setScale(2, RoundingMode.HALF_UP);
+    }
+}
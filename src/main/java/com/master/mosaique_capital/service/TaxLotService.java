@@ -0,0 +1,356 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.dto.TaxLotOperationDto;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.TaxLotBook;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.repository.TaxLotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Suivi fiscal par lots des titres et cryptomonnaies ({@link TaxLotBook#LOT_TRACKED_TYPES}) et calcul des
+ * plus-values réalisées et latentes.
+ * <p>
+ * Chaque cession est imputée dès son enregistrement selon la méthode du registre (FIFO, prix moyen pondéré ou
+ * lot désigné) : seuls les lots consommés sont modifiés, et la plus-value s'ajoute au cumul de l'année.
+ * Au prix moyen pondéré, les achats sont fondus dans un lot unique dont le prix de revient reste celui du
+ * registre. Le bilan annuel ne lit que les en-têtes et les cumuls des registres, sans les lots ni l'historique.
+ * Les opérations d'un même actif sont sérialisées dans l'instance et doivent être enregistrées dans l'ordre
+ * chronologique, sans date future.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaxLotService {
+
+    // Précision des prix de revient imputés lors des cessions partielles
+    private static final int COST_SCALE = 8;
+
+    private final TaxLotRepository taxLotRepository;
+    private final AssetService assetService;
+    private final FxRateService fxRateService;
+    private final AsyncExecutors asyncExecutors;
+    private final CalculationMetrics calculationMetrics;
+
+    // Dernière opération en cours par registre, pour enchaîner les opérations d'un même actif
+    private final ConcurrentHashMap<String, CompletableFuture<?>> pendingOperations = new ConcurrentHashMap<>();
+
+    public CompletableFuture<Optional<TaxLotBook>> getBook(String userId, String assetId) {
+        return taxLotRepository.findByAssetId(userId, assetId);
+    }
+
+    /**
+     * Enregistre un achat, frais inclus dans le prix de revient : ouvre un nouveau lot, ou renforce le lot
+     * unique au prix moyen pondéré
+     * @throws IllegalArgumentException si l'actif n'est pas suivi par lots, si l'achat est antérieur à la dernière
+     *                                  opération ou postérieur à aujourd'hui
+     */
+    public CompletableFuture<TaxLotBook> recordBuy(Asset asset, TaxLotOperationDto operation) {
+        checkTracked(asset);
+        return serialized(asset, () -> loadBook(asset, operation.getMethod())
+                .thenCompose(book -> {
+                    LocalDate date = operationDate(book, operation);
+                    BigDecimal cost = operation.getQuantity().multiply(operation.getUnitPrice()).add(fees(operation));
+                    List<String> closedLotIds = pool(book);
+
+                    TaxLotBook.TaxLot lot;
+                    if (book.getMethod() == TaxLotBook.CostMethod.WEIGHTED_AVERAGE && !book.getLots().isEmpty()) {
+                        lot = book.getLots().get(0);
+                        lot.setQuantity(lot.getQuantity().add(operation.getQuantity()));
+                        lot.setCost(lot.getCost().add(cost));
+                    } else {
+                        lot = TaxLotBook.TaxLot.builder()
+                                .id(TaxLotBook.lotId(book.getNextLotSequence()))
+                                .acquisitionDate(date)
+                                .quantity(operation.getQuantity())
+                                .cost(cost)
+                                .build();
+                        book.getLots().add(lot);
+                        book.setNextLotSequence(book.getNextLotSequence() + 1);
+                    }
+                    book.setQuantity(book.getQuantity().add(operation.getQuantity()));
+                    book.setCostBasis(book.getCostBasis().add(cost));
+                    book.setLastOperationDate(date);
+                    book.setLastUpdateDate(LocalDateTime.now());
+
+                    return taxLotRepository.update(book, List.of(lot), closedLotIds, null);
+                }));
+    }
+
+    /**
+     * Enregistre une cession et impute son prix de revient selon la méthode du registre
+     * @return le détail de la cession : prix de cession net, prix de revient, plus-value, lots consommés
+     * @throws IllegalArgumentException si la quantité détenue (ou celle du lot désigné) est insuffisante
+     */
+    public CompletableFuture<Map<String, Object>> recordSell(Asset asset, TaxLotOperationDto operation) {
+        checkTracked(asset);
+        return serialized(asset, () -> loadBook(asset, null)
+                .thenCompose(book -> {
+                    LocalDate date = operationDate(book, operation);
+                    BigDecimal quantity = operation.getQuantity();
+                    if (quantity.compareTo(book.getQuantity()) > 0) {
+                        throw new IllegalArgumentException("Cannot sell " + quantity + " units, only "
+                                + book.getQuantity() + " held");
+                    }
+
+                    List<TaxLotBook.TaxLot> changedLots = new ArrayList<>();
+                    List<String> closedLotIds = pool(book);
+                    // Au PMP, le lot unique porte le prix de revient du registre : sa quote-part est celle du PMP
+                    BigDecimal costBasis = switch (book.getMethod()) {
+                        case SPECIFIC -> consumeSpecific(book, operation.getLotId(), quantity, changedLots, closedLotIds);
+                        case FIFO, WEIGHTED_AVERAGE -> consumeFifo(book, quantity, changedLots, closedLotIds);
+                    };
+                    BigDecimal proceeds = quantity.multiply(operation.getUnitPrice()).subtract(fees(operation));
+
+                    book.setQuantity(book.getQuantity().subtract(quantity));
+                    book.setCostBasis(book.getQuantity().signum() == 0 ? BigDecimal.ZERO : book.getCostBasis().subtract(costBasis));
+                    book.getRealizedByYear().computeIfAbsent(date.getYear(), y -> new TaxLotBook.YearTotals())
+                            .add(proceeds, costBasis);
+                    book.setLastOperationDate(date);
+                    book.setLastUpdateDate(LocalDateTime.now());
+
+                    Map<String, Object> disposal = new HashMap<>();
+                    disposal.put("assetId", book.getAssetId());
+                    disposal.put("date", date);
+                    disposal.put("quantity", quantity);
+                    disposal.put("proceeds", proceeds);
+                    disposal.put("costBasis", costBasis);
+                    disposal.put("gain", proceeds.subtract(costBasis));
+                    disposal.put("method", book.getMethod());
+                    disposal.put("closedLots", closedLotIds);
+                    disposal.put("remainingQuantity", book.getQuantity());
+                    disposal.put("currency", book.getCurrency());
+
+                    return taxLotRepository.update(book, changedLots, closedLotIds, date.getYear())
+                            .thenApply(saved -> disposal);
+                }));
+    }
+
+    /**
+     * Plus-values réalisées sur l'année et plus-values latentes actuelles, par actif, dans la devise de reporting.
+     * Les montants réalisés sont convertis au 31 décembre de l'année (ou au jour si l'année est en cours).
+     */
+    public CompletableFuture<Map<String, Object>> calculateCapitalGains(String userId, int year, String reportingCurrency) {
+        CompletableFuture<List<TaxLotBook>> books = taxLotRepository.findByUserId(userId);
+        CompletableFuture<List<Asset>> assets = assetService.getAssetsByUserId(userId);
+        return books.thenCombineAsync(assets,
+                (userBooks, userAssets) -> calculationMetrics.timed("capitalGains",
+                        () -> computeCapitalGains(userBooks, userAssets, year, reportingCurrency)),
+                asyncExecutors.aggregation());
+    }
+
+    private Map<String, Object> computeCapitalGains(List<TaxLotBook> books, List<Asset> assets, int year,
+                                                    String reportingCurrency) {
+        LocalDate today = LocalDate.now();
+        LocalDate realizedRateDate = LocalDate.of(year, 12, 31).isBefore(today) ? LocalDate.of(year, 12, 31) : today;
+        Map<String, Asset> assetsById = new HashMap<>();
+        for (Asset asset : assets) {
+            assetsById.put(asset.getId(), asset);
+        }
+
+        BigDecimal totalProceeds = BigDecimal.ZERO;
+        BigDecimal totalRealized = BigDecimal.ZERO;
+        BigDecimal totalUnrealized = BigDecimal.ZERO;
+        List<Map<String, Object>> byAsset = new ArrayList<>();
+
+        for (TaxLotBook book : books) {
+            Asset asset = assetsById.get(book.getAssetId());
+            TaxLotBook.YearTotals realized = book.getRealizedByYear().get(year);
+
+            BigDecimal unrealized = null;
+            if (asset != null && asset.getCurrentValue() != null && book.getQuantity().signum() > 0) {
+                unrealized = fxRateService.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency, today)
+                        .subtract(fxRateService.convert(book.getCostBasis(), book.getCurrency(), reportingCurrency, today));
+            }
+            if (realized == null && unrealized == null) {
+                continue;
+            }
+
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("assetId", book.getAssetId());
+            entry.put("name", asset != null ? asset.getName() : null);
+            entry.put("type", asset != null ? asset.getType() : null);
+            entry.put("method", book.getMethod());
+            entry.put("quantity", book.getQuantity());
+            entry.put("costBasis", money(fxRateService.convert(book.getCostBasis(), book.getCurrency(), reportingCurrency, today)));
+            if (realized != null) {
+                BigDecimal proceeds = fxRateService.convert(realized.getProceeds(), book.getCurrency(), reportingCurrency, realizedRateDate);
+                BigDecimal gain = fxRateService.convert(realized.getGain(), book.getCurrency(), reportingCurrency, realizedRateDate);
+                entry.put("proceeds", money(proceeds));
+                entry.put("realizedGain", money(gain));
+                entry.put("disposals", realized.getDisposals());
+                totalProceeds = totalProceeds.add(proceeds);
+                totalRealized = totalRealized.add(gain);
+            }
+            if (unrealized != null) {
+                entry.put("unrealizedGain", money(unrealized));
+                totalUnrealized = totalUnrealized.add(unrealized);
+            }
+            byAsset.add(entry);
+        }
+        byAsset.sort(Comparator.comparing(e -> String.valueOf(e.get("name"))));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("year", year);
+        result.put("totalProceeds", money(totalProceeds));
+        result.put("totalRealizedGain", money(totalRealized));
+        result.put("totalUnrealizedGain", money(totalUnrealized));
+        result.put("assets", byAsset);
+        result.put("currency", reportingCurrency);
+        result.put("calculationDate", LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * Au prix moyen pondéré, fond les lots ouverts d'un registre créé avant le lot unique dans le premier
+     * @return identifiants des lots fondus, à supprimer
+     */
+    private static List<String> pool(TaxLotBook book) {
+        List<String> mergedLotIds = new ArrayList<>();
+        if (book.getMethod() != TaxLotBook.CostMethod.WEIGHTED_AVERAGE || book.getLots().size() <= 1) {
+            return mergedLotIds;
+        }
+        TaxLotBook.TaxLot pooled = book.getLots().get(0);
+        for (TaxLotBook.TaxLot lot : book.getLots().subList(1, book.getLots().size())) {
+            pooled.setQuantity(pooled.getQuantity().add(lot.getQuantity()));
+            pooled.setCost(pooled.getCost().add(lot.getCost()));
+            mergedLotIds.add(lot.getId());
+        }
+        book.getLots().subList(1, book.getLots().size()).clear();
+        return mergedLotIds;
+    }
+
+    /**
+     * Consomme les lots dans l'ordre d'acquisition
+     * @return prix de revient des quantités consommées
+     */
+    static BigDecimal consumeFifo(TaxLotBook book, BigDecimal quantity,
+                                          List<TaxLotBook.TaxLot> changedLots, List<String> closedLotIds) {
+        BigDecimal remaining = quantity;
+        BigDecimal cost = BigDecimal.ZERO;
+        int closed = 0;
+        for (TaxLotBook.TaxLot lot : book.getLots()) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal taken = remaining.min(lot.getQuantity());
+            cost = cost.add(take(lot, taken));
+            remaining = remaining.subtract(taken);
+            if (lot.getQuantity().signum() == 0) {
+                closedLotIds.add(lot.getId());
+                closed++;
+            } else {
+                changedLots.add(lot);
+            }
+        }
+        // Les lots soldés sont en tête de liste
+        book.getLots().subList(0, closed).clear();
+        return cost;
+    }
+
+    /**
+     * Consomme le lot désigné
+     * @return prix de revient de la quantité consommée
+     */
+    private static BigDecimal consumeSpecific(TaxLotBook book, String lotId, BigDecimal quantity,
+                                              List<TaxLotBook.TaxLot> changedLots, List<String> closedLotIds) {
+        if (lotId == null) {
+            throw new IllegalArgumentException("A lotId is required with the SPECIFIC cost method");
+        }
+        TaxLotBook.TaxLot lot = book.getLots().stream()
+                .filter(l -> l.getId().equals(lotId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown lot " + lotId));
+        if (quantity.compareTo(lot.getQuantity()) > 0) {
+            throw new IllegalArgumentException("Lot " + lotId + " only holds " + lot.getQuantity() + " units");
+        }
+
+        BigDecimal cost = take(lot, quantity);
+        if (lot.getQuantity().signum() == 0) {
+            book.getLots().remove(lot);
+            closedLotIds.add(lot.getId());
+        } else {
+            changedLots.add(lot);
+        }
+        return cost;
+    }
+
+    /**
+     * Retire une quantité d'un lot et renvoie la quote-part correspondante de son prix de revient
+     */
+    private static BigDecimal take(TaxLotBook.TaxLot lot, BigDecimal quantity) {
+        BigDecimal cost = quantity.compareTo(lot.getQuantity()) == 0
+                ? lot.getCost()
+                : lot.getCost().multiply(quantity).divide(lot.getQuantity(), COST_SCALE, RoundingMode.HALF_EVEN);
+        lot.setQuantity(lot.getQuantity().subtract(quantity));
+        lot.setCost(lot.getCost().subtract(cost));
+        return cost;
+    }
+
+    private CompletableFuture<TaxLotBook> loadBook(Asset asset, TaxLotBook.CostMethod method) {
+        return taxLotRepository.findByAssetId(asset.getUserId(), asset.getId())
+                .thenApply(existing -> existing.orElseGet(() -> TaxLotBook.builder()
+                        .assetId(asset.getId())
+                        .userId(asset.getUserId())
+                        .method(method != null ? method : TaxLotBook.CostMethod.WEIGHTED_AVERAGE)
+                        .currency(asset.getCurrency())
+                        .build()));
+    }
+
+    /**
+     * Enchaîne l'opération après la précédente opération du même actif
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> serialized(Asset asset, Supplier<CompletableFuture<T>> operation) {
+        String key = asset.getUserId() + "|" + asset.getId();
+        CompletableFuture<T> next = (CompletableFuture<T>) pendingOperations.compute(key, (k, previous) ->
+                (previous != null ? previous.handle((result, e) -> null) : CompletableFuture.completedFuture(null))
+                        .thenCompose(ignored -> operation.get()));
+        next.whenComplete((result, e) -> pendingOperations.remove(key, next));
+        return next;
+    }
+
+    private static void checkTracked(Asset asset) {
+        if (!TaxLotBook.LOT_TRACKED_TYPES.contains(asset.getType())) {
+            throw new IllegalArgumentException("Tax lots are only tracked for " + TaxLotBook.LOT_TRACKED_TYPES);
+        }
+    }
+
+    private static LocalDate operationDate(TaxLotBook book, TaxLotOperationDto operation) {
+        LocalDate today = LocalDate.now();
+        LocalDate date = operation.getDate() != null ? operation.getDate() : today;
+        if (date.isAfter(today)) {
+            throw new IllegalArgumentException("Operations cannot be dated in the future");
+        }
+        if (book.getLastOperationDate() != null && date.isBefore(book.getLastOperationDate())) {
+            throw new IllegalArgumentException("Operations must be recorded in chronological order, last one is "
+                    + book.getLastOperationDate());
+        }
+        return date;
+    }
+
+    private static BigDecimal fees(TaxLotOperationDto operation) {
+        return operation.getFees() != null ? operation.getFees() : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal money(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+}
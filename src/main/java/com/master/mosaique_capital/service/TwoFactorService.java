@@ -1,30 +1,64 @@
 package com.master.mosaique_capital.service;
 
-import dev.samstevens.totp.code.CodeGenerator;
-import dev.samstevens.totp.code.CodeVerifier;
-import dev.samstevens.totp.code.DefaultCodeGenerator;
-import dev.samstevens.totp.code.DefaultCodeVerifier;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.config.TotpConfig;
+import com.master.mosaique_capital.security.TotpVerifier;
+import dev.samstevens.totp.code.HashingAlgorithm;
 import dev.samstevens.totp.secret.DefaultSecretGenerator;
 import dev.samstevens.totp.secret.SecretGenerator;
-import dev.samstevens.totp.time.SystemTimeProvider;
-import dev.samstevens.totp.time.TimeProvider;
 import dev.samstevens.totp.qr.QrData;
 import dev.samstevens.totp.qr.QrGenerator;
 import dev.samstevens.totp.qr.ZxingPngQrGenerator;
 import dev.samstevens.totp.util.Utils;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class TwoFactorService {
 
     private static final String APP_NAME = "Mosaique Capital";
     private final SecretGenerator secretGenerator = new DefaultSecretGenerator();
     private final QrGenerator qrGenerator = new ZxingPngQrGenerator();
-    private final TimeProvider timeProvider = new SystemTimeProvider();
-    private final CodeGenerator codeGenerator = new DefaultCodeGenerator();
-    private final CodeVerifier codeVerifier = new DefaultCodeVerifier(codeGenerator, timeProvider);
+    private final TotpConfig totpConfig;
+    private final TotpVerifier totpVerifier;
+    private final AsyncExecutors asyncExecutors;
+
+    // Configurations 2FA en cours par utilisateur : une nouvelle tentative réutilise le même secret et le même rendu
+    private final Map<String, TwoFactorSetup> pendingSetups = new ConcurrentHashMap<>();
+
+    @Value("${app.totp.setup-cache-ttl-ms:600000}")
+    private long setupCacheTtlMillis;
+
+    /**
+     * Format de rendu du QR code de configuration
+     */
+    public enum QrFormat {
+        URI, SVG, PNG;
+
+        public static QrFormat from(String value) {
+            return QrFormat.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    /**
+     * Configuration 2FA en attente de validation ; les rendus sont calculés une seule fois par format
+     */
+    public record TwoFactorSetup(String secretKey, String otpAuthUri, QrData qrData, long expiresAtMillis,
+                                 Map<QrFormat, CompletableFuture<String>> renders) {
+    }
 
     /**
      * Génère une clé secrète pour l'authentification TOTP
@@ -34,6 +68,54 @@ public class TwoFactorService {
         return secretGenerator.generate();
     }
 
+    /**
+     * Démarre (ou reprend, si elle n'a pas expiré) la configuration 2FA d'un utilisateur
+     * @param uid l'identifiant de l'utilisateur, utilisé comme libellé du compte TOTP
+     * @return la configuration en cours, avec son secret et son URI otpauth
+     */
+    public TwoFactorSetup startSetup(String uid) {
+        long now = System.currentTimeMillis();
+        return pendingSetups.compute(uid, (key, existing) -> {
+            if (existing != null && existing.expiresAtMillis() > now) {
+                return existing;
+            }
+            String secretKey = generateSecretKey();
+            QrData data = qrData(secretKey, uid);
+            return new TwoFactorSetup(secretKey, data.getUri(), data, now + setupCacheTtlMillis,
+                    new ConcurrentHashMap<>());
+        });
+    }
+
+    /**
+     * Rend le QR code d'une configuration sur le pool de rendu borné ; le résultat est mémorisé par format.
+     * Lève {@link java.util.concurrent.RejectedExecutionException} si le pool est saturé.
+     * @return une URL de données PNG en Base64 (PNG), un document SVG (SVG) ou l'URI otpauth (URI)
+     */
+    public CompletableFuture<String> renderQrCode(TwoFactorSetup setup, QrFormat format) {
+        if (format == QrFormat.URI) {
+            return CompletableFuture.completedFuture(setup.otpAuthUri());
+        }
+
+        CompletableFuture<String> render = setup.renders().computeIfAbsent(format, f -> CompletableFuture.supplyAsync(
+                () -> f == QrFormat.PNG ? renderPng(setup.qrData()) : renderSvg(setup.otpAuthUri()),
+                asyncExecutors.rendering()));
+
+        // Un rendu en échec n'est pas mémorisé : une nouvelle tentative le relancera
+        render.whenComplete((result, e) -> {
+            if (e != null) {
+                setup.renders().remove(format, render);
+            }
+        });
+        return render;
+    }
+
+    /**
+     * Termine la configuration 2FA d'un utilisateur une fois son premier code validé
+     */
+    public void completeSetup(String uid) {
+        pendingSetups.remove(uid);
+    }
+
     /**
      * Génère l'URL de données QR pour l'authentification TOTP
      * @param secretKey la clé secrète TOTP
@@ -41,15 +123,27 @@ public class TwoFactorService {
      * @return l'URL de l'image QR code en Base64
      */
     public String generateQrCodeUrl(String secretKey, String userIdentifier) {
-        QrData data = new QrData.Builder()
+        return renderPng(qrData(secretKey, userIdentifier));
+    }
+
+    @Scheduled(fixedDelayString = "${app.totp.cache.eviction-interval-ms:60000}")
+    public void evictExpiredSetups() {
+        long now = System.currentTimeMillis();
+        pendingSetups.values().removeIf(setup -> setup.expiresAtMillis() <= now);
+    }
+
+    private QrData qrData(String secretKey, String userIdentifier) {
+        return new QrData.Builder()
                 .label(userIdentifier)
                 .secret(secretKey)
-                .issuer(APP_NAME)
-                .algorithm(QrData.Algorithm.SHA1)
-                .digits(6)
-                .period(30)
+                .issuer(totpConfig.getIssuer() != null ? totpConfig.getIssuer() : APP_NAME)
+                .algorithm(qrAlgorithm())
+                .digits(totpVerifier.getDigits())
+                .period((int) totpVerifier.getPeriodSeconds())
                 .build();
+    }
 
+    private String renderPng(QrData data) {
         try {
             return Utils.getDataUriForImage(
                     qrGenerator.generate(data),
@@ -62,12 +156,68 @@ public class TwoFactorService {
     }
 
     /**
-     * Vérifie un code TOTP par rapport à une clé secrète
-     * @param code le code à 6 chiffres fourni par l'utilisateur
+     * Rendu SVG compact : un chemin unique, une commande par suite horizontale de modules noirs
+     */
+    private String renderSvg(String content) {
+        try {
+            BitMatrix matrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0,
+                    Map.of(EncodeHintType.MARGIN, 1));
+            int width = matrix.getWidth();
+            int height = matrix.getHeight();
+
+            StringBuilder path = new StringBuilder(width * height);
+            for (int y = 0; y < height; y++) {
+                int x = 0;
+                while (x < width) {
+                    if (!matrix.get(x, y)) {
+                        x++;
+                        continue;
+                    }
+                    int start = x;
+                    while (x < width && matrix.get(x, y)) {
+                        x++;
+                    }
+                    path.append('M').append(start).append(' ').append(y)
+                            .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+                }
+            }
+
+            return "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 " + width + " " + height
+                    + "\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>"
+                    + "<path fill=\"#000\" d=\"" + path + "\"/></svg>";
+        } catch (Exception e) {
+            log.error("Erreur lors de la génération du QR code SVG: {}", e.getMessage());
+            throw new RuntimeException("Erreur lors de la génération du QR code", e);
+        }
+    }
+
+    /**
+     * Vérifie un code TOTP par rapport à une clé secrète, sans protection contre le rejeu
+     * @param code le code fourni par l'utilisateur
      * @param secretKey la clé secrète TOTP
      * @return true si le code est valide, false sinon
      */
     public boolean verifyCode(String code, String secretKey) {
-        return codeVerifier.isValidCode(secretKey, code);
+        return totpVerifier.verifyStateless(code, secretKey);
+    }
+
+    /**
+     * Vérifie et consomme le code TOTP d'un utilisateur : un code déjà accepté ne peut pas être rejoué
+     * @param uid l'identifiant de l'utilisateur
+     * @param code le code fourni par l'utilisateur
+     * @param secretKey la clé secrète TOTP
+     * @return true si le code est valide et n'a pas déjà été utilisé, false sinon
+     */
+    public boolean verifyCode(String uid, String code, String secretKey) {
+        return totpVerifier.verify(uid, code, secretKey);
+    }
+
+    private HashingAlgorithm qrAlgorithm() {
+        String algorithm = totpConfig.getAlgorithm() != null ? totpConfig.getAlgorithm().toUpperCase() : "SHA1";
+        return switch (algorithm) {
+            case "SHA256" -> HashingAlgorithm.SHA256;
+            case "SHA512" -> HashingAlgorithm.SHA512;
+            default -> HashingAlgorithm.SHA1;
+        };
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.master.mosaique_capital.service;
 
+import com.google.firebase.auth.AuthErrorCode;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.UserRecord;
+import com.master.mosaique_capital.config.AsyncExecutors;
 import com.master.mosaique_capital.model.User;
 import com.master.mosaique_capital.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -19,6 +21,7 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final FirebaseAuth firebaseAuth;
+    private final AsyncExecutors asyncExecutors;
 
     public CompletableFuture<User> createUser(User user) {
         return userRepository.save(user);
@@ -33,26 +36,18 @@ public class UserService {
     }
 
     public CompletableFuture<Void> deleteUser(String uid) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-
-        try {
-            // Supprimer de Firebase Auth
-            firebaseAuth.deleteUser(uid);
-
-            // Supprimer de notre base de données
-            userRepository.deleteById(uid)
-                    .thenAccept(v -> future.complete(null))
-                    .exceptionally(e -> {
-                        future.completeExceptionally(e);
-                        return null;
-                    });
-
-        } catch (FirebaseAuthException e) {
-            log.error("Erreur lors de la suppression de l'utilisateur dans Firebase Auth: {}", e.getMessage());
-            future.completeExceptionally(e);
-        }
-
-        return future;
+        // Supprimer de Firebase Auth (appel bloquant, hors du thread de requête)
+        return asyncExecutors.supplyBlocking(() -> {
+                    firebaseAuth.deleteUser(uid);
+                    return null;
+                })
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        log.error("Erreur lors de la suppression de l'utilisateur dans Firebase Auth: {}", e.getMessage());
+                    }
+                })
+                // Supprimer de notre base de données
+                .thenCompose(v -> userRepository.deleteById(uid));
     }
 
     public CompletableFuture<Optional<User>> getUserByEmail(String email) {
@@ -60,56 +55,44 @@ public class UserService {
     }
 
     public CompletableFuture<User> disableUser(String uid, boolean disabled) {
-        CompletableFuture<User> future = new CompletableFuture<>();
-
-        try {
-            // Mettre à jour dans Firebase Auth
-            UserRecord.UpdateRequest request = new UserRecord.UpdateRequest(uid)
-                    .setDisabled(disabled);
-            firebaseAuth.updateUser(request);
-
-            // Mettre à jour dans notre base de données
-            userRepository.findById(uid)
-                    .thenCompose(optionalUser -> {
-                        if (optionalUser.isPresent()) {
-                            User user = optionalUser.get();
-                            user.setDisabled(disabled);
-                            return userRepository.save(user);
-                        } else {
-                            CompletableFuture<User> errorFuture = new CompletableFuture<>();
-                            errorFuture.completeExceptionally(new RuntimeException("Utilisateur non trouvé"));
-                            return errorFuture;
-                        }
-                    })
-                    .thenAccept(future::complete)
-                    .exceptionally(e -> {
-                        future.completeExceptionally(e);
-                        return null;
-                    });
-
-        } catch (FirebaseAuthException e) {
-            log.error("Erreur lors de la mise à jour du statut de l'utilisateur dans Firebase Auth: {}", e.getMessage());
-            future.completeExceptionally(e);
-        }
-
-        return future;
+        // Mettre à jour dans Firebase Auth (appel bloquant, hors du thread de requête)
+        UserRecord.UpdateRequest request = new UserRecord.UpdateRequest(uid)
+                .setDisabled(disabled);
+
+        return asyncExecutors.supplyBlocking(() -> firebaseAuth.updateUser(request))
+                .whenComplete((userRecord, e) -> {
+                    if (e != null) {
+                        log.error("Erreur lors de la mise à jour du statut de l'utilisateur dans Firebase Auth: {}",
+                                e.getMessage());
+                    }
+                })
+                // Mettre à jour dans notre base de données
+                .thenCompose(userRecord -> userRepository.findById(uid))
+                .thenCompose(optionalUser -> {
+                    if (optionalUser.isPresent()) {
+                        User user = optionalUser.get();
+                        user.setDisabled(disabled);
+                        return userRepository.save(user);
+                    } else {
+                        CompletableFuture<User> errorFuture = new CompletableFuture<>();
+                        errorFuture.completeExceptionally(new RuntimeException("Utilisateur non trouvé"));
+                        return errorFuture;
+                    }
+                });
     }
 
     public CompletableFuture<Boolean> checkEmailExists(String email) {
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-        try {
-            firebaseAuth.getUserByEmail(email);
-            future.complete(true);
-        } catch (FirebaseAuthException e) {
-            if (e.getErrorCode().equals("user-not-found")) {
-                future.complete(false);
-            } else {
+        return asyncExecutors.supplyBlocking(() -> {
+            try {
+                firebaseAuth.getUserByEmail(email);
+                return true;
+            } catch (FirebaseAuthException e) {
+                if (e.getAuthErrorCode() == AuthErrorCode.USER_NOT_FOUND) {
+                    return false;
+                }
                 log.error("Erreur lors de la vérification de l'email: {}", e.getMessage());
-                future.completeExceptionally(e);
+                throw e;
             }
-        }
-
-        return future;
+        });
     }
-}
\ No newline at end of file
+}
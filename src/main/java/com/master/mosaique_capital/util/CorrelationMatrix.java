@@ -0,0 +1,171 @@
+package com.master.mosaique_capital.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Matrice de corrélation de séries de rendements alignées sur une même grille, stockées ligne par ligne
+ * dans un tableau {@code double} unique ({@code returns[i * periods + t]}, {@link Double#NaN} si absent).
+ * <p>
+ * La corrélation d'une paire est celle de Pearson sur les seules observations communes aux deux séries
+ * (ET de leurs masques de bits de présence) : moyennes et variances sont calculées sur ces observations,
+ * de sorte que deux séries identiques sur leur recouvrement sont corrélées à 1 quelle que soit la longueur
+ * de ce recouvrement. Le triangle supérieur de la matrice est découpé en tuiles de {@code blockSize} x
+ * {@code blockSize} séries, calculées en parallèle sur un {@link ForkJoinPool}. Les paires ayant moins de
+ * {@code minObservations} observations communes, ou constantes sur celles-ci, donnent {@link Double#NaN}.
+ */
+public final class CorrelationMatrix {
+
+    private CorrelationMatrix() {
+    }
+
+    /**
+     * @return la matrice {@code series x series}, ligne par ligne, symétrique, diagonale à 1 (ou NaN)
+     */
+    public static double[] compute(double[] returns, int series, int periods, int minObservations,
+                                   int blockSize, ForkJoinPool pool) {
+        int words = (periods + 63) >>> 6;
+        long[] masks = new long[series * words];
+        int[] counts = new int[series];
+
+        for (int i = 0; i < series; i++) {
+            int row = i * periods;
+            int count = 0;
+            for (int t = 0; t < periods; t++) {
+                if (!Double.isNaN(returns[row + t])) {
+                    count++;
+                    masks[i * words + (t >>> 6)] |= 1L << t;
+                }
+            }
+            counts[i] = count;
+        }
+
+        double[] matrix = new double[series * series];
+        List<RecursiveAction> tiles = new ArrayList<>();
+        int block = Math.max(1, blockSize);
+        for (int rowStart = 0; rowStart < series; rowStart += block) {
+            for (int columnStart = rowStart; columnStart < series; columnStart += block) {
+                int rowFrom = rowStart;
+                int columnFrom = columnStart;
+                tiles.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        computeTile(returns, masks, counts, matrix, series, periods, words, minObservations,
+                                rowFrom, Math.min(rowFrom + block, series),
+                                columnFrom, Math.min(columnFrom + block, series));
+                    }
+                });
+            }
+        }
+
+        if (tiles.size() == 1) {
+            tiles.get(0).invoke();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tiles);
+                }
+            });
+        }
+        return matrix;
+    }
+
+    private static void computeTile(double[] returns, long[] masks, int[] counts, double[] matrix,
+                                    int series, int periods, int words, int minObservations,
+                                    int rowFrom, int rowTo, int columnFrom, int columnTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = Math.max(columnFrom, i); j < columnTo; j++) {
+                double correlation;
+                if (i == j) {
+                    correlation = counts[i] >= minObservations ? 1 : Double.NaN;
+                } else {
+                    int common = overlap(masks, i, j, words);
+                    correlation = common < minObservations
+                            ? Double.NaN
+                            : pairwiseCorrelation(returns, masks, i, j, periods, words, common);
+                }
+                matrix[i * series + j] = correlation;
+                matrix[j * series + i] = correlation;
+            }
+        }
+    }
+
+    /**
+     * Pearson sur les observations communes : un passage pour les moyennes, un pour les moments centrés
+     */
+    private static double pairwiseCorrelation(double[] returns, long[] masks, int i, int j, int periods, int words,
+                                              int common) {
+        int rowI = i * periods;
+        int rowJ = j * periods;
+        double sumI = 0;
+        double sumJ = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = masks[i * words + w] & masks[j * words + w];
+            while (bits != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                sumI += returns[rowI + t];
+                sumJ += returns[rowJ + t];
+            }
+        }
+        double meanI = sumI / common;
+        double meanJ = sumJ / common;
+
+        double covariance = 0;
+        double varianceI = 0;
+        double varianceJ = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = masks[i * words + w] & masks[j * words + w];
+            while (bits != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                double a = returns[rowI + t] - meanI;
+                double b = returns[rowJ + t] - meanJ;
+                covariance += a * b;
+                varianceI += a * a;
+                varianceJ += b * b;
+            }
+        }
+        if (varianceI <= 0 || varianceJ <= 0) {
+            return Double.NaN;
+        }
+        return Math.max(-1, Math.min(1, covariance / Math.sqrt(varianceI * varianceJ)));
+    }
+
+    private static int overlap(long[] masks, int i, int j, int words) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(masks[i * words + w] & masks[j * words + w]);
+        }
+        return count;
+    }
+
+    /**
+     * Ecart-type des observations présentes d'une série (estimateur sans biais), NaN si moins de deux
+     */
+    public static double standardDeviation(double[] returns, int offset, int periods) {
+        double sum = 0;
+        int count = 0;
+        for (int t = offset; t < offset + periods; t++) {
+            if (!Double.isNaN(returns[t])) {
+                sum += returns[t];
+                count++;
+            }
+        }
+        if (count < 2) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        double squares = 0;
+        for (int t = offset; t < offset + periods; t++) {
+            if (!Double.isNaN(returns[t])) {
+                double deviation = returns[t] - mean;
+                squares += deviation * deviation;
+            }
+        }
+        return Math.sqrt(squares / (count - 1));
+    }
+}
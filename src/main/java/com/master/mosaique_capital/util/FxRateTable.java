@@ -0,0 +1,138 @@
+package com.master.mosaique_capital.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Historique journalier compact du taux d'une devise par rapport à la devise pivot.
+ * <p>
+ * Les taux sont stockés en {@code long} mis à l'échelle {@link #RATE_SCALE} dans un tableau indexé par
+ * le jour epoch. Les jours sans cotation (week-ends, jours fériés) reprennent le dernier taux connu,
+ * ce qui rend la lecture O(1). Les écritures sont synchronisées et les lectures sans verrou : les lecteurs ne
+ * lisent que les {@code length} premières cases du segment publié, qui ne sont jamais modifiées sur place.
+ * Une date postérieure à la dernière cotation est écrite dans la capacité libre du tableau, agrandi par
+ * doublement (O(1) amorti) ; une date antérieure ou la correction d'un jour déjà présent publient une copie.
+ */
+public final class FxRateTable {
+
+    public static final int RATE_SCALE = 10;
+
+    private static final long MISSING = 0L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Etat publié atomiquement aux lecteurs ; {@code rates.length} est la capacité, au moins {@code length} */
+    private record Segment(long firstDay, long[] rates, int length) {
+    }
+
+    private volatile Segment segment;
+
+    // Jours réellement cotés, les autres étant des reports du taux précédent
+    private final BitSet quoted = new BitSet();
+
+    /**
+     * Enregistre le taux (unités de devise pour une unité de devise pivot) pour une date
+     */
+    public synchronized void put(LocalDate date, BigDecimal rate) {
+        if (rate == null || rate.signum() <= 0) {
+            throw new IllegalArgumentException("FX rate must be strictly positive");
+        }
+
+        long day = date.toEpochDay();
+        long scaled = rate.setScale(RATE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+        Segment current = segment;
+
+        if (current == null) {
+            long[] rates = new long[INITIAL_CAPACITY];
+            rates[0] = scaled;
+            quoted.set(0);
+            segment = new Segment(day, rates, 1);
+            return;
+        }
+
+        long firstDay = current.firstDay();
+        int length = current.length();
+
+        if (day >= firstDay && day - firstDay >= length) {
+            append(current, Math.toIntExact(day - firstDay), scaled);
+            return;
+        }
+
+        int shift = 0;
+
+        if (day < firstDay) {
+            // Décaler le tableau vers la droite pour accueillir une date antérieure
+            shift = Math.toIntExact(firstDay - day);
+            shiftQuoted(shift);
+            length += shift;
+            firstDay = day;
+        }
+
+        int index = Math.toIntExact(day - firstDay);
+
+        // Les cases visibles ne sont jamais modifiées : les lecteurs sans verrou y lisent un état cohérent
+        long[] rates = new long[Math.max(length, INITIAL_CAPACITY)];
+        System.arraycopy(current.rates(), 0, rates, shift, current.length());
+
+        rates[index] = scaled;
+        quoted.set(index);
+
+        // Propager le nouveau taux sur les jours suivants non cotés
+        for (int i = index + 1; i < length && !quoted.get(i); i++) {
+            rates[i] = scaled;
+        }
+
+        segment = new Segment(firstDay, rates, length);
+    }
+
+    /**
+     * Cotation postérieure à la dernière : les cases au-delà de {@code length} ne sont lues par aucun lecteur,
+     * elles sont complétées sur place avant la publication du segment allongé
+     */
+    private void append(Segment current, int index, long scaled) {
+        int length = current.length();
+        long[] rates = current.rates();
+        if (index >= rates.length) {
+            rates = Arrays.copyOf(rates, Math.max(index + 1, rates.length * 2));
+        }
+        // Reporter le dernier taux sur les jours non cotés intermédiaires
+        Arrays.fill(rates, length, index, rates[length - 1]);
+        rates[index] = scaled;
+        quoted.set(index);
+        segment = new Segment(current.firstDay(), rates, index + 1);
+    }
+
+    /**
+     * Retourne le taux applicable à une date mis à l'échelle {@link #RATE_SCALE},
+     * ou 0 si aucun taux n'est connu à cette date
+     */
+    public long scaledRateAt(LocalDate date) {
+        Segment current = segment;
+        if (current == null) {
+            return MISSING;
+        }
+
+        long offset = date.toEpochDay() - current.firstDay();
+        if (offset < 0) {
+            return MISSING;
+        }
+        if (offset >= current.length()) {
+            return current.rates()[current.length() - 1];
+        }
+        return current.rates()[(int) offset];
+    }
+
+    public boolean isEmpty() {
+        return segment == null;
+    }
+
+    private void shiftQuoted(int shift) {
+        BitSet copy = (BitSet) quoted.clone();
+        quoted.clear();
+        for (int i = copy.nextSetBit(0); i >= 0; i = copy.nextSetBit(i + 1)) {
+            quoted.set(i + shift);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.master.mosaique_capital.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.stream.Collector;
+
+/**
+ * Accumulateur monétaire en arithmétique entière à virgule fixe.
+ * <p>
+ * Les montants sont additionnés sous forme de {@code long} mis à l'échelle {@link #SCALE}, sans allocation
+ * intermédiaire. En cas de dépassement de capacité, ou pour un montant plus précis que l'échelle fixe,
+ * l'accumulateur bascule définitivement sur {@link BigDecimal}. Le résultat est strictement identique
+ * (valeur et échelle) à une réduction par {@code BigDecimal::add}.
+ * <p>
+ * Non thread-safe : un accumulateur par fil de calcul, combinés via {@link #merge(MoneyAccumulator)}.
+ */
+public final class MoneyAccumulator {
+
+    /** Nombre de décimales de l'arithmétique entière */
+    public static final int SCALE = 6;
+
+    private static final long[] POWERS_OF_TEN = new long[SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i <= SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+        }
+    }
+
+    private final String currency;
+
+    private long units;
+    private int maxScale;
+    private BigDecimal overflow;
+
+    private MoneyAccumulator(String currency) {
+        this.currency = currency;
+    }
+
+    /**
+     * Crée un accumulateur sans contrainte de devise
+     */
+    public static MoneyAccumulator create() {
+        return new MoneyAccumulator(null);
+    }
+
+    /**
+     * Crée un accumulateur n'acceptant que des montants dans la devise donnée
+     */
+    public static MoneyAccumulator of(String currency) {
+        return new MoneyAccumulator(Objects.requireNonNull(currency, "currency"));
+    }
+
+    /**
+     * Collecteur équivalent à {@code reduce(BigDecimal.ZERO, BigDecimal::add)}, les valeurs nulles étant ignorées
+     */
+    public static Collector<BigDecimal, MoneyAccumulator, BigDecimal> summing() {
+        return Collector.of(
+                MoneyAccumulator::create,
+                MoneyAccumulator::add,
+                MoneyAccumulator::merge,
+                MoneyAccumulator::toBigDecimal
+        );
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Ajoute un montant exprimé dans la devise de l'accumulateur
+     */
+    public MoneyAccumulator add(BigDecimal amount, String amountCurrency) {
+        if (currency != null && amountCurrency != null && !currency.equals(amountCurrency)) {
+            throw new IllegalArgumentException(
+                    "Currency mismatch: cannot add " + amountCurrency + " to a " + currency + " accumulator");
+        }
+        return add(amount);
+    }
+
+    /**
+     * Ajoute un montant ; une valeur nulle est ignorée
+     */
+    public MoneyAccumulator add(BigDecimal amount) {
+        if (amount == null) {
+            return this;
+        }
+
+        int scale = amount.scale();
+        if (scale > maxScale) {
+            maxScale = scale;
+        }
+
+        if (overflow != null) {
+            overflow = overflow.add(amount);
+            return this;
+        }
+
+        if (scale >= 0 && scale <= SCALE) {
+            BigInteger unscaled = amount.unscaledValue();
+            if (unscaled.bitLength() < Long.SIZE - 1) {
+                try {
+                    long scaled = Math.multiplyExact(unscaled.longValue(), POWERS_OF_TEN[SCALE - scale]);
+                    units = Math.addExact(units, scaled);
+                    return this;
+                } catch (ArithmeticException e) {
+                    // Dépassement : bascule sur BigDecimal ci-dessous
+                }
+            }
+        }
+
+        overflow = currentValue().add(amount);
+        return this;
+    }
+
+    /**
+     * Retranche un montant ; une valeur nulle est ignorée
+     */
+    public MoneyAccumulator subtract(BigDecimal amount) {
+        return amount == null ? this : add(amount.negate());
+    }
+
+    /**
+     * Combine un autre accumulateur dans celui-ci
+     */
+    public MoneyAccumulator merge(MoneyAccumulator other) {
+        if (currency != null && other.currency != null && !currency.equals(other.currency)) {
+            throw new IllegalArgumentException(
+                    "Currency mismatch: cannot merge " + other.currency + " into " + currency);
+        }
+
+        if (other.maxScale > maxScale) {
+            maxScale = other.maxScale;
+        }
+
+        if (overflow == null && other.overflow == null) {
+            try {
+                units = Math.addExact(units, other.units);
+                return this;
+            } catch (ArithmeticException e) {
+                // Dépassement : bascule sur BigDecimal ci-dessous
+            }
+        }
+
+        overflow = currentValue().add(other.currentValue());
+        return this;
+    }
+
+    /**
+     * Indique si l'accumulateur a dû basculer sur l'arithmétique BigDecimal
+     */
+    public boolean isOverflowed() {
+        return overflow != null;
+    }
+
+    /**
+     * Retourne le total avec l'échelle qu'aurait produite une somme de BigDecimal
+     */
+    public BigDecimal toBigDecimal() {
+        BigDecimal value = currentValue();
+        // Toutes les valeurs ajoutées ont une échelle <= maxScale : la réduction d'échelle est exacte
+        return value.scale() == maxScale ? value : value.setScale(maxScale);
+    }
+
+    private BigDecimal currentValue() {
+        return overflow != null ? overflow : BigDecimal.valueOf(units, SCALE);
+    }
+
+    @Override
+    public String toString() {
+        BigDecimal value = toBigDecimal();
+        return currency != null ? value.toPlainString() + " " + currency : value.toPlainString();
+    }
+}
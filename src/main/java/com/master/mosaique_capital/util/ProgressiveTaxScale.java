@@ -0,0 +1,96 @@
+package com.master.mosaique_capital.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Barème progressif par tranches : chaque taux s'applique à la fraction de l'assiette comprise entre le seuil
+ * de sa tranche et le seuil de la tranche suivante.
+ * <p>
+ * Les cumuls d'impôt aux seuils sont précalculés : le calcul pour une assiette ne parcourt pas les tranches
+ * inférieures, il ajoute au cumul du seuil de sa tranche l'impôt de la fraction restante. Immuable.
+ */
+public final class ProgressiveTaxScale {
+
+    private final BigDecimal[] thresholds;
+    private final BigDecimal[] rates;
+    // Impôt dû sur une assiette égale au seuil de chaque tranche
+    private final BigDecimal[] cumulative;
+
+    private ProgressiveTaxScale(List<BigDecimal> thresholds, List<BigDecimal> rates) {
+        this.thresholds = thresholds.toArray(BigDecimal[]::new);
+        this.rates = rates.toArray(BigDecimal[]::new);
+        this.cumulative = new BigDecimal[this.thresholds.length];
+        cumulative[0] = BigDecimal.ZERO;
+        for (int i = 1; i < this.thresholds.length; i++) {
+            cumulative[i] = cumulative[i - 1].add(this.thresholds[i].subtract(this.thresholds[i - 1]).multiply(this.rates[i - 1]));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Impôt dû sur une assiette, arrondi à l'euro inférieur ; nul pour une assiette négative ou nulle
+     */
+    public BigDecimal compute(BigDecimal base) {
+        if (base.signum() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        int bracket = bracketOf(base);
+        return cumulative[bracket]
+                .add(base.subtract(thresholds[bracket]).multiply(rates[bracket]))
+                .setScale(0, RoundingMode.FLOOR);
+    }
+
+    /**
+     * Taux marginal applicable à une assiette
+     */
+    public BigDecimal marginalRate(BigDecimal base) {
+        return base.signum() <= 0 ? rates[0] : rates[bracketOf(base)];
+    }
+
+    // Dernière tranche dont le seuil est inférieur à l'assiette (recherche dichotomique)
+    private int bracketOf(BigDecimal base) {
+        int low = 0;
+        int high = thresholds.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (thresholds[mid].compareTo(base) < 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public static final class Builder {
+        private final List<BigDecimal> thresholds = new ArrayList<>();
+        private final List<BigDecimal> rates = new ArrayList<>();
+
+        /**
+         * Ajoute une tranche commençant au seuil donné ; la première tranche doit commencer à zéro
+         * @param rate taux de la tranche (0.005 pour 0,5 %)
+         */
+        public Builder bracket(String threshold, String rate) {
+            BigDecimal from = new BigDecimal(threshold);
+            if (thresholds.isEmpty() ? from.signum() != 0 : from.compareTo(thresholds.get(thresholds.size() - 1)) <= 0) {
+                throw new IllegalArgumentException("Brackets must start at zero and have increasing thresholds");
+            }
+            thresholds.add(from);
+            rates.add(new BigDecimal(rate));
+            return this;
+        }
+
+        public ProgressiveTaxScale build() {
+            if (thresholds.isEmpty()) {
+                throw new IllegalArgumentException("A tax scale needs at least one bracket");
+            }
+            return new ProgressiveTaxScale(thresholds, rates);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.master.mosaique_capital.util;
+
+import java.util.Arrays;
+
+/**
+ * Sketch de quantiles à erreur relative bornée (principe de DDSketch), fusionnable.
+ * <p>
+ * Chaque valeur non nulle est comptée dans un compartiment logarithmique d'indice
+ * {@code ceil(log(|x|) / log(gamma))}, avec {@code gamma = (1 + alpha) / (1 - alpha)} : tout quantile est
+ * restitué à une erreur relative {@code alpha} près, quel que soit le nombre de valeurs, avec une mémoire
+ * proportionnelle au logarithme de l'étendue des valeurs. Les valeurs négatives ont leurs propres compartiments.
+ * <p>
+ * Non thread-safe : un sketch par fil de calcul, combinés via {@link #merge(QuantileSketch)}.
+ */
+public final class QuantileSketch {
+
+    private static final double MIN_MAGNITUDE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be in ]0, 1[");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value > MIN_MAGNITUDE) {
+            positive.increment(index(value), 1);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.increment(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Ajoute les valeurs d'un autre sketch de même précision
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracies");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Quantile approché ({@code q} entre 0 et 1), NaN si le sketch est vide
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+
+        // Négatifs, du plus grand module au plus petit
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return clamp(-value(negative.offset + i));
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return clamp(value(positive.offset + i));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /**
+     * Valeur représentative d'un compartiment, à erreur relative alpha de toutes les valeurs qu'il contient
+     */
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Compteurs par indice de compartiment, sur une plage contiguë extensible
+     */
+    private static final class Store {
+        private long[] counts = new long[0];
+        private int offset;
+
+        void increment(int index, long amount) {
+            ensure(index);
+            counts[index - offset] += amount;
+        }
+
+        void merge(Store other) {
+            if (other.counts.length == 0) {
+                return;
+            }
+            ensure(other.offset);
+            ensure(other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+
+        private void ensure(int index) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+                return;
+            }
+            if (index < offset) {
+                int grow = Math.max(offset - index, counts.length / 2);
+                long[] resized = new long[counts.length + grow];
+                System.arraycopy(counts, 0, resized, grow, counts.length);
+                counts = resized;
+                offset -= grow;
+            } else if (index >= offset + counts.length) {
+                int grow = Math.max(index - offset - counts.length + 1, counts.length / 2);
+                counts = Arrays.copyOf(counts, counts.length + grow);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.master.mosaique_capital.util;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache de résultats par utilisateur, partagé par les services d'analyse.
+ * <p>
+ * Les entrées sont regroupées par utilisateur : une invalidation ne parcourt que les entrées de cet utilisateur.
+ * Chaque utilisateur porte sa génération, incrémentée à chaque invalidation ; un calcul commencé avant n'est pas
+ * mis en cache, sans effet sur les calculs en cours des autres utilisateurs. Au-delà de {@code maxEntries}
+ * entrées (ou utilisateurs), les utilisateurs les moins récemment consultés sont évincés. Les entrées expirent
+ * après {@code ttl} ; un ttl nul ou absent les conserve jusqu'à invalidation ou éviction.
+ * <p>
+ * Limite et durée sont lues à chaque appel, ce qui permet de les injecter après construction du service.
+ */
+public final class UserScopedCache<K, V> {
+
+    private record Entry<V>(V value, long builtAtNanos) {
+    }
+
+    private static final class UserEntries<K, V> {
+        private final Map<K, Entry<V>> entries = new HashMap<>();
+        private long generation;
+    }
+
+    /** Utilisateur et génération au début d'un calcul */
+    private record Ticket<K, V>(UserEntries<K, V> user, long generation) {
+    }
+
+    private final IntSupplier maxEntries;
+    private final Supplier<Duration> ttl;
+
+    // Ordre d'accès : l'utilisateur le moins récemment consulté en tête ; protégé par le moniteur de l'instance
+    private final LinkedHashMap<String, UserEntries<K, V>> users = new LinkedHashMap<>(16, 0.75f, true);
+    private int size;
+
+    public UserScopedCache(IntSupplier maxEntries, Supplier<Duration> ttl) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Retourne la valeur en cache ou la calcule ; le résultat n'est mis en cache que si l'utilisateur
+     * n'a pas été invalidé pendant le calcul
+     */
+    public CompletableFuture<V> get(String userId, K key, Supplier<CompletableFuture<V>> loader) {
+        Ticket<K, V> ticket;
+        synchronized (this) {
+            UserEntries<K, V> user = users.computeIfAbsent(userId, id -> new UserEntries<>());
+            Entry<V> entry = user.entries.get(key);
+            if (entry != null) {
+                if (!expired(entry)) {
+                    return CompletableFuture.completedFuture(entry.value());
+                }
+                user.entries.remove(key);
+                size--;
+            }
+            ticket = new Ticket<>(user, user.generation);
+        }
+        return loader.get().thenApply(value -> {
+            put(userId, ticket, key, value);
+            return value;
+        });
+    }
+
+    /**
+     * Invalide toutes les entrées d'un utilisateur
+     */
+    public void invalidate(String userId) {
+        invalidate(userId, key -> true);
+    }
+
+    /**
+     * Invalide les entrées d'un utilisateur dont la clé vérifie le prédicat ; les calculs en cours de cet
+     * utilisateur ne seront pas mis en cache
+     */
+    public synchronized void invalidate(String userId, Predicate<K> keys) {
+        UserEntries<K, V> user = users.get(userId);
+        if (user == null) {
+            return;
+        }
+        user.generation++;
+        Iterator<K> iterator = user.entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (keys.test(iterator.next())) {
+                iterator.remove();
+                size--;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized void put(String userId, Ticket<K, V> ticket, K key, V value) {
+        // Utilisateur évincé ou invalidé depuis le début du calcul
+        if (users.get(userId) != ticket.user() || ticket.user().generation != ticket.generation()) {
+            return;
+        }
+        if (ticket.user().entries.put(key, new Entry<>(value, System.nanoTime())) == null) {
+            size++;
+        }
+        evict();
+    }
+
+    private void evict() {
+        int max = maxEntries.getAsInt();
+        Iterator<UserEntries<K, V>> iterator = users.values().iterator();
+        while ((size > max || users.size() > max) && iterator.hasNext()) {
+            size -= iterator.next().entries.size();
+            iterator.remove();
+        }
+    }
+
+    private boolean expired(Entry<V> entry) {
+        Duration timeToLive = ttl.get();
+        return timeToLive != null && !timeToLive.isZero()
+                && System.nanoTime() - entry.builtAtNanos() >= timeToLive.toNanos();
+    }
+}
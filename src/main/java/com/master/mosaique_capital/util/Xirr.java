@@ -0,0 +1,178 @@
+package com.master.mosaique_capital.util;
+
+import java.util.Arrays;
+
+/**
+ * Taux de rendement interne à dates quelconques (XIRR), sur tableaux primitifs.
+ * <p>
+ * Les flux sont signés du point de vue de l'investisseur (apport négatif, retrait ou valeur finale positifs)
+ * et datés en années depuis le premier flux. {@link #solveAll} résout plusieurs problèmes ensemble : les
+ * itérations de Newton avancent en parallèle sur tous les problèmes non convergés, puis ceux dont Newton
+ * diverge sont résolus par dichotomie. Un problème sans solution (flux tous du même signe, pas de changement
+ * de signe sur l'intervalle de recherche) donne {@link Double#NaN}.
+ */
+public final class Xirr {
+
+    private static final int MAX_NEWTON_ITERATIONS = 50;
+    private static final int MAX_BISECTION_ITERATIONS = 200;
+    private static final double TOLERANCE = 1e-10;
+    private static final double INITIAL_GUESS = 0.1;
+    private static final double LOWER_BOUND = -0.999999;
+    private static final double UPPER_BOUND = 1e6;
+
+    private Xirr() {
+    }
+
+    /**
+     * Taux annuel d'un seul échéancier
+     * @param amounts montants des flux
+     * @param years dates des flux en années depuis l'origine
+     */
+    public static double solve(double[] amounts, double[] years) {
+        double[] rate = new double[1];
+        solveAll(amounts, years, new int[]{0, amounts.length}, rate);
+        return rate[0];
+    }
+
+    /**
+     * Résout plusieurs échéanciers stockés bout à bout : le problème {@code p} occupe les indices
+     * {@code offsets[p]} (inclus) à {@code offsets[p + 1]} (exclu)
+     * @param rates taux annuels résultants, de taille {@code offsets.length - 1}
+     */
+    public static void solveAll(double[] amounts, double[] years, int[] offsets, double[] rates) {
+        int problems = offsets.length - 1;
+        boolean[] pending = new boolean[problems];
+        int remaining = 0;
+
+        for (int p = 0; p < problems; p++) {
+            if (hasSignChange(amounts, offsets[p], offsets[p + 1])) {
+                rates[p] = INITIAL_GUESS;
+                pending[p] = true;
+                remaining++;
+            } else {
+                rates[p] = Double.NaN;
+            }
+        }
+
+        // Newton, en parallèle sur tous les problèmes non convergés
+        boolean[] diverged = new boolean[problems];
+        for (int iteration = 0; iteration < MAX_NEWTON_ITERATIONS && remaining > 0; iteration++) {
+            for (int p = 0; p < problems; p++) {
+                if (!pending[p]) {
+                    continue;
+                }
+                double rate = rates[p];
+                double logBase = Math.log1p(rate);
+                double value = 0;
+                double derivative = 0;
+                for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                    double discounted = amounts[k] * Math.exp(-years[k] * logBase);
+                    value += discounted;
+                    derivative -= years[k] * discounted;
+                }
+                derivative /= 1 + rate;
+
+                double next = rate - value / derivative;
+                if (!Double.isFinite(next) || next <= LOWER_BOUND || next >= UPPER_BOUND) {
+                    pending[p] = false;
+                    diverged[p] = true;
+                    remaining--;
+                } else if (Math.abs(next - rate) < TOLERANCE) {
+                    rates[p] = next;
+                    pending[p] = false;
+                    remaining--;
+                } else {
+                    rates[p] = next;
+                }
+            }
+        }
+
+        for (int p = 0; p < problems; p++) {
+            if (diverged[p] || pending[p]) {
+                rates[p] = bisect(amounts, years, offsets[p], offsets[p + 1]);
+            }
+        }
+    }
+
+    private static double bisect(double[] amounts, double[] years, int from, int to) {
+        double low = LOWER_BOUND;
+        double high = UPPER_BOUND;
+        double lowValue = npv(amounts, years, from, to, low);
+        double highValue = npv(amounts, years, from, to, high);
+        if (Double.isNaN(lowValue) || Double.isNaN(highValue) || Math.signum(lowValue) == Math.signum(highValue)) {
+            return Double.NaN;
+        }
+
+        for (int i = 0; i < MAX_BISECTION_ITERATIONS && high - low > TOLERANCE; i++) {
+            double middle = 0.5 * (low + high);
+            double middleValue = npv(amounts, years, from, to, middle);
+            if (Math.signum(middleValue) == Math.signum(lowValue)) {
+                low = middle;
+                lowValue = middleValue;
+            } else {
+                high = middle;
+            }
+        }
+        return 0.5 * (low + high);
+    }
+
+    private static double npv(double[] amounts, double[] years, int from, int to, double rate) {
+        double logBase = Math.log1p(rate);
+        double value = 0;
+        for (int k = from; k < to; k++) {
+            value += amounts[k] * Math.exp(-years[k] * logBase);
+        }
+        return value;
+    }
+
+    private static boolean hasSignChange(double[] amounts, int from, int to) {
+        boolean positive = false;
+        boolean negative = false;
+        for (int k = from; k < to; k++) {
+            positive |= amounts[k] > 0;
+            negative |= amounts[k] < 0;
+        }
+        return positive && negative;
+    }
+
+    /**
+     * Echéancier en cours de construction pour {@link #solveAll}
+     */
+    public static final class Batch {
+        private double[] amounts = new double[64];
+        private double[] years = new double[64];
+        private int[] offsets = new int[]{0, 0, 0, 0, 0, 0, 0, 0, 0};
+        private int size;
+        private int problems;
+
+        /**
+         * Ajoute un flux au problème courant
+         */
+        public void add(double amount, double year) {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+                years = Arrays.copyOf(years, size * 2);
+            }
+            amounts[size] = amount;
+            years[size] = year;
+            size++;
+        }
+
+        /**
+         * Termine le problème courant ; retourne son indice
+         */
+        public int close() {
+            if (problems + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++problems] = size;
+            return problems - 1;
+        }
+
+        public double[] solve() {
+            double[] rates = new double[problems];
+            solveAll(amounts, years, Arrays.copyOf(offsets, problems + 1), rates);
+            return rates;
+        }
+    }
+}
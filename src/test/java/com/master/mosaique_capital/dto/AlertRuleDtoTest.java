@@ -0,0 +1,63 @@
+package com.master.mosaique_capital.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertRuleDtoTest {
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    static void createValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void negativeNetWorthThresholdIsAccepted() throws Exception {
+        AlertRuleDto rule = objectMapper.readValue("""
+                {"type": "NET_WORTH_CROSSES_BELOW", "threshold": -5000}
+                """, AlertRuleDto.class);
+
+        assertThat(violatedPaths(rule)).isEmpty();
+    }
+
+    @Test
+    void percentageThresholdMustBeBetweenZeroAndHundred() throws Exception {
+        AlertRuleDto negative = objectMapper.readValue("""
+                {"type": "ASSET_DROP", "threshold": -1, "assetId": "a1", "windowDays": 30}
+                """, AlertRuleDto.class);
+        AlertRuleDto tooHigh = objectMapper.readValue("""
+                {"type": "CATEGORY_SHARE_ABOVE", "threshold": 101, "category": "INVESTMENT"}
+                """, AlertRuleDto.class);
+
+        assertThat(violatedPaths(negative)).containsExactly("thresholdInRange");
+        assertThat(violatedPaths(tooHigh)).containsExactly("thresholdInRange");
+    }
+
+    private static Set<String> violatedPaths(AlertRuleDto rule) {
+        return validator.validate(rule).stream()
+                .map(ConstraintViolation::getPropertyPath)
+                .map(Object::toString)
+                .collect(Collectors.toSet());
+    }
+}
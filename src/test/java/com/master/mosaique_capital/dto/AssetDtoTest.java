@@ -0,0 +1,57 @@
+package com.master.mosaique_capital.dto;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.master.mosaique_capital.security.FirebaseKeyDeserializer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AssetDtoTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void attributeKeysRoundTripUnescaped() throws Exception {
+        String json = """
+                {"name": "Appartement", "attributes": {"Date d'achat": "2015-06-01", "Surface (m²)": "85"}}
+                """;
+
+        AssetDto dto = objectMapper.readValue(json, AssetDto.class);
+
+        assertThat(dto.getAttributes()).containsOnlyKeys("Date d'achat", "Surface (m²)");
+        assertThat(dto.getAttributes().keySet()).allMatch(FirebaseKeyDeserializer::isValidKey);
+
+        // Relu depuis sa propre sérialisation, l'actif garde les mêmes clés
+        AssetDto reread = objectMapper.readValue(objectMapper.writeValueAsString(dto), AssetDto.class);
+        assertThat(reread.getAttributes().keySet()).isEqualTo(dto.getAttributes().keySet());
+    }
+
+    @Test
+    void attributeValuesAreStillSanitized() throws Exception {
+        AssetDto dto = objectMapper.readValue("{\"attributes\": {\"note\": \"<b>x</b>\"}}", AssetDto.class);
+
+        assertThat(dto.getAttributes()).containsEntry("note", "&lt;b&gt;x&lt;&#x2F;b&gt;");
+    }
+
+    @Test
+    void attributeKeysForbiddenByFirebaseAreRejected() {
+        for (String key : new String[]{"a.b", "prix $", "#1", "a[0]", "a/b", "", "tab\tkey"}) {
+            String json = objectMapper.createObjectNode()
+                    .set("attributes", objectMapper.createObjectNode().put(key, "x"))
+                    .toString();
+
+            assertThatThrownBy(() -> objectMapper.readValue(json, AssetDto.class))
+                    .as(key)
+                    .isInstanceOf(JsonMappingException.class);
+        }
+    }
+
+    @Test
+    void keyLengthIsLimitedTo768Bytes() {
+        assertThat(FirebaseKeyDeserializer.isValidKey("é".repeat(384))).isTrue();
+        assertThat(FirebaseKeyDeserializer.isValidKey("é".repeat(385))).isFalse();
+        assertThat(FirebaseKeyDeserializer.isValidKey(null)).isFalse();
+    }
+}
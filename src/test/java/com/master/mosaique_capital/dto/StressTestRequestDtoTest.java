@@ -0,0 +1,80 @@
+package com.master.mosaique_capital.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StressTestRequestDtoTest {
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeAll
+    static void createValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void nullScenariosAreRejected() throws Exception {
+        StressTestRequestDto request = objectMapper.readValue("""
+                {"scenarios": null, "includeBuiltIn": true}
+                """, StressTestRequestDto.class);
+
+        assertThat(violatedPaths(request)).containsExactly("scenarios");
+    }
+
+    @Test
+    void nullScenarioEntryAndShocksAreRejected() throws Exception {
+        StressTestRequestDto request = objectMapper.readValue("""
+                {"scenarios": [null, {"name": "Krach", "typeShocks": null}]}
+                """, StressTestRequestDto.class);
+
+        assertThat(violatedPaths(request)).containsExactlyInAnyOrder("scenarios[0].<list element>",
+                "scenarios[1].typeShocks");
+    }
+
+    @Test
+    void emptyRequestNeedsBuiltInScenarios() throws Exception {
+        StressTestRequestDto empty = objectMapper.readValue("{}", StressTestRequestDto.class);
+        StressTestRequestDto builtIn = objectMapper.readValue("""
+                {"includeBuiltIn": true}
+                """, StressTestRequestDto.class);
+
+        assertThat(violatedPaths(empty)).containsExactly("scenarioRequested");
+        assertThat(violatedPaths(builtIn)).isEmpty();
+    }
+
+    @Test
+    void customScenarioIsAccepted() throws Exception {
+        StressTestRequestDto request = objectMapper.readValue("""
+                {"scenarios": [{"name": "Krach actions", "typeShocks": {"STOCK": -0.4}, "categoryShocks": {}}]}
+                """, StressTestRequestDto.class);
+
+        assertThat(violatedPaths(request)).isEmpty();
+    }
+
+    private static Set<String> violatedPaths(StressTestRequestDto request) {
+        return validator.validate(request).stream()
+                .map(ConstraintViolation::getPropertyPath)
+                .map(Object::toString)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,120 @@
+package com.master.mosaique_capital.repository;
+
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.security.SecurityUtils;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AssetFieldCodecTest {
+
+    private static final String SECRET = "codec-test-secret";
+
+    private final SecurityUtils securityUtils = new SecurityUtils();
+
+    @Test
+    void roundTripRestoresEncryptedFields() {
+        AssetFieldCodec codec = codec("name", "currentValue", "attributes");
+        Asset asset = asset();
+
+        Map<String, Object> stored = codec.encode(asset.toMap());
+
+        assertThat((String) stored.get("name")).startsWith("gcm1:");
+        assertThat((String) stored.get("currentValue")).startsWith("gcm1:");
+        assertThat(stored.get("description")).isEqualTo("Résidence principale");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> attributes = (Map<String, Object>) stored.get("attributes");
+        assertThat((String) attributes.get("Date d'achat")).startsWith("gcm1:");
+
+        Asset decoded = Asset.fromMap(codec.decode(stored));
+
+        assertThat(decoded).isEqualTo(asset);
+    }
+
+    @Test
+    void currentValueEncryptionCoversValuationHistory() {
+        AssetFieldCodec codec = codec("currentValue");
+        Asset asset = asset();
+        List<AssetValuation> history = List.copyOf(asset.getValuationHistory());
+
+        Map<String, Object> stored = codec.encode(asset.toMap());
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> storedHistory = (List<Map<String, Object>>) stored.get("valuationHistory");
+        assertThat(storedHistory).hasSize(2);
+        assertThat(storedHistory).allSatisfy(valuation -> {
+            assertThat((String) valuation.get("value")).startsWith("gcm1:");
+            assertThat(valuation.get("currency")).isEqualTo("EUR");
+        });
+        // L'entité source n'est pas modifiée
+        assertThat(asset.getValuationHistory()).isEqualTo(history);
+
+        assertThat(Asset.fromMap(codec.decode(stored)).getValuationHistory()).isEqualTo(history);
+    }
+
+    @Test
+    void historyStaysInClearWhenCurrentValueIsNotEncrypted() {
+        AssetFieldCodec codec = codec("name");
+
+        Map<String, Object> stored = codec.encode(asset().toMap());
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> storedHistory = (List<Map<String, Object>>) stored.get("valuationHistory");
+        assertThat(storedHistory.get(0).get("value")).isEqualTo("420000.00");
+    }
+
+    @Test
+    void decodeReadsDocumentsWrittenBeforeAndAfterEncryption() {
+        AssetFieldCodec enabled = codec("name", "currentValue");
+        AssetFieldCodec disabled = new AssetFieldCodec(securityUtils, false, new String[]{"name"}, SECRET);
+        Asset asset = asset();
+
+        // Un document chiffré reste lisible une fois le chiffrement désactivé, un document en clair reste lisible
+        assertThat(Asset.fromMap(disabled.decode(enabled.encode(asset.toMap())))).isEqualTo(asset);
+        assertThat(Asset.fromMap(enabled.decode(new HashMap<>(asset.toMap())))).isEqualTo(asset);
+    }
+
+    private AssetFieldCodec codec(String... fields) {
+        return new AssetFieldCodec(securityUtils, true, fields, SECRET);
+    }
+
+    private static Asset asset() {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("Date d'achat", "2015-06-01");
+        attributes.put("surface", "85");
+
+        return Asset.builder()
+                .id("asset-1")
+                .userId("user-1")
+                .name("Appartement Lyon")
+                .description("Résidence principale")
+                .type(Asset.AssetType.REAL_ESTATE)
+                .category(Asset.AssetCategory.TANGIBLE)
+                .currency("EUR")
+                .currentValue(new BigDecimal("450000.00"))
+                .acquisitionValue(new BigDecimal("380000.00"))
+                .attributes(attributes)
+                .valuationHistory(List.of(
+                        valuation("v1", "420000.00", LocalDateTime.of(2023, 1, 1, 0, 0)),
+                        valuation("v2", "450000.00", LocalDateTime.of(2024, 1, 1, 0, 0))))
+                .build();
+    }
+
+    private static AssetValuation valuation(String id, String value, LocalDateTime date) {
+        return AssetValuation.builder()
+                .id(id)
+                .assetId("asset-1")
+                .value(new BigDecimal(value))
+                .valuationDate(date)
+                .currency("EUR")
+                .source("MANUAL")
+                .build();
+    }
+}
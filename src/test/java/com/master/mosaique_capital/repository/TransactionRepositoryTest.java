@@ -0,0 +1,113 @@
+package com.master.mosaique_capital.repository;
+
+import com.master.mosaique_capital.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 15, 10, 0);
+
+    @Test
+    void writesDocumentInMonthPartitionAndDatedIndexEntry() {
+        Transaction transaction = transaction("user-1", "asset-1", LocalDate.of(2024, 2, 29));
+
+        TransactionRepository.AppendPlan plan = TransactionRepository.plan(List.of(transaction), ids(), NOW, 500);
+
+        assertThat(plan.batches()).hasSize(1);
+        Map<String, Object> updates = plan.batches().get(0);
+        String id = plan.saved().get(0).getId();
+        assertThat(updates).containsOnlyKeys(
+                TransactionRepository.documentPath("user-1", YearMonth.of(2024, 2), id),
+                TransactionRepository.indexPath("user-1", "asset-1", id));
+        assertThat(updates.get(TransactionRepository.indexPath("user-1", "asset-1", id))).isEqualTo("2024-02-29");
+        assertThat(plan.payloadBytes()).isPositive();
+    }
+
+    @Test
+    void transactionWithoutAssetHasNoIndexEntry() {
+        Transaction transaction = transaction("user-1", null, LocalDate.of(2024, 3, 1));
+
+        TransactionRepository.AppendPlan plan = TransactionRepository.plan(List.of(transaction), ids(), NOW, 500);
+
+        assertThat(plan.batches().get(0)).hasSize(1);
+    }
+
+    @Test
+    void doesNotMutateCallerTransactions() {
+        Transaction transaction = transaction("user-1", "asset-1", LocalDate.of(2024, 3, 1));
+
+        TransactionRepository.AppendPlan plan = TransactionRepository.plan(List.of(transaction), ids(), NOW, 500);
+
+        assertThat(transaction.getId()).isNull();
+        assertThat(transaction.getCreatedAt()).isNull();
+        Transaction saved = plan.saved().get(0);
+        assertThat(saved).isNotSameAs(transaction);
+        assertThat(saved.getId()).isEqualTo("id-0");
+        assertThat(saved.getCreatedAt()).isEqualTo(NOW);
+        assertThat(saved.getAmount()).isEqualByComparingTo(transaction.getAmount());
+    }
+
+    @Test
+    void keepsProvidedIdentifierForIdempotentSync() {
+        Transaction transaction = transaction("user-1", "asset-1", LocalDate.of(2024, 3, 1));
+        transaction.setId("bank-42");
+
+        TransactionRepository.AppendPlan plan = TransactionRepository.plan(List.of(transaction), ids(), NOW, 500);
+
+        assertThat(plan.saved().get(0).getId()).isEqualTo("bank-42");
+    }
+
+    @Test
+    void splitsLargeAppendIntoBatches() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            transactions.add(transaction("user-1", "asset-1", LocalDate.of(2024, 1, 1).plusDays(i)));
+        }
+
+        TransactionRepository.AppendPlan plan = TransactionRepository.plan(transactions, ids(), NOW, 10);
+
+        // Deux chemins par opération : 10 opérations par tranche
+        assertThat(plan.batches()).extracting(Map::size).containsExactly(20, 20, 10);
+        assertThat(plan.saved()).extracting(Transaction::getId).doesNotHaveDuplicates().hasSize(25);
+    }
+
+    @Test
+    void rejectsTransactionWithoutUserOrDate() {
+        Transaction withoutDate = transaction("user-1", "asset-1", null);
+        Transaction withoutUser = transaction(null, "asset-1", LocalDate.of(2024, 3, 1));
+
+        assertThatThrownBy(() -> TransactionRepository.plan(List.of(withoutDate), ids(), NOW, 500))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionRepository.plan(List.of(withoutUser), ids(), NOW, 500))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Transaction transaction(String userId, String assetId, LocalDate date) {
+        return Transaction.builder()
+                .userId(userId)
+                .assetId(assetId)
+                .date(date)
+                .amount(new BigDecimal("-42.50"))
+                .currency("EUR")
+                .label("Loyer")
+                .build();
+    }
+
+    private static Supplier<String> ids() {
+        AtomicInteger next = new AtomicInteger();
+        return () -> "id-" + next.getAndIncrement();
+    }
+}
@@ -0,0 +1,121 @@
+package com.master.mosaique_capital.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.model.User;
+import com.master.mosaique_capital.security.SecurityUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserRepositoryTest {
+
+    @TempDir
+    Path journalDir;
+
+    // Utilisateurs répliqués dans Firebase, par clé
+    private final TreeMap<String, User> firebase = new TreeMap<>();
+    private final List<String> cursors = new ArrayList<>();
+    private AsyncExecutors asyncExecutors;
+    private WriteBehindStore writeBehindStore;
+    private UserRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        asyncExecutors = new AsyncExecutors();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        writeBehindStore = new WriteBehindStore(null, new ObjectMapper(), new SecurityUtils(), asyncExecutors, meterRegistry) {
+            @Override
+            void replicate(List<PendingWrite> writes) {
+            }
+        };
+        ReflectionTestUtils.setField(writeBehindStore, "enabled", true);
+        ReflectionTestUtils.setField(writeBehindStore, "journalSecret", "user-repository-test-secret");
+        ReflectionTestUtils.setField(writeBehindStore, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(writeBehindStore, "batchSize", 500);
+        writeBehindStore.start();
+
+        repository = new UserRepository(null, new RepositoryMetrics(meterRegistry), writeBehindStore, asyncExecutors) {
+            @Override
+            CompletableFuture<List<Map.Entry<String, User>>> readUsers(String afterUid, int limit) {
+                cursors.add(afterUid);
+                Map<String, User> tail = afterUid == null ? firebase : firebase.tailMap(afterUid, false);
+                return CompletableFuture.completedFuture(tail.entrySet().stream()
+                        .limit(limit)
+                        .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                        .toList());
+            }
+
+            @Override
+            public CompletableFuture<Optional<User>> findById(String uid) {
+                return CompletableFuture.completedFuture(Optional.ofNullable(firebase.get(uid)));
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        writeBehindStore.stop();
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void streamAllPagesByKeyEvenWithoutUidField() {
+        for (int i = 0; i < 5; i++) {
+            firebase.put("u" + i, User.builder().email("u" + i + "@example.com").build());
+        }
+
+        List<User> users = repository.streamAll(2).collectList().block();
+
+        assertThat(users).extracting(User::getEmail)
+                .containsExactly("u0@example.com", "u1@example.com", "u2@example.com", "u3@example.com", "u4@example.com");
+        assertThat(cursors).containsExactly(null, "u1", "u3");
+    }
+
+    @Test
+    void streamAllAppliesPendingWrites() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            firebase.put("u" + i, user("u" + i, "old"));
+        }
+        // Écritures journalisées, pas encore répliquées dans Firebase
+        writeBehindStore.put("users/u1", null, user("u1", "new").toMap());
+        writeBehindStore.delete("users/u2", null);
+        writeBehindStore.put("users/u25", null, user("u25", "created").toMap());
+        writeBehindStore.put("users/u9", null, user("u9", "created").toMap());
+
+        List<User> users = repository.streamAll(2).collectList().block();
+
+        assertThat(users).extracting(User::getUid).containsExactly("u0", "u1", "u25", "u3", "u9");
+        assertThat(users.get(1).getDisplayName()).isEqualTo("new");
+    }
+
+    @Test
+    void findAllByIdsDoesNotOverflowOnCompletedReads() throws Exception {
+        List<String> ids = IntStream.range(0, 50_000).mapToObj(i -> "u" + i).toList();
+        ids.forEach(id -> firebase.put(id, user(id, id)));
+        ReflectionTestUtils.setField(repository, "readConcurrency", 1);
+
+        Map<String, User> users = repository.findAllByIds(ids).get();
+
+        assertThat(users).hasSize(ids.size());
+        assertThat(users.keySet()).containsExactlyElementsOf(ids);
+    }
+
+    private static User user(String uid, String displayName) {
+        return User.builder().uid(uid).email(uid + "@example.com").displayName(displayName).build();
+    }
+}
@@ -0,0 +1,201 @@
+package com.master.mosaique_capital.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.security.SecurityUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindStoreTest {
+
+    private static final String SECRET = "write-behind-test-secret";
+
+    @TempDir
+    Path journalDir;
+
+    private final SecurityUtils securityUtils = new SecurityUtils();
+    private final List<List<String>> replicated = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<WriteBehindStore> stores = new ArrayList<>();
+    private AsyncExecutors asyncExecutors;
+    // Chemins refusés par le faux Firebase ; "*" simule une indisponibilité
+    private volatile String rejectedPath;
+
+    @BeforeEach
+    void setUp() {
+        asyncExecutors = new AsyncExecutors();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        rejectedPath = null;
+        for (WriteBehindStore store : stores) {
+            store.stop();
+        }
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void replaysUnreplicatedWritesAfterRestart() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        store.put("users/u1", "u1", Map.of("email", "a@example.com"));
+        store.delete("assets/a1", "u1");
+
+        // Redémarrage sans réplication : le journal est rejoué
+        WriteBehindStore restarted = start(SECRET);
+
+        assertThat(restarted.pending("users/u1")).hasValueSatisfying(write ->
+                assertThat(write.value()).containsEntry("email", "a@example.com"));
+        assertThat(restarted.pending("assets/a1")).hasValueSatisfying(write -> assertThat(write.isDelete()).isTrue());
+        assertThat(restarted.pendingByOwner("u1")).hasSize(2);
+    }
+
+    @Test
+    void dropsTornLastLineAndKeepsJournalAppendable() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        store.put("users/u1", "u1", Map.of("name", "first"));
+        // Ligne interrompue par un arrêt brutal, sans fin de ligne
+        appendRaw(securityUtils.encryptSensitiveValue("{\"seq\":", SECRET).substring(0, 12));
+
+        WriteBehindStore restarted = start(SECRET);
+        restarted.put("users/u2", "u2", Map.of("name", "second"));
+
+        WriteBehindStore again = start(SECRET);
+        assertThat(again.pending("users/u1")).isPresent();
+        assertThat(again.pending("users/u2")).isPresent();
+    }
+
+    @Test
+    void failsStartupOnCorruptedMiddleLine() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        store.put("users/u1", "u1", Map.of("name", "first"));
+        appendRaw("gcm:corrupted\n");
+        store.put("users/u2", "u2", Map.of("name", "second"));
+
+        assertThatThrownBy(() -> start(SECRET))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    void failsStartupWhenSecretChanged() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        store.put("users/u1", "u1", Map.of("name", "first"));
+        store.put("users/u2", "u2", Map.of("name", "second"));
+
+        assertThatThrownBy(() -> start("another-secret")).isInstanceOf(IllegalStateException.class);
+        // Le journal n'est pas tronqué : les écritures restent rejouables avec le bon secret
+        assertThat(start(SECRET).pendingByOwner("u2")).hasSize(1);
+    }
+
+    @Test
+    void rejectsPlaintextJournalLines() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        appendRaw("{\"seq\":1,\"path\":\"users/u1\",\"owner\":\"u1\",\"value\":{\"role\":\"ADMIN\"}}\n");
+        store.put("users/u2", "u2", Map.of("name", "second"));
+
+        assertThatThrownBy(() -> start(SECRET)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void drainsInJournalOrderAndCompacts() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        ReflectionTestUtils.setField(store, "batchSize", 2);
+        store.put("a", "u1", Map.of("v", 1));
+        store.put("b", "u1", Map.of("v", 1));
+        store.put("c", "u1", Map.of("v", 1));
+        // Réécriture : seule la dernière version est répliquée, à sa place dans le journal
+        store.put("a", "u1", Map.of("v", 2));
+        store.delete("d", "u1");
+
+        store.drain();
+
+        assertThat(replicated).containsExactly(List.of("b", "c"), List.of("a", "d"));
+        assertThat(store.pendingByOwner("u1")).isEmpty();
+        assertThat(Files.size(journal())).isZero();
+    }
+
+    @Test
+    void parksRejectedWriteWithoutBlockingOthers() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        ReflectionTestUtils.setField(store, "maxAttempts", 2);
+        rejectedPath = "bad";
+        store.put("a", "u1", Map.of("v", 1));
+        store.put("bad", "u1", Map.of("v", 1));
+        store.put("c", "u1", Map.of("v", 1));
+
+        store.drain();
+
+        assertThat(replicated).contains(List.of("a"), List.of("c"));
+        assertThat(store.pending("bad")).isEmpty();
+        assertThat(meterRegistry.get("firebase.write_behind.rejected").counter().count()).isEqualTo(1);
+        assertThat(Files.size(journal())).isZero();
+
+        List<String> parked = Files.readAllLines(journalDir.resolve("firebase-write-behind.rejected.log"));
+        assertThat(parked).hasSize(1);
+        assertThat(securityUtils.decryptSensitiveValue(parked.get(0), SECRET)).contains("\"path\":\"bad\"");
+    }
+
+    @Test
+    void keepsWritesPendingWhileFirebaseIsUnavailable() throws IOException {
+        WriteBehindStore store = start(SECRET);
+        rejectedPath = "*";
+        store.put("a", "u1", Map.of("v", 1));
+        store.put("b", "u1", Map.of("v", 1));
+
+        store.drain();
+        store.drain();
+
+        assertThat(store.pendingByOwner("u1")).hasSize(2);
+        assertThat(journalDir.resolve("firebase-write-behind.rejected.log")).doesNotExist();
+        assertThat(Files.size(journal())).isPositive();
+    }
+
+    private WriteBehindStore start(String secret) throws IOException {
+        WriteBehindStore store = new WriteBehindStore(null, new ObjectMapper(), securityUtils, asyncExecutors, meterRegistry) {
+            @Override
+            void replicate(List<PendingWrite> writes) throws ExecutionException {
+                List<String> paths = writes.stream().map(PendingWrite::path).toList();
+                if ("*".equals(rejectedPath) || paths.contains(rejectedPath)) {
+                    throw new ExecutionException(new IllegalStateException("Permission denied"));
+                }
+                replicated.add(paths);
+            }
+        };
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "journalSecret", secret);
+        ReflectionTestUtils.setField(store, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(store, "batchSize", 500);
+        ReflectionTestUtils.setField(store, "maxBackoffMillis", 60000L);
+        ReflectionTestUtils.setField(store, "maxAttempts", 5);
+        store.start();
+        stores.add(store);
+        return store;
+    }
+
+    private Path journal() {
+        return journalDir.resolve("firebase-write-behind.log");
+    }
+
+    private void appendRaw(String content) throws IOException {
+        Files.write(journal(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
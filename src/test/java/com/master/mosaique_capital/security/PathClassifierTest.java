@@ -0,0 +1,36 @@
+package com.master.mosaique_capital.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathClassifierTest {
+
+    private final PathClassifier classifier = new PathClassifier(
+            new String[]{"/api/auth/**"},
+            new String[]{"/api/assets/**", "/api/users/{id}/profile"},
+            10);
+
+    @Test
+    void classifiesPrefixesAndPatterns() {
+        assertThat(classifier.classify("/api/auth/login")).isEqualTo(PathClassifier.PathClass.AUTH);
+        assertThat(classifier.classify("/api/assets/a1/valuations")).isEqualTo(PathClassifier.PathClass.SENSITIVE);
+        assertThat(classifier.classify("/api/users/u1/profile")).isEqualTo(PathClassifier.PathClass.SENSITIVE);
+        assertThat(classifier.classify("/api/public/rates")).isEqualTo(PathClassifier.PathClass.OTHER);
+    }
+
+    @Test
+    void newUrisAreStillCachedOnceFullAndHotOnesStay() {
+        for (int i = 0; i < 1000; i++) {
+            classifier.classify("/api/assets/a1");
+            assertThat(classifier.classify("/api/assets/id-" + i)).isEqualTo(PathClassifier.PathClass.SENSITIVE);
+
+            assertThat(classifier.isCached("/api/assets/id-" + i)).isTrue();
+            assertThat(classifier.cachedEntries()).isLessThanOrEqualTo(10);
+        }
+
+        // URI consultée à chaque génération : jamais évincée
+        assertThat(classifier.isCached("/api/assets/a1")).isTrue();
+        assertThat(classifier.isCached("/api/assets/id-0")).isFalse();
+    }
+}
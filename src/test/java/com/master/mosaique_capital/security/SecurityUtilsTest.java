@@ -0,0 +1,198 @@
+package com.master.mosaique_capital.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SecurityUtilsTest {
+
+    // Secret de 32 octets : utilisable tel quel comme clé par le format CBC historique
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    // Chiffré au format CBC historique (IV 00..0f) de "Résidence principale" avec SECRET
+    private static final String LEGACY_CIPHERTEXT = "AAECAwQFBgcICQoLDA0OD1BrGPFSxTNPAA+9MveS9gkav7nR6XuudJXowi0ug+4g";
+
+    private final SecurityUtils securityUtils = new SecurityUtils();
+
+    @Test
+    void gcmRoundTrip() {
+        String encrypted = securityUtils.encryptSensitiveValue("Résidence principale ✓", SECRET);
+
+        assertThat(encrypted).startsWith("gcm1:");
+        assertThat(securityUtils.isEncrypted(encrypted)).isTrue();
+        assertThat(securityUtils.decryptSensitiveValue(encrypted, SECRET)).isEqualTo("Résidence principale ✓");
+    }
+
+    @Test
+    void gcmUsesFreshIvForEachEncryption() {
+        String first = securityUtils.encryptSensitiveValue("125000.00", SECRET);
+        String second = securityUtils.encryptSensitiveValue("125000.00", SECRET);
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(securityUtils.decryptSensitiveValue(second, SECRET)).isEqualTo("125000.00");
+    }
+
+    @Test
+    void gcmRejectsTamperedCiphertextAndWrongSecret() {
+        String encrypted = securityUtils.encryptSensitiveValue("125000.00", SECRET);
+        byte[] raw = Base64.getDecoder().decode(encrypted.substring("gcm1:".length()));
+        raw[raw.length - 1] ^= 1;
+        String tampered = "gcm1:" + Base64.getEncoder().encodeToString(raw);
+
+        assertThatThrownBy(() -> securityUtils.decryptSensitiveValue(tampered, SECRET))
+                .isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> securityUtils.decryptSensitiveValue(encrypted, "another-secret"))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void derivedKeysAreBoundedAndNotKeyedBySecret() {
+        SecurityUtils utils = new SecurityUtils();
+        ReflectionTestUtils.setField(utils, "kdfIterations", 1000);
+        ReflectionTestUtils.setField(utils, "derivedKeysMax", 2);
+        String encrypted = utils.encryptSensitiveValue("125000.00", SECRET);
+        utils.encryptSensitiveValue("125000.00", "second-secret");
+        utils.encryptSensitiveValue("125000.00", "third-secret");
+
+        assertThat(utils.derivedKeyCount()).isEqualTo(2);
+        assertThat(((Map<?, ?>) ReflectionTestUtils.getField(utils, "derivedKeys")).containsKey("third-secret")).isFalse();
+        // La clé évincée est dérivée de nouveau
+        assertThat(utils.decryptSensitiveValue(encrypted, SECRET)).isEqualTo("125000.00");
+        assertThat(utils.derivedKeyCount()).isEqualTo(2);
+    }
+
+    @Test
+    void blankValuesAreNotEncrypted() {
+        assertThat(securityUtils.encryptSensitiveValue(" ", SECRET)).isNull();
+        assertThat(securityUtils.decryptSensitiveValue(null, SECRET)).isNull();
+    }
+
+    @Test
+    void decryptsLegacyCbcCiphertext() {
+        assertThat(securityUtils.isEncrypted(LEGACY_CIPHERTEXT)).isFalse();
+        assertThat(securityUtils.decryptSensitiveValue(LEGACY_CIPHERTEXT, SECRET)).isEqualTo("Résidence principale");
+    }
+
+    @Test
+    void decryptsLegacyCbcCiphertextWithRandomIv() throws Exception {
+        String legacy = encryptLegacy("Compte titres", SECRET);
+
+        assertThat(securityUtils.decryptSensitiveValue(legacy, SECRET)).isEqualTo("Compte titres");
+    }
+
+    @Test
+    void mapRoundTripKeepsEmptyValuesAndMigratesLegacyOnes() throws Exception {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("name", "Appartement Lyon");
+        values.put("description", "");
+        values.put("notes", null);
+
+        Map<String, String> encrypted = securityUtils.encryptAll(values, SECRET);
+        assertThat(encrypted.get("name")).startsWith("gcm1:");
+        assertThat(encrypted.get("description")).isEmpty();
+        assertThat(encrypted.get("notes")).isNull();
+
+        // Une valeur encore au format historique est déchiffrée dans la même passe
+        encrypted.put("legacy", encryptLegacy("Ancienne valeur", SECRET));
+        Map<String, String> decrypted = securityUtils.decryptAll(encrypted, SECRET);
+
+        assertThat(decrypted)
+                .containsEntry("name", "Appartement Lyon")
+                .containsEntry("description", "")
+                .containsEntry("notes", null)
+                .containsEntry("legacy", "Ancienne valeur");
+    }
+
+    @Test
+    void forwardedForIsIgnoredWithoutTrustedProxies() {
+        MockHttpServletRequest request = request("203.0.113.7", "198.51.100.1");
+
+        assertThat(securityUtils.getClientIpAddress(request)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void forwardedForIsIgnoredFromUntrustedPeer() {
+        securityUtils.setTrustedProxies(List.of("10.0.0.0/8"));
+        MockHttpServletRequest request = request("203.0.113.7", "198.51.100.1");
+
+        assertThat(securityUtils.getClientIpAddress(request)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void rightMostUntrustedHopIsTheClient() {
+        securityUtils.setTrustedProxies(List.of("10.0.0.0/8", "192.168.1.10"));
+        // Le client a ajouté une fausse adresse en tête de chaîne
+        MockHttpServletRequest request = request("10.1.2.3", "1.2.3.4, 198.51.100.1, 192.168.1.10");
+
+        assertThat(securityUtils.getClientIpAddress(request)).isEqualTo("198.51.100.1");
+    }
+
+    @Test
+    void hopsAreReadAcrossRepeatedHeaders() {
+        securityUtils.setTrustedProxies(List.of("10.0.0.0/8"));
+        MockHttpServletRequest request = request("10.0.0.2", "1.2.3.4, 198.51.100.1");
+        request.addHeader("X-Forwarded-For", "10.0.0.1");
+
+        assertThat(securityUtils.getClientIpAddress(request)).isEqualTo("198.51.100.1");
+    }
+
+    @Test
+    void chainOfTrustedProxiesFallsBackToLeftMostHop() {
+        securityUtils.setTrustedProxies(List.of("10.0.0.0/8"));
+        MockHttpServletRequest request = request("10.0.0.2", "10.0.0.5, 10.0.0.1");
+
+        assertThat(securityUtils.getClientIpAddress(request)).isEqualTo("10.0.0.5");
+    }
+
+    @Test
+    void ipv6ProxiesAreMatchedByPrefix() {
+        securityUtils.setTrustedProxies(List.of("2001:db8::/32"));
+        MockHttpServletRequest request = request("2001:db8::1", "2001:db9::42");
+
+        assertThat(securityUtils.getClientIpAddress(request)).isEqualTo("2001:db9::42");
+    }
+
+    @Test
+    void invalidTrustedProxyIsRejected() {
+        assertThatThrownBy(() -> securityUtils.setTrustedProxies(List.of("proxy.internal")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> securityUtils.setTrustedProxies(List.of("10.0.0.0/33")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Chiffrement au format CBC historique : Base64(IV 16 octets || données), secret brut comme clé
+     */
+    private static String encryptLegacy(String value, String secret) throws Exception {
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "AES"),
+                new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddress);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+}
@@ -0,0 +1,132 @@
+package com.master.mosaique_capital.security;
+
+import com.master.mosaique_capital.config.TotpConfig;
+import org.apache.commons.codec.binary.Base32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TotpVerifierTest {
+
+    // Secrets ASCII des annexes des RFC 4226 et 6238, une longueur de clé par algorithme
+    private static final String SHA1_SECRET = base32("12345678901234567890");
+    private static final String SHA256_SECRET = base32("12345678901234567890123456789012");
+    private static final String SHA512_SECRET = base32("1234567890123456789012345678901234567890123456789012345678901234");
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 755224", "1, 287082", "2, 359152", "3, 969429", "4, 338314",
+            "5, 254676", "6, 287922", "7, 162583", "8, 399871", "9, 520489"
+    })
+    void matchesRfc4226HotpVectors(long counter, String expected) {
+        TotpVerifier verifier = verifier(6, "SHA1", 100);
+
+        // Avec une période de 30 s, l'instant counter * 30 correspond au compteur HOTP
+        assertThat(verifier.codeAt(SHA1_SECRET, counter * 30)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "59, 94287082, 46119246, 90693936",
+            "1111111109, 07081804, 68084774, 25091201",
+            "1111111111, 14050471, 67062674, 99943326",
+            "1234567890, 89005924, 91819424, 93441116",
+            "2000000000, 69279037, 90698825, 38618901",
+            "20000000000, 65353130, 77737706, 47863826"
+    })
+    void matchesRfc6238TotpVectors(long epochSeconds, String sha1, String sha256, String sha512) {
+        assertThat(verifier(8, "SHA1", 100).codeAt(SHA1_SECRET, epochSeconds)).isEqualTo(sha1);
+        assertThat(verifier(8, "SHA256", 100).codeAt(SHA256_SECRET, epochSeconds)).isEqualTo(sha256);
+        assertThat(verifier(8, "SHA512", 100).codeAt(SHA512_SECRET, epochSeconds)).isEqualTo(sha512);
+    }
+
+    @Test
+    void acceptedCodeCannotBeReplayed() {
+        TotpVerifier verifier = verifier(6, "SHA1", 100);
+        String code = currentCode(verifier);
+
+        assertThat(verifier.verify("user-1", code, SHA1_SECRET)).isTrue();
+        assertThat(verifier.verify("user-1", code, SHA1_SECRET)).isFalse();
+        assertThat(verifier.verify("user-1", "000000".equals(code) ? "111111" : "000000", SHA1_SECRET)).isFalse();
+    }
+
+    @Test
+    void concurrentRequestsAcceptACodeOnce() throws Exception {
+        TotpVerifier verifier = verifier(6, "SHA1", 100);
+        String code = currentCode(verifier);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Callable<Boolean> attempt = () -> {
+                    start.await();
+                    return verifier.verify("user-1", code, SHA1_SECRET);
+                };
+                results.add(executor.submit(attempt));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<Boolean> result : results) {
+                accepted += result.get() ? 1 : 0;
+            }
+            assertThat(accepted).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fullTableFailsClosedInsteadOfForgettingUsedCodes() {
+        TotpVerifier verifier = verifier(6, "SHA1", 2);
+        String code = currentCode(verifier);
+
+        assertThat(verifier.verify("user-1", code, SHA1_SECRET)).isTrue();
+        assertThat(verifier.verify("user-2", code, SHA1_SECRET)).isTrue();
+
+        // Les deux états protègent encore un code de la fenêtre : ils ne peuvent pas être évincés
+        assertThat(verifier.verify("user-3", code, SHA1_SECRET)).isFalse();
+        // Le rejeu reste détecté pour les utilisateurs déjà suivis
+        assertThat(verifier.verify("user-1", code, SHA1_SECRET)).isFalse();
+    }
+
+    @Test
+    void secretChangeKeepsReplayProtection() {
+        TotpVerifier verifier = verifier(6, "SHA1", 100);
+        String code = currentCode(verifier);
+
+        assertThat(verifier.verify("user-1", code, SHA1_SECRET)).isTrue();
+        // Code du pas précédent avec le nouveau secret : dans la fenêtre, mais antérieur au dernier pas accepté
+        String previousStep = verifier.codeAt(SHA256_SECRET, System.currentTimeMillis() / 1000 - 30);
+        assertThat(verifier.verify("user-1", previousStep, SHA256_SECRET)).isFalse();
+    }
+
+    private static String currentCode(TotpVerifier verifier) {
+        return verifier.codeAt(SHA1_SECRET, System.currentTimeMillis() / 1000);
+    }
+
+    private static TotpVerifier verifier(int digits, String algorithm, int maxEntries) {
+        TotpConfig config = new TotpConfig();
+        config.setDigits(digits);
+        config.setPeriod(30);
+        config.setAlgorithm(algorithm);
+        return new TotpVerifier(config, 1, maxEntries, 900_000);
+    }
+
+    private static String base32(String ascii) {
+        return new Base32().encodeToString(ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+}
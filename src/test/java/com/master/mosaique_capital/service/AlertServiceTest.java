@@ -0,0 +1,354 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.AlertRule;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.repository.AlertRuleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AlertServiceTest {
+
+    private static final String USER = "user-1";
+
+    private final List<AlertRule> rules = new CopyOnWriteArrayList<>();
+    private final List<Asset> assets = new CopyOnWriteArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private AsyncExecutors asyncExecutors;
+    private AlertService service;
+
+    @BeforeEach
+    void setUp() {
+        asyncExecutors = new AsyncExecutors();
+        meterRegistry = new SimpleMeterRegistry();
+        AlertRuleRepository alertRuleRepository = new AlertRuleRepository(null, null) {
+            @Override
+            public CompletableFuture<List<AlertRule>> findByUserId(String userId) {
+                return CompletableFuture.completedFuture(rules.stream().filter(rule -> userId.equals(rule.getUserId())).toList());
+            }
+
+            @Override
+            public CompletableFuture<AlertRule> save(AlertRule rule) {
+                rule.setId(UUID.randomUUID().toString());
+                rules.add(rule);
+                return CompletableFuture.completedFuture(rule);
+            }
+
+            @Override
+            public CompletableFuture<Void> deleteById(String userId, String id) {
+                rules.removeIf(rule -> rule.getId().equals(id));
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        AssetService assetService = new AssetService(null, null, asyncExecutors) {
+            @Override
+            public CompletableFuture<List<Asset>> getAssetsByUserId(String userId) {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture(List.copyOf(assets));
+            }
+        };
+        service = new AlertService(alertRuleRepository, assetService, new FxRateService(), null, null, asyncExecutors,
+                meterRegistry);
+        ReflectionTestUtils.setField(service, "maxUsers", 100);
+        ReflectionTestUtils.setField(service, "maxRulesPerUser", 50);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void createdAssetCrossesNetWorthOnLoadedIndex() throws Exception {
+        assets.add(asset("a1", "600"));
+        service.createRule(USER, netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "1000")).get();
+
+        Asset created = asset("a2", "500");
+        assets.add(created);
+        service.submit(event(created, AssetChangedEvent.ChangeType.CREATED, null)).get();
+
+        assertThat(fired()).isEqualTo(1);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void updatesApplyDeltaToLoadedIndex() throws Exception {
+        assets.add(asset("a1", "600"));
+        service.createRule(USER, netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "1000")).get();
+
+        update("a1", "600", "1200");
+        update("a1", "1200", "1300");
+        update("a1", "1300", "900");
+        update("a1", "900", "1100");
+
+        assertThat(fired()).isEqualTo(2);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void deletedAssetIsRemovedFromLoadedIndex() throws Exception {
+        Asset deleted = asset("a2", "500");
+        assets.add(asset("a1", "800"));
+        assets.add(deleted);
+        service.createRule(USER, netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_BELOW, "1000")).get();
+
+        assets.remove(deleted);
+        service.submit(event(deleted, AssetChangedEvent.ChangeType.DELETED, "500")).get();
+        // L'actif supprimé ne compte plus : une hausse de a1 sous le seuil ne redéclenche rien
+        update("a1", "800", "900");
+
+        assertThat(fired()).isEqualTo(1);
+    }
+
+    @Test
+    void indexLoadedAfterWriteReconstructsPreviousState() throws Exception {
+        rules.add(rule(netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "1000")));
+        rules.add(rule(netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_BELOW, "1000")));
+
+        // Création : l'index est chargé après l'écriture et contient déjà l'actif
+        Asset created = asset("a1", "1200");
+        assets.add(created);
+        service.submit(event(created, AssetChangedEvent.ChangeType.CREATED, null)).get();
+        assertThat(fired()).isEqualTo(1);
+
+        // Mise à jour puis suppression, chacune vue par un index rechargé après l'écriture
+        evictIndex();
+        assets.set(0, asset("a1", "800"));
+        service.submit(event(assets.get(0), AssetChangedEvent.ChangeType.UPDATED, "1200")).get();
+        assertThat(fired()).isEqualTo(2);
+
+        evictIndex();
+        assets.set(0, asset("a1", "1100"));
+        Asset deleted = assets.remove(0);
+        service.submit(event(deleted, AssetChangedEvent.ChangeType.DELETED, "1100")).get();
+        assertThat(fired()).isEqualTo(3);
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void indexLoadedBeforeWriteUsesIndexedValue() throws Exception {
+        assets.add(asset("a1", "900"));
+        service.createRule(USER, netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "1000")).get();
+
+        // La valeur précédente de l'événement est ignorée au profit de l'état indexé
+        Asset updated = asset("a1", "1100");
+        updated.setVersion(1);
+        assets.set(0, updated);
+        service.submit(event(updated, AssetChangedEvent.ChangeType.UPDATED, "1050")).get();
+
+        assertThat(fired()).isEqualTo(1);
+    }
+
+    @Test
+    void indexLoadedAfterSeveralWritesFiresOnce() throws Exception {
+        rules.add(rule(netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "1250")));
+        // 600 -> 1200 -> 1300 : les deux écritures précèdent le chargement, qui lit la version 3
+        Asset loaded = asset("a1", "1300");
+        loaded.setVersion(3);
+        assets.add(loaded);
+
+        Asset first = asset("a1", "1200");
+        first.setVersion(2);
+        service.submit(event(first, AssetChangedEvent.ChangeType.UPDATED, "600")).get();
+        service.submit(event(loaded, AssetChangedEvent.ChangeType.UPDATED, "1200")).get();
+        assertThat(fired()).isEqualTo(1);
+
+        // Les écritures suivantes partent de l'état chargé
+        update("a1", "1300", "1400");
+        update("a1", "1400", "1000");
+        assertThat(fired()).isEqualTo(1);
+        update("a1", "1000", "1260");
+        assertThat(fired()).isEqualTo(2);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void negativeNetWorthThresholdIsAccepted() throws Exception {
+        assets.add(asset("a1", "-500"));
+        service.createRule(USER, netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "-100")).get();
+
+        update("a1", "-500", "50");
+
+        assertThat(fired()).isEqualTo(1);
+        assertThatThrownBy(() -> service.createRule(USER, dropRule("a1", "-5")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void eventsAreEvaluatedInPublishOrder() throws Exception {
+        assets.add(asset("a1", "900"));
+        service.createRule(USER, netWorthRule(AlertRule.RuleType.NET_WORTH_CROSSES_ABOVE, "1000")).get();
+
+        List<CompletableFuture<Void>> submitted = new ArrayList<>();
+        String previous = "900";
+        for (int i = 0; i < 200; i++) {
+            String next = i % 2 == 0 ? "1100" : "900";
+            Asset updated = asset("a1", next);
+            updated.setVersion(i + 1);
+            submitted.add(service.submit(event(updated, AssetChangedEvent.ChangeType.UPDATED, previous)));
+            previous = next;
+        }
+        CompletableFuture.allOf(submitted.toArray(CompletableFuture[]::new)).get();
+
+        assertThat(fired()).isEqualTo(100);
+    }
+
+    @Test
+    void dropRuleStaysTriggeredAcrossRuleChanges() throws Exception {
+        service.createRule(USER, dropRule("a1", "10")).get();
+
+        service.submit(event(droppedAsset("800"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "1000")).get();
+        assertThat(fired()).isEqualTo(1);
+
+        // Création et suppression d'une autre règle : l'index est recompilé sans réarmer la baisse
+        AlertRule other = service.createRule(USER, dropRule("a2", "20")).get();
+        service.submit(event(droppedAsset("790"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "800")).get();
+        service.deleteRule(USER, other.getId()).get();
+        service.submit(event(droppedAsset("780"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "790")).get();
+        assertThat(fired()).isEqualTo(1);
+
+        // Remontée puis nouvelle baisse : la règle est réarmée
+        service.submit(event(droppedAsset("1000"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "780")).get();
+        service.submit(event(droppedAsset("850"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "1000")).get();
+        assertThat(fired()).isEqualTo(2);
+    }
+
+    @Test
+    void dropWindowEndsAtEffectiveDate() throws Exception {
+        service.createRule(USER, dropRule("a1", "10")).get();
+        // Valorisation antidatée de 60 jours : le plus haut de 1000, 70 jours avant aujourd'hui, est dans sa fenêtre
+        Asset asset = droppedAsset("800");
+        asset.getValuationHistory().get(0).setValuationDate(LocalDateTime.now().minusDays(70));
+
+        service.submit(new AssetChangedEvent(USER, "a1", asset, AssetChangedEvent.ChangeType.VALUATION_ADDED,
+                new BigDecimal("1000"), LocalDateTime.now().minusDays(60))).get();
+
+        assertThat(fired()).isEqualTo(1);
+    }
+
+    @Test
+    void deletedAssetLosesItsDropRules() throws Exception {
+        service.createRule(USER, dropRule("a1", "10")).get();
+        AlertRule disabled = rule(dropRule("a1", "50"));
+        disabled.setEnabled(false);
+        rules.add(disabled);
+        AlertRule other = service.createRule(USER, dropRule("a2", "10")).get();
+        service.submit(event(droppedAsset("800"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "1000")).get();
+
+        service.submit(event(droppedAsset("800"), AssetChangedEvent.ChangeType.DELETED, "800")).get();
+
+        assertThat(rules).containsExactly(other);
+        assertThat(triggeredRules()).doesNotContainKey(USER);
+        assertThat(fired()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsSingleIndexAtCapacity() throws Exception {
+        ReflectionTestUtils.setField(service, "maxUsers", 2);
+        service.createRule(USER, dropRule("a1", "10")).get();
+
+        service.submit(event(droppedAsset("800"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "1000")).get();
+        for (String userId : List.of("user-2", "user-3", "user-4")) {
+            service.submit(new AssetChangedEvent(userId, "x", asset("x", "1"), AssetChangedEvent.ChangeType.UPDATED,
+                    BigDecimal.ONE, LocalDateTime.now())).get();
+        }
+        assertThat(indexes()).hasSize(2);
+
+        // L'index évincé est rechargé sans oublier la règle déjà déclenchée
+        evictIndex();
+        service.submit(event(droppedAsset("790"), AssetChangedEvent.ChangeType.VALUATION_ADDED, "800")).get();
+        assertThat(fired()).isEqualTo(1);
+    }
+
+    private void update(String assetId, String previousValue, String value) throws Exception {
+        Asset updated = asset(assetId, value);
+        assets.stream()
+                .filter(asset -> asset.getId().equals(assetId))
+                .findFirst()
+                .ifPresent(stored -> updated.setVersion(stored.getVersion() + 1));
+        assets.replaceAll(asset -> asset.getId().equals(assetId) ? updated : asset);
+        service.submit(event(updated, AssetChangedEvent.ChangeType.UPDATED, previousValue)).get();
+    }
+
+    private double fired() {
+        return meterRegistry.get("alerts.fired").counter().count();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> indexes() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(service, "indexes");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> triggeredRules() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(service, "triggeredRules");
+    }
+
+    private void evictIndex() {
+        indexes().remove(USER);
+    }
+
+    private static AssetChangedEvent event(Asset asset, AssetChangedEvent.ChangeType changeType, String previousValue) {
+        return new AssetChangedEvent(USER, asset.getId(), asset, changeType,
+                previousValue != null ? new BigDecimal(previousValue) : null, LocalDateTime.now());
+    }
+
+    private static Asset asset(String id, String value) {
+        return Asset.builder()
+                .id(id)
+                .userId(USER)
+                .type(Asset.AssetType.STOCK)
+                .category(Asset.AssetCategory.INVESTMENT)
+                .currency("EUR")
+                .currentValue(new BigDecimal(value))
+                .build();
+    }
+
+    // Actif a1 dont le plus haut de la fenêtre est 1000
+    private static Asset droppedAsset(String value) {
+        Asset asset = asset("a1", value);
+        asset.setValuationHistory(new ArrayList<>(List.of(AssetValuation.builder()
+                .value(new BigDecimal("1000"))
+                .valuationDate(LocalDateTime.now().minusDays(5))
+                .build())));
+        return asset;
+    }
+
+    private static AlertRule rule(AlertRule rule) {
+        rule.setId(UUID.randomUUID().toString());
+        rule.setUserId(USER);
+        return rule;
+    }
+
+    private static AlertRule netWorthRule(AlertRule.RuleType type, String threshold) {
+        return AlertRule.builder().type(type).threshold(new BigDecimal(threshold)).build();
+    }
+
+    private static AlertRule dropRule(String assetId, String threshold) {
+        return AlertRule.builder()
+                .type(AlertRule.RuleType.ASSET_DROP)
+                .assetId(assetId)
+                .windowDays(30)
+                .threshold(new BigDecimal(threshold))
+                .build();
+    }
+}
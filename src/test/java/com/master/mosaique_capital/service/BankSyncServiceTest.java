@@ -0,0 +1,226 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.model.BankConnection;
+import com.master.mosaique_capital.model.Transaction;
+import com.master.mosaique_capital.repository.BankConnectionRepository;
+import com.master.mosaique_capital.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BankSyncServiceTest {
+
+    private static final String USER = "user-1";
+
+    // Connexions persistées, copiées à chaque écriture comme le ferait Firebase
+    private final Map<String, Map<String, Object>> connections = new TreeMap<>();
+    private final Map<String, Transaction> ledger = new ConcurrentHashMap<>();
+    private final List<AssetValuation> valuations = new CopyOnWriteArrayList<>();
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private AsyncExecutors asyncExecutors;
+    private SimpleMeterRegistry meterRegistry;
+    private LocalBankDataProvider localProvider;
+    private volatile boolean providerDown;
+    private BankSyncService service;
+
+    @BeforeEach
+    void setUp() {
+        asyncExecutors = new AsyncExecutors();
+        meterRegistry = new SimpleMeterRegistry();
+        assets.put("a1", bankAccount("a1"));
+        assets.put("a2", bankAccount("a2"));
+        localProvider = provider();
+        service = service();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void connectReturnsExistingConnectionForSameAssetAndAccount() throws Exception {
+        BankConnection first = service.connect(USER, "a1", "ext-1");
+        BankConnection again = service.connect(USER, "a1", "ext-1");
+
+        assertThat(again.getId()).isEqualTo(first.getId());
+        assertThat(connections).hasSize(1);
+    }
+
+    @Test
+    void connectRejectsAccountOrAssetAlreadyConnected() throws Exception {
+        service.connect(USER, "a1", "ext-1");
+
+        assertThatThrownBy(() -> service.connect(USER, "a2", "ext-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("a1");
+        assertThatThrownBy(() -> service.connect(USER, "a1", "ext-2")).isInstanceOf(IllegalStateException.class);
+        assertThat(connections).hasSize(1);
+    }
+
+    @Test
+    void connectRejectsOtherUsersAsset() {
+        assertThatThrownBy(() -> service.connect("user-2", "a1", "ext-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void replayedSyncIsIdempotentAcrossRestart() throws Exception {
+        BankConnection connection = service.connect(USER, "a1", "ext-1");
+        BankConnection synced = service.sync(copy(connection));
+        int transactions = ledger.size();
+
+        assertThat(synced.getSyncCursor()).isEqualTo(LocalDate.now().toString());
+        assertThat(valuations).singleElement()
+                .satisfies(valuation -> assertThat(valuation.getValue()).isEqualByComparingTo(synced.getLastBalance()));
+
+        // Reprise depuis l'état persisté avant la synchronisation, par un nouveau fournisseur (redémarrage)
+        localProvider = provider();
+        service = service();
+        BankConnection replayed = service.sync(copy(connection));
+
+        assertThat(ledger).hasSize(transactions);
+        assertThat(replayed.getLastBalance()).isEqualByComparingTo(synced.getLastBalance());
+    }
+
+    @Test
+    void balanceContinuesFromPersistedBalance() throws Exception {
+        BankConnection connection = service.connect(USER, "a1", "ext-1");
+        connection.setSyncCursor(LocalDate.now().minusDays(1).toString());
+        connection.setLastBalance(new BigDecimal("100.00"));
+
+        BankConnection synced = service.sync(connection);
+
+        BigDecimal today = ledger.values().stream()
+                .filter(transaction -> transaction.getDate().equals(LocalDate.now()))
+                .map(Transaction::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(synced.getLastBalance()).isEqualByComparingTo(new BigDecimal("100.00").add(today));
+    }
+
+    @Test
+    void failedSyncIsRecordedWithoutAdvancingCursor() throws Exception {
+        service.connect(USER, "a1", "ext-1");
+        providerDown = true;
+
+        Map<String, Object> summary = service.syncAll();
+
+        assertThat(summary).containsEntry("status", "COMPLETED").containsEntry("failedConnections", 1L);
+        BankConnection stored = BankConnection.fromMap(connections.values().iterator().next());
+        assertThat(stored.getLastError()).isEqualTo("Provider unavailable");
+        assertThat(stored.getSyncCursor()).isNull();
+        assertThat(meterRegistry.get("bank.sync.connections").tag("outcome", "failure").counter().count()).isEqualTo(1);
+    }
+
+    private BankSyncService service() {
+        BankConnectionRepository connectionRepository = new BankConnectionRepository(null, null) {
+            @Override
+            public CompletableFuture<BankConnection> save(BankConnection connection) {
+                synchronized (connections) {
+                    connections.put(connection.getId(), connection.toMap());
+                }
+                return CompletableFuture.completedFuture(connection);
+            }
+
+            @Override
+            public CompletableFuture<List<BankConnection>> findByUserId(String userId) {
+                synchronized (connections) {
+                    return CompletableFuture.completedFuture(connections.values().stream()
+                            .map(BankConnection::fromMap)
+                            .filter(connection -> userId.equals(connection.getUserId()))
+                            .toList());
+                }
+            }
+
+            @Override
+            public CompletableFuture<List<BankConnection>> findPage(String afterId, int limit) {
+                synchronized (connections) {
+                    return CompletableFuture.completedFuture(connections.entrySet().stream()
+                            .filter(entry -> afterId == null || entry.getKey().compareTo(afterId) > 0)
+                            .limit(limit)
+                            .map(entry -> BankConnection.fromMap(entry.getValue()))
+                            .toList());
+                }
+            }
+        };
+        TransactionRepository transactionRepository = new TransactionRepository(null, null) {
+            @Override
+            public CompletableFuture<List<Transaction>> appendAll(List<Transaction> transactions) {
+                transactions.forEach(transaction -> ledger.put(transaction.getId(), transaction));
+                return CompletableFuture.completedFuture(transactions);
+            }
+        };
+        AssetService assetService = new AssetService(null, null, asyncExecutors) {
+            @Override
+            public CompletableFuture<Optional<Asset>> getAssetById(String id) {
+                return CompletableFuture.completedFuture(Optional.ofNullable(assets.get(id)));
+            }
+
+            @Override
+            public CompletableFuture<Asset> addValuation(String assetId, AssetValuation valuation) {
+                valuations.add(valuation);
+                return CompletableFuture.completedFuture(assets.get(assetId));
+            }
+        };
+        BankDataProvider provider = new BankDataProvider() {
+            @Override
+            public String getName() {
+                return localProvider.getName();
+            }
+
+            @Override
+            public BankSyncBatch fetchSince(BankConnection connection, String cursor) throws IOException {
+                if (providerDown) {
+                    throw new IOException("Provider unavailable");
+                }
+                return localProvider.fetchSince(connection, cursor);
+            }
+        };
+
+        BankSyncService bankSyncService = new BankSyncService(connectionRepository, transactionRepository, assetService,
+                provider, asyncExecutors, meterRegistry);
+        ReflectionTestUtils.setField(bankSyncService, "pageSize", 500);
+        ReflectionTestUtils.setField(bankSyncService, "parallelism", 4);
+        ReflectionTestUtils.setField(bankSyncService, "connectionTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(bankSyncService, "minInterval", Duration.ofMinutes(30));
+        return bankSyncService;
+    }
+
+    private static LocalBankDataProvider provider() {
+        LocalBankDataProvider provider = new LocalBankDataProvider();
+        ReflectionTestUtils.setField(provider, "historyDays", 30);
+        return provider;
+    }
+
+    private static BankConnection copy(BankConnection connection) {
+        return BankConnection.fromMap(connection.toMap());
+    }
+
+    private static Asset bankAccount(String id) {
+        return Asset.builder()
+                .id(id)
+                .userId(USER)
+                .type(Asset.AssetType.BANK_ACCOUNT)
+                .currency("EUR")
+                .build();
+    }
+}
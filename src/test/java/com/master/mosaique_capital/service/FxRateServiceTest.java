@@ -0,0 +1,46 @@
+package com.master.mosaique_capital.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FxRateServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 4);
+
+    private final FxRateService service = new FxRateService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "baseCurrency", "EUR");
+        service.updateRate("usd", DAY, new BigDecimal("1.10"));
+    }
+
+    @Test
+    void currencyCodesAreCaseInsensitive() {
+        assertThat(service.getRate("eur", "USD", DAY)).isEqualByComparingTo("1.10");
+        assertThat(service.getRate("Usd", "eur", DAY.plusDays(3))).isEqualByComparingTo(
+                BigDecimal.ONE.divide(new BigDecimal("1.10"), MathContext.DECIMAL64));
+        assertThat(service.convert(new BigDecimal("100"), "eur", "usd", DAY)).isEqualByComparingTo("110");
+        assertThat(service.convert(new BigDecimal("100"), "usd", "USD", DAY)).isEqualByComparingTo("100");
+    }
+
+    @Test
+    void currenciesWithoutRateAreReported() {
+        // Sans taux, le montant reste dans sa devise d'origine
+        assertThat(service.convert(new BigDecimal("100"), "CHF", "EUR", DAY)).isEqualByComparingTo("100");
+
+        assertThat(service.unconvertedCurrencies(List.of("chf", "EUR", "usd", "CHF"), "EUR", DAY))
+                .containsExactly("CHF");
+        // Avant la première cotation, l'USD n'est pas convertible non plus
+        assertThat(service.unconvertedCurrencies(List.of("USD"), "EUR", DAY.minusDays(1)))
+                .containsExactly("USD");
+    }
+}
@@ -0,0 +1,117 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IfiServiceTest {
+
+    private static final int YEAR = 2024;
+    private static final LocalDate JANUARY_FIRST = LocalDate.of(YEAR, 1, 1);
+
+    private IfiService service;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        service = new IfiService(null, new FxRateService(), null, null, new CalculationMetrics(meterRegistry), meterRegistry);
+    }
+
+    @Test
+    void usesLatestValuationBeforeJanuaryFirst() {
+        Asset house = realEstate("h1", JANUARY_FIRST.minusYears(5), "1500000",
+                valuation(JANUARY_FIRST.minusMonths(6), "2000000"), valuation(JANUARY_FIRST.plusMonths(3), "2500000"));
+
+        Map<String, Object> result = service.computeIfi(List.of(house), YEAR);
+
+        assertThat((BigDecimal) result.get("grossRealEstateValue")).isEqualByComparingTo("2000000");
+        assertThat(onlyEntry(result, "realEstate").get("estimated")).isEqualTo(false);
+    }
+
+    @Test
+    void estimatesAssetAcquiredBeforeButEnteredAfterJanuaryFirst() {
+        // Bien détenu depuis des années, saisi en cours d'année : seule la valorisation de saisie existe
+        Asset house = realEstate("h1", JANUARY_FIRST.minusYears(10), "900000",
+                valuation(JANUARY_FIRST.plusMonths(4), "2000000"), valuation(JANUARY_FIRST.plusMonths(8), "2100000"));
+        Asset loan = loan("l1", "h1", JANUARY_FIRST.minusYears(10), valuation(JANUARY_FIRST.plusMonths(4), "300000"));
+
+        Map<String, Object> result = service.computeIfi(List.of(house, loan), YEAR);
+
+        assertThat((BigDecimal) result.get("grossRealEstateValue")).isEqualByComparingTo("2000000");
+        assertThat((BigDecimal) result.get("deductibleDebts")).isEqualByComparingTo("300000");
+        assertThat(onlyEntry(result, "realEstate").get("estimated")).isEqualTo(true);
+        assertThat(onlyEntry(result, "loans").get("estimated")).isEqualTo(true);
+        assertThat(result.get("liable")).isEqualTo(true);
+    }
+
+    @Test
+    void fallsBackToCurrentThenAcquisitionValueWithoutHistory() {
+        Asset withCurrent = realEstate("h1", JANUARY_FIRST.minusYears(3), "800000");
+        withCurrent.setCurrentValue(new BigDecimal("1000000"));
+        Asset acquisitionOnly = realEstate("h2", JANUARY_FIRST.minusYears(3), "700000");
+
+        Map<String, Object> result = service.computeIfi(List.of(withCurrent, acquisitionOnly), YEAR);
+
+        assertThat((BigDecimal) result.get("grossRealEstateValue")).isEqualByComparingTo("1700000");
+    }
+
+    @Test
+    void ignoresAssetAcquiredAfterJanuaryFirstOrWithoutAcquisitionDate() {
+        Asset acquiredLater = realEstate("h1", JANUARY_FIRST.plusDays(1), "2000000",
+                valuation(JANUARY_FIRST.plusDays(1), "2000000"));
+        Asset undated = realEstate("h2", null, "2000000", valuation(JANUARY_FIRST.plusMonths(2), "2000000"));
+
+        Map<String, Object> result = service.computeIfi(List.of(acquiredLater, undated), YEAR);
+
+        assertThat((BigDecimal) result.get("grossRealEstateValue")).isZero();
+        assertThat((List<?>) result.get("realEstate")).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> onlyEntry(Map<String, Object> result, String section) {
+        List<Map<String, Object>> entries = (List<Map<String, Object>>) result.get(section);
+        assertThat(entries).hasSize(1);
+        return entries.get(0);
+    }
+
+    private static Asset realEstate(String id, LocalDate acquisitionDate, String acquisitionValue,
+                                    AssetValuation... valuations) {
+        return Asset.builder()
+                .id(id)
+                .type(Asset.AssetType.REAL_ESTATE)
+                .currency("EUR")
+                .acquisitionValue(new BigDecimal(acquisitionValue))
+                .acquisitionDate(acquisitionDate != null ? acquisitionDate.atStartOfDay() : null)
+                .valuationHistory(new ArrayList<>(List.of(valuations)))
+                .build();
+    }
+
+    private static Asset loan(String id, String linkedAssetId, LocalDate acquisitionDate, AssetValuation... valuations) {
+        return Asset.builder()
+                .id(id)
+                .type(Asset.AssetType.LOAN)
+                .currency("EUR")
+                .acquisitionDate(acquisitionDate.atStartOfDay())
+                .attributes(new HashMap<>(Map.of("linkedAssetId", linkedAssetId)))
+                .valuationHistory(new ArrayList<>(List.of(valuations)))
+                .build();
+    }
+
+    private static AssetValuation valuation(LocalDate date, String value) {
+        return AssetValuation.builder().value(new BigDecimal(value)).valuationDate(LocalDateTime.of(date, LocalTime.NOON)).build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.event.AssetChangedEvent;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.AssetValuation;
+import com.master.mosaique_capital.model.Transaction;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.repository.TransactionRepository;
+import com.master.mosaique_capital.util.Xirr;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class PerformanceServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2023, 1, 2);
+    private static final LocalDate MIDDLE = START.plusDays(100);
+    private static final LocalDate END = START.plusDays(200);
+
+    private final List<Asset> assets = new ArrayList<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private AsyncExecutors asyncExecutors;
+    private PerformanceService service;
+
+    @BeforeEach
+    void setUp() {
+        asyncExecutors = new AsyncExecutors();
+        AssetService assetService = new AssetService(null, null, asyncExecutors) {
+            @Override
+            public CompletableFuture<List<Asset>> getAssetsByUserId(String userId) {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture(List.copyOf(assets));
+            }
+        };
+        TransactionRepository transactionRepository = new TransactionRepository(null, null) {
+            @Override
+            public CompletableFuture<List<Transaction>> findByUserIdAndPeriod(String userId, LocalDate from, LocalDate to) {
+                return CompletableFuture.completedFuture(List.copyOf(transactions));
+            }
+        };
+        service = new PerformanceService(assetService, transactionRepository, new FxRateService(), asyncExecutors,
+                new CalculationMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "cacheTtl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void timeWeightedReturnRemovesContributionEffect() throws Exception {
+        // +15 % puis +10 %, avec un apport de 500 au milieu de la période
+        assets.add(asset("a1", Asset.AssetCategory.INVESTMENT, "1000",
+                valuation(MIDDLE, "1650"), valuation(END, "1815")));
+        transactions.add(flow("a1", MIDDLE, "500"));
+
+        Map<String, Object> asset = onlyAsset(service.calculatePerformance("user-1", START, END, "EUR").get());
+
+        assertThat((BigDecimal) asset.get("twr")).isEqualByComparingTo("0.265");
+        assertThat((BigDecimal) asset.get("startValue")).isEqualByComparingTo("1000");
+        assertThat((BigDecimal) asset.get("endValue")).isEqualByComparingTo("1815");
+        assertThat((BigDecimal) asset.get("netFlows")).isEqualByComparingTo("500");
+    }
+
+    @Test
+    void xirrMatchesSingleScheduleSolver() throws Exception {
+        assets.add(asset("a1", Asset.AssetCategory.INVESTMENT, "1000",
+                valuation(MIDDLE, "1650"), valuation(END, "1815")));
+        transactions.add(flow("a1", MIDDLE, "500"));
+
+        Map<String, Object> asset = onlyAsset(service.calculatePerformance("user-1", START, END, "EUR").get());
+
+        double expected = Xirr.solve(new double[]{-1000, -500, 1815},
+                new double[]{0, 100 / 365.25, 200 / 365.25});
+        assertThat(((BigDecimal) asset.get("xirr")).doubleValue()).isCloseTo(expected, within(1e-6));
+    }
+
+    @Test
+    void xirrStartsFromSameValuationAsTwr() throws Exception {
+        // Début demandé entre deux valorisations : les deux mesures partent de la valorisation de START
+        assets.add(asset("a1", Asset.AssetCategory.INVESTMENT, "1000",
+                valuation(MIDDLE, "1650"), valuation(END, "1815")));
+        transactions.add(flow("a1", MIDDLE, "500"));
+
+        Map<String, Object> asset = onlyAsset(service.calculatePerformance("user-1", START.plusDays(50), END, "EUR").get());
+
+        double expected = Xirr.solve(new double[]{-1000, -500, 1815},
+                new double[]{0, 100 / 365.25, 200 / 365.25});
+        assertThat(asset.get("periodStart")).isEqualTo(START);
+        assertThat((BigDecimal) asset.get("twr")).isEqualByComparingTo("0.265");
+        assertThat(((BigDecimal) asset.get("xirr")).doubleValue()).isCloseTo(expected, within(1e-6));
+    }
+
+    @Test
+    void assetEnteringDuringPeriodCountsAsContribution() throws Exception {
+        assets.add(asset("a1", Asset.AssetCategory.INVESTMENT, "1000", valuation(END, "1100")));
+
+        Map<String, Object> asset = onlyAsset(
+                service.calculatePerformance("user-1", START.minusDays(30), END, "EUR").get());
+
+        assertThat((BigDecimal) asset.get("startValue")).isEqualByComparingTo("0");
+        assertThat((BigDecimal) asset.get("netFlows")).isEqualByComparingTo("1000");
+        assertThat((BigDecimal) asset.get("twr")).isEqualByComparingTo("0.1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void liabilitiesAreExcluded() throws Exception {
+        assets.add(asset("a1", Asset.AssetCategory.INVESTMENT, "1000", valuation(END, "1100")));
+        assets.add(asset("loan", Asset.AssetCategory.LIABILITY, "5000", valuation(END, "4000")));
+
+        Map<String, Object> result = service.calculatePerformance("user-1", START, END, "EUR").get();
+
+        assertThat((List<Map<String, Object>>) result.get("assets")).extracting(a -> a.get("assetId"))
+                .containsExactly("a1");
+        Map<String, Object> portfolio = (Map<String, Object>) result.get("portfolio");
+        assertThat((BigDecimal) portfolio.get("endValue")).isEqualByComparingTo("1100");
+    }
+
+    @Test
+    void seriesAreCachedUntilAnAssetChanges() throws Exception {
+        assets.add(asset("a1", Asset.AssetCategory.INVESTMENT, "1000", valuation(END, "1100")));
+
+        service.calculatePerformance("user-1", START, END, "EUR").get();
+        service.calculatePerformance("user-1", START, MIDDLE, "EUR").get();
+        assertThat(loads.get()).isEqualTo(1);
+
+        service.onAssetChanged(new AssetChangedEvent("user-1", "a1", null, AssetChangedEvent.ChangeType.UPDATED,
+                null, LocalDateTime.now()));
+        service.calculatePerformance("user-1", START, END, "EUR").get();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsInvertedPeriod() {
+        assertThatThrownBy(() -> service.calculatePerformance("user-1", END, START, "EUR").get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> onlyAsset(Map<String, Object> result) {
+        List<Map<String, Object>> assets = (List<Map<String, Object>>) result.get("assets");
+        assertThat(assets).hasSize(1);
+        return assets.get(0);
+    }
+
+    private static Asset asset(String id, Asset.AssetCategory category, String acquisitionValue,
+                               AssetValuation... history) {
+        return Asset.builder()
+                .id(id)
+                .userId("user-1")
+                .name(id)
+                .type(Asset.AssetType.STOCK)
+                .category(category)
+                .currency("EUR")
+                .acquisitionValue(new BigDecimal(acquisitionValue))
+                .acquisitionDate(START.atStartOfDay())
+                .currentValue(history[history.length - 1].getValue())
+                .valuationHistory(new ArrayList<>(List.of(history)))
+                .build();
+    }
+
+    private static AssetValuation valuation(LocalDate date, String value) {
+        return AssetValuation.builder().value(new BigDecimal(value)).valuationDate(date.atStartOfDay()).build();
+    }
+
+    private static Transaction flow(String assetId, LocalDate date, String amount) {
+        return Transaction.builder()
+                .userId("user-1")
+                .assetId(assetId)
+                .date(date)
+                .amount(new BigDecimal(amount))
+                .currency("EUR")
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.dto.SimulationRequestDto;
+import com.master.mosaique_capital.model.Asset;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimulationServiceTest {
+
+    private static final String USER = "user-1";
+
+    private AsyncExecutors asyncExecutors;
+    private SimulationService service;
+
+    @BeforeEach
+    void setUp() {
+        asyncExecutors = new AsyncExecutors();
+        AssetService assetService = new AssetService(null, null, asyncExecutors) {
+            @Override
+            public CompletableFuture<List<Asset>> getAssetsByUserId(String userId) {
+                return CompletableFuture.completedFuture(List.of(Asset.builder()
+                        .id("a1")
+                        .category(Asset.AssetCategory.INVESTMENT)
+                        .currency("EUR")
+                        .currentValue(new BigDecimal("1000"))
+                        .build()));
+            }
+        };
+        service = new SimulationService(assetService, new FxRateService(), asyncExecutors, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxPaths", 200_000);
+        ReflectionTestUtils.setField(service, "chunkSize", 1000);
+        ReflectionTestUtils.setField(service, "maxDuration", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "maxRunning", 4);
+        ReflectionTestUtils.setField(service, "maxRunningPerUser", 1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void rejectedRunIsFailedAndReleasesItsSlot() {
+        asyncExecutors.simulationPool().shutdown();
+
+        // Le second lancement atteint le pool : la place du premier a été libérée
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertThatThrownBy(() -> service.startSimulation(USER, new SimulationRequestDto(), "EUR").get())
+                    .isInstanceOf(ExecutionException.class)
+                    .cause()
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("rejected");
+        }
+
+        Map<String, ?> runs = runs();
+        assertThat(runs).hasSize(2);
+        assertThat(runs.values()).allSatisfy(run ->
+                assertThat(ReflectionTestUtils.getField(run, "status")).hasToString("FAILED"));
+        assertThat(service.getSimulation(USER, runs.keySet().iterator().next()))
+                .hasValueSatisfying(simulation -> assertThat(simulation.get("status")).hasToString("FAILED"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> runs() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(service, "runs");
+    }
+}
@@ -0,0 +1,236 @@
+package com.master.mosaique_capital.service;
+
+import com.master.mosaique_capital.config.AsyncExecutors;
+import com.master.mosaique_capital.dto.TaxLotOperationDto;
+import com.master.mosaique_capital.model.Asset;
+import com.master.mosaique_capital.model.TaxLotBook;
+import com.master.mosaique_capital.repository.CalculationMetrics;
+import com.master.mosaique_capital.repository.TaxLotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaxLotServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    // Registres persistés, copiés à chaque lecture et écriture comme le ferait Firebase
+    private final Map<String, Map<String, Object>> stored = new ConcurrentHashMap<>();
+    private final List<Collection<String>> closedLotWrites = new ArrayList<>();
+    private AsyncExecutors asyncExecutors;
+    private TaxLotService service;
+
+    @BeforeEach
+    void setUp() {
+        asyncExecutors = new AsyncExecutors();
+        TaxLotRepository repository = new TaxLotRepository(null, null) {
+            @Override
+            public CompletableFuture<TaxLotBook> update(TaxLotBook book, Collection<TaxLotBook.TaxLot> changedLots,
+                                                        Collection<String> closedLotIds, Integer year) {
+                stored.put(book.getAssetId(), book.toMap());
+                closedLotWrites.add(List.copyOf(closedLotIds));
+                return CompletableFuture.completedFuture(book);
+            }
+
+            @Override
+            public CompletableFuture<Optional<TaxLotBook>> findByAssetId(String userId, String assetId) {
+                return CompletableFuture.completedFuture(Optional.ofNullable(stored.get(assetId)).map(TaxLotBook::fromMap));
+            }
+        };
+        service = new TaxLotService(repository, null, new FxRateService(), asyncExecutors,
+                new CalculationMetrics(new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncExecutors.destroy();
+    }
+
+    @Test
+    void consumeFifoTakesOldestLotsFirst() {
+        TaxLotBook book = TaxLotBook.builder()
+                .lots(new ArrayList<>(List.of(lot("lot-1", "10", "1000"), lot("lot-2", "10", "1200"), lot("lot-3", "5", "700"))))
+                .build();
+        List<TaxLotBook.TaxLot> changed = new ArrayList<>();
+        List<String> closed = new ArrayList<>();
+
+        BigDecimal cost = TaxLotService.consumeFifo(book, new BigDecimal("15"), changed, closed);
+
+        assertThat(cost).isEqualByComparingTo("1600");
+        assertThat(closed).containsExactly("lot-1");
+        assertThat(changed).extracting(TaxLotBook.TaxLot::getId).containsExactly("lot-2");
+        assertThat(book.getLots()).extracting(TaxLotBook.TaxLot::getId).containsExactly("lot-2", "lot-3");
+        assertThat(book.getLots().get(0).getQuantity()).isEqualByComparingTo("5");
+        assertThat(book.getLots().get(0).getCost()).isEqualByComparingTo("600");
+    }
+
+    @Test
+    void fifoPartialThenTotalDisposal() throws Exception {
+        Asset asset = asset(TaxLotBook.CostMethod.FIFO);
+        service.recordBuy(asset, operation("10", "100", DAY, TaxLotBook.CostMethod.FIFO)).get();
+        service.recordBuy(asset, operation("10", "120", DAY.plusDays(1), null)).get();
+
+        Map<String, Object> partial = service.recordSell(asset, operation("15", "150", DAY.plusDays(2), null)).get();
+        assertThat((BigDecimal) partial.get("costBasis")).isEqualByComparingTo("1600");
+        assertThat((BigDecimal) partial.get("gain")).isEqualByComparingTo("650");
+        assertThat((BigDecimal) partial.get("remainingQuantity")).isEqualByComparingTo("5");
+
+        Map<String, Object> total = service.recordSell(asset, operation("5", "110", DAY.plusDays(3), null)).get();
+        assertThat((BigDecimal) total.get("costBasis")).isEqualByComparingTo("600");
+        assertThat((BigDecimal) total.get("gain")).isEqualByComparingTo("-50");
+
+        TaxLotBook book = book(asset);
+        assertThat(book.getQuantity()).isZero();
+        assertThat(book.getCostBasis()).isZero();
+        assertThat(book.getLots()).isEmpty();
+        TaxLotBook.YearTotals year = book.getRealizedByYear().get(DAY.getYear());
+        assertThat(year.getDisposals()).isEqualTo(2);
+        assertThat(year.getGain()).isEqualByComparingTo("600");
+    }
+
+    @Test
+    void weightedAveragePoolsBuysAndSplitsCostBasis() throws Exception {
+        Asset asset = asset(TaxLotBook.CostMethod.WEIGHTED_AVERAGE);
+        TaxLotOperationDto first = operation("10", "100", DAY, null);
+        first.setFees(new BigDecimal("10"));
+        service.recordBuy(asset, first).get();
+        service.recordBuy(asset, operation("10", "130", DAY.plusDays(1), null)).get();
+
+        TaxLotBook book = book(asset);
+        assertThat(book.getMethod()).isEqualTo(TaxLotBook.CostMethod.WEIGHTED_AVERAGE);
+        assertThat(book.getLots()).hasSize(1);
+        assertThat(book.getLots().get(0).getCost()).isEqualByComparingTo("2310");
+
+        // PMP de 115,50 : la cession de 5 titres porte 577,50 de prix de revient
+        Map<String, Object> disposal = service.recordSell(asset, operation("5", "120", DAY.plusDays(2), null)).get();
+        assertThat((BigDecimal) disposal.get("costBasis")).isEqualByComparingTo("577.5");
+        assertThat((BigDecimal) disposal.get("gain")).isEqualByComparingTo("22.5");
+
+        book = book(asset);
+        assertThat(book.getCostBasis()).isEqualByComparingTo("1732.5");
+        assertThat(book.getLots()).singleElement().satisfies(lot -> {
+            assertThat(lot.getQuantity()).isEqualByComparingTo("15");
+            assertThat(lot.getCost()).isEqualByComparingTo(book(asset).getCostBasis());
+        });
+    }
+
+    @Test
+    void weightedAverageMergesLotsOfExistingBook() throws Exception {
+        Asset asset = asset(TaxLotBook.CostMethod.WEIGHTED_AVERAGE);
+        TaxLotBook legacy = TaxLotBook.builder()
+                .assetId(asset.getId())
+                .userId(asset.getUserId())
+                .method(TaxLotBook.CostMethod.WEIGHTED_AVERAGE)
+                .quantity(new BigDecimal("20"))
+                .costBasis(new BigDecimal("2200"))
+                .nextLotSequence(2)
+                .lots(new ArrayList<>(List.of(lot(TaxLotBook.lotId(0), "10", "1000"), lot(TaxLotBook.lotId(1), "10", "1200"))))
+                .build();
+        stored.put(asset.getId(), legacy.toMap());
+
+        Map<String, Object> disposal = service.recordSell(asset, operation("10", "100", DAY, null)).get();
+
+        assertThat((BigDecimal) disposal.get("costBasis")).isEqualByComparingTo("1100");
+        assertThat(closedLotWrites.get(0)).containsExactly(TaxLotBook.lotId(1));
+        assertThat(book(asset).getLots()).singleElement()
+                .satisfies(lot -> assertThat(lot.getCost()).isEqualByComparingTo("1100"));
+    }
+
+    @Test
+    void specificLotSelection() throws Exception {
+        Asset asset = asset(TaxLotBook.CostMethod.SPECIFIC);
+        service.recordBuy(asset, operation("10", "100", DAY, TaxLotBook.CostMethod.SPECIFIC)).get();
+        service.recordBuy(asset, operation("10", "150", DAY, null)).get();
+
+        TaxLotOperationDto sell = operation("4", "160", DAY.plusDays(1), null);
+        sell.setLotId(TaxLotBook.lotId(1));
+        Map<String, Object> disposal = service.recordSell(asset, sell).get();
+        assertThat((BigDecimal) disposal.get("costBasis")).isEqualByComparingTo("600");
+        assertThat(book(asset).getLots()).extracting(lot -> lot.getQuantity().intValue()).containsExactly(10, 6);
+
+        TaxLotOperationDto withoutLot = operation("1", "160", DAY.plusDays(1), null);
+        assertThatThrownBy(() -> service.recordSell(asset, withoutLot).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+
+        TaxLotOperationDto tooMuch = operation("7", "160", DAY.plusDays(1), null);
+        tooMuch.setLotId(TaxLotBook.lotId(1));
+        assertThatThrownBy(() -> service.recordSell(asset, tooMuch).get())
+                .hasCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("only holds 6");
+    }
+
+    @Test
+    void rejectsSaleAboveHeldQuantity() throws Exception {
+        Asset asset = asset(TaxLotBook.CostMethod.FIFO);
+        service.recordBuy(asset, operation("10", "100", DAY, TaxLotBook.CostMethod.FIFO)).get();
+
+        assertThatThrownBy(() -> service.recordSell(asset, operation("11", "100", DAY, null)).get())
+                .hasCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("only 10 held");
+    }
+
+    @Test
+    void rejectsBackdatedAndFutureOperations() throws Exception {
+        Asset asset = asset(TaxLotBook.CostMethod.FIFO);
+        service.recordBuy(asset, operation("10", "100", DAY, TaxLotBook.CostMethod.FIFO)).get();
+
+        assertThatThrownBy(() -> service.recordBuy(asset, operation("1", "100", DAY.minusDays(1), null)).get())
+                .hasCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("chronological");
+        assertThatThrownBy(() -> service.recordBuy(asset, operation("1", "100", LocalDate.now().plusDays(1), null)).get())
+                .hasCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("future");
+
+        // Une opération refusée ne déplace pas la date de la dernière opération
+        assertThat(book(asset).getLastOperationDate()).isEqualTo(DAY);
+        service.recordSell(asset, operation("1", "100", DAY, null)).get();
+    }
+
+    private TaxLotBook book(Asset asset) {
+        return TaxLotBook.fromMap(stored.get(asset.getId()));
+    }
+
+    private static Asset asset(TaxLotBook.CostMethod method) {
+        return Asset.builder()
+                .id("asset-" + method.name().toLowerCase())
+                .userId("user-1")
+                .type(Asset.AssetType.STOCK)
+                .currency("EUR")
+                .build();
+    }
+
+    private static TaxLotBook.TaxLot lot(String id, String quantity, String cost) {
+        return TaxLotBook.TaxLot.builder()
+                .id(id)
+                .acquisitionDate(DAY)
+                .quantity(new BigDecimal(quantity))
+                .cost(new BigDecimal(cost))
+                .build();
+    }
+
+    private static TaxLotOperationDto operation(String quantity, String unitPrice, LocalDate date,
+                                                TaxLotBook.CostMethod method) {
+        TaxLotOperationDto operation = new TaxLotOperationDto();
+        operation.setQuantity(new BigDecimal(quantity));
+        operation.setUnitPrice(new BigDecimal(unitPrice));
+        operation.setDate(date);
+        operation.setMethod(method);
+        return operation;
+    }
+}
@@ -0,0 +1,138 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CorrelationMatrixTest {
+
+    @Test
+    void blockedMatrixMatchesPearsonCorrelation() {
+        int series = 37;
+        int periods = 150;
+        Random random = new Random(42);
+        double[] returns = new double[series * periods];
+        for (int i = 0; i < returns.length; i++) {
+            returns[i] = random.nextGaussian() * 0.01;
+        }
+        // Série 1 corrélée à la série 0
+        for (int t = 0; t < periods; t++) {
+            returns[periods + t] = 0.6 * returns[t] + random.nextGaussian() * 0.005;
+        }
+
+        // Tuiles de 8 séries : plusieurs tuiles, dont des tuiles partielles en bordure
+        double[] matrix = CorrelationMatrix.compute(returns, series, periods, 2, 8, ForkJoinPool.commonPool());
+
+        for (int i = 0; i < series; i++) {
+            assertThat(matrix[i * series + i]).isEqualTo(1.0);
+            for (int j = 0; j < series; j++) {
+                assertThat(matrix[i * series + j]).isCloseTo(pearson(returns, periods, i, j), within(1e-12));
+                assertThat(matrix[i * series + j]).isEqualTo(matrix[j * series + i]);
+            }
+        }
+        assertThat(matrix[1]).isGreaterThan(0.5);
+    }
+
+    @Test
+    void pairsWithTooFewCommonObservationsHaveNoCorrelation() {
+        int periods = 10;
+        double[] returns = new double[2 * periods];
+        for (int t = 0; t < periods; t++) {
+            // Série 0 présente sur la première moitié, série 1 sur la seconde
+            returns[t] = t < 5 ? t * 0.01 : Double.NaN;
+            returns[periods + t] = t >= 5 ? t * 0.01 : Double.NaN;
+        }
+
+        double[] matrix = CorrelationMatrix.compute(returns, 2, periods, 3, 64, ForkJoinPool.commonPool());
+
+        assertThat(matrix[0]).isEqualTo(1.0);
+        assertThat(matrix[1]).isNaN();
+        assertThat(matrix[2]).isNaN();
+    }
+
+    @Test
+    void identicalSeriesOnPartialOverlapAreFullyCorrelated() {
+        int periods = 520;
+        Random random = new Random(7);
+        double[] returns = new double[2 * periods];
+        for (int t = 0; t < periods; t++) {
+            // Série 1 : mêmes rendements que la série 0, sur les 52 dernières semaines seulement
+            returns[t] = 0.002 + random.nextGaussian() * 0.02;
+            returns[periods + t] = t >= periods - 52 ? returns[t] : Double.NaN;
+        }
+
+        double[] matrix = CorrelationMatrix.compute(returns, 2, periods, 8, 64, ForkJoinPool.commonPool());
+
+        assertThat(matrix[1]).isCloseTo(1.0, within(1e-12));
+        assertThat(matrix[2]).isEqualTo(matrix[1]);
+    }
+
+    @Test
+    void partialOverlapMatchesPairwiseCompletePearson() {
+        int series = 12;
+        int periods = 200;
+        Random random = new Random(11);
+        double[] returns = new double[series * periods];
+        for (int i = 0; i < series; i++) {
+            // Séries d'historiques différents, avec quelques trous
+            int first = random.nextInt(periods / 2);
+            for (int t = 0; t < periods; t++) {
+                boolean present = t >= first && random.nextInt(10) > 0;
+                returns[i * periods + t] = present ? random.nextGaussian() * 0.01 + (i % 3) * 0.001 : Double.NaN;
+            }
+        }
+
+        double[] matrix = CorrelationMatrix.compute(returns, series, periods, 2, 5, ForkJoinPool.commonPool());
+
+        for (int i = 0; i < series; i++) {
+            for (int j = 0; j < series; j++) {
+                if (i != j) {
+                    assertThat(matrix[i * series + j]).isCloseTo(pearson(returns, periods, i, j), within(1e-12));
+                }
+            }
+        }
+    }
+
+    @Test
+    void standardDeviationIgnoresMissingObservations() {
+        double[] returns = {Double.NaN, 1, 2, Double.NaN, 3};
+        assertThat(CorrelationMatrix.standardDeviation(returns, 0, returns.length)).isCloseTo(1.0, within(1e-12));
+        assertThat(CorrelationMatrix.standardDeviation(new double[]{Double.NaN, 1}, 0, 2)).isNaN();
+    }
+
+    /**
+     * Pearson de référence sur les périodes où les deux séries sont présentes
+     */
+    private static double pearson(double[] returns, int periods, int i, int j) {
+        double meanI = 0;
+        double meanJ = 0;
+        int common = 0;
+        for (int t = 0; t < periods; t++) {
+            if (!Double.isNaN(returns[i * periods + t]) && !Double.isNaN(returns[j * periods + t])) {
+                meanI += returns[i * periods + t];
+                meanJ += returns[j * periods + t];
+                common++;
+            }
+        }
+        meanI /= common;
+        meanJ /= common;
+        double covariance = 0;
+        double varianceI = 0;
+        double varianceJ = 0;
+        for (int t = 0; t < periods; t++) {
+            if (Double.isNaN(returns[i * periods + t]) || Double.isNaN(returns[j * periods + t])) {
+                continue;
+            }
+            double a = returns[i * periods + t] - meanI;
+            double b = returns[j * periods + t] - meanJ;
+            covariance += a * b;
+            varianceI += a * a;
+            varianceJ += b * b;
+        }
+        return covariance / Math.sqrt(varianceI * varianceJ);
+    }
+}
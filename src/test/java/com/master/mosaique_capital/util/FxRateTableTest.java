@@ -0,0 +1,111 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FxRateTableTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2024, 3, 4);
+
+    @Test
+    void carriesLastQuoteForwardOverUnquotedDays() {
+        FxRateTable table = new FxRateTable();
+        table.put(MONDAY, new BigDecimal("1.10"));
+        table.put(MONDAY.plusDays(4), new BigDecimal("1.20"));
+
+        assertThat(table.scaledRateAt(MONDAY.minusDays(1))).isZero();
+        assertThat(table.scaledRateAt(MONDAY.plusDays(2))).isEqualTo(scaled("1.10"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(4))).isEqualTo(scaled("1.20"));
+        // Au-delà de la dernière cotation, le dernier taux s'applique
+        assertThat(table.scaledRateAt(MONDAY.plusDays(30))).isEqualTo(scaled("1.20"));
+    }
+
+    @Test
+    void earlierQuotePropagatesUntilNextQuotedDay() {
+        FxRateTable table = new FxRateTable();
+        table.put(MONDAY, new BigDecimal("1.10"));
+        table.put(MONDAY.plusDays(5), new BigDecimal("1.30"));
+        table.put(MONDAY.plusDays(2), new BigDecimal("1.20"));
+
+        assertThat(table.scaledRateAt(MONDAY.plusDays(1))).isEqualTo(scaled("1.10"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(3))).isEqualTo(scaled("1.20"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(5))).isEqualTo(scaled("1.30"));
+    }
+
+    @Test
+    void dateBeforeFirstQuoteShiftsTable() {
+        FxRateTable table = new FxRateTable();
+        table.put(MONDAY, new BigDecimal("1.10"));
+        table.put(MONDAY.plusDays(3), new BigDecimal("1.15"));
+        table.put(MONDAY.minusDays(3), new BigDecimal("1.05"));
+
+        assertThat(table.scaledRateAt(MONDAY.minusDays(4))).isZero();
+        assertThat(table.scaledRateAt(MONDAY.minusDays(1))).isEqualTo(scaled("1.05"));
+        assertThat(table.scaledRateAt(MONDAY)).isEqualTo(scaled("1.10"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(3))).isEqualTo(scaled("1.15"));
+    }
+
+    @Test
+    void chronologicalQuotesGrowTableInPlace() {
+        FxRateTable table = new FxRateTable();
+        for (int day = 0; day < 20_000; day += 2) {
+            table.put(MONDAY.plusDays(day), BigDecimal.valueOf(100 + day % 100, 2));
+        }
+        // Correction d'un jour passé après les ajouts
+        table.put(MONDAY.plusDays(10), new BigDecimal("2.00"));
+
+        assertThat(table.scaledRateAt(MONDAY.plusDays(9))).isEqualTo(scaled("1.08"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(10))).isEqualTo(scaled("2.00"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(11))).isEqualTo(scaled("2.00"));
+        assertThat(table.scaledRateAt(MONDAY.plusDays(19_999))).isEqualTo(scaled("1.98"));
+    }
+
+    @Test
+    void rejectsNonPositiveRates() {
+        FxRateTable table = new FxRateTable();
+        assertThatThrownBy(() -> table.put(MONDAY, BigDecimal.ZERO)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> table.put(MONDAY, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(table.isEmpty()).isTrue();
+    }
+
+    @Test
+    void readersNeverSeePartiallyWrittenTable() throws InterruptedException {
+        FxRateTable table = new FxRateTable();
+        long expected = scaled("1.10");
+        table.put(MONDAY, new BigDecimal("1.10"));
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicLong anomalies = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                // Le lundi et les jours reportés depuis lui gardent toujours le même taux
+                if (table.scaledRateAt(MONDAY) != expected || table.scaledRateAt(MONDAY.plusDays(1)) != expected) {
+                    anomalies.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        // Ecritures alternant extension à gauche, extension à droite et cotation au-delà du lundi
+        for (int i = 1; i <= 2_000; i++) {
+            table.put(MONDAY.minusDays(i), new BigDecimal("0.90"));
+            table.put(MONDAY.plusDays(2L + i), new BigDecimal("1.50"));
+        }
+        done.set(true);
+        reader.join();
+
+        assertThat(anomalies.get()).isZero();
+        assertThat(table.scaledRateAt(MONDAY.plusDays(2))).isEqualTo(expected);
+    }
+
+    private static long scaled(String rate) {
+        return new BigDecimal(rate).movePointRight(FxRateTable.RATE_SCALE).longValueExact();
+    }
+}
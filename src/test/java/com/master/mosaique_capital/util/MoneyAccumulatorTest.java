@@ -0,0 +1,76 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyAccumulatorTest {
+
+    @RepeatedTest(200)
+    void sumMatchesBigDecimalReductionForRealisticAmounts(RepetitionInfo repetition) {
+        Random random = new Random(repetition.getCurrentRepetition());
+        List<BigDecimal> amounts = new ArrayList<>();
+        int count = random.nextInt(500);
+        for (int i = 0; i < count; i++) {
+            // Montants jusqu'à 10 milliards, de 0 à 4 décimales, parfois négatifs ou nuls
+            long unscaled = (long) (random.nextDouble() * 1_000_000_000_000L);
+            int scale = random.nextInt(5);
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10) == 0 ? -unscaled : unscaled, scale);
+            amounts.add(random.nextInt(50) == 0 ? null : amount);
+        }
+
+        BigDecimal expected = amounts.stream()
+                .filter(a -> a != null)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal actual = amounts.stream().collect(MoneyAccumulator.summing());
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @RepeatedTest(50)
+    void parallelSumMatchesSequentialSum(RepetitionInfo repetition) {
+        Random random = new Random(1000L + repetition.getCurrentRepetition());
+        List<BigDecimal> amounts = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            amounts.add(BigDecimal.valueOf(random.nextLong() % 100_000_000_00L, 2));
+        }
+
+        BigDecimal expected = amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        assertThat(amounts.parallelStream().collect(MoneyAccumulator.summing())).isEqualTo(expected);
+    }
+
+    @Test
+    void fallsBackToBigDecimalOnOverflow() {
+        MoneyAccumulator accumulator = MoneyAccumulator.create()
+                .add(new BigDecimal("9000000000000.50"))
+                .add(new BigDecimal("9000000000000.25"));
+
+        assertThat(accumulator.isOverflowed()).isTrue();
+        assertThat(accumulator.toBigDecimal()).isEqualTo(new BigDecimal("18000000000000.75"));
+    }
+
+    @Test
+    void keepsExactResultForAmountsFinerThanFixedScale() {
+        BigDecimal fine = new BigDecimal("0.123456789");
+        BigDecimal expected = BigDecimal.ONE.add(fine);
+
+        assertThat(MoneyAccumulator.create().add(BigDecimal.ONE).add(fine).toBigDecimal()).isEqualTo(expected);
+    }
+
+    @Test
+    void rejectsAmountInAnotherCurrency() {
+        MoneyAccumulator accumulator = MoneyAccumulator.of("EUR").add(BigDecimal.TEN, "EUR");
+
+        assertThatThrownBy(() -> accumulator.add(BigDecimal.ONE, "USD"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
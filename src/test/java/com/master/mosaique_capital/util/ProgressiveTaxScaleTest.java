@@ -0,0 +1,51 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProgressiveTaxScaleTest {
+
+    // Barème IFI depuis 2018
+    private static final ProgressiveTaxScale IFI = ProgressiveTaxScale.builder()
+            .bracket("0", "0")
+            .bracket("800000", "0.005")
+            .bracket("1300000", "0.007")
+            .bracket("2570000", "0.01")
+            .bracket("5000000", "0.0125")
+            .bracket("10000000", "0.015")
+            .build();
+
+    @Test
+    void appliesEachRateToItsBracketOnly() {
+        assertThat(IFI.compute(new BigDecimal("800000"))).isEqualByComparingTo("0");
+        assertThat(IFI.compute(new BigDecimal("1300000"))).isEqualByComparingTo("2500");
+        assertThat(IFI.compute(new BigDecimal("2000000"))).isEqualByComparingTo("7400");
+        // 2 500 + 8 890 + 24 300 + 62 500 + 30 000
+        assertThat(IFI.compute(new BigDecimal("12000000"))).isEqualByComparingTo("128190");
+    }
+
+    @Test
+    void roundsDownToTheEuro() {
+        assertThat(IFI.compute(new BigDecimal("800199"))).isEqualByComparingTo("0");
+        assertThat(IFI.compute(new BigDecimal("800399.99"))).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void thresholdBelongsToTheLowerBracket() {
+        assertThat(IFI.marginalRate(new BigDecimal("1300000"))).isEqualByComparingTo("0.005");
+        assertThat(IFI.marginalRate(new BigDecimal("1300001"))).isEqualByComparingTo("0.007");
+        assertThat(IFI.compute(BigDecimal.valueOf(-5))).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void rejectsUnorderedBrackets() {
+        assertThatThrownBy(() -> ProgressiveTaxScale.builder().bracket("100", "0.1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProgressiveTaxScale.builder().bracket("0", "0").bracket("0", "0.1"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
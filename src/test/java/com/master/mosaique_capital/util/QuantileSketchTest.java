@@ -0,0 +1,66 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+
+    @RepeatedTest(10)
+    void mergedSketchesStayWithinRelativeAccuracy(RepetitionInfo repetition) {
+        Random random = new Random(repetition.getCurrentRepetition());
+        int size = 50_000;
+        double[] values = new double[size];
+        QuantileSketch[] parts = {new QuantileSketch(ACCURACY), new QuantileSketch(ACCURACY), new QuantileSketch(ACCURACY)};
+        for (int i = 0; i < size; i++) {
+            // Patrimoines log-normaux, parfois négatifs
+            values[i] = Math.exp(random.nextGaussian()) * 100_000 - 30_000;
+            parts[i % parts.length].add(values[i]);
+        }
+        QuantileSketch sketch = parts[0].merge(parts[1]).merge(parts[2]);
+        Arrays.sort(values);
+
+        assertThat(sketch.getCount()).isEqualTo(size);
+        for (double q : new double[]{0.05, 0.25, 0.5, 0.75, 0.95}) {
+            double expected = values[(int) (q * (size - 1))];
+            // Erreur relative alpha, plus la marge d'un rang voisin
+            double tolerance = ACCURACY * Math.abs(expected) + Math.abs(values[(int) (q * (size - 1)) + 1] - expected);
+            assertThat(Math.abs(sketch.quantile(q) - expected)).isLessThanOrEqualTo(tolerance);
+        }
+        assertThat(sketch.quantile(0)).isEqualTo(values[0]);
+        assertThat(sketch.quantile(1)).isEqualTo(values[size - 1]);
+    }
+
+    @Test
+    void emptySketchHasNoQuantile() {
+        assertThat(new QuantileSketch(ACCURACY).quantile(0.5)).isNaN();
+        assertThat(new QuantileSketch(ACCURACY).getMean()).isNaN();
+    }
+
+    @Test
+    void zerosAreCountedExactly() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int i = 0; i < 10; i++) {
+            sketch.add(0);
+        }
+        sketch.add(-5);
+        sketch.add(5);
+
+        assertThat(sketch.quantile(0.5)).isEqualTo(0.0);
+        assertThat(sketch.getMean()).isEqualTo(0.0);
+    }
+
+    @Test
+    void sketchesWithDifferentAccuraciesCannotBeMerged() {
+        assertThatThrownBy(() -> new QuantileSketch(0.01).merge(new QuantileSketch(0.02)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,91 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserScopedCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void servesCachedValueUntilInvalidated() {
+        UserScopedCache<String, Integer> cache = new UserScopedCache<>(() -> 10, () -> null);
+
+        assertThat(load(cache, "u1", "EUR")).isEqualTo(1);
+        assertThat(load(cache, "u1", "EUR")).isEqualTo(1);
+        cache.invalidate("u1");
+        assertThat(load(cache, "u1", "EUR")).isEqualTo(2);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidationDiscardsOnlyThatUsersInFlightLoads() {
+        UserScopedCache<String, Integer> cache = new UserScopedCache<>(() -> 10, () -> null);
+        CompletableFuture<Integer> slowU1 = new CompletableFuture<>();
+        CompletableFuture<Integer> slowU2 = new CompletableFuture<>();
+        CompletableFuture<Integer> u1 = cache.get("u1", "EUR", () -> slowU1);
+        CompletableFuture<Integer> u2 = cache.get("u2", "EUR", () -> slowU2);
+
+        // Invalidation de u1 pendant les deux calculs : seul le résultat de u2 est conservé
+        cache.invalidate("u1");
+        slowU1.complete(10);
+        slowU2.complete(20);
+
+        assertThat(u1.join()).isEqualTo(10);
+        assertThat(u2.join()).isEqualTo(20);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("u2", "EUR", () -> CompletableFuture.completedFuture(-1)).join()).isEqualTo(20);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUserAtCapacity() {
+        UserScopedCache<String, Integer> cache = new UserScopedCache<>(() -> 2, () -> null);
+        load(cache, "u1", "EUR");
+        load(cache, "u2", "EUR");
+        // u1 consulté : u2 devient le moins récent
+        load(cache, "u1", "EUR");
+        load(cache, "u3", "EUR");
+
+        assertThat(cache.size()).isEqualTo(2);
+        int before = loads.get();
+        load(cache, "u1", "EUR");
+        load(cache, "u3", "EUR");
+        assertThat(loads.get()).isEqualTo(before);
+        load(cache, "u2", "EUR");
+        assertThat(loads.get()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void invalidatesMatchingKeysOnly() {
+        UserScopedCache<Integer, Integer> cache = new UserScopedCache<>(() -> 10, () -> null);
+        for (int year = 2022; year <= 2024; year++) {
+            int value = year;
+            cache.get("u1", year, () -> CompletableFuture.completedFuture(value)).join();
+        }
+
+        cache.invalidate("u1", year -> year >= 2023);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("u1", 2022, () -> CompletableFuture.completedFuture(-1)).join()).isEqualTo(2022);
+    }
+
+    @Test
+    void expiredEntriesAreReloaded() {
+        UserScopedCache<String, Integer> cache = new UserScopedCache<>(() -> 10, () -> Duration.ofNanos(1));
+
+        load(cache, "u1", "EUR");
+        load(cache, "u1", "EUR");
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    private int load(UserScopedCache<String, Integer> cache, String userId, String key) {
+        return cache.get(userId, key, () -> CompletableFuture.completedFuture(loads.incrementAndGet())).join();
+    }
+}
@@ -0,0 +1,96 @@
+package com.master.mosaique_capital.util;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class XirrTest {
+
+    @Test
+    void singlePeriodRateMatchesSimpleReturn() {
+        assertThat(Xirr.solve(new double[]{-1000, 1100}, new double[]{0, 1})).isCloseTo(0.10, within(1e-9));
+        assertThat(Xirr.solve(new double[]{-1000, 1000}, new double[]{0, 2})).isCloseTo(0.0, within(1e-9));
+    }
+
+    @Test
+    void nearTotalLossConvergesThroughBisection() {
+        assertThat(Xirr.solve(new double[]{-1000, 10}, new double[]{0, 1})).isCloseTo(-0.99, within(1e-6));
+    }
+
+    @Test
+    void flowsWithoutSignChangeHaveNoRate() {
+        assertThat(Xirr.solve(new double[]{1000, 10}, new double[]{0, 1})).isNaN();
+        assertThat(Xirr.solve(new double[]{-1000}, new double[]{0})).isNaN();
+    }
+
+    @RepeatedTest(20)
+    void batchSolvesEachProblemToZeroNetPresentValue(RepetitionInfo repetition) {
+        Random random = new Random(repetition.getCurrentRepetition());
+        int problems = 1 + random.nextInt(200);
+        double[] expected = new double[problems];
+        double[][] amounts = new double[problems][];
+        double[][] years = new double[problems][];
+
+        Xirr.Batch batch = new Xirr.Batch();
+        for (int p = 0; p < problems; p++) {
+            // Taux connu : la valeur finale est celle qui annule la VAN des apports à ce taux
+            expected[p] = -0.5 + random.nextDouble();
+            int flows = 2 + random.nextInt(30);
+            amounts[p] = new double[flows];
+            years[p] = new double[flows];
+            double presentValue = 0;
+            for (int k = 0; k < flows; k++) {
+                years[p][k] = k == 0 ? 0 : years[p][k - 1] + 0.1 + random.nextDouble() * 0.2;
+                if (k < flows - 1) {
+                    amounts[p][k] = -(1 + random.nextDouble() * 200);
+                    presentValue += amounts[p][k] * Math.pow(1 + expected[p], -years[p][k]);
+                } else {
+                    amounts[p][k] = -presentValue * Math.pow(1 + expected[p], years[p][k]);
+                }
+                batch.add(amounts[p][k], years[p][k]);
+            }
+            assertThat(batch.close()).isEqualTo(p);
+        }
+
+        double[] rates = batch.solve();
+        for (int p = 0; p < problems; p++) {
+            // Apports puis une valeur finale positive, la plus tardive : une seule racine, toujours trouvée
+            assertThat(rates[p]).as("problem %d", p).isNotNaN().isCloseTo(expected[p], within(1e-6));
+            assertThat(rates[p]).isCloseTo(Xirr.solve(amounts[p], years[p]), within(1e-9));
+
+            double npv = 0;
+            double scale = 0;
+            for (int k = 0; k < amounts[p].length; k++) {
+                npv += amounts[p][k] * Math.pow(1 + rates[p], -years[p][k]);
+                scale += Math.abs(amounts[p][k]);
+            }
+            assertThat(Math.abs(npv) / scale).isLessThan(1e-6);
+        }
+    }
+
+    @Test
+    void batchKeepsIllPosedProblemsIsolated() {
+        Xirr.Batch batch = new Xirr.Batch();
+        batch.add(-1000, 0);
+        batch.add(1100, 1);
+        batch.close();
+        // Aucun changement de signe : pas de taux, sans effet sur les problèmes voisins
+        batch.add(1000, 0);
+        batch.add(10, 1);
+        batch.close();
+        batch.add(-1000, 0);
+        batch.add(10, 1);
+        batch.close();
+
+        double[] rates = batch.solve();
+
+        assertThat(rates[0]).isCloseTo(0.10, within(1e-9));
+        assertThat(rates[1]).isNaN();
+        assertThat(rates[2]).isCloseTo(-0.99, within(1e-6));
+    }
+}